@@ -2,6 +2,7 @@ package pt.ist.fenixframework.backend.infinispan;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Collection;
 import java.util.Date;
 import java.util.TimeZone;
 
@@ -15,6 +16,7 @@ import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
+import pt.ist.fenixframework.Snapshot;
 import pt.ist.fenixframework.TransactionManager;
 import pt.ist.fenixframework.backend.BackEnd;
 import pt.ist.fenixframework.core.AbstractDomainObject;
@@ -158,4 +160,14 @@ public class InfinispanBackEnd implements BackEnd {
         throw new UnsupportedOperationException("Sorry, cannot determine if the object is valid");
     }
 
+    @Override
+    public void prefetch(Collection<? extends DomainObject> objects, String... slotNames) {
+        // each slot is read directly from the cache when it is accessed
+    }
+
+    @Override
+    public Snapshot openSnapshot(long maxAgeMillis) {
+        throw new UnsupportedOperationException("Snapshots are not supported by the " + BACKEND_NAME + " backend");
+    }
+
 }
@@ -2,6 +2,7 @@ package pt.ist.fenixframework.backend.infinispan;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
 import javax.transaction.HeuristicMixedException;
 import javax.transaction.HeuristicRollbackException;
@@ -15,10 +16,15 @@ import org.infinispan.CacheException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pt.ist.fenixframework.AsyncCommitListener;
 import pt.ist.fenixframework.Atomic;
 import pt.ist.fenixframework.CallableWithoutException;
 import pt.ist.fenixframework.CommitListener;
+import pt.ist.fenixframework.TransactionFuture;
 import pt.ist.fenixframework.TransactionManager;
+import pt.ist.fenixframework.core.AsyncCommitDispatcher;
+import pt.ist.fenixframework.core.AsyncTransactionRunner;
+import pt.ist.fenixframework.util.JTADelegatingTransaction;
 import pt.ist.fenixframework.util.TxMap;
 
 public class InfinispanTransactionManager implements TransactionManager {
@@ -28,6 +34,8 @@ public class InfinispanTransactionManager implements TransactionManager {
 
     private final ConcurrentLinkedQueue<CommitListener> listeners = new ConcurrentLinkedQueue<CommitListener>();
 
+    private final AsyncCommitDispatcher asyncCommitDispatcher = new AsyncCommitDispatcher();
+
     void setDelegateTxManager(javax.transaction.TransactionManager delegate) {
         delegateTxManager = delegate;
     }
@@ -68,7 +76,11 @@ public class InfinispanTransactionManager implements TransactionManager {
             delegateTxManager.commit();
         } finally {
             for (CommitListener listener : listeners) {
-                listener.afterCommit(tx);
+                if (listener instanceof AsyncCommitListener) {
+                    asyncCommitDispatcher.dispatch((AsyncCommitListener) listener, tx);
+                } else {
+                    listener.afterCommit(tx);
+                }
             }
         }
     }
@@ -202,6 +214,9 @@ public class InfinispanTransactionManager implements TransactionManager {
 
     @Override
     public void resume(Transaction tx) throws InvalidTransactionException, IllegalStateException, SystemException {
+        if (tx instanceof JTADelegatingTransaction) {
+            tx = ((JTADelegatingTransaction) tx).getDelegateTx();
+        }
         delegateTxManager.resume(tx);
     }
 
@@ -217,7 +232,16 @@ public class InfinispanTransactionManager implements TransactionManager {
 
     @Override
     public Transaction suspend() throws SystemException {
-        return delegateTxManager.suspend();
+        Transaction tx = delegateTxManager.suspend();
+        return (tx == null) ? null : TxMap.getTx(tx);
+    }
+
+    /**
+     * @see pt.ist.fenixframework.TransactionManager#withTransactionAsync(Callable, Atomic, Executor)
+     */
+    @Override
+    public <T> TransactionFuture<T> withTransactionAsync(Callable<T> command, Atomic atomic, Executor executor) {
+        return AsyncTransactionRunner.submit(this, command, atomic, executor);
     }
 
     /**
@@ -15,6 +15,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.backend.jvstm.pstm.VBox;
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -33,7 +34,7 @@ public class RemoteCommit implements DataSerializable {
     protected int serverId;
     protected int txNumber;
 
-    protected String[] ids;
+    protected VBoxId[] ids;
 
     public RemoteCommit() {
         // required by Hazelcast's DataSerializable
@@ -44,7 +45,7 @@ public class RemoteCommit implements DataSerializable {
         this.txNumber = txNumber;
 
         int writeSetSize = boxesWritten.size();
-        this.ids = new String[writeSetSize];
+        this.ids = new VBoxId[writeSetSize];
 
         // construir isto fora do lock e tb o byte array?
         int pos = 0;
@@ -62,7 +63,7 @@ public class RemoteCommit implements DataSerializable {
         return this.txNumber;
     }
 
-    public String[] getIds() {
+    public VBoxId[] getIds() {
         return this.ids;
     }
 
@@ -77,9 +78,10 @@ public class RemoteCommit implements DataSerializable {
         int commitSize = 4 * 3; // debug
 
         for (int i = 0; i < size; i++) {
-            out.writeUTF(ids[i]);
+            ids[i].writeTo(out);
 
-            commitSize += ids[i].length(); // debug: UTF-8 simplification but good enough to get a debug figure
+            // debug: UTF-8 simplification but good enough to get a debug figure
+            commitSize += ids[i].isStandalone() ? 2 + 2 + ids[i].getName().length() : 2 + 8;
         }
 
         logger.debug("RemoteCommit approximate size: {} bytes", commitSize);
@@ -91,9 +93,9 @@ public class RemoteCommit implements DataSerializable {
         this.txNumber = in.readInt();
 
         int size = in.readInt();
-        this.ids = new String[size];
+        this.ids = new VBoxId[size];
         for (int i = 0; i < size; i++) {
-            this.ids[i] = in.readUTF();
+            this.ids[i] = VBoxId.readFrom(in);
         }
     }
 
@@ -141,7 +143,7 @@ public class RemoteCommit implements DataSerializable {
             int size = 0;
             for (Map.Entry<jvstm.VBox, Object> entry : boxesWritten.entrySet()) {
                 VBox<?> vbox = (VBox<?>) entry.getKey();
-                array.add(new JsonPrimitive(vbox.getId()));
+                array.add(toJson(vbox.getId()));
                 size++;
             }
 
@@ -172,15 +174,34 @@ public class RemoteCommit implements DataSerializable {
             JsonObject topLevel = parser.parse(commitData).getAsJsonObject();
 
             int size = topLevel.get("size").getAsInt();
-            this.ids = new String[size];
+            this.ids = new VBoxId[size];
 
             Iterator<JsonElement> it = topLevel.get("data").getAsJsonArray().iterator();
             for (int i = 0; i < size; i++) {
 
-                this.ids[i] = it.next().getAsString();
+                this.ids[i] = fromJson(it.next());
             }
         }
 
+        // the id of an OwnedVBox is sent as [oid, slotIndex] and the id of a StandaloneVBox as its name
+        private static JsonElement toJson(VBoxId vboxId) {
+            if (vboxId.isStandalone()) {
+                return new JsonPrimitive(vboxId.getName());
+            }
+            JsonArray pair = new JsonArray();
+            pair.add(new JsonPrimitive(vboxId.getOid()));
+            pair.add(new JsonPrimitive(vboxId.getSlotIndex()));
+            return pair;
+        }
+
+        private static VBoxId fromJson(JsonElement element) {
+            if (element.isJsonArray()) {
+                JsonArray pair = element.getAsJsonArray();
+                return VBoxId.forSlot(pair.get(0).getAsLong(), pair.get(1).getAsInt());
+            }
+            return VBoxId.forName(element.getAsString());
+        }
+
         @Override
         public String toString() {
             // if this is remote commit was received then the oids array is set.  Otherwise, we'll print the JSON array
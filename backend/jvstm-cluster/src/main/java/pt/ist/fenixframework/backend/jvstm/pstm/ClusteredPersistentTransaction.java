@@ -221,7 +221,7 @@ public class ClusteredPersistentTransaction extends PersistentTransaction {
 
         int size = remoteCommit.getIds().length;
         for (int i = 0; i < size; i++) {
-            String vboxId = remoteCommit.getIds()[i];
+            VBoxId vboxId = remoteCommit.getIds()[i];
 
             JvstmClusterBackEnd backEnd = (JvstmClusterBackEnd) FenixFramework.getConfig().getBackEnd();
 
@@ -8,8 +8,10 @@
 package pt.ist.fenixframework.backend.jvstm;
 
 import java.io.PrintWriter;
+import java.util.Iterator;
 
 import pt.ist.fenixframework.dml.CompilerArgs;
+import pt.ist.fenixframework.dml.DomainClass;
 import pt.ist.fenixframework.dml.DomainModel;
 import pt.ist.fenixframework.dml.IndexesCodeGenerator;
 import pt.ist.fenixframework.dml.Role;
@@ -40,6 +42,29 @@ public class JVSTMCodeGenerator extends IndexesCodeGenerator {
         return JVSTMDomainObject.class.getName();
     }
 
+    /**
+     * Whether the slots of the given class are stored together, in a single record (see
+     * {@link pt.ist.fenixframework.backend.jvstm.pstm.RecordVBox}). Backends that cannot store records should override this
+     * method to ignore the option.
+     */
+    protected boolean isWholeObject(DomainClass domClass) {
+        return domClass.hasOption(DomainClass.Option.WHOLE_OBJECT) && !domClass.getSlotsList().isEmpty();
+    }
+
+    protected String getRecordName(DomainClass domClass) {
+        return "record$" + domClass.getName();
+    }
+
+    @Override
+    protected void generateSlots(Iterator slotsIter, PrintWriter out) {
+        super.generateSlots(slotsIter, out);
+        if (isWholeObject(dC)) {
+            onNewline(out);
+            printWords(out, "private", "RecordVBox", getRecordName(dC));
+            print(out, ";");
+        }
+    }
+
     @Override
     protected void generateSlot(Slot slot, PrintWriter out) {
         onNewline(out);
@@ -53,6 +78,7 @@ public class JVSTMCodeGenerator extends IndexesCodeGenerator {
         println(out, "import pt.ist.fenixframework.FenixFramework;");
         println(out, "import pt.ist.fenixframework.backend.jvstm.pstm.VBox;");
         println(out, "import pt.ist.fenixframework.backend.jvstm.pstm.OwnedVBox;");
+        println(out, "import pt.ist.fenixframework.backend.jvstm.pstm.RecordVBox;");
     }
 
     //    // smf: maybe to delete? /replace with getboxtype or similar?
@@ -81,6 +107,9 @@ public class JVSTMCodeGenerator extends IndexesCodeGenerator {
     }
 
     protected String getNewSlotExpression(Slot slot) {
+        if (isWholeObject(dC)) {
+            return getRecordName(dC) + ".makeSlot(\"" + slot.getName() + "\", allocateOnly)";
+        }
         return getNewSlotExpression(slot.getName(), false);
     }
 
@@ -117,6 +146,11 @@ public class JVSTMCodeGenerator extends IndexesCodeGenerator {
 
     @Override
     protected void generateInitSlot(Slot slot, PrintWriter out) {
+        // the record goes before its first slot
+        if (isWholeObject(dC) && slot == dC.getSlotsList().get(0)) {
+            generateInitRecord(dC, out);
+        }
+
         onNewline(out);
         printWords(out, slot.getName());
         print(out, " = ");
@@ -127,6 +161,20 @@ public class JVSTMCodeGenerator extends IndexesCodeGenerator {
         generateInitializePrimitiveIfNeeded(slot, out);
     }
 
+    protected void generateInitRecord(DomainClass domClass, PrintWriter out) {
+        StringBuilder slotNames = new StringBuilder();
+        for (Slot slot : domClass.getSlotsList()) {
+            if (slotNames.length() > 0) {
+                slotNames.append(", ");
+            }
+            slotNames.append("\"").append(slot.getName()).append("\"");
+        }
+
+        onNewline(out);
+        print(out, getRecordName(domClass) + " = new RecordVBox(this, \"" + getRecordName(domClass) + "\", new String[] { "
+                + slotNames + " });");
+    }
+
     // smf: It might make sense to define this method in the CodeGenerator class 
     protected void generateInitializePrimitiveIfNeeded(Slot slot, PrintWriter out) {
         PrimitiveToWrapperEntry wrapperEntry = findWrapperEntry(slot.getTypeName());
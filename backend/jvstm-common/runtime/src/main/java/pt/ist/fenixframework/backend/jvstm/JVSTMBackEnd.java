@@ -7,6 +7,10 @@
  */
 package pt.ist.fenixframework.backend.jvstm;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import jvstm.ActiveTransactionsRecord;
 import jvstm.Transaction;
 
@@ -18,6 +22,7 @@ import pt.ist.fenixframework.Atomic.TxMode;
 import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
 import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.Snapshot;
 import pt.ist.fenixframework.backend.BackEnd;
 import pt.ist.fenixframework.backend.jvstm.pstm.DomainClassInfo;
 import pt.ist.fenixframework.backend.jvstm.pstm.FenixFrameworkData;
@@ -25,8 +30,13 @@ import pt.ist.fenixframework.backend.jvstm.pstm.NonPersistentTopLevelReadOnlyTra
 import pt.ist.fenixframework.backend.jvstm.pstm.NonPersistentTopLevelTransaction;
 import pt.ist.fenixframework.backend.jvstm.pstm.VBox;
 import pt.ist.fenixframework.backend.jvstm.pstm.VBoxCache;
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
+import pt.ist.fenixframework.backend.jvstm.pstm.VersionChainTrimmer;
+import pt.ist.fenixframework.backend.jvstm.pstm.VersionedSubject;
 import pt.ist.fenixframework.backend.jvstm.repository.NoRepository;
 import pt.ist.fenixframework.backend.jvstm.repository.Repository;
+import pt.ist.fenixframework.backend.jvstm.repository.VersionCollectingRepository;
+import pt.ist.fenixframework.backend.jvstm.repository.VersionRetention;
 import pt.ist.fenixframework.core.AbstractDomainObject;
 import pt.ist.fenixframework.core.DomainObjectAllocator;
 import pt.ist.fenixframework.core.SharedIdentityMap;
@@ -85,11 +95,10 @@ public class JVSTMBackEnd implements BackEnd {
     public <T extends DomainObject> T fromOid(Object oid) {
         logger.debug("fromOid({})", oid);
 
-        AbstractDomainObject obj = SharedIdentityMap.getCache().lookup(oid);
+        long longOid = ((Long) oid).longValue();
+        AbstractDomainObject obj = SharedIdentityMap.lookupInCurrent(longOid);
 
         if (obj == null) {
-            long longOid = ((Long) oid).longValue();
-
             if (logger.isDebugEnabled()) {
                 logger.debug("Object not found in IdentityMap: {}", Long.toHexString(longOid));
             }
@@ -114,10 +123,14 @@ public class JVSTMBackEnd implements BackEnd {
     }
 
     protected void localInit(JVSTMConfig jvstmConfig, int serverId, boolean firstNode) {
+        this.transactionManager.setContentionManager(jvstmConfig.getContentionManager());
+        this.transactionManager.getModePredictor().init(jvstmConfig);
+
         logger.info("initializeRepository()");
         this.newInstance = initializeRepository(jvstmConfig);
 
         logger.info("initializeDomainClassInfos");
+        DomainClassInfo.setKeyBlockSize(jvstmConfig.getKeyBlockSize());
         initializeDomainClassInfos(serverId);
 
         logger.info("setupJVSTM");
@@ -133,6 +146,13 @@ public class JVSTMBackEnd implements BackEnd {
         logger.info("ensureFenixFrameworkDataExists");
         ensureFenixFrameworkDataExists();
 
+        VersionChainTrimmer.getInstance().configure(jvstmConfig);
+
+        if (this.repository instanceof VersionCollectingRepository && jvstmConfig.getVersionRetentionIntervalSeconds() > 0) {
+            logger.info("startVersionRetention");
+            new VersionRetention((VersionCollectingRepository) this.repository, jvstmConfig).start();
+        }
+
 //        logger.info("startStatisticsThread");
 //        new StatisticsThread().start();
 
@@ -213,7 +233,7 @@ public class JVSTMBackEnd implements BackEnd {
      * @return The VBox if it is available in memory. Otherwise, <code>null</code> (if either the VBox does not exist or is not in
      *         cache).
      */
-    public VBox lookupCachedVBox(String vboxId) {
+    public VBox lookupCachedVBox(VBoxId vboxId) {
         throw new UnsupportedOperationException("not yet implemented");
     }
 
@@ -236,4 +256,40 @@ public class JVSTMBackEnd implements BackEnd {
         throw new UnsupportedOperationException("Sorry, cannot determine if the object is valid");
     }
 
+    /**
+     * Collects the boxes of the given slots that are not loaded for the current transaction and reloads all of them at once
+     * (see {@link VBox#reloadAll(Collection, int)}).
+     */
+    @Override
+    public void prefetch(Collection<? extends DomainObject> objects, String... slotNames) {
+        Transaction current = Transaction.current();
+        if (current == null) {
+            return;
+        }
+        int txNumber = current.getNumber();
+
+        List<VBox> boxes = new ArrayList<VBox>();
+        for (DomainObject object : objects) {
+            for (String slotName : slotNames) {
+                VersionedSubject slot = ((JVSTMDomainObject) object).getSlotNamed(slotName);
+                if (slot instanceof VBox && ((VBox) slot).needsReload(txNumber)) {
+                    boxes.add((VBox) slot);
+                }
+            }
+        }
+
+        if (!boxes.isEmpty()) {
+            logger.debug("Prefetching {} box(es) for version {}", boxes.size(), txNumber);
+            VBox.reloadAll(boxes, txNumber);
+        }
+    }
+
+    /**
+     * Opens a {@link JVSTMSnapshot} at the most recent version.
+     */
+    @Override
+    public Snapshot openSnapshot(long maxAgeMillis) {
+        return new JVSTMSnapshot(this.transactionManager, maxAgeMillis);
+    }
+
 }
@@ -23,6 +23,63 @@ public class JVSTMConfig extends HibernateSearchConfig {
 
     protected JVSTMBackEnd backEnd;
 
+    /**
+     * This <strong>optional</strong> parameter specifies how many keys for new objects of a class are reserved at once in the
+     * repository. Larger blocks mean fewer writes to the repository when creating objects, but the keys left in a block when
+     * the application stops are never used. The default value for this parameter is <code>1000</code>.
+     */
+    protected int keyBlockSize = 1000;
+
+    /**
+     * This <strong>optional</strong> parameter specifies how often, in seconds, the versions that no running transaction can
+     * read anymore are discarded from the repository, by the backends that support it (jvstm-infinispan and jvstm-lf). A value
+     * of <code>0</code> (the default) disables the collection, and every version is kept forever. All the nodes of a cluster
+     * should use the same setting.
+     * 
+     * @see pt.ist.fenixframework.backend.jvstm.repository.VersionRetention
+     */
+    protected int versionRetentionIntervalSeconds = 0;
+
+    /**
+     * This <strong>optional</strong> parameter specifies the maximum number of keys removed from the repository in each batch.
+     * The default value for this parameter is <code>1000</code>.
+     */
+    protected int versionRetentionBatchSize = 1000;
+
+    /**
+     * This <strong>optional</strong> parameter specifies how long, in milliseconds, to pause between batches. The default value
+     * for this parameter is <code>100</code>.
+     */
+    protected int versionRetentionBatchPauseMillis = 100;
+
+    /**
+     * This <strong>optional</strong> parameter specifies how many versions older than the oldest one in use are kept. The
+     * default value for this parameter is <code>100</code>.
+     */
+    protected int versionRetentionLag = 100;
+
+    /**
+     * This <strong>optional</strong> parameter specifies after how long, in seconds, a node that did not publish the oldest
+     * version in use by its transactions is considered gone. The default value for this parameter is <code>600</code>.
+     */
+    protected int versionRetentionNodeTimeoutSeconds = 600;
+
+    /**
+     * This <strong>optional</strong> parameter specifies whether the in-memory versions of a box that no running transaction can
+     * read anymore are discarded whenever versions are added to the box. The default value for this parameter is
+     * <code>true</code>.
+     * 
+     * @see pt.ist.fenixframework.backend.jvstm.pstm.VersionChainTrimmer
+     */
+    protected boolean versionChainTrimming = true;
+
+    /**
+     * This <strong>optional</strong> parameter specifies how often, in seconds, the boxes whose versions could not be discarded
+     * when they were added, as well as the cached standalone boxes, are revisited to discard them. A value of <code>0</code>
+     * (the default) disables the revisits.
+     */
+    protected int versionChainSweepIntervalSeconds = 0;
+
     /**
      * Subclasses of this config should set their own backEnd before calling this init. Otherwise, this method will set its own
      * backEnd (JVSTMBackEnd)
@@ -50,6 +107,78 @@ public class JVSTMConfig extends HibernateSearchConfig {
         super.init();
     }
 
+    public int getKeyBlockSize() {
+        return keyBlockSize;
+    }
+
+    public int getVersionRetentionIntervalSeconds() {
+        return versionRetentionIntervalSeconds;
+    }
+
+    public int getVersionRetentionBatchSize() {
+        return versionRetentionBatchSize;
+    }
+
+    public int getVersionRetentionBatchPauseMillis() {
+        return versionRetentionBatchPauseMillis;
+    }
+
+    public int getVersionRetentionLag() {
+        return versionRetentionLag;
+    }
+
+    public int getVersionRetentionNodeTimeoutSeconds() {
+        return versionRetentionNodeTimeoutSeconds;
+    }
+
+    public boolean getVersionChainTrimming() {
+        return versionChainTrimming;
+    }
+
+    public int getVersionChainSweepIntervalSeconds() {
+        return versionChainSweepIntervalSeconds;
+    }
+
+    protected void keyBlockSizeFromString(String value) {
+        keyBlockSize = parseInt(value);
+    }
+
+    protected void versionRetentionIntervalSecondsFromString(String value) {
+        versionRetentionIntervalSeconds = parseInt(value);
+    }
+
+    protected void versionRetentionBatchSizeFromString(String value) {
+        versionRetentionBatchSize = parseInt(value);
+    }
+
+    protected void versionRetentionBatchPauseMillisFromString(String value) {
+        versionRetentionBatchPauseMillis = parseInt(value);
+    }
+
+    protected void versionRetentionLagFromString(String value) {
+        versionRetentionLag = parseInt(value);
+    }
+
+    protected void versionRetentionNodeTimeoutSecondsFromString(String value) {
+        versionRetentionNodeTimeoutSeconds = parseInt(value);
+    }
+
+    protected void versionChainTrimmingFromString(String value) {
+        versionChainTrimming = Boolean.parseBoolean(value.trim());
+    }
+
+    protected void versionChainSweepIntervalSecondsFromString(String value) {
+        versionChainSweepIntervalSeconds = parseInt(value);
+    }
+
+    protected static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigError(e);
+        }
+    }
+
     @Override
     public JVSTMBackEnd getBackEnd() {
         return this.backEnd;
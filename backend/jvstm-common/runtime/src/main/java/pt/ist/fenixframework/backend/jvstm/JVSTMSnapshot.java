@@ -0,0 +1,102 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm;
+
+import java.util.concurrent.Callable;
+
+import javax.transaction.InvalidTransactionException;
+import javax.transaction.NotSupportedException;
+import javax.transaction.SystemException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.Snapshot;
+import pt.ist.fenixframework.core.TransactionError;
+
+/**
+ * A snapshot backed by a top-level read-only transaction. Read-only transactions keep no read set and are never validated, so
+ * the same transaction can be resumed by several threads at the same time, each of which reads the boxes at the version the
+ * transaction started with. While the snapshot is open, its transaction is registered as running, so that neither the in-memory
+ * versions nor the versions in the repository that it reads are discarded.
+ */
+class JVSTMSnapshot extends Snapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(JVSTMSnapshot.class);
+
+    private final JVSTMTransactionManager transactionManager;
+    private final JVSTMTransaction transaction;
+    private final int version;
+
+    JVSTMSnapshot(JVSTMTransactionManager transactionManager, long maxAgeMillis) {
+        super(maxAgeMillis);
+        this.transactionManager = transactionManager;
+
+        JVSTMTransaction previous = transactionManager.suspend();
+        try {
+            transactionManager.begin(true);
+            this.transaction = transactionManager.suspend();
+        } catch (NotSupportedException e) {
+            throw new TransactionError(e);
+        } finally {
+            resume(previous);
+        }
+        this.version = ((jvstm.Transaction) this.transaction.getUnderlyingTransaction()).getNumber();
+        logger.debug("Opened snapshot at version {}", this.version);
+    }
+
+    @Override
+    protected <T> T doRead(Callable<T> command) throws Exception {
+        JVSTMTransaction previous = transactionManager.suspend();
+        try {
+            resume(this.transaction);
+            try {
+                return command.call();
+            } finally {
+                transactionManager.suspend();
+            }
+        } finally {
+            resume(previous);
+        }
+    }
+
+    @Override
+    protected void doClose() {
+        JVSTMTransaction previous = transactionManager.suspend();
+        try {
+            resume(this.transaction);
+            transactionManager.rollback();
+        } catch (SystemException e) {
+            throw new TransactionError(e);
+        } finally {
+            resume(previous);
+        }
+        logger.debug("Closed snapshot at version {}", this.version);
+    }
+
+    /**
+     * @return The version read through this snapshot
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
+    private void resume(JVSTMTransaction tx) {
+        if (tx == null) {
+            return;
+        }
+        try {
+            transactionManager.resume(tx);
+        } catch (InvalidTransactionException e) {
+            throw new TransactionError(e);
+        } catch (SystemException e) {
+            throw new TransactionError(e);
+        }
+    }
+
+}
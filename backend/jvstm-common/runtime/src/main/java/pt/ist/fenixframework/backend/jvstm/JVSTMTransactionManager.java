@@ -20,11 +20,18 @@ import org.slf4j.LoggerFactory;
 import pt.ist.fenixframework.Atomic;
 import pt.ist.fenixframework.Atomic.TxMode;
 import pt.ist.fenixframework.CallableWithoutException;
+import pt.ist.fenixframework.ContentionManager;
 import pt.ist.fenixframework.backend.jvstm.pstm.JvstmInFenixTransaction;
 import pt.ist.fenixframework.core.AbstractTransactionManager;
+import pt.ist.fenixframework.core.AsyncTransactionRunner;
+import pt.ist.fenixframework.core.ConflictProfiler;
+import pt.ist.fenixframework.core.DefaultContentionManager;
+import pt.ist.fenixframework.core.TxModePredictor;
 import pt.ist.fenixframework.core.WriteOnReadError;
+import pt.ist.fenixframework.core.exception.ContentionException;
 import pt.ist.fenixframework.core.exception.FenixRollbackException;
 import pt.ist.fenixframework.core.exception.RecoverableRollbackException;
+import pt.ist.fenixframework.core.metrics.TransactionMetrics;
 
 public class JVSTMTransactionManager extends AbstractTransactionManager {
 
@@ -41,6 +48,21 @@ public class JVSTMTransactionManager extends AbstractTransactionManager {
             return true;
         }
 
+        @Override
+        public int maxRetries() {
+            return GLOBAL;
+        }
+
+        @Override
+        public int serializeAfter() {
+            return GLOBAL;
+        }
+
+        @Override
+        public boolean backoff() {
+            return true;
+        }
+
         @Override
         public Class<? extends Annotation> annotationType() {
             return pt.ist.fenixframework.Atomic.class;
@@ -53,6 +75,29 @@ public class JVSTMTransactionManager extends AbstractTransactionManager {
      */
     private final ThreadLocal<JVSTMTransaction> transactions = new ThreadLocal<JVSTMTransaction>();
 
+    /*
+     * Decides how to handle conflicts in withTransaction.  Until the backend sets the configured one, conflicting transactions
+     * are simply restarted.
+     */
+    private volatile ContentionManager contentionManager = new DefaultContentionManager();
+
+    /*
+     * Learns which speculative read-only commands end up writing.
+     */
+    private final TxModePredictor modePredictor = new TxModePredictor();
+
+    public TxModePredictor getModePredictor() {
+        return modePredictor;
+    }
+
+    public ContentionManager getContentionManager() {
+        return contentionManager;
+    }
+
+    public void setContentionManager(ContentionManager contentionManager) {
+        this.contentionManager = contentionManager;
+    }
+
     @Override
     public void begin(boolean readOnly) throws NotSupportedException {
         JVSTMTransaction parent = transactions.get();
@@ -126,7 +171,8 @@ public class JVSTMTransactionManager extends AbstractTransactionManager {
         }
 
         Transaction.suspend();
-        transactions.remove();
+        // keep the thread-local entry, as the thread (or the transaction) is likely to be resumed soon
+        transactions.set(null);
 
         return current;
     }
@@ -177,66 +223,105 @@ public class JVSTMTransactionManager extends AbstractTransactionManager {
             return command.call();
         }
 
+        final boolean speculative = tryReadOnly && !readOnly;
+        if (speculative) {
+            tryReadOnly = modePredictor.startReadOnly(commandName);
+        }
+
+        String previousCommand = ConflictProfiler.enterCommand(commandName);
+        try {
+            return runAttempts(command, atomic, commandName, readOnly, tryReadOnly, speculative);
+        } finally {
+            ConflictProfiler.exitCommand(previousCommand);
+        }
+    }
+
+    private <T> T runAttempts(Callable<T> command, Atomic atomic, String commandName, boolean readOnly, boolean tryReadOnly,
+            boolean speculative) throws Exception {
         int tries = 0;
+        // an asynchronous transaction runs one attempt at a time, each resuming the count of the previous ones
+        int conflicts = AsyncTransactionRunner.getPreviousConflicts(atomic);
 
         while (true) {
-            begin(tryReadOnly);
-            tries++;
-
-            T result = null;
-            boolean commandFinished = false;
+            final int attempt = conflicts + 1;
+            Throwable conflict = null;
 
+            contentionManager.beforeAttempt(commandName, atomic, attempt);
             try {
-                result = command.call();
-                commandFinished = true;
-            } catch (WriteOnReadException e) {
-                tryReadOnly = handleWriteOnRead(commandName, readOnly, tryReadOnly, tries, e);
-            } catch (WriteOnReadError e) {
-                tryReadOnly = handleWriteOnRead(commandName, readOnly, tryReadOnly, tries, e);
-            } catch (UnableToDetermineIdException e) {
-                if (!readOnly) {
-                    tryReadOnly = false;
-                }
-                logTransactionRestart(commandName, e, tries);
-            } catch (CommitException e) {
-                /* actually, during the body of a transaction we're only interested
-                in the JVSTM-2' EarlyAbortException. However, that class is not
-                known in this module, which is only compiled with jvstm1.x.  But,
-                because EarlyAbortException is a subclass of the known CommitException
-                we're good. :-)*/
-                logTransactionRestart(commandName, e, tries);
-            } catch (Exception e) {
-                // just log any other exception
-                logGenericException(commandName, e, tries);
-                throw e;
-            } finally {
+                begin(tryReadOnly);
+                tries++;
+
+                T result = null;
+                boolean commandFinished = false;
+
                 try {
-                    if (commandFinished) {
-                        commit();
-                        return result;
-                    } else {
-                        rollback();
-                    }
-                } catch (RecoverableRollbackException e) {
-                    // Restart the transaction if the rollback was recoverable
-                    logger.debug("Exception on transaction {}: {}", (commandFinished ? "commit" : "rollback"), e);
-                } catch (FenixRollbackException e) {
-                    // If the rollback isn't recoverable, attempt to unwrap
-                    // the exception and throw it.
-                    if (e.getCause() instanceof Exception) {
-                        throw (Exception) e.getCause();
+                    result = command.call();
+                    commandFinished = true;
+                } catch (WriteOnReadException e) {
+                    tryReadOnly = handleWriteOnRead(commandName, readOnly, tryReadOnly, tries, e);
+                } catch (WriteOnReadError e) {
+                    tryReadOnly = handleWriteOnRead(commandName, readOnly, tryReadOnly, tries, e);
+                } catch (UnableToDetermineIdException e) {
+                    if (!readOnly) {
+                        tryReadOnly = false;
                     }
+                    logTransactionRestart(commandName, e, tries);
+                } catch (CommitException e) {
+                    /* actually, during the body of a transaction we're only interested
+                    in the JVSTM-2' EarlyAbortException. However, that class is not
+                    known in this module, which is only compiled with jvstm1.x.  But,
+                    because EarlyAbortException is a subclass of the known CommitException
+                    we're good. :-)*/
+                    conflict = e;
+                    logTransactionRestart(commandName, e, tries);
+                } catch (Exception e) {
+                    // just log any other exception
+                    logGenericException(commandName, e, tries);
                     throw e;
-                } catch (HeuristicMixedException e) {
-                    logger.debug("Exception on transaction {}: {}", (commandFinished ? "commit" : "rollback"), e);
-                } catch (HeuristicRollbackException e) {
-                    logger.debug("Exception on transaction {}: {}", (commandFinished ? "commit" : "rollback"), e);
-                } catch (SecurityException e) {
-                    logger.debug("Exception on transaction {}: {}", (commandFinished ? "commit" : "rollback"), e);
-                } catch (IllegalStateException e) {
-                    logger.debug("Exception on transaction {}: {}", (commandFinished ? "commit" : "rollback"), e);
-                } catch (SystemException e) {
-                    logger.debug("Exception on transaction {}: {}", (commandFinished ? "commit" : "rollback"), e);
+                } finally {
+                    try {
+                        if (commandFinished) {
+                            commit();
+                            if (speculative && tryReadOnly) {
+                                modePredictor.readOnlyCommitted(commandName);
+                            }
+                            TransactionMetrics.METRICS.recordRetries(tries - 1);
+                            return result;
+                        } else {
+                            rollback();
+                        }
+                    } catch (RecoverableRollbackException e) {
+                        // Restart the transaction if the rollback was recoverable
+                        conflict = e;
+                        logger.debug("Exception on transaction {}: {}", (commandFinished ? "commit" : "rollback"), e);
+                    } catch (FenixRollbackException e) {
+                        // If the rollback isn't recoverable, attempt to unwrap
+                        // the exception and throw it.
+                        if (e.getCause() instanceof Exception) {
+                            throw (Exception) e.getCause();
+                        }
+                        throw e;
+                    } catch (HeuristicMixedException e) {
+                        logger.debug("Exception on transaction {}: {}", (commandFinished ? "commit" : "rollback"), e);
+                    } catch (HeuristicRollbackException e) {
+                        logger.debug("Exception on transaction {}: {}", (commandFinished ? "commit" : "rollback"), e);
+                    } catch (SecurityException e) {
+                        logger.debug("Exception on transaction {}: {}", (commandFinished ? "commit" : "rollback"), e);
+                    } catch (IllegalStateException e) {
+                        logger.debug("Exception on transaction {}: {}", (commandFinished ? "commit" : "rollback"), e);
+                    } catch (SystemException e) {
+                        logger.debug("Exception on transaction {}: {}", (commandFinished ? "commit" : "rollback"), e);
+                    }
+                }
+            } finally {
+                contentionManager.afterAttempt(commandName, atomic, attempt);
+            }
+
+            if (conflict != null) {
+                conflicts++;
+                if (!contentionManager.shouldRetry(commandName, atomic, conflicts, conflict)) {
+                    logTransactionAbort(commandName, conflict, tries);
+                    throw new ContentionException(commandName, conflicts, conflict);
                 }
             }
         }
@@ -256,6 +341,7 @@ public class JVSTMTransactionManager extends AbstractTransactionManager {
         } else {
             // read-write transactions will now be restarted as read-write
             tryReadOnly = false;
+            modePredictor.writeOnRead(commandName);
             logTransactionRestart(commandName, e, tries);
         }
         return tryReadOnly;
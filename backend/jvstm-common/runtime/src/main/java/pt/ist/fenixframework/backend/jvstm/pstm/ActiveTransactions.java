@@ -0,0 +1,62 @@
+package pt.ist.fenixframework.backend.jvstm.pstm;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The versions read by the top-level transactions that are running in this node. Old versions (in memory and in the repository)
+ * may only be discarded when they are older than the version of every running transaction, which is given by
+ * {@link #getOldestVersion(int)}.
+ *
+ * A transaction is registered with the version it started with. Transactions that are later upgraded to a newer version keep
+ * their original registration, which is conservative: it only delays the discarding of versions.
+ */
+public final class ActiveTransactions {
+
+    private static final ConcurrentMap<Object, Integer> running = new ConcurrentHashMap<Object, Integer>();
+
+    // the highest version with which a transaction was registered
+    private static final AtomicInteger mostRecentVersion = new AtomicInteger();
+
+    private ActiveTransactions() {
+    }
+
+    public static void register(Object tx, int version) {
+        running.put(tx, version);
+
+        int previous = mostRecentVersion.get();
+        while (previous < version && !mostRecentVersion.compareAndSet(previous, version)) {
+            previous = mostRecentVersion.get();
+        }
+    }
+
+    public static void unregister(Object tx) {
+        running.remove(tx);
+    }
+
+    /**
+     * @param mostRecentVersion The version to return when no transaction is running
+     * @return The oldest version read by a running transaction, but never more than the given version
+     */
+    public static int getOldestVersion(int mostRecentVersion) {
+        int oldest = mostRecentVersion;
+        for (Integer version : running.values()) {
+            if (version < oldest) {
+                oldest = version;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * @return The highest version with which a transaction was registered. New transactions do not start with an older version.
+     */
+    public static int getMostRecentVersion() {
+        return mostRecentVersion.get();
+    }
+
+    public static int getRunningCount() {
+        return running.size();
+    }
+}
@@ -2,10 +2,17 @@ package pt.ist.fenixframework.backend.jvstm.pstm;
 
 import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,11 +30,26 @@ public class DomainClassInfo implements Serializable {
     private volatile static DomainClassInfo[] classInfoById;
     private volatile static long serverOidBase;
     private static int serverId = -1; // will be provided via DomainClassInfo.initializeClassInfos(...)
+    private volatile static int keyBlockSize = 1000;
 
     public static int getServerId() {
         return serverId;
     }
 
+    /**
+     * Set how many keys are reserved at once in the repository, for each class, when the keys previously reserved run out.
+     */
+    public static void setKeyBlockSize(int keyBlockSize) {
+        if (keyBlockSize < 1) {
+            throw new IllegalArgumentException("The key block size must be positive: " + keyBlockSize);
+        }
+        DomainClassInfo.keyBlockSize = keyBlockSize;
+    }
+
+    public static int getKeyBlockSize() {
+        return keyBlockSize;
+    }
+
     public static void initializeClassInfos(DomainModel domainModel, int serverId) {
         DomainClassInfo.serverId = serverId;
         serverOidBase = (long) serverId << 48;  // the server id provides the 16 most significant bits of the OID
@@ -68,10 +90,11 @@ public class DomainClassInfo implements Serializable {
 
         for (DomainClass domClass : domainModel.getDomainClasses()) {
             Class<? extends AbstractDomainObject> javaClass = findClass(domClass.getFullName());
-            if (!map.containsKey(javaClass)) {
+            DomainClassInfo existing = map.get(javaClass);
+            if (existing == null) {
                 // special case: record for DomainRoot must get class id = 0
                 int id = javaClass == DomainRoot.class ? 0 : ++maxId;
-                DomainClassInfo classInfo = new DomainClassInfo(javaClass, id);
+                DomainClassInfo classInfo = new DomainClassInfo(javaClass, id, findSlotNames(javaClass, new String[0]));
                 addNewInfo(map, array, classInfo);
                 newClasses.add(classInfo);
 
@@ -79,6 +102,17 @@ public class DomainClassInfo implements Serializable {
                     logger.info("Registering new domain class '{}' with id '{}'", javaClass.getName(),
                             Long.toHexString(classInfo.classId));
                 }
+            } else {
+                String[] slotNames = findSlotNames(javaClass, existing.slotNames);
+                if (slotNames.length != existing.slotNames.length) {
+                    // the stored records are only appended to, so this record replaces the existing one when they are read
+                    DomainClassInfo classInfo = new DomainClassInfo(javaClass, existing.classId, slotNames);
+                    addNewInfo(map, array, classInfo);
+                    newClasses.add(classInfo);
+
+                    logger.info("Registering {} new slot(s) for domain class '{}'", slotNames.length - existing.slotNames.length,
+                            javaClass.getName());
+                }
             }
         }
 
@@ -89,6 +123,31 @@ public class DomainClassInfo implements Serializable {
         return maxId;
     }
 
+    /* The slots of a domain class are the VBox fields declared by its generated base class (and by its superclasses). New slots
+    are appended to the known ones, so that the index of a slot never changes once it is stored.  The new slots are sorted by
+    name, which gives them the same index in every node that registers them. */
+    private static String[] findSlotNames(Class<?> javaClass, String[] knownSlotNames) {
+        SortedSet<String> newSlotNames = new TreeSet<String>();
+        for (Class<?> current = javaClass; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && VBox.class.isAssignableFrom(field.getType())) {
+                    newSlotNames.add(field.getName());
+                }
+            }
+        }
+        newSlotNames.removeAll(Arrays.asList(knownSlotNames));
+
+        String[] slotNames = Arrays.copyOf(knownSlotNames, knownSlotNames.length + newSlotNames.size());
+        int index = knownSlotNames.length;
+        for (String slotName : newSlotNames) {
+            slotNames[index++] = slotName;
+        }
+        if (slotNames.length > VBoxId.MAX_SLOT_INDEX + 1) {
+            throw new Error("Too many slots in domain class " + javaClass.getName());
+        }
+        return slotNames;
+    }
+
     // Simplifies the serialization of the class info map, by stripping the keys and leaving only the entrySet, which already
     // contains the keys information.  This reduces the space required for serialization, and MOST IMPORTANTLY it avoids
     // serializing instances of the class Class.  Serializing classes that represent domain classes, would required putting a
@@ -175,22 +234,46 @@ public class DomainClassInfo implements Serializable {
         return mapIdToClass(mapOidToClassId(oid));
     }
 
+    private static DomainClassInfo mapOidToInfo(long oid) {
+        DomainClassInfo[] infos = classInfoById;
+        int cid = mapOidToClassId(oid);
+        return (infos == null || cid >= infos.length) ? null : infos[cid];
+    }
+
+    /**
+     * @return The index of the given slot in the given domain class, as used in {@link VBoxId}s.
+     */
+    public static int mapSlotNameToIndex(Class<? extends AbstractDomainObject> objClass, String slotName) {
+        DomainClassInfo domainClassInfo = classInfoMap.get(objClass);
+        int index = (domainClassInfo == null) ? -1 : domainClassInfo.getSlotIndex(slotName);
+        if (index < 0) {
+            throw new RuntimeException("Slot not registered: " + objClass.getCanonicalName() + "." + slotName);
+        }
+        return index;
+    }
+
+    /**
+     * @return The index of the given slot in the class of the given oid, or <code>-1</code> if there is no such slot.
+     */
+    public static int findSlotIndex(long oid, String slotName) {
+        DomainClassInfo info = mapOidToInfo(oid);
+        return (info == null) ? -1 : info.getSlotIndex(slotName);
+    }
+
+    /**
+     * @return The name of the slot with the given index in the class of the given oid, or <code>null</code> if there is no such
+     *         slot.
+     */
+    public static String mapIndexToSlotName(long oid, int slotIndex) {
+        DomainClassInfo info = mapOidToInfo(oid);
+        return (info == null) ? null : info.getSlotName(slotIndex);
+    }
+
     public static long getNextOidFor(Class<? extends AbstractDomainObject> objClass) throws Exception {
-        int nextKey;
         DomainClassInfo info = classInfoMap.get(objClass);
+        int nextKey = info.nextKey();
         long oid;
 
-        synchronized (info) {
-            int lastKey = info.getLastKey();
-            if (lastKey == UNKNOWN_KEY) {  // not yet initialized from the persistent storage
-                lastKey = getLastKeyFor(info);
-                logger.debug("Initialize last used counter for class {}: {}", info.domainClassName, lastKey);
-            }
-
-            nextKey = lastKey + 1;
-            info.setLastKey(nextKey);
-        }
-
         // build the OID
         if ((DomainRoot.class == objClass) && (nextKey == 1)) {
             // this first DomainRoot instance is special and always takes a known value, regardless of the serverOidBase
@@ -208,49 +291,102 @@ public class DomainClassInfo implements Serializable {
                     objClass.getCanonicalName());
         }
 
-        // inform the Repository of the new OID; it **may** require such knowledge
-        JVSTMBackEnd.getInstance().getRepository().updateMaxCounterForClass(info, nextKey);
-
         return oid;
     }
 
-    /* Invocations to this method should be synchronized in the <code>info</code> argument */
-    private static int getLastKeyFor(DomainClassInfo info) throws Exception {
-        int maxCounter = JVSTMBackEnd.getInstance().getRepository().getMaxCounterForClass(info);
-
-        return maxCounter < 0 ? UNKNOWN_KEY : maxCounter;
-    }
-
-    private static final int UNKNOWN_KEY = 0;
-
     // the non-static part starts here
 
     public final String domainClassName;
     public final transient Class<? extends AbstractDomainObject> domainClass;
     public final int classId;
-    /** The maximum object key used for objects of this class in this server */
-    private transient int lastKey = UNKNOWN_KEY;
+    /** The names of the slots of this class, by index */
+    private final String[] slotNames;
+    private final transient Map<String, Integer> slotIndexes;
+    /** The keys reserved in the repository for objects of this class in this server, or null before the first reservation */
+    private transient volatile KeyBlock keyBlock;
 
     public DomainClassInfo(Class<? extends AbstractDomainObject> domainClass, int classId) {
         this(domainClass.getName(), domainClass, classId);
     }
 
+    public DomainClassInfo(Class<? extends AbstractDomainObject> domainClass, int classId, String[] slotNames) {
+        this(domainClass.getName(), domainClass, classId, slotNames);
+    }
+
     public DomainClassInfo(String domainClassName, int classId) {
         this(domainClassName, findClass(domainClassName), classId);
     }
 
     public DomainClassInfo(String domainClassName, Class<? extends AbstractDomainObject> domainClass, int classId) {
+        this(domainClassName, domainClass, classId, new String[0]);
+    }
+
+    public DomainClassInfo(String domainClassName, Class<? extends AbstractDomainObject> domainClass, int classId,
+            String[] slotNames) {
         this.domainClassName = domainClassName;
         this.domainClass = domainClass;
         this.classId = classId;
+        this.slotNames = slotNames;
+        this.slotIndexes = new HashMap<String, Integer>();
+        for (int i = 0; i < slotNames.length; i++) {
+            this.slotIndexes.put(slotNames[i], i);
+        }
+    }
+
+    /**
+     * @return The index of the given slot, or <code>-1</code> if it is not registered.
+     */
+    public int getSlotIndex(String slotName) {
+        Integer index = this.slotIndexes.get(slotName);
+        return (index == null) ? -1 : index;
     }
 
-    public int getLastKey() {
-        return this.lastKey;
+    /**
+     * @return The name of the slot with the given index, or <code>null</code> if it is not registered.
+     */
+    public String getSlotName(int slotIndex) {
+        return (slotIndex >= 0 && slotIndex < this.slotNames.length) ? this.slotNames[slotIndex] : null;
     }
 
-    private void setLastKey(int lastKey) {
-        this.lastKey = lastKey;
+    /* Take the next key from the current block.  Only when the block runs out
+    do threads synchronize, to reserve the next block in the repository.  The
+    keys left in a block when the application stops are never used. */
+    int nextKey() {
+        while (true) {
+            KeyBlock block = this.keyBlock;
+            if (block != null) {
+                int key = block.next();
+                if (key != KeyBlock.EXHAUSTED) {
+                    return key;
+                }
+            }
+
+            synchronized (this) {
+                if (this.keyBlock == block) {
+                    int blockSize = keyBlockSize;
+                    int lastKey = JVSTMBackEnd.getInstance().getRepository().reserveKeysForClass(this, blockSize);
+                    logger.debug("Reserved keys up to {} for class {}", lastKey, this.domainClassName);
+                    this.keyBlock = new KeyBlock(lastKey - blockSize, lastKey);
+                }
+            }
+        }
+    }
+
+    private static class KeyBlock {
+        static final int EXHAUSTED = -1;
+
+        private final AtomicInteger current;
+        private final int lastKey;
+
+        KeyBlock(int current, int lastKey) {
+            this.current = new AtomicInteger(current);
+            this.lastKey = lastKey;
+        }
+
+        int next() {
+            int key = this.current.incrementAndGet();
+            return (key <= this.lastKey) ? key : EXHAUSTED;
+        }
     }
 
     // serialization code
@@ -263,14 +399,18 @@ public class DomainClassInfo implements Serializable {
 
         private final String className;
         private final int classId;
+        // absent (null) in the records stored before VBoxIds were binary
+        private final String[] slotNames;
 
         SerializedForm(DomainClassInfo obj) {
             this.className = obj.domainClassName;
             this.classId = obj.classId;
+            this.slotNames = obj.slotNames;
         }
 
         Object readResolve() throws ObjectStreamException, ClassNotFoundException {
-            return new DomainClassInfo(this.className, this.classId);
+            return new DomainClassInfo(this.className, findClass(this.className), this.classId,
+                    (this.slotNames == null) ? new String[0] : this.slotNames);
         }
     }
 }
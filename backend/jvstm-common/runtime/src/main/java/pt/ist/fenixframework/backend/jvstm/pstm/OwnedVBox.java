@@ -7,11 +7,12 @@ import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.backend.jvstm.JVSTMBackEnd;
 import pt.ist.fenixframework.backend.jvstm.JVSTMDomainObject;
+import pt.ist.fenixframework.core.ConflictProfiler;
 import pt.ist.fenixframework.core.SharedIdentityMap;
 
 /**
  * A VBox that is onwed by some DomainObject. It extends VBox with an owner and a slotName. The box's id is composed by both
- * these attributes.
+ * these attributes (the slotName being represented by its index in the owner's class).
  */
 public abstract class OwnedVBox<E> extends VBox<E> {
 
@@ -27,7 +28,7 @@ public abstract class OwnedVBox<E> extends VBox<E> {
      the same. It cannot be set construction of the VBox, because then the oid
      of the owner if 0.
      */
-    private String id;
+    private VBoxId id;
 
     public OwnedVBox(JVSTMDomainObject ownerObj, String slotName) {
         super();
@@ -47,8 +48,8 @@ public abstract class OwnedVBox<E> extends VBox<E> {
         this.slotName = slotName;
     }
 
-    private static String makeId(String slotName, JVSTMDomainObject ownerObj) {
-        return slotName + ":" + ownerObj.getExternalId();
+    private static VBoxId makeId(String slotName, JVSTMDomainObject ownerObj) {
+        return VBoxId.forSlot(ownerObj.getOid(), DomainClassInfo.mapSlotNameToIndex(ownerObj.getClass(), slotName));
     }
 
     /**
@@ -58,7 +59,7 @@ public abstract class OwnedVBox<E> extends VBox<E> {
      * @return The OwnedVBox if it is cached or <code>null</code> when either (1) the vboxId is not a valid {@link OwnedVBox} id
      *         or (2) the owner is not cached.
      */
-    public static OwnedVBox lookupCachedVBox(String vboxId) {
+    public static OwnedVBox lookupCachedVBox(VBoxId vboxId) {
         return tryGet(vboxId, true);
     }
 
@@ -69,7 +70,7 @@ public abstract class OwnedVBox<E> extends VBox<E> {
      * @param vboxId
      * @return The {@link OwnedVBox} or <code>null</code> if the Id is not valid
      */
-    public static OwnedVBox fromId(String vboxId) {
+    public static OwnedVBox fromId(VBoxId vboxId) {
         return tryGet(vboxId, false);
     }
 
@@ -80,26 +81,20 @@ public abstract class OwnedVBox<E> extends VBox<E> {
      * @param lookupOnly When the id is valid, whether to return the vbox only if the owner is cached
      * @return An {@link OwnedVBox} if the vboxId corresponds to a valid OwnedVBox id or <code>null</code> otherwise.
      */
-    private static OwnedVBox tryGet(String vboxId, boolean lookupOnly) {
-        String[] tokens = vboxId.split(":");
-
-        if (tokens.length != 2) {
+    private static OwnedVBox tryGet(VBoxId vboxId, boolean lookupOnly) {
+        if (vboxId.isStandalone()) {
             return null;
         }
 
-        String slotName = tokens[0];
-        long oid;
-        try {
-            oid = Long.parseLong(tokens[1], 16);
-        } catch (NumberFormatException e) {
+        long oid = vboxId.getOid();
+        String slotName = DomainClassInfo.mapIndexToSlotName(oid, vboxId.getSlotIndex());
+        if (slotName == null) {
             return null;
         }
 
-        JVSTMDomainObject obj = null;
+        JVSTMDomainObject obj = (JVSTMDomainObject) SharedIdentityMap.lookupInCurrent(oid);
 
-        if (lookupOnly) {
-            obj = (JVSTMDomainObject) SharedIdentityMap.getCache().lookup(oid);
-        } else {
+        if (obj == null && !lookupOnly) {
             try {
                 obj = JVSTMBackEnd.getInstance().fromOid(oid);
             } catch (Exception e) {
@@ -116,14 +111,19 @@ public abstract class OwnedVBox<E> extends VBox<E> {
     }
 
     @Override
-    public String getId() {
-        String id = this.id;
+    public VBoxId getId() {
+        VBoxId id = this.id;
         if (id == null) {
             id = this.id = makeId(slotName, ownerObj);
         }
         return id;
     }
 
+    @Override
+    public String getHotspotName() {
+        return ConflictProfiler.hotspotName(ownerObj, slotName);
+    }
+
     public JVSTMDomainObject getOwnerObject() {
         return this.ownerObj;
     }
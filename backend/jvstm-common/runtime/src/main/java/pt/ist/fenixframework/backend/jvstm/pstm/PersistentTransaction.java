@@ -1,6 +1,8 @@
 package pt.ist.fenixframework.backend.jvstm.pstm;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import jvstm.ActiveTransactionsRecord;
@@ -14,8 +16,10 @@ import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.backend.jvstm.JVSTMBackEnd;
 import pt.ist.fenixframework.backend.jvstm.repository.PersistenceException;
+import pt.ist.fenixframework.core.ConflictProfiler;
 import pt.ist.fenixframework.core.TransactionError;
 import pt.ist.fenixframework.core.WriteOnReadError;
+import pt.ist.fenixframework.core.metrics.TransactionMetrics;
 
 public class PersistentTransaction extends ConsistentTopLevelTransaction implements StatisticsCapableTransaction/*, TxIntrospector*/{
 
@@ -29,10 +33,18 @@ public class PersistentTransaction extends ConsistentTopLevelTransaction impleme
     // for statistics
     protected int numBoxReads = 0;
     protected int numBoxWrites = 0;
+    private final long startNanos = System.nanoTime();
 
     public PersistentTransaction(ActiveTransactionsRecord record) {
         super(record);
         this.readOnly = false;
+        ActiveTransactions.register(this, record.transactionNumber);
+    }
+
+    @Override
+    protected void finish() {
+        super.finish();
+        ActiveTransactions.unregister(this);
     }
 
     @Override
@@ -73,14 +85,19 @@ public class PersistentTransaction extends ConsistentTopLevelTransaction impleme
         numBoxWrites = 0;
 
         super.doCommit();
+        TransactionMetrics.METRICS.recordCommitLatency(System.nanoTime() - startNanos);
     }
 
     // Override the commit operation to propagate the changes to the persistent repository.
     @Override
     protected Cons<VBoxBody> doCommit(int newTxNumber) {
+        long start = System.nanoTime();
         Cons<VBoxBody> newBodies = Cons.empty();
 
-        JVSTMBackEnd.getInstance().getRepository().persistChanges(boxesWritten.entrySet(), newTxNumber, NULL_VALUE);
+        JVSTMBackEnd.getInstance().getRepository()
+                .persistChanges(RecordVBox.groupIntoRecords(boxesWritten, newTxNumber, NULL_VALUE), newTxNumber, NULL_VALUE);
+        long persisted = System.nanoTime();
+        TransactionMetrics.METRICS.recordPersist(persisted - start);
 
         for (Map.Entry<jvstm.VBox, Object> entry : boxesWritten.entrySet()) {
             VBox vbox = (VBox) entry.getKey();
@@ -94,6 +111,7 @@ public class PersistentTransaction extends ConsistentTopLevelTransaction impleme
             newBodies = newBodies.cons(newBody);
         }
 
+        TransactionMetrics.METRICS.recordCommitCriticalSection(System.nanoTime() - start);
         return newBodies;
     }
 
@@ -105,7 +123,9 @@ public class PersistentTransaction extends ConsistentTopLevelTransaction impleme
     protected boolean validateCommit() {
         ActiveTransactionsRecord mostRecentRecord = Transaction.mostRecentRecord;
 
+        long start = System.nanoTime();
         boolean result = super.validateCommit();
+        TransactionMetrics.METRICS.recordValidation(System.nanoTime() - start);
 
         if (result) {
             // upgradeTx();
@@ -117,11 +137,27 @@ public class PersistentTransaction extends ConsistentTopLevelTransaction impleme
             this.activeTxRecord = mostRecentRecord;
         } else {
             TransactionStatistics.STATISTICS.incConflicts();
+            ConflictProfiler profiler = ConflictProfiler.getActive();
+            if (profiler != null) {
+                profiler.recordFailedValidation(getStaleBoxes());
+            }
         }
 
         return result;
     }
 
+    // the boxes read by this transaction that were written meanwhile by transactions that already committed
+    private List<String> getStaleBoxes() {
+        List<String> staleBoxes = new ArrayList<String>();
+        int number = getNumber();
+        for (jvstm.VBox vbox : bodiesRead.keySet()) {
+            if (vbox.body.version > number) {
+                staleBoxes.add((vbox instanceof VBox) ? ((VBox) vbox).getHotspotName() : vbox.getClass().getName());
+            }
+        }
+        return staleBoxes;
+    }
+
     @Override
     public <T> void setBoxValue(jvstm.VBox<T> vbox, T value) {
         if (!txAllowsWrite()) {
@@ -0,0 +1,36 @@
+package pt.ist.fenixframework.backend.jvstm.pstm;
+
+import jvstm.Transaction;
+import jvstm.VBoxBody;
+
+import pt.ist.fenixframework.backend.jvstm.JVSTMDomainObject;
+
+// A slot stored in a RecordVBox. In memory it is a box like any other, but it is loaded (and persisted) through its record.
+class RecordSlotBox<E> extends PrimitiveBox<E> {
+
+    private final RecordVBox record;
+
+    RecordSlotBox(JVSTMDomainObject ownerObj, String slotName, RecordVBox record) {
+        super(ownerObj, slotName);
+        this.record = record;
+    }
+
+    RecordSlotBox(JVSTMDomainObject ownerObj, String slotName, RecordVBox record, VBoxBody<E> body) {
+        super(ownerObj, slotName, body);
+        this.record = record;
+    }
+
+    RecordVBox getRecord() {
+        return this.record;
+    }
+
+    @Override
+    protected void doReload() {
+        this.record.load(Transaction.current().getNumber());
+    }
+
+    @Override
+    protected void reloadBody(VBoxBody<E> body) {
+        this.record.load(body.version);
+    }
+}
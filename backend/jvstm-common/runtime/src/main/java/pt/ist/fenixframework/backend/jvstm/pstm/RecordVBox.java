@@ -0,0 +1,222 @@
+package pt.ist.fenixframework.backend.jvstm.pstm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import jvstm.VBoxBody;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.backend.jvstm.JVSTMBackEnd;
+import pt.ist.fenixframework.backend.jvstm.JVSTMDomainObject;
+import pt.ist.fenixframework.backend.jvstm.repository.PersistenceException;
+import pt.ist.fenixframework.dml.DomainClass;
+import pt.ist.fenixframework.dml.Slot;
+
+/**
+ * The record in which the slots of a domain class declared as <code>WHOLE_OBJECT</code> in the DML are stored. In memory, each
+ * slot is still a box of its own, with its own versions, so that writes to different slots do not conflict. In the repository,
+ * the slots are stored together, as a {@link WholeObjectRecord} kept under the id of this box, and they are all loaded at once
+ * when any of them is missing. A slot that is missing from a stored record (because it was added to the class afterwards) was
+ * never written, and thus it has its default value in version 0.
+ *
+ * Transactions never read or write a record directly: when a commit is persisted, the writes to the slots of a record are
+ * replaced by a write to the record (see {@link #groupIntoRecords(Map, int, Object)}), and loading a record fills its slots.
+ */
+public class RecordVBox extends OwnedVBox<WholeObjectRecord> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordVBox.class);
+
+    private static final Map<String, Object> PRIMITIVE_DEFAULTS = new HashMap<String, Object>();
+    static {
+        PRIMITIVE_DEFAULTS.put("boolean", false);
+        PRIMITIVE_DEFAULTS.put("byte", (byte) 0);
+        PRIMITIVE_DEFAULTS.put("char", '\u0000');
+        PRIMITIVE_DEFAULTS.put("short", (short) 0);
+        PRIMITIVE_DEFAULTS.put("int", 0);
+        PRIMITIVE_DEFAULTS.put("float", 0.0f);
+        PRIMITIVE_DEFAULTS.put("long", 0L);
+        PRIMITIVE_DEFAULTS.put("double", 0.0d);
+    }
+
+    private final String[] slotNames;
+    private final OwnedVBox<?>[] slots;
+
+    public RecordVBox(JVSTMDomainObject ownerObj, String recordName, String[] slotNames) {
+        super(ownerObj, recordName, VBox.<WholeObjectRecord> notLoadedBody());
+        this.slotNames = slotNames;
+        this.slots = new OwnedVBox<?>[slotNames.length];
+    }
+
+    // a copy of the given record, into which its versions are loaded
+    private RecordVBox(RecordVBox record) {
+        super(record.ownerObj, record.slotName, VBox.<WholeObjectRecord> notLoadedBody());
+        this.slotNames = record.slotNames;
+        this.slots = record.slots;
+    }
+
+    /**
+     * Create the box for one of the slots stored in this record. Invoked once for each slot, when the owner is initialized.
+     */
+    public <T> OwnedVBox<T> makeSlot(String slotName, boolean allocateOnly) {
+        RecordSlotBox<T> slot;
+        if (allocateOnly) {
+            // when a box is allocated, it is safe
+            // to say that the version number is 0
+            slot = new RecordSlotBox<T>(this.ownerObj, slotName, this, VBox.<T> notLoadedBody());
+        } else {
+            slot = new RecordSlotBox<T>(this.ownerObj, slotName, this);
+        }
+
+        for (int i = 0; i < this.slotNames.length; i++) {
+            if (this.slotNames[i].equals(slotName)) {
+                this.slots[i] = slot;
+                return slot;
+            }
+        }
+        throw new IllegalArgumentException("Slot " + slotName + " is not stored in " + this.slotName);
+    }
+
+    @Override
+    protected void doReload() {
+        throw new UnsupportedOperationException("A record is only loaded through its slots");
+    }
+
+    /* Load this record, so that each of its slots can provide its value for 'requiredVersion'. */
+    void load(int requiredVersion) {
+        List<RecordVBox> records = new ArrayList<RecordVBox>(1);
+        records.add(this);
+        loadAll(records, requiredVersion);
+    }
+
+    /**
+     * Load several records with a single call to the repository. The records are loaded into copies of themselves, because
+     * their own bodies are not updated by commits and thus whatever they had loaded before could be stale.
+     */
+    public static void loadAll(Collection<RecordVBox> records, int requiredVersion) {
+        logger.debug("Loading {} record(s) for version {}", records.size(), requiredVersion);
+
+        List<VBox> copies = new ArrayList<VBox>(records.size());
+        for (RecordVBox record : records) {
+            copies.add(new RecordVBox(record));
+        }
+
+        JVSTMBackEnd.getInstance().getRepository().reloadAttributes(copies, requiredVersion);
+
+        for (VBox copy : copies) {
+            ((RecordVBox) copy).fillSlots();
+        }
+    }
+
+    // merge the versions loaded into this copy into the boxes of the slots
+    private void fillSlots() {
+        for (int i = 0; i < this.slots.length; i++) {
+            this.slots[i].mergeVersions(getSlotVersions(this.body, this.slotNames[i]));
+        }
+    }
+
+    /* The versions of the given slot found in the given chain of loaded records, most recent first. */
+    List<VersionedValue> getSlotVersions(VBoxBody<WholeObjectRecord> records, String slotName) {
+        int slotIndex = DomainClassInfo.mapSlotNameToIndex(this.ownerObj.getClass(), slotName);
+        List<VersionedValue> vvalues = new ArrayList<VersionedValue>();
+
+        for (VBoxBody<WholeObjectRecord> body = records; body != null && body.value != NOT_LOADED_VALUE; body = body.next) {
+            WholeObjectRecord record = body.value;
+            int position = record.find(slotIndex);
+            if (position < 0) {
+                /* the slot was added to the class after this version was stored, so it was never written up to this version
+                (nor in any older one) */
+                vvalues.add(new VersionedValue(getDefaultValue(slotName), 0));
+                break;
+            }
+
+            // consecutive records repeat the value of the slots that were not written in between
+            int version = record.getVersion(position);
+            if (vvalues.isEmpty() || vvalues.get(vvalues.size() - 1).getVersion() != version) {
+                vvalues.add(new VersionedValue(record.getValue(position), version));
+            }
+        }
+        return vvalues;
+    }
+
+    /* Build the record to persist in version 'txNumber', given the values written by the committing transaction. The slots
+    that were not written keep their value and version from the previous version, loading them if needed. */
+    private WholeObjectRecord makeRecord(Map<jvstm.VBox, Object> boxesWritten, int txNumber, Object nullObject) {
+        int[] versions = new int[this.slots.length];
+        Object[] values = new Object[this.slots.length];
+
+        for (int i = 0; i < this.slots.length; i++) {
+            OwnedVBox<?> slot = this.slots[i];
+
+            if (boxesWritten.containsKey(slot)) {
+                Object value = boxesWritten.get(slot);
+                values[i] = (value == nullObject) ? null : value;
+                versions[i] = txNumber;
+            } else {
+                VBoxBody<?> body = slot.getBody(txNumber - 1);
+                if (body.value == NOT_LOADED_VALUE) {
+                    load(txNumber - 1);
+                    body = slot.getBody(txNumber - 1);
+                    if (body.value == NOT_LOADED_VALUE) {
+                        throw new PersistenceException("Slot " + this.slotNames[i] + " of record " + getId()
+                                + " not found for transaction number " + (txNumber - 1));
+                    }
+                }
+                values[i] = body.value;
+                versions[i] = body.version;
+            }
+        }
+        return new WholeObjectRecord(getSlotIndexes(), versions, values);
+    }
+
+    /* The value of a slot that was never written, which is what a new object gets in its constructor: the default value of
+    primitive types and null otherwise. */
+    private Object getDefaultValue(String slotName) {
+        DomainClass domClass = FenixFramework.getDomainModel().findClass(this.ownerObj.getClass().getName());
+        Slot slot = (domClass == null) ? null : domClass.findSlot(slotName);
+        return (slot == null) ? null : PRIMITIVE_DEFAULTS.get(slot.getTypeName());
+    }
+
+    private int[] getSlotIndexes() {
+        int[] slotIndexes = new int[this.slotNames.length];
+        for (int i = 0; i < this.slotNames.length; i++) {
+            slotIndexes[i] = DomainClassInfo.mapSlotNameToIndex(this.ownerObj.getClass(), this.slotNames[i]);
+        }
+        return slotIndexes;
+    }
+
+    /**
+     * Get the changes to persist for the given write set: the writes to slots stored in records are replaced by a single write
+     * to each of their records.
+     *
+     * @param boxesWritten The write set of the committing transaction
+     * @param txNumber The version being committed
+     * @param nullObject The value used by the STM to represent <code>null</code>
+     */
+    public static Set<Entry<jvstm.VBox, Object>> groupIntoRecords(Map<jvstm.VBox, Object> boxesWritten, int txNumber,
+            Object nullObject) {
+        Map<jvstm.VBox, Object> changes = null;
+
+        for (jvstm.VBox box : boxesWritten.keySet()) {
+            if (box instanceof RecordSlotBox) {
+                if (changes == null) {
+                    changes = new HashMap<jvstm.VBox, Object>(boxesWritten);
+                }
+                changes.remove(box);
+
+                RecordVBox record = ((RecordSlotBox<?>) box).getRecord();
+                if (!changes.containsKey(record)) {
+                    changes.put(record, record.makeRecord(boxesWritten, txNumber, nullObject));
+                }
+            }
+        }
+        return (changes == null) ? boxesWritten.entrySet() : changes.entrySet();
+    }
+}
@@ -13,25 +13,25 @@ public class StandaloneVBox<E> extends VBox<E> {
 
     private static final Logger logger = LoggerFactory.getLogger(StandaloneVBox.class);
 
-    private final String id;
+    private final VBoxId id;
 
-    protected StandaloneVBox(String id) {
+    protected StandaloneVBox(VBoxId id) {
         super();
         this.id = id;
     }
 
-    protected StandaloneVBox(String id, E initial) {
+    protected StandaloneVBox(VBoxId id, E initial) {
         super(initial);
         this.id = id;
     }
 
-    protected StandaloneVBox(String id, VBoxBody<E> body) {
+    protected StandaloneVBox(VBoxId id, VBoxBody<E> body) {
         super(body);
         this.id = id;
     }
 
     @Override
-    public String getId() {
+    public VBoxId getId() {
         return this.id;
     }
 
@@ -57,11 +57,11 @@ public class StandaloneVBox<E> extends VBox<E> {
         }
     }
 
-    public static StandaloneVBox lookupCachedVBox(String vboxId) {
+    public static StandaloneVBox lookupCachedVBox(VBoxId vboxId) {
         return VBoxCache.getCache().lookup(vboxId);
     }
 
-    public static <T> StandaloneVBox<T> makeNew(String vboxId, boolean allocateOnly) {
+    public static <T> StandaloneVBox<T> makeNew(VBoxId vboxId, boolean allocateOnly) {
         if (allocateOnly) {
             // when a box is allocated, it is safe to say that the version number is 0
             return new StandaloneVBox<T>(vboxId, VBox.<T> notLoadedBody());
@@ -1,57 +1,68 @@
 package pt.ist.fenixframework.backend.jvstm.pstm;
 
+import pt.ist.fenixframework.core.metrics.CounterStatsAccumulator;
+import pt.ist.fenixframework.core.metrics.StripedCounter;
+import pt.ist.fenixframework.core.metrics.TransactionMetrics;
+
 public class TransactionStatistics {
 
     public final static TransactionStatistics STATISTICS = new TransactionStatistics();
 
-    private int numReadTxs = 0;
-    private int numWriteTxs = 0;
-    private int numAborts = 0;
-    private int numConflicts = 0;
+    private final StripedCounter numReadTxs = new StripedCounter();
+    private final StripedCounter numWriteTxs = new StripedCounter();
+    private final StripedCounter numAborts = new StripedCounter();
+    private final StripedCounter numConflicts = new StripedCounter();
 
-    private final CounterStats readOnlyReads = new CounterStats();
-    private final CounterStats readWriteReads = new CounterStats();
-    private final CounterStats readWriteWrites = new CounterStats();
+    private final CounterStatsAccumulator readOnlyReads = new CounterStatsAccumulator();
+    private final CounterStatsAccumulator readWriteReads = new CounterStatsAccumulator();
+    private final CounterStatsAccumulator readWriteWrites = new CounterStatsAccumulator();
 
     TransactionStatistics() {
     }
 
-    public synchronized void incReads(StatisticsCapableTransaction tx) {
+    public void incReads(StatisticsCapableTransaction tx) {
         // don't count empty transactions
         if (tx.getNumBoxReads() == 0) {
             return;
         }
 
-        numReadTxs++;
+        numReadTxs.increment();
 
         readOnlyReads.addNewValue(tx.getNumBoxReads());
+        TransactionMetrics.METRICS.recordReadOnlyCommit(tx.getNumBoxReads());
     }
 
-    public synchronized void incWrites(StatisticsCapableTransaction tx) {
-        numWriteTxs++;
+    public void incWrites(StatisticsCapableTransaction tx) {
+        numWriteTxs.increment();
 
         readWriteReads.addNewValue(tx.getNumBoxReads());
         readWriteWrites.addNewValue(tx.getNumBoxWrites());
+        TransactionMetrics.METRICS.recordWriteCommit(tx.getNumBoxReads(), tx.getNumBoxWrites());
     }
 
-    public synchronized void incAborts() {
-        numAborts++;
+    public void incAborts() {
+        numAborts.increment();
+        TransactionMetrics.METRICS.recordAbort();
     }
 
-    public synchronized void incConflicts() {
-        numConflicts++;
+    public void incConflicts() {
+        numConflicts.increment();
+        TransactionMetrics.METRICS.recordConflict();
     }
 
-    public synchronized Report getReportAndReset() {
-        Report report =
-                new Report(numReadTxs, numWriteTxs, numAborts, numConflicts, readOnlyReads.getAndReset(),
-                        readWriteReads.getAndReset(), readWriteWrites.getAndReset());
-        numReadTxs = 0;
-        numWriteTxs = 0;
-        numAborts = 0;
-        numConflicts = 0;
+    /**
+     * Get the statistics since the previous report. The counters are not updated atomically as a whole, so an update that
+     * happens concurrently with this method may be attributed to either report (but never lost).
+     */
+    public Report getReportAndReset() {
+        return new Report((int) numReadTxs.sumThenReset(), (int) numWriteTxs.sumThenReset(), (int) numAborts.sumThenReset(),
+                (int) numConflicts.sumThenReset(), getAndReset(readOnlyReads), getAndReset(readWriteReads),
+                getAndReset(readWriteWrites));
+    }
 
-        return report;
+    private static CounterStats getAndReset(CounterStatsAccumulator accumulator) {
+        CounterStatsAccumulator.Snapshot snapshot = accumulator.getAndReset();
+        return new CounterStats(snapshot.minValue, snapshot.maxValue, snapshot.valueSum);
     }
 
     public static class Report {
@@ -1,5 +1,8 @@
 package pt.ist.fenixframework.backend.jvstm.pstm;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -11,6 +14,7 @@ import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.backend.jvstm.FenixVBox;
 import pt.ist.fenixframework.backend.jvstm.JVSTMBackEnd;
+import pt.ist.fenixframework.core.ConflictProfiler;
 
 public abstract class VBox<E> extends jvstm.VBox<E> implements VersionedSubject, FenixVBox<E> {
 
@@ -49,7 +53,12 @@ public abstract class VBox<E> extends jvstm.VBox<E> implements VersionedSubject,
     }
 
     /** Return this VBox's identifier */
-    public abstract String getId();
+    public abstract VBoxId getId();
+
+    /** Return the name under which the conflicts on this VBox are reported by the {@link ConflictProfiler} */
+    public String getHotspotName() {
+        return getId().toString();
+    }
 
     @Override
     public E get() {
@@ -63,7 +72,9 @@ public abstract class VBox<E> extends jvstm.VBox<E> implements VersionedSubject,
     @Override
     public synchronized VBoxBody addNewVersion(int txNumber) {
         if (body.version < txNumber) {
-            return commit(VBox.<E> notLoadedValue(), txNumber);
+            VBoxBody newBody = commit(VBox.<E> notLoadedValue(), txNumber);
+            VersionChainTrimmer.getInstance().trim(this);
+            return newBody;
         } else {
             /* when adding a version to the vbox it may happen that such version
             already exists.  That can happen if the box gets reloaded before the
@@ -127,6 +138,7 @@ public abstract class VBox<E> extends jvstm.VBox<E> implements VersionedSubject,
                 } else {
                     reloadBody(body);
                 }
+                VersionChainTrimmer.getInstance().trim(this, requiredVersion);
             }
             return true;
         } catch (Throwable e) {
@@ -137,6 +149,39 @@ public abstract class VBox<E> extends jvstm.VBox<E> implements VersionedSubject,
         }
     }
 
+    /**
+     * Reload the given boxes with as few calls to the repository as possible, so that each of them can provide its value for
+     * 'requiredVersion'. The boxes stored in a {@link RecordVBox} are loaded through their records.
+     */
+    public static void reloadAll(Collection<VBox> boxes, int requiredVersion) {
+        List<VBox> others = new ArrayList<VBox>(boxes.size());
+        Collection<RecordVBox> records = new LinkedHashSet<RecordVBox>();
+        for (VBox box : boxes) {
+            if (box instanceof RecordSlotBox) {
+                records.add(((RecordSlotBox) box).getRecord());
+            } else {
+                others.add(box);
+            }
+        }
+
+        if (!records.isEmpty()) {
+            RecordVBox.loadAll(records, requiredVersion);
+        }
+        if (!others.isEmpty()) {
+            JVSTMBackEnd.getInstance().getRepository().reloadAttributes(others, requiredVersion);
+        }
+
+        VersionChainTrimmer trimmer = VersionChainTrimmer.getInstance();
+        for (VBox box : boxes) {
+            trimmer.trim(box, requiredVersion);
+        }
+    }
+
+    /* Whether this box must be reloaded before it can provide its value for 'requiredVersion'. */
+    public boolean needsReload(int requiredVersion) {
+        return getBody(requiredVersion).value == VBox.NOT_LOADED_VALUE;
+    }
+
     public final VBoxBody<E> getBody(int maxVersion) {
 //        logger.debug("looking up {} for version {}", this.getId(), maxVersion);
 
@@ -155,6 +200,43 @@ public abstract class VBox<E> extends jvstm.VBox<E> implements VersionedSubject,
         return current;
     }
 
+    /**
+     * @return The number of bodies in the list of bodies of this box, including those whose value is not loaded.
+     */
+    public int getChainLength() {
+        int length = 0;
+        for (VBoxBody<E> current = this.body; current != null; current = current.next) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Discard the bodies that no transaction reading a version from the given watermark onwards can reach: those older than the
+     * most recent body whose version is not above the watermark. A transaction that still needs a discarded version (e.g. one
+     * that started meanwhile with an older version) reloads it from the repository.
+     * 
+     * @return The number of bodies discarded
+     */
+    public int trimBodies(int watermark) {
+        VBoxBody<E> current = this.body;
+        while (current != null && current.version > watermark) {
+            current = current.next;
+        }
+        if (current == null) {
+            return 0;
+        }
+
+        int discarded = 0;
+        for (VBoxBody<E> old = current.next; !isBodyNullOrVersion0NotLoaded(old); old = old.next) {
+            discarded++;
+        }
+        if (discarded > 0) {
+            current.clearPrevious();
+        }
+        return discarded;
+    }
+
     protected abstract void doReload();
 
     protected void reloadBody(VBoxBody<E> body) {
@@ -2,6 +2,8 @@ package pt.ist.fenixframework.backend.jvstm.pstm;
 
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class VBoxCache {
@@ -9,10 +11,10 @@ public class VBoxCache {
 
     private static final ReferenceQueue<StandaloneVBox> refQueue = new ReferenceQueue<StandaloneVBox>();
 
-    private final ConcurrentHashMap<String, CacheEntry> cache;
+    private final ConcurrentHashMap<VBoxId, CacheEntry> cache;
 
     public VBoxCache() {
-        this.cache = new ConcurrentHashMap<String, CacheEntry>();
+        this.cache = new ConcurrentHashMap<VBoxId, CacheEntry>();
     }
 
     public static VBoxCache getCache() {
@@ -25,7 +27,7 @@ public class VBoxCache {
 
     public StandaloneVBox cache(StandaloneVBox vbox) {
         processQueue();
-        String key = vbox.getId();
+        VBoxId key = vbox.getId();
         CacheEntry newEntry = new CacheEntry(vbox, key, this.refQueue);
 
         return cacheNewEntry(newEntry, vbox);
@@ -48,7 +50,7 @@ public class VBoxCache {
         }
     }
 
-    public StandaloneVBox lookup(String key) {
+    public StandaloneVBox lookup(VBoxId key) {
         processQueue();
         CacheEntry entry = this.cache.get(key);
         if (entry != null) {
@@ -64,6 +66,21 @@ public class VBoxCache {
         }
     }
 
+    /**
+     * @return A snapshot of the boxes currently in the cache.
+     */
+    public List<StandaloneVBox> getCachedBoxes() {
+        processQueue();
+        List<StandaloneVBox> boxes = new ArrayList<StandaloneVBox>(this.cache.size());
+        for (CacheEntry entry : this.cache.values()) {
+            StandaloneVBox vbox = entry.get();
+            if (vbox != null) {
+                boxes.add(vbox);
+            }
+        }
+        return boxes;
+    }
+
     private void removeEntry(CacheEntry entry) {
         this.cache.remove(entry.key, entry);
     }
@@ -96,9 +113,9 @@ public class VBoxCache {
     }
 
     private static class CacheEntry extends SoftReference<StandaloneVBox> {
-        private final String key;
+        private final VBoxId key;
 
-        CacheEntry(StandaloneVBox vbox, String key, ReferenceQueue q) {
+        CacheEntry(StandaloneVBox vbox, VBoxId key, ReferenceQueue q) {
             super(vbox, q);
             this.key = key;
         }
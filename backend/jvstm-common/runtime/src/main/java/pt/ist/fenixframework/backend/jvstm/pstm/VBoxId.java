@@ -0,0 +1,182 @@
+package pt.ist.fenixframework.backend.jvstm.pstm;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * The identifier of a {@link VBox}. The id of an {@link OwnedVBox} is the oid of its owner plus the index of its slot in the
+ * owner's class (see {@link DomainClassInfo#mapSlotNameToIndex(Class, String)}). A {@link StandaloneVBox} has no owner and is
+ * identified by its name instead.
+ *
+ * VBoxIds are used as keys in caches, in read/write sets, in the messages exchanged between nodes and in the repositories. Their
+ * binary form takes 10 bytes for an {@link OwnedVBox}, and it is also their {@link Externalizable} form, so that they stay
+ * compact when serialized by a data grid. The textual form (<code>slotName:hexOid</code>), which was used as the
+ * identifier in the past, is available through {@link #toLegacyId()} and {@link #fromLegacyId(String)} for debugging and for
+ * migrating existing data.
+ */
+public final class VBoxId implements Externalizable {
+
+    public static final int MAX_SLOT_INDEX = 0xFFFE;
+
+    // the slot written in place of the index of a StandaloneVBox
+    private static final int STANDALONE = 0xFFFF;
+
+    // not final only because of externalization: VBoxIds are never changed once created (or read)
+    private long oid;
+    private int slot;
+    private String name;
+
+    /**
+     * Required by {@link Externalizable}. Use {@link #forSlot(long, int)} or {@link #forName(String)} instead.
+     */
+    public VBoxId() {
+    }
+
+    private VBoxId(long oid, int slot, String name) {
+        this.oid = oid;
+        this.slot = slot;
+        this.name = name;
+    }
+
+    /**
+     * @return The id of the box in the given slot of the object with the given oid.
+     */
+    public static VBoxId forSlot(long oid, int slotIndex) {
+        if (slotIndex < 0 || slotIndex > MAX_SLOT_INDEX) {
+            throw new IllegalArgumentException("Invalid slot index: " + slotIndex);
+        }
+        return new VBoxId(oid, slotIndex, null);
+    }
+
+    /**
+     * @return The id of the {@link StandaloneVBox} with the given name.
+     */
+    public static VBoxId forName(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("A StandaloneVBox must have a name");
+        }
+        return new VBoxId(0, STANDALONE, name);
+    }
+
+    public boolean isStandalone() {
+        return this.name != null;
+    }
+
+    public long getOid() {
+        return this.oid;
+    }
+
+    public int getSlotIndex() {
+        return this.slot;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeShort(this.slot);
+        if (isStandalone()) {
+            out.writeUTF(this.name);
+        } else {
+            out.writeLong(this.oid);
+        }
+    }
+
+    public static VBoxId readFrom(DataInput in) throws IOException {
+        VBoxId vboxId = new VBoxId();
+        vboxId.readFields(in);
+        return vboxId;
+    }
+
+    private void readFields(DataInput in) throws IOException {
+        this.slot = in.readUnsignedShort();
+        if (this.slot == STANDALONE) {
+            this.name = in.readUTF();
+        } else {
+            this.oid = in.readLong();
+        }
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        readFields(in);
+    }
+
+    /**
+     * @return The textual identifier that this box had before ids were binary, i.e. <code>slotName:hexOid</code> for an
+     *         {@link OwnedVBox} and the name of a {@link StandaloneVBox}.
+     * @throws IllegalStateException If the slot index is not registered for the class of the oid
+     */
+    public String toLegacyId() {
+        if (isStandalone()) {
+            return this.name;
+        }
+        String slotName = DomainClassInfo.mapIndexToSlotName(this.oid, this.slot);
+        if (slotName == null) {
+            throw new IllegalStateException("Slot " + this.slot + " is not registered for oid " + Long.toHexString(this.oid));
+        }
+        return slotName + ":" + Long.toHexString(this.oid);
+    }
+
+    /**
+     * Convert a textual identifier, as returned by {@link #toLegacyId()}, to a VBoxId. Identifiers that do not name a registered
+     * slot of a domain object are taken as the name of a {@link StandaloneVBox}.
+     */
+    public static VBoxId fromLegacyId(String legacyId) {
+        String[] tokens = legacyId.split(":");
+
+        if (tokens.length == 2) {
+            try {
+                long oid = Long.parseLong(tokens[1], 16);
+                int slotIndex = DomainClassInfo.findSlotIndex(oid, tokens[0]);
+                if (slotIndex >= 0) {
+                    return forSlot(oid, slotIndex);
+                }
+            } catch (NumberFormatException e) {
+                // not an OwnedVBox id
+            }
+        }
+        return forName(legacyId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof VBoxId)) {
+            return false;
+        }
+        VBoxId other = (VBoxId) obj;
+        return this.oid == other.oid && this.slot == other.slot
+                && (this.name == null ? other.name == null : this.name.equals(other.name));
+    }
+
+    @Override
+    public int hashCode() {
+        if (isStandalone()) {
+            return this.name.hashCode();
+        }
+        int hash = (int) (this.oid ^ (this.oid >>> 32));
+        return hash * 31 + this.slot;
+    }
+
+    @Override
+    public String toString() {
+        if (isStandalone()) {
+            return this.name;
+        }
+        String slotName = DomainClassInfo.mapIndexToSlotName(this.oid, this.slot);
+        return (slotName == null ? "#" + this.slot : slotName) + ":" + Long.toHexString(this.oid);
+    }
+}
@@ -0,0 +1,215 @@
+package pt.ist.fenixframework.backend.jvstm.pstm;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.backend.jvstm.JVSTMConfig;
+import pt.ist.fenixframework.util.FenixFrameworkThread;
+
+/**
+ * Discards the in-memory versions of boxes that no running transaction can read anymore. The JVSTM only discards the versions
+ * written by local commits. The versions loaded from the repository and those added by remote commits are kept for as long as
+ * their box is, which makes the lists of bodies grow and their traversal slower.
+ *
+ * Boxes are trimmed whenever versions are added to them, up to the oldest version read by a running transaction (see
+ * {@link ActiveTransactions}). When a box keeps a long list of bodies because an old transaction is still running, it is
+ * remembered, and revisited by the sweeper, if enabled. The sweeper also revisits the cached {@link StandaloneVBox}es.
+ *
+ * The average length of the lists of bodies and the amount of bodies discarded are published in JMX under
+ * {@value #OBJECT_NAME}.
+ */
+public final class VersionChainTrimmer implements VersionChainTrimmerMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(VersionChainTrimmer.class);
+
+    public static final String OBJECT_NAME = "pt.ist.fenixframework:type=VersionChainTrimmer";
+
+    // the shallow size of a VBoxBody (header, version, value and next) with compressed references
+    private static final int ESTIMATED_BODY_SIZE = 24;
+
+    // boxes left with more bodies than these after being trimmed are revisited by the sweeper
+    private static final int MAX_RETAINED_BODIES = 8;
+
+    // bounds the memory used to remember the boxes to revisit
+    private static final int MAX_PENDING_BOXES = 100000;
+
+    // how long the watermark computed from the running transactions is reused
+    private static final long WATERMARK_REFRESH_NANOS = 10 * 1000 * 1000;
+
+    private static final VersionChainTrimmer instance = new VersionChainTrimmer();
+
+    private volatile boolean enabled = true;
+    private volatile boolean sweeping = false;
+
+    private volatile int watermark;
+    private volatile long watermarkComputedAt = System.nanoTime() - WATERMARK_REFRESH_NANOS;
+
+    private final ConcurrentLinkedQueue<WeakReference<VBox<?>>> pending = new ConcurrentLinkedQueue<WeakReference<VBox<?>>>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final AtomicLong visitedBoxes = new AtomicLong();
+    private final AtomicLong visitedBodies = new AtomicLong();
+    private final AtomicLong reclaimedBodies = new AtomicLong();
+    private final AtomicLong sweeps = new AtomicLong();
+
+    private VersionChainTrimmer() {
+    }
+
+    public static VersionChainTrimmer getInstance() {
+        return instance;
+    }
+
+    /**
+     * Apply the settings of the given config, and start the sweeper if it is enabled.
+     */
+    public void configure(JVSTMConfig config) {
+        this.enabled = config.getVersionChainTrimming();
+        if (!this.enabled) {
+            return;
+        }
+        registerMBean();
+
+        int intervalSeconds = config.getVersionChainSweepIntervalSeconds();
+        if (intervalSeconds > 0) {
+            this.sweeping = true;
+            new Sweeper(intervalSeconds * 1000L).start();
+        }
+    }
+
+    /**
+     * Discard the bodies of the given box that no running transaction can read.
+     */
+    public void trim(VBox<?> box) {
+        trim(box, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Discard the bodies of the given box that no running transaction can read, but keep the one for the given version, which
+     * was just loaded for a transaction that may not be registered in {@link ActiveTransactions}.
+     */
+    public void trim(VBox<?> box, int versionToKeep) {
+        if (!this.enabled) {
+            return;
+        }
+
+        int length = box.getChainLength();
+        int discarded = box.trimBodies(Math.min(getWatermark(), versionToKeep));
+
+        visitedBoxes.incrementAndGet();
+        visitedBodies.addAndGet(length);
+        if (discarded > 0) {
+            reclaimedBodies.addAndGet(discarded);
+        }
+
+        if (this.sweeping && length - discarded > MAX_RETAINED_BODIES && pendingCount.get() < MAX_PENDING_BOXES) {
+            pending.add(new WeakReference<VBox<?>>(box));
+            pendingCount.incrementAndGet();
+        }
+    }
+
+    private int getWatermark() {
+        long now = System.nanoTime();
+        if (now - this.watermarkComputedAt >= WATERMARK_REFRESH_NANOS) {
+            this.watermark = ActiveTransactions.getOldestVersion(ActiveTransactions.getMostRecentVersion());
+            this.watermarkComputedAt = now;
+        }
+        return this.watermark;
+    }
+
+    /* Revisit the boxes remembered since the previous sweep and the cached
+    standalone boxes.  The boxes that still cannot be trimmed are remembered
+    again by trim(). */
+    void sweep() {
+        int count = pendingCount.get();
+        for (int i = 0; i < count; i++) {
+            WeakReference<VBox<?>> ref = pending.poll();
+            if (ref == null) {
+                break;
+            }
+            pendingCount.decrementAndGet();
+
+            VBox<?> box = ref.get();
+            if (box != null) {
+                trim(box);
+            }
+        }
+
+        for (StandaloneVBox box : VBoxCache.getCache().getCachedBoxes()) {
+            trim(box);
+        }
+        sweeps.incrementAndGet();
+    }
+
+    @Override
+    public double getAverageChainLength() {
+        long boxes = visitedBoxes.get();
+        return (boxes == 0) ? 0 : (double) visitedBodies.get() / boxes;
+    }
+
+    @Override
+    public long getReclaimedBodies() {
+        return reclaimedBodies.get();
+    }
+
+    @Override
+    public long getReclaimedBytes() {
+        return reclaimedBodies.get() * ESTIMATED_BODY_SIZE;
+    }
+
+    @Override
+    public int getPendingBoxes() {
+        return pendingCount.get();
+    }
+
+    @Override
+    public long getSweeps() {
+        return sweeps.get();
+    }
+
+    private void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            logger.warn("Could not register the version chain trimmer in JMX", e);
+        }
+    }
+
+    private static class Sweeper extends FenixFrameworkThread {
+        private final long intervalMillis;
+
+        Sweeper(long intervalMillis) {
+            super("VersionChainSweeper");
+            this.intervalMillis = intervalMillis;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    sleep(intervalMillis);
+                    instance.sweep();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    // try again in the next round
+                    logger.warn("Failed to sweep the version chains", e);
+                }
+            }
+        }
+    }
+}
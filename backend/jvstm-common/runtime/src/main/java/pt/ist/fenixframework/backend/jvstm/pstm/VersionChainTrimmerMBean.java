@@ -0,0 +1,33 @@
+package pt.ist.fenixframework.backend.jvstm.pstm;
+
+/**
+ * The JMX interface of the {@link VersionChainTrimmer}.
+ */
+public interface VersionChainTrimmerMBean {
+
+    /**
+     * @return The average number of bodies of the boxes visited, before they were trimmed.
+     */
+    public double getAverageChainLength();
+
+    /**
+     * @return The number of bodies discarded.
+     */
+    public long getReclaimedBodies();
+
+    /**
+     * @return The estimated number of bytes of the bodies discarded, not counting their values.
+     */
+    public long getReclaimedBytes();
+
+    /**
+     * @return The number of boxes waiting to be revisited by the sweeper.
+     */
+    public int getPendingBoxes();
+
+    /**
+     * @return The number of sweeps completed.
+     */
+    public long getSweeps();
+
+}
@@ -0,0 +1,74 @@
+package pt.ist.fenixframework.backend.jvstm.pstm;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import pt.ist.fenixframework.core.Externalization;
+
+/**
+ * The value that a {@link RecordVBox} stores in the repository: the value of each of its slots, together with the version in
+ * which the slot was last written. The slots are identified by their index in the owner's class (see
+ * {@link DomainClassInfo#mapSlotNameToIndex(Class, String)}), which never changes once it is stored. Each value is externalized
+ * on its own, so that it is written by the current {@link pt.ist.fenixframework.core.ExternalizationCodec}.
+ */
+public final class WholeObjectRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient int[] slotIndexes;
+    private transient int[] versions;
+    private transient Object[] values;
+
+    WholeObjectRecord(int[] slotIndexes, int[] versions, Object[] values) {
+        this.slotIndexes = slotIndexes;
+        this.versions = versions;
+        this.values = values;
+    }
+
+    /**
+     * @return The position of the given slot in this record or <code>-1</code> if the record does not have it.
+     */
+    public int find(int slotIndex) {
+        for (int i = 0; i < this.slotIndexes.length; i++) {
+            if (this.slotIndexes[i] == slotIndex) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getVersion(int position) {
+        return this.versions[position];
+    }
+
+    public Object getValue(int position) {
+        return this.values[position];
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.writeShort(this.slotIndexes.length);
+        for (int i = 0; i < this.slotIndexes.length; i++) {
+            out.writeShort(this.slotIndexes[i]);
+            out.writeInt(this.versions[i]);
+            byte[] data = Externalization.externalizeObject(this.values[i]);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException {
+        int length = in.readUnsignedShort();
+        this.slotIndexes = new int[length];
+        this.versions = new int[length];
+        this.values = new Object[length];
+        for (int i = 0; i < length; i++) {
+            this.slotIndexes[i] = in.readUnsignedShort();
+            this.versions[i] = in.readInt();
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            this.values[i] = Externalization.internalizeObject(data);
+        }
+    }
+}
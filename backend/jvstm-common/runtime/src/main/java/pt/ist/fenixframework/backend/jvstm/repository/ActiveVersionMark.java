@@ -0,0 +1,46 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.repository;
+
+import java.io.Serializable;
+
+/**
+ * The oldest version still in use by the transactions of one node, as published by that node in the repository, together with
+ * the server id of the node and the time (in milliseconds since the epoch) when it was published.
+ */
+public final class ActiveVersionMark implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int serverId;
+    private final int version;
+    private final long timestamp;
+
+    public ActiveVersionMark(int serverId, int version, long timestamp) {
+        this.serverId = serverId;
+        this.version = version;
+        this.timestamp = timestamp;
+    }
+
+    public int getServerId() {
+        return this.serverId;
+    }
+
+    public int getVersion() {
+        return this.version;
+    }
+
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return this.version + "@" + this.timestamp + " (server " + this.serverId + ")";
+    }
+}
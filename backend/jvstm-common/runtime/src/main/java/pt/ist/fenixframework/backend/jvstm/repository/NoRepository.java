@@ -1,7 +1,10 @@
 package pt.ist.fenixframework.backend.jvstm.repository;
 
+import java.util.Collection;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +17,9 @@ public class NoRepository implements Repository {
 
     private static final Logger logger = LoggerFactory.getLogger(NoRepository.class);
 
+    // the highest key reserved for each class id
+    private final ConcurrentMap<Integer, Integer> maxCounters = new ConcurrentHashMap<Integer, Integer>();
+
     @Override
     public DomainClassInfo[] getDomainClassInfos() {
         return new DomainClassInfo[0];
@@ -30,8 +36,12 @@ public class NoRepository implements Repository {
     }
 
     @Override
-    public void updateMaxCounterForClass(DomainClassInfo domainClassInfo, int newCounterValue) {
-        // no-op
+    public int reserveKeysForClass(DomainClassInfo domainClassInfo, int blockSize) {
+        // nothing is persisted, so the keys only need to be unique while the application runs
+        Integer max = this.maxCounters.get(domainClassInfo.classId);
+        int newMax = ((max == null) ? 0 : max) + blockSize;
+        this.maxCounters.put(domainClassInfo.classId, newMax);
+        return newMax;
     }
 
     @Override
@@ -54,6 +64,11 @@ public class NoRepository implements Repository {
         throw new UnsupportedOperationException("should not be invoked when using the NoRepository implementation");
     }
 
+    @Override
+    public void reloadAttributes(Collection<VBox> boxes, int requiredVersion) {
+        throw new UnsupportedOperationException("should not be invoked when using the NoRepository implementation");
+    }
+
     @Override
     public void persistChanges(Set<Entry<jvstm.VBox, Object>> changes, int txNumber, Object nullObject) {
         // no-op
@@ -7,6 +7,7 @@
  */
 package pt.ist.fenixframework.backend.jvstm.repository;
 
+import java.util.Collection;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -65,13 +66,17 @@ public interface Repository {
     public int getMaxCounterForClass(DomainClassInfo domainClassInfo);
 
     /**
-     * Invoked by the framework whenever a new OID is generated (i.e. a new DomainObject is created inside a transaction).
-     * Depending on the concrete repository, this may be needed for maintaining the maximum id per class (and maybe per server).
+     * Reserve a block of keys for new instances of the given class in this server, by raising the counter stored for the class.
+     * The new counter must be stored before this method returns, regardless of the outcome of any running transaction, so that
+     * the keys of the block are never handed out again, not even after a crash. Invoked by the framework whenever the keys
+     * previously reserved for the class run out.
      * 
      * @param domainClassInfo Information about the instantiated class
-     * @param newCounterValue The new value of the counter
+     * @param blockSize The number of keys to reserve
+     * @return The new counter value, which is the highest key of the reserved block. The block spans the keys from
+     *         <code>result - blockSize + 1</code> up to <code>result</code>.
      */
-    public void updateMaxCounterForClass(DomainClassInfo domainClassInfo, int newCounterValue);
+    public int reserveKeysForClass(DomainClassInfo domainClassInfo, int blockSize);
 
     // reloads a primitive value from the storage for the specified box
     public void reloadPrimitiveAttribute(VBox box);
@@ -85,6 +90,15 @@ public interface Repository {
     // reloads an attribute from the storage for the specified box body only
     public void reloadAttributeSingleVersion(VBox box, VBoxBody body);
 
+    /**
+     * Reload several boxes at once, so that each of them can provide its value for the given version. Implementations should
+     * fetch the boxes together, using as few round trips to the storage as possible, rather than one box at a time.
+     * 
+     * @param boxes The boxes to reload. All of them should be missing the value for <code>requiredVersion</code>.
+     * @param requiredVersion The version that each box must be able to provide after the reload
+     */
+    public void reloadAttributes(Collection<VBox> boxes, int requiredVersion);
+
     // stores persistently a set of changes
     // the third arguments represents the reference used by the stm to represent null objects.
     public void persistChanges(Set<Entry<jvstm.VBox, Object>> changes, int txNumber, Object nullObject);
@@ -0,0 +1,105 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.repository;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
+
+/**
+ * The key under which a repository stores one version of a {@link pt.ist.fenixframework.backend.jvstm.pstm.VBox}. The version is
+ * whatever the repository uses to tell versions apart (e.g. a transaction number or a commit id).
+ *
+ * The key is {@link Externalizable}: the id is written in its binary form, and the versions that repositories use (an
+ * <code>Integer</code> or a <code>String</code>) are written without their class descriptors.
+ */
+public final class VBoxVersionKey implements Externalizable {
+
+    private static final byte INT_VERSION = 0;
+    private static final byte STRING_VERSION = 1;
+    private static final byte OTHER_VERSION = 2;
+
+    // not final only because of externalization: keys are never changed once created (or read)
+    private VBoxId vboxId;
+    private Serializable version;
+
+    /**
+     * Required by {@link Externalizable}. Use {@link #VBoxVersionKey(VBoxId, Serializable)} instead.
+     */
+    public VBoxVersionKey() {
+    }
+
+    public VBoxVersionKey(VBoxId vboxId, Serializable version) {
+        this.vboxId = vboxId;
+        this.version = version;
+    }
+
+    public VBoxId getVBoxId() {
+        return this.vboxId;
+    }
+
+    public Serializable getVersion() {
+        return this.version;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        this.vboxId.writeTo(out);
+        if (this.version instanceof Integer) {
+            out.writeByte(INT_VERSION);
+            out.writeInt((Integer) this.version);
+        } else if (this.version instanceof String) {
+            out.writeByte(STRING_VERSION);
+            out.writeUTF((String) this.version);
+        } else {
+            out.writeByte(OTHER_VERSION);
+            out.writeObject(this.version);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        this.vboxId = VBoxId.readFrom(in);
+        switch (in.readByte()) {
+        case INT_VERSION:
+            this.version = in.readInt();
+            break;
+        case STRING_VERSION:
+            this.version = in.readUTF();
+            break;
+        default:
+            this.version = (Serializable) in.readObject();
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof VBoxVersionKey)) {
+            return false;
+        }
+        VBoxVersionKey other = (VBoxVersionKey) obj;
+        return this.vboxId.equals(other.vboxId) && this.version.equals(other.version);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.vboxId.hashCode() * 31 + this.version.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.vboxId + ":" + this.version;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.repository;
+
+import java.util.List;
+
+/**
+ * A {@link Repository} that can discard the versions that no running transaction, in any node, can read anymore. The collection
+ * is driven by the {@link VersionRetention} thread of each node.
+ */
+public interface VersionCollectingRepository extends Repository {
+
+    /**
+     * Publish the oldest version in use in the given node, replacing the one it published before.
+     */
+    public void storeActiveVersionMark(int serverId, ActiveVersionMark mark);
+
+    /**
+     * @return The marks published by every node that ever published one, including nodes that may no longer be running.
+     */
+    public List<ActiveVersionMark> getActiveVersionMarks();
+
+    /**
+     * Discard some of the versions that were superseded by a version lower than or equal to the given watermark. The latest
+     * version of each box at the watermark is kept.
+     * 
+     * @param watermark No running transaction reads a version older than this one
+     * @param maxKeys The maximum number of keys to remove in this invocation
+     * @param retention Where to record what was reclaimed
+     * @return The number of committed versions processed, or <code>0</code> when there is nothing left to collect up to the
+     *         watermark
+     */
+    public int collectVersions(int watermark, int maxKeys, VersionRetention retention);
+}
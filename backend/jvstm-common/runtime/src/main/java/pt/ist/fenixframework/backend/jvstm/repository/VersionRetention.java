@@ -0,0 +1,178 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.repository;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.backend.jvstm.JVSTMConfig;
+import pt.ist.fenixframework.backend.jvstm.pstm.ActiveTransactions;
+import pt.ist.fenixframework.backend.jvstm.pstm.DomainClassInfo;
+import pt.ist.fenixframework.util.FenixFrameworkThread;
+
+/**
+ * Periodically discards the versions in the repository that no running transaction can read anymore.
+ *
+ * Each node publishes the oldest version in use by its running transactions (see {@link ActiveTransactions}). The watermark is
+ * the oldest of the versions published by all the nodes, minus <code>versionRetentionLag</code> versions, which cover the
+ * transactions that start while the marks are being published and the nodes that lag behind in applying commits. Nodes whose
+ * mark was not updated for <code>versionRetentionNodeTimeoutSeconds</code> are considered gone. The repository then discards
+ * the superseded versions up to the watermark in batches of at most <code>versionRetentionBatchSize</code> keys, pausing
+ * <code>versionRetentionBatchPauseMillis</code> between batches so that the collection does not compete with the commits.
+ *
+ * Every node publishes its mark, but only the live node with the lowest server id collects, so that the nodes do not race each
+ * other over the same versions. When that node goes away, the next one takes over once its mark becomes stale. The repositories
+ * must still tolerate an overlap during the handover, because a node that was considered gone may be in the middle of a batch.
+ *
+ * The amount of reclaimed keys and bytes is published in JMX under {@value #OBJECT_NAME}.
+ */
+public class VersionRetention extends FenixFrameworkThread implements VersionRetentionMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(VersionRetention.class);
+
+    public static final String OBJECT_NAME = "pt.ist.fenixframework:type=VersionRetention";
+
+    private final VersionCollectingRepository repository;
+    private final long intervalMillis;
+    private final int batchSize;
+    private final long batchPauseMillis;
+    private final int lag;
+    private final long nodeTimeoutMillis;
+
+    private final AtomicLong reclaimedKeys = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private final AtomicLong collections = new AtomicLong();
+    private volatile int watermark = -1;
+
+    public VersionRetention(VersionCollectingRepository repository, JVSTMConfig config) {
+        super("VersionRetention");
+        this.repository = repository;
+        this.intervalMillis = config.getVersionRetentionIntervalSeconds() * 1000L;
+        this.batchSize = config.getVersionRetentionBatchSize();
+        this.batchPauseMillis = config.getVersionRetentionBatchPauseMillis();
+        this.lag = config.getVersionRetentionLag();
+        this.nodeTimeoutMillis = config.getVersionRetentionNodeTimeoutSeconds() * 1000L;
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        registerMBean();
+        try {
+            while (true) {
+                try {
+                    sleep(intervalMillis);
+                    collect();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    // try again in the next round
+                    logger.warn("Failed to collect old versions", e);
+                }
+            }
+        } finally {
+            unregisterMBean();
+        }
+    }
+
+    private void collect() throws InterruptedException {
+        int mostRecentVersion = repository.getMaxCommittedTxNumber();
+        int oldestVersion = ActiveTransactions.getOldestVersion(mostRecentVersion);
+
+        int serverId = DomainClassInfo.getServerId();
+        long now = System.currentTimeMillis();
+        repository.storeActiveVersionMark(serverId, new ActiveVersionMark(serverId, oldestVersion, now));
+
+        int collectingServerId = serverId;
+        for (ActiveVersionMark mark : repository.getActiveVersionMarks()) {
+            if (mark.getTimestamp() >= now - nodeTimeoutMillis) {
+                oldestVersion = Math.min(oldestVersion, mark.getVersion());
+                collectingServerId = Math.min(collectingServerId, mark.getServerId());
+            } else {
+                logger.debug("Ignoring stale active version mark {}", mark);
+            }
+        }
+
+        if (collectingServerId != serverId) {
+            logger.debug("Leaving the collection to server {}", collectingServerId);
+            return;
+        }
+
+        int newWatermark = oldestVersion - lag;
+        if (newWatermark <= 0) {
+            return;
+        }
+        this.watermark = newWatermark;
+
+        logger.debug("Collecting versions up to {}", newWatermark);
+        while (repository.collectVersions(newWatermark, batchSize, this) > 0) {
+            sleep(batchPauseMillis);
+        }
+        collections.incrementAndGet();
+    }
+
+    /**
+     * Invoked by the repository for each batch of removed keys.
+     */
+    public void recordReclaimed(long keys, long bytes) {
+        reclaimedKeys.addAndGet(keys);
+        reclaimedBytes.addAndGet(bytes);
+    }
+
+    @Override
+    public long getReclaimedKeys() {
+        return reclaimedKeys.get();
+    }
+
+    @Override
+    public long getReclaimedBytes() {
+        return reclaimedBytes.get();
+    }
+
+    @Override
+    public int getWatermark() {
+        return watermark;
+    }
+
+    @Override
+    public long getCollections() {
+        return collections.get();
+    }
+
+    private void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            logger.warn("Could not register the version retention in JMX", e);
+        }
+    }
+
+    private void unregisterMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            logger.debug("Could not unregister the version retention from JMX", e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.repository;
+
+/**
+ * The JMX interface of the {@link VersionRetention}.
+ */
+public interface VersionRetentionMBean {
+
+    /**
+     * @return The number of keys removed from the repository.
+     */
+    public long getReclaimedKeys();
+
+    /**
+     * @return The (approximate) number of bytes of the values removed from the repository.
+     */
+    public long getReclaimedBytes();
+
+    /**
+     * @return The watermark of the last collection, or <code>-1</code> if there was none yet.
+     */
+    public int getWatermark();
+
+    /**
+     * @return The number of collections completed.
+     */
+    public long getCollections();
+
+}
@@ -8,8 +8,10 @@
 package pt.ist.fenixframework.backend.jvstm.datagrid;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -17,14 +19,14 @@ import java.util.concurrent.Callable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import pt.ist.fenixframework.FenixFramework;
-import pt.ist.fenixframework.Transaction;
 import pt.ist.fenixframework.backend.jvstm.JVSTMConfig;
 import pt.ist.fenixframework.backend.jvstm.pstm.DomainClassInfo;
 import pt.ist.fenixframework.backend.jvstm.pstm.VBox;
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
 import pt.ist.fenixframework.backend.jvstm.pstm.VersionedValue;
 import pt.ist.fenixframework.backend.jvstm.repository.PersistenceException;
 import pt.ist.fenixframework.backend.jvstm.repository.Repository;
+import pt.ist.fenixframework.backend.jvstm.repository.VBoxVersionKey;
 import pt.ist.fenixframework.core.Externalization;
 
 /**
@@ -43,9 +45,6 @@ public class DataGridRepository implements Repository {
     // the key used to store the max committed transaction number
     private static final String MAX_COMMITTED_TX_ID = "maxTxId";
 
-    // key to store context information in the (JVSTM's) Transaction
-    private static final String KEY_INSTANTIATED_CLASSES = "Set<DomainClassInfo>";
-
     private DataGrid dataGrid;
     private int maxCommittedTxId = -1;
 
@@ -122,18 +121,20 @@ public class DataGridRepository implements Repository {
     }
 
     @Override
-    public void updateMaxCounterForClass(DomainClassInfo domainClassInfo, int newCounterValue) {
-        Transaction current = FenixFramework.getTransaction();
+    public int reserveKeysForClass(final DomainClassInfo domainClassInfo, final int blockSize) {
+        final String key = makeKeyForMaxCounter(domainClassInfo);
 
-        Set<DomainClassInfo> infos = current.getFromContext(KEY_INSTANTIATED_CLASSES);
-        if (infos == null) {
-            infos = new HashSet<DomainClassInfo>();
-            current.putInContext(KEY_INSTANTIATED_CLASSES, infos);
-        }
+        return doWithinBackingTransactionIfNeeded(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                Integer max = (Integer) dataGrid.get(key);
 
-        if (infos.add(domainClassInfo)) {
-            logger.debug("Will update counter for instances of {} upon commit.", domainClassInfo.domainClassName);
-        }
+                int newCounterValue = ((max == null) ? 0 : max) + blockSize;
+                dataGrid.put(key, newCounterValue);
+                logger.debug("Update persistent counter for class {}: {}", domainClassInfo.domainClassName, newCounterValue);
+                return newCounterValue;
+            }
+        });
     }
 
     @Override
@@ -153,7 +154,6 @@ public class DataGridRepository implements Repository {
         doWithinBackingTransactionIfNeeded(new Callable<Void>() {
             @Override
             public Void call() {
-                updatePersistentInstanceCounters();
                 persistCommittedTransactionNumber(txNumber);
 
                 for (Entry<jvstm.VBox, Object> entry : changes) {
@@ -162,7 +162,7 @@ public class DataGridRepository implements Repository {
 
                     newValue = (newValue == nullObject) ? null : newValue;
 
-                    String key = makeKeyFor(vbox);
+                    VBoxId key = makeKeyFor(vbox);
                     DataVersionHolder current = (DataVersionHolder) dataGrid.get(key);
                     DataVersionHolder newVersion;
                     byte[] externalizedData = Externalization.externalizeObject(newValue);
@@ -288,8 +288,66 @@ public class DataGridRepository implements Repository {
         reloadAttribute(box);
     }
 
+    /* Walks the version chains of all the boxes in lockstep: each round fetches, in a single call to getAll, the next version
+    of every box that has not yet reached 'requiredVersion'. Thus, the number of round trips depends on how many versions
+    must be loaded per box, and not on the number of boxes. */
+    @Override
+    public void reloadAttributes(final Collection<VBox> boxes, final int requiredVersion) {
+        Map<VBox, List<VersionedValue>> loaded =
+                doWithinBackingTransactionIfNeeded(new Callable<Map<VBox, List<VersionedValue>>>() {
+            @Override
+            public Map<VBox, List<VersionedValue>> call() throws Exception {
+                Map<VBox, List<VersionedValue>> result = new HashMap<VBox, List<VersionedValue>>();
+                Map<VBox, Object> pending = new HashMap<VBox, Object>();
+                for (VBox box : boxes) {
+                    result.put(box, new ArrayList<VersionedValue>());
+                    pending.put(box, makeKeyFor(box));
+                }
+
+                while (!pending.isEmpty()) {
+                    Map<VBox, DataVersionHolder> round = getAll(pending);
+                    pending = new HashMap<VBox, Object>();
+
+                    for (Entry<VBox, DataVersionHolder> entry : round.entrySet()) {
+                        VBox box = entry.getKey();
+                        DataVersionHolder current = entry.getValue();
+
+                        if (current == null) {
+                            throw new PersistenceException("Version of vbox " + box.getId() + " not found for transaction number "
+                                    + requiredVersion);
+                        }
+                        result.get(box).add(new VersionedValue(Externalization.internalizeObject(current.data), current.version));
+
+                        if (current.version > requiredVersion) {
+                            if (current.previousVersion == -1) {
+                                throw new PersistenceException("Version of vbox " + box.getId()
+                                        + " not found for transaction number " + requiredVersion);
+                            }
+                            pending.put(box, makeVersionedKey(makeKeyFor(box), current.previousVersion));
+                        }
+                    }
+                }
+                return result;
+            }
+        });
+
+        for (Entry<VBox, List<VersionedValue>> entry : loaded.entrySet()) {
+            entry.getKey().mergeVersions(entry.getValue());
+        }
+    }
+
+    /* The DataGrid has no multi-get, so the keys of each round are fetched one by one, but all of them within the same
+    backing transaction. */
+    private Map<VBox, DataVersionHolder> getAll(Map<VBox, Object> keys) {
+        Map<VBox, DataVersionHolder> result = new HashMap<VBox, DataVersionHolder>();
+        for (Entry<VBox, Object> entry : keys.entrySet()) {
+            result.put(entry.getKey(), (DataVersionHolder) dataGrid.get(entry.getValue()));
+        }
+        return result;
+    }
+
     List<VersionedValue> getMostRecentVersions(final VBox vbox, final int desiredVersion) {
-        final String key = makeKeyFor(vbox);
+        final VBoxId key = makeKeyFor(vbox);
 
         return doWithinBackingTransactionIfNeeded(new Callable<List<VersionedValue>>() {
             @Override
@@ -339,37 +397,12 @@ public class DataGridRepository implements Repository {
         }
     }
 
-    // only correct if invoked within a backing transaction.  Also this code
-    // assumes a single global commit lock. Otherwise the counter might be set
-    // backwards by a late-running thread.
-    private void updatePersistentInstanceCounters() {
-        Transaction current = FenixFramework.getTransaction();
-
-        Set<DomainClassInfo> infos = current.getFromContext(KEY_INSTANTIATED_CLASSES);
-
-        if (infos != null) {
-            for (DomainClassInfo info : infos) {
-                String key = makeKeyForMaxCounter(info);
-                Integer max = (Integer) dataGrid.get(key);
-
-                int newCounterValue = info.getLastKey();
-
-                if (max == null || max < newCounterValue) {
-                    dataGrid.put(key, newCounterValue);
-                    logger.debug("Update persistent counter for class {}: {}", info.domainClassName, newCounterValue);
-                }
-
-            }
-
-        }
-    }
-
-    private String makeKeyFor(VBox vbox) {
+    private VBoxId makeKeyFor(VBox vbox) {
         return vbox.getId();
     }
 
-    private String makeVersionedKey(String key, int version) {
-        return key + ":" + version;
+    private VBoxVersionKey makeVersionedKey(VBoxId key, int version) {
+        return new VBoxVersionKey(key, version);
     }
 
     /* DataVersionHolder class. Ensures safe publication. */
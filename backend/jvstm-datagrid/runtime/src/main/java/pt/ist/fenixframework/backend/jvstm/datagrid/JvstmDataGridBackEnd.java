@@ -16,6 +16,7 @@ import pt.ist.fenixframework.backend.jvstm.pstm.OwnedVBox;
 import pt.ist.fenixframework.backend.jvstm.pstm.StandaloneVBox;
 import pt.ist.fenixframework.backend.jvstm.pstm.VBox;
 import pt.ist.fenixframework.backend.jvstm.pstm.VBoxCache;
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
 
 public class JvstmDataGridBackEnd extends JvstmClusterBackEnd {
     private static final Logger logger = LoggerFactory.getLogger(JvstmDataGridBackEnd.class);
@@ -36,7 +37,7 @@ public class JvstmDataGridBackEnd extends JvstmClusterBackEnd {
     }
 
     @Override
-    public VBox lookupCachedVBox(String vboxId) {
+    public VBox lookupCachedVBox(VBoxId vboxId) {
         VBox vbox = StandaloneVBox.lookupCachedVBox(vboxId);
         if (vbox != null) {
             return vbox;
@@ -45,7 +46,7 @@ public class JvstmDataGridBackEnd extends JvstmClusterBackEnd {
         return OwnedVBox.lookupCachedVBox(vboxId);
     }
 
-    public VBox vboxFromId(String vboxId) {
+    public VBox vboxFromId(VBoxId vboxId) {
         logger.debug("vboxFromId({})", vboxId);
 
         VBox vbox = lookupCachedVBox(vboxId);
@@ -66,7 +67,7 @@ public class JvstmDataGridBackEnd extends JvstmClusterBackEnd {
         return vbox;
     }
 
-    private static VBox allocateVBox(String vboxId) {
+    private static VBox allocateVBox(VBoxId vboxId) {
 
         // try an owned vbox first in case the id is valid.
         VBox vbox = OwnedVBox.fromId(vboxId);
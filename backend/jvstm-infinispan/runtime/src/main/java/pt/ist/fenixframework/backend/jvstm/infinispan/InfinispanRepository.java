@@ -8,11 +8,14 @@
 package pt.ist.fenixframework.backend.jvstm.infinispan;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.transaction.TransactionManager;
 
@@ -27,14 +30,16 @@ import org.infinispan.util.concurrent.IsolationLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import pt.ist.fenixframework.FenixFramework;
-import pt.ist.fenixframework.Transaction;
 import pt.ist.fenixframework.backend.jvstm.JVSTMConfig;
 import pt.ist.fenixframework.backend.jvstm.pstm.DomainClassInfo;
 import pt.ist.fenixframework.backend.jvstm.pstm.VBox;
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
 import pt.ist.fenixframework.backend.jvstm.pstm.VersionedValue;
+import pt.ist.fenixframework.backend.jvstm.repository.ActiveVersionMark;
 import pt.ist.fenixframework.backend.jvstm.repository.PersistenceException;
-import pt.ist.fenixframework.backend.jvstm.repository.Repository;
+import pt.ist.fenixframework.backend.jvstm.repository.VBoxVersionKey;
+import pt.ist.fenixframework.backend.jvstm.repository.VersionCollectingRepository;
+import pt.ist.fenixframework.backend.jvstm.repository.VersionRetention;
 import pt.ist.fenixframework.core.Externalization;
 
 //import jvstm.Transaction;
@@ -42,7 +47,7 @@ import pt.ist.fenixframework.core.Externalization;
 /**
  * This class implements the Repository interface using the Infinispan NoSQL key/value data store.
  */
-public class InfinispanRepository implements Repository {
+public class InfinispanRepository implements VersionCollectingRepository {
 
     private static final Logger logger = LoggerFactory.getLogger(InfinispanRepository.class);
 
@@ -63,14 +68,27 @@ public class InfinispanRepository implements Repository {
     // this is a marker, so that when bootstrapping the repository, we can identify whether it already exists 
     private static final String CACHE_IS_NEW = "CacheAlreadExists";
 
-    private static final String KEY_INSTANTIATED_CLASSES = "Set<DomainClassInfo>";
+    // the prefix of the keys that hold the versioned keys superseded by each committed transaction
+    private static final String RETIRED_VERSIONS = "retired:";
+
+    // the highest transaction number whose superseded versions were already collected
+    private static final String LAST_COLLECTED_TX_ID = "lastCollectedTxId";
+
+    // the prefix of the keys that hold the ActiveVersionMark of each node
+    private static final String ACTIVE_VERSION_MARK = "activeVersion:";
+
+    // the highest server id that published an ActiveVersionMark
+    private static final String HIGHEST_MARKED_SERVER_ID = "activeVersionServers";
 
     Cache<String, Object> systemCache;
-    Cache<String, DataVersionHolder> domainCache;
+    Cache<Object, DataVersionHolder> domainCache;
     TransactionManager transactionManager;
 
     private int maxCommittedTxId = -1;
 
+    // whether the superseded versions are logged, for the version retention to collect them
+    private boolean retainingVersions = false;
+
     // creates the manager of caches for Infinispan
     private void createCacheContainer(String ispnConfigFile) {
         try {
@@ -202,9 +220,9 @@ public class InfinispanRepository implements Repository {
         this.cacheManager.defineConfiguration(DOMAIN_CACHE_NAME, conf);
 
         final DefaultCacheManager finalCacheManager = this.cacheManager;
-        this.domainCache = doWithinBackingTransactionIfNeeded(new Callable<Cache<String, DataVersionHolder>>() {
+        this.domainCache = doWithinBackingTransactionIfNeeded(new Callable<Cache<Object, DataVersionHolder>>() {
             @Override
-            public Cache<String, DataVersionHolder> call() {
+            public Cache<Object, DataVersionHolder> call() {
                 return finalCacheManager.getCache(DOMAIN_CACHE_NAME);
             }
         });
@@ -219,7 +237,7 @@ public class InfinispanRepository implements Repository {
     }
 
     // returns the single cache object that holds all domain objects
-    private Cache<String, DataVersionHolder> getDomainCache() {
+    private Cache<Object, DataVersionHolder> getDomainCache() {
         return this.domainCache;
     }
 
@@ -271,6 +289,8 @@ public class InfinispanRepository implements Repository {
     public boolean init(JVSTMConfig jvstmConfig) {
         String ispnConfigFile = ((JvstmIspnConfig) jvstmConfig).getIspnConfigFile();
 
+        this.retainingVersions = jvstmConfig.getVersionRetentionIntervalSeconds() > 0;
+
         createCacheContainer(ispnConfigFile);
         initTransactionManager();
         createSystemCache();
@@ -343,21 +363,23 @@ public class InfinispanRepository implements Repository {
 
     }
 
-    // called when a new domain object is created inside a transaction and a new oid is assigned to the
-    // created object.  Register the class info to be updated upon commit
+    // called when the keys reserved for new instances of a class run out.  Only this server updates its counters, so there
+    // is no contention on them.
     @Override
-    public void updateMaxCounterForClass(DomainClassInfo domainClassInfo, final int newCounterValue) {
-        Transaction current = FenixFramework.getTransaction();
+    public int reserveKeysForClass(final DomainClassInfo domainClassInfo, final int blockSize) {
+        final String key = makeKeyForMaxCounter(domainClassInfo);
 
-        Set<DomainClassInfo> infos = current.getFromContext(KEY_INSTANTIATED_CLASSES);
-        if (infos == null) {
-            infos = new HashSet<DomainClassInfo>();
-            current.putInContext(KEY_INSTANTIATED_CLASSES, infos);
-        }
+        return doWithinBackingTransactionIfNeeded(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                Integer max = (Integer) getSystemCache().get(key);
 
-        if (infos.add(domainClassInfo)) {
-            logger.debug("Will update counter for instances of {} upon commit.", domainClassInfo.domainClassName);
-        }
+                int newCounterValue = ((max == null) ? 0 : max) + blockSize;
+                getSystemCache().put(key, newCounterValue);
+                logger.debug("Update persistent counter for class {}: {}", domainClassInfo.domainClassName, newCounterValue);
+                return newCounterValue;
+            }
+        });
     }
 
     private String makeKeyForMaxCounter(DomainClassInfo domainClassInfo) {
@@ -380,28 +402,32 @@ public class InfinispanRepository implements Repository {
     // the third arguments represents the reference used by the stm to represent null objects.
     @Override
     public void persistChanges(final Set<Entry<jvstm.VBox, Object>> changes, final int txNumber, final Object nullObject) {
-        final Cache<String, DataVersionHolder> cache = getDomainCache();
+        final Cache<Object, DataVersionHolder> cache = getDomainCache();
 
         // begin repo tx here
         doWithinBackingTransactionIfNeeded(new Callable<Void>() {
             @Override
             public Void call() {
-                updatePersistentInstanceCounters();
                 persistCommittedTransactionNumber(txNumber);
 
+                List<VBoxVersionKey> retired = retainingVersions ? new ArrayList<VBoxVersionKey>() : null;
                 for (Entry<jvstm.VBox, Object> entry : changes) {
                     VBox vbox = (VBox) entry.getKey();
                     Object newValue = entry.getValue();
 
                     newValue = (newValue == nullObject) ? null : newValue;
 
-                    String key = makeKeyFor(vbox);
+                    VBoxId key = makeKeyFor(vbox);
                     DataVersionHolder current = cache.get(key);
                     DataVersionHolder newVersion;
                     byte[] externalizedData = Externalization.externalizeObject(newValue);
 
                     if (current != null) {
-                        cache.put(makeVersionedKey(key, current.version), current); // TODO: colocar aqui um timeout ?
+                        VBoxVersionKey versionedKey = makeVersionedKey(key, current.version);
+                        cache.put(versionedKey, current); // TODO: colocar aqui um timeout ?
+                        if (retired != null) {
+                            retired.add(versionedKey);
+                        }
                         newVersion = new DataVersionHolder(txNumber, current.version, externalizedData);
                     } else {
                         newVersion = new DataVersionHolder(txNumber, -1, externalizedData);
@@ -409,6 +435,11 @@ public class InfinispanRepository implements Repository {
 
                     cache.put(key, newVersion); // TODO: colocar aqui um timeout
                 }
+
+                // these versions may be discarded once no transaction reads a version older than txNumber
+                if (retired != null && !retired.isEmpty()) {
+                    getSystemCache().put(RETIRED_VERSIONS + txNumber, retired.toArray(new VBoxVersionKey[retired.size()]));
+                }
                 return null;
             }
         });
@@ -462,9 +493,76 @@ public class InfinispanRepository implements Repository {
         reloadAttribute(box);
     }
 
+    /* Walks the version chains of all the boxes in lockstep: each round fetches, in a single batch of asynchronous gets, the
+    next version of every box that has not yet reached 'requiredVersion'. Thus, the number of round trips depends on how
+    many versions must be loaded per box, and not on the number of boxes. */
+    @Override
+    public void reloadAttributes(final Collection<VBox> boxes, final int requiredVersion) {
+        Map<VBox, List<VersionedValue>> loaded =
+                doWithinBackingTransactionIfNeeded(new Callable<Map<VBox, List<VersionedValue>>>() {
+            @Override
+            public Map<VBox, List<VersionedValue>> call() throws Exception {
+                Map<VBox, List<VersionedValue>> result = new HashMap<VBox, List<VersionedValue>>();
+                Map<VBox, Object> pending = new HashMap<VBox, Object>();
+                for (VBox box : boxes) {
+                    result.put(box, new ArrayList<VersionedValue>());
+                    pending.put(box, makeKeyFor(box));
+                }
+
+                while (!pending.isEmpty()) {
+                    Map<VBox, DataVersionHolder> round = getAll(pending);
+                    pending = new HashMap<VBox, Object>();
+
+                    for (Entry<VBox, DataVersionHolder> entry : round.entrySet()) {
+                        VBox box = entry.getKey();
+                        DataVersionHolder current = entry.getValue();
+
+                        if (current == null) {
+                            throw new PersistenceException("Version of vbox " + box.getId() + " not found for transaction number "
+                                    + requiredVersion);
+                        }
+                        result.get(box).add(new VersionedValue(Externalization.internalizeObject(current.data), current.version));
+
+                        if (current.version > requiredVersion) {
+                            if (current.previousVersion == -1) {
+                                throw new PersistenceException("Version of vbox " + box.getId()
+                                        + " not found for transaction number " + requiredVersion);
+                            }
+                            pending.put(box, makeVersionedKey(makeKeyFor(box), current.previousVersion));
+                        }
+                    }
+                }
+                return result;
+            }
+        });
+
+        for (Entry<VBox, List<VersionedValue>> entry : loaded.entrySet()) {
+            entry.getKey().mergeVersions(entry.getValue());
+        }
+    }
+
+    /* Issue all the gets before waiting for any of them, so that their round trips overlap. Infinispan 5.2 has no multi-get,
+    so this is the nearest we have to one. The gets may not take part in the backing transaction, which is fine with the
+    READ_COMMITTED isolation used here: older versions never change once written and the newest one is only ever replaced by
+    a newer one. */
+    private Map<VBox, DataVersionHolder> getAll(Map<VBox, Object> keys) throws Exception {
+        Cache<Object, DataVersionHolder> cache = getDomainCache();
+
+        Map<VBox, Future<DataVersionHolder>> futures = new HashMap<VBox, Future<DataVersionHolder>>();
+        for (Entry<VBox, Object> entry : keys.entrySet()) {
+            futures.put(entry.getKey(), cache.getAsync(entry.getValue()));
+        }
+
+        Map<VBox, DataVersionHolder> result = new HashMap<VBox, DataVersionHolder>();
+        for (Entry<VBox, Future<DataVersionHolder>> entry : futures.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
     List<VersionedValue> getMostRecentVersions(final VBox vbox, final int desiredVersion) {
-        final Cache<String, DataVersionHolder> cache = getDomainCache();
-        final String key = makeKeyFor(vbox);
+        final Cache<Object, DataVersionHolder> cache = getDomainCache();
+        final VBoxId key = makeKeyFor(vbox);
 
         return doWithinBackingTransactionIfNeeded(new Callable<List<VersionedValue>>() {
             @Override
@@ -496,6 +594,92 @@ public class InfinispanRepository implements Repository {
         });
     }
 
+    @Override
+    public void storeActiveVersionMark(final int serverId, final ActiveVersionMark mark) {
+        doWithinBackingTransactionIfNeeded(new Callable<Void>() {
+            @Override
+            public Void call() {
+                getSystemCache().put(ACTIVE_VERSION_MARK + serverId, mark);
+
+                Integer highest = (Integer) getSystemCache().get(HIGHEST_MARKED_SERVER_ID);
+                if (highest == null || highest < serverId) {
+                    getSystemCache().put(HIGHEST_MARKED_SERVER_ID, serverId);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public List<ActiveVersionMark> getActiveVersionMarks() {
+        return doWithinBackingTransactionIfNeeded(new Callable<List<ActiveVersionMark>>() {
+            @Override
+            public List<ActiveVersionMark> call() {
+                List<ActiveVersionMark> marks = new ArrayList<ActiveVersionMark>();
+
+                Integer highest = (Integer) getSystemCache().get(HIGHEST_MARKED_SERVER_ID);
+                for (int serverId = 0; highest != null && serverId <= highest; serverId++) {
+                    ActiveVersionMark mark = (ActiveVersionMark) getSystemCache().get(ACTIVE_VERSION_MARK + serverId);
+                    if (mark != null) {
+                        marks.add(mark);
+                    }
+                }
+                return marks;
+            }
+        });
+    }
+
+    /* Each committed transaction leaves a list of the versioned keys that it superseded.  Those keys may be removed as soon as
+    no transaction reads a version older than that transaction's, i.e. when its number is not above the watermark.  The
+    versions are visited in order, so that the last collected one is enough to know where to resume.  Versions committed
+    before the lists existed, or by a node without version retention, which does not write them, are never collected. */
+    @Override
+    public int collectVersions(final int watermark, final int maxKeys, VersionRetention retention) {
+        long[] collected = doWithinBackingTransactionIfNeeded(new Callable<long[]>() {
+            @Override
+            public long[] call() {
+                Integer lastCollected = (Integer) getSystemCache().get(LAST_COLLECTED_TX_ID);
+                int version = (lastCollected == null) ? 0 : lastCollected;
+
+                long versions = 0;
+                long keys = 0;
+                long bytes = 0;
+                while (version < watermark && versions < maxKeys && keys < maxKeys) {
+                    version++;
+                    versions++;
+
+                    VBoxVersionKey[] retired = (VBoxVersionKey[]) getSystemCache().remove(RETIRED_VERSIONS + version);
+                    if (retired == null) {
+                        continue;
+                    }
+                    keys++;
+                    for (VBoxVersionKey key : retired) {
+                        DataVersionHolder old = getDomainCache().remove(key);
+                        if (old != null) {
+                            keys++;
+                            bytes += old.data.length;
+                        }
+                    }
+                }
+
+                if (versions > 0) {
+                    // never move backwards, should a node that was taken for gone still be collecting
+                    Integer currentLastCollected = (Integer) getSystemCache().get(LAST_COLLECTED_TX_ID);
+                    if (currentLastCollected == null || currentLastCollected < version) {
+                        getSystemCache().put(LAST_COLLECTED_TX_ID, version);
+                    }
+                }
+                return new long[] { versions, keys, bytes };
+            }
+        });
+
+        if (collected[1] > 0) {
+            logger.debug("Removed {} old version(s) of boxes up to transaction number {}", collected[1], watermark);
+        }
+        retention.recordReclaimed(collected[1], collected[2]);
+        return (int) collected[0];
+    }
+
     // persist the number of the committed transaction. Maybe this should be made differently.
     // It may abort transactions because they try to change this same slot.
     private void persistCommittedTransactionNumber(final int txNumber) {
@@ -514,37 +698,12 @@ public class InfinispanRepository implements Repository {
         }
     }
 
-    // only correct if invoked within a backing transaction.  Also this code
-    // assumes a single global commit lock. Otherwise the counter might be set
-    // backwards by a late-running thread.
-    private void updatePersistentInstanceCounters() {
-        Transaction current = FenixFramework.getTransaction();
-
-        Set<DomainClassInfo> infos = current.getFromContext(KEY_INSTANTIATED_CLASSES);
-
-        if (infos != null) {
-            for (DomainClassInfo info : infos) {
-                String key = makeKeyForMaxCounter(info);
-                Integer max = (Integer) getSystemCache().get(key);
-
-                int newCounterValue = info.getLastKey();
-
-                if (max == null || max < newCounterValue) {
-                    getSystemCache().put(key, newCounterValue);
-                    logger.debug("Update persistent counter for class {}: {}", info.domainClassName, newCounterValue);
-                }
-
-            }
-
-        }
-    }
-
-    private String makeKeyFor(VBox vbox) {
+    private VBoxId makeKeyFor(VBox vbox) {
         return vbox.getId();
     }
 
-    private String makeVersionedKey(String key, int version) {
-        return key + ":" + version;
+    private VBoxVersionKey makeVersionedKey(VBoxId key, int version) {
+        return new VBoxVersionKey(key, version);
     }
 
     /* DataVersionHolder class. Ensures safe publication. */
@@ -580,7 +739,9 @@ public class InfinispanRepository implements Repository {
       some key changes, the system as a whole behaves as expected. Here are some
       things to consider:
 
-      - Keys are never removed.  At most their corresponding value is updated.
+      - Keys are never removed, except for the versioned keys that the version
+      retention (when enabled) removes once no transaction can read them
+      anymore.  Other than that, at most their corresponding value is updated.
 
       - The domain cache contains the domain entities. When committing (to
       persistence), a given VBox, we store its most recent value in a key built
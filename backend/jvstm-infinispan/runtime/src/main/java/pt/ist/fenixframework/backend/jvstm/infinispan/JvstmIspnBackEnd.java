@@ -14,6 +14,7 @@ import pt.ist.fenixframework.FenixFramework;
 import pt.ist.fenixframework.backend.jvstm.cluster.JvstmClusterBackEnd;
 import pt.ist.fenixframework.backend.jvstm.pstm.OwnedVBox;
 import pt.ist.fenixframework.backend.jvstm.pstm.VBox;
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
 
 public class JvstmIspnBackEnd extends JvstmClusterBackEnd {
     private static final Logger logger = LoggerFactory.getLogger(JvstmIspnBackEnd.class);
@@ -34,7 +35,7 @@ public class JvstmIspnBackEnd extends JvstmClusterBackEnd {
     }
 
     @Override
-    public VBox lookupCachedVBox(String vboxId) {
+    public VBox lookupCachedVBox(VBoxId vboxId) {
         return OwnedVBox.lookupCachedVBox(vboxId);
     }
 }
@@ -8,6 +8,7 @@
 package pt.ist.fenixframework.backend.jvstm;
 
 import pt.ist.fenixframework.dml.CompilerArgs;
+import pt.ist.fenixframework.dml.DomainClass;
 import pt.ist.fenixframework.dml.DomainModel;
 
 public class InMemCodeGenerator extends JVSTMCodeGenerator {
@@ -22,5 +23,11 @@ public class InMemCodeGenerator extends JVSTMCodeGenerator {
         return InMemDomainObject.class.getName();
     }
 
+    @Override
+    protected boolean isWholeObject(DomainClass domClass) {
+        // objects are never stored, so there is nothing to store together
+        return false;
+    }
+
     
 }
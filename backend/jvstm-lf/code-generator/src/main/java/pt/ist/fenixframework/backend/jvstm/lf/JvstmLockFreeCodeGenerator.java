@@ -2,6 +2,7 @@ package pt.ist.fenixframework.backend.jvstm.lf;
 
 import pt.ist.fenixframework.backend.jvstm.JVSTMCodeGenerator;
 import pt.ist.fenixframework.dml.CompilerArgs;
+import pt.ist.fenixframework.dml.DomainClass;
 import pt.ist.fenixframework.dml.DomainModel;
 
 public class JvstmLockFreeCodeGenerator extends JVSTMCodeGenerator {
@@ -20,4 +21,10 @@ public class JvstmLockFreeCodeGenerator extends JVSTMCodeGenerator {
         return JvstmLockFreeConfig.class.getName();
     }
 
+    @Override
+    protected boolean isWholeObject(DomainClass domClass) {
+        // the write set is persisted without the previous version of each slot, which a record needs
+        return false;
+    }
+
 }
@@ -7,13 +7,23 @@
  */
 package pt.ist.fenixframework.backend.jvstm.datagrid.infinispan;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 import javax.transaction.HeuristicMixedException;
 import javax.transaction.HeuristicRollbackException;
+import javax.transaction.InvalidTransactionException;
 import javax.transaction.NotSupportedException;
 import javax.transaction.RollbackException;
 import javax.transaction.SystemException;
+import javax.transaction.Transaction;
 import javax.transaction.TransactionManager;
 
+import org.infinispan.AdvancedCache;
 import org.infinispan.Cache;
 import org.infinispan.configuration.cache.Configuration;
 import org.infinispan.configuration.cache.ConfigurationBuilder;
@@ -42,9 +52,12 @@ public class InfinispanDataGrid implements DataGrid {
     public static final String ISPN_CONFIG_FILE = "ispnConfigFile";
 
     static final String CACHE_NAME = "FFCache";
+    static final String LOCK_CACHE_NAME = "FFLockCache";
 
     DefaultCacheManager cacheManager;
     Cache<Object, Object> cache;
+    // holds no entries, only the locks taken by compareAndSet
+    AdvancedCache<Object, Object> lockCache;
     TransactionManager transactionManager;
 
     @Override
@@ -100,6 +113,123 @@ public class InfinispanDataGrid implements DataGrid {
         this.cache.putIfAbsent(key, value);
     }
 
+    /* The conditional writes of the optimistic cache are not atomic: two
+    transactions may both find the expected value and both commit.  So, with
+    the current transaction suspended, this first takes the key's lock in the
+    pessimistic lock cache, and then compares and sets in a transaction of its
+    own, which commits before the lock is released.  Thus, the next
+    compareAndSet of the key finds the value set by this one. */
+    @Override
+    public boolean compareAndSet(Object key, Object expectedValue, Object newValue) {
+        TransactionManager tm = getTransactionManager();
+        Transaction suspended = null;
+        try {
+            suspended = tm.suspend();
+            tm.begin();
+            boolean success = false;
+            try {
+                this.lockCache.lock(key);
+                boolean set = compareAndSetWhileLocked(tm, key, expectedValue, newValue);
+                success = true;
+                return set;
+            } finally {
+                // ends the lock transaction, releasing the lock
+                if (success) {
+                    tm.commit();
+                } else {
+                    tm.rollback();
+                }
+            }
+        } catch (NotSupportedException | SystemException | RollbackException | HeuristicMixedException
+                | HeuristicRollbackException | InvalidTransactionException e) {
+            logger.warn("Failed to compareAndSet.", e);
+            throw new PersistenceException(e);
+        } finally {
+            if (suspended != null) {
+                try {
+                    tm.resume(suspended);
+                } catch (InvalidTransactionException | SystemException e) {
+                    logger.warn("Failed to resume the suspended transaction.", e);
+                    throw new PersistenceException(e);
+                }
+            }
+        }
+    }
+
+    private boolean compareAndSetWhileLocked(TransactionManager tm, Object key, Object expectedValue, Object newValue)
+            throws NotSupportedException, SystemException, RollbackException, HeuristicMixedException,
+            HeuristicRollbackException, InvalidTransactionException {
+        Transaction lockTransaction = tm.suspend();
+        try {
+            tm.begin();
+            boolean success = false;
+            try {
+                Object currentValue = this.cache.get(key);
+                boolean set = expectedValue == null ? currentValue == null : expectedValue.equals(currentValue);
+                if (set) {
+                    this.cache.put(key, newValue);
+                }
+                success = true;
+                return set;
+            } finally {
+                if (success) {
+                    tm.commit();
+                } else {
+                    tm.rollback();
+                }
+            }
+        } finally {
+            tm.resume(lockTransaction);
+        }
+    }
+
+    /* Infinispan has no multi-get, so all the gets are issued at once, and
+    then waited for.  A single key is read within the current transaction. */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <K, V> Map<K, V> getAll(Collection<K> keys) {
+        Map<K, V> result = new HashMap<K, V>();
+        if (keys.size() == 1) {
+            K key = keys.iterator().next();
+            V value = get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+            return result;
+        }
+
+        Map<K, Future<Object>> pending = new HashMap<K, Future<Object>>();
+        for (K key : keys) {
+            pending.put(key, this.cache.getAsync(key));
+        }
+
+        try {
+            for (Entry<K, Future<Object>> entry : pending.entrySet()) {
+                Object value = entry.getValue().get();
+                if (value != null) {
+                    result.put(entry.getKey(), (V) value);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException(e);
+        } catch (ExecutionException e) {
+            throw new PersistenceException(e.getCause());
+        }
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        this.cache.putAll(entries);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T remove(Object key) {
+        return (T) this.cache.remove(key);
+    }
+
     @Override
     public void beginTransaction() {
         TransactionManager tm = getTransactionManager();
@@ -245,6 +375,18 @@ public class InfinispanDataGrid implements DataGrid {
 
         this.cache = this.cacheManager.getCache(CACHE_NAME).getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES);
 
+        // the same configuration, but with pessimistic locking, so that keys can be locked explicitly
+        ConfigurationBuilder lockConfBuilder = new ConfigurationBuilder().read(conf);
+        lockConfBuilder.loaders().clearCacheLoaders();
+        lockConfBuilder.transaction().lockingMode(LockingMode.PESSIMISTIC);
+        Configuration lockConf = lockConfBuilder.build();
+
+        logger.debug("Configuration for {} is: {}", LOCK_CACHE_NAME, lockConf.toString());
+
+        this.cacheManager.defineConfiguration(LOCK_CACHE_NAME, lockConf);
+
+        this.lockCache = this.cacheManager.<Object, Object> getCache(LOCK_CACHE_NAME).getAdvancedCache();
+
 //        final DefaultCacheManager finalCacheManager = this.cacheManager;
 //        this.cache = doWithinBackingTransactionIfNeeded(new Callable<Cache<Object, Object>>() {
 //            @Override
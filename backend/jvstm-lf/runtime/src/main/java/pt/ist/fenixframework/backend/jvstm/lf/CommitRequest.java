@@ -7,6 +7,8 @@
  */
 package pt.ist.fenixframework.backend.jvstm.lf;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
@@ -155,6 +157,19 @@ public class CommitRequest implements DataSerializable {
 
     @Override
     public void writeData(ObjectDataOutput out) throws IOException {
+        writeTo(out);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        readFields(in);
+    }
+
+    /**
+     * Write this request in the format read by {@link #readFrom(DataInput)}. This is what is sent to the other nodes, regardless
+     * of the {@link CommitTransport} in use.
+     */
+    public void writeTo(DataOutput out) throws IOException {
         out.writeInt(this.serverId);
         out.writeInt(this.txVersion);
         out.writeLong(this.id.getMostSignificantBits());
@@ -163,8 +178,13 @@ public class CommitRequest implements DataSerializable {
         this.writeSet.writeTo(out);
     }
 
-    @Override
-    public void readData(ObjectDataInput in) throws IOException {
+    public static CommitRequest readFrom(DataInput in) throws IOException {
+        CommitRequest commitRequest = new CommitRequest();
+        commitRequest.readFields(in);
+        return commitRequest;
+    }
+
+    private void readFields(DataInput in) throws IOException {
         this.serverId = in.readInt();
         this.txVersion = in.readInt();
         this.id = new UUID(in.readLong(), in.readLong());
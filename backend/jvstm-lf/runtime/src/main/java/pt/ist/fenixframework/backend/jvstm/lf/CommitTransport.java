@@ -0,0 +1,59 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.lf;
+
+/**
+ * The group communication used by the nodes of a cluster. It broadcasts the commit requests of every node to all the nodes,
+ * including the one that sent them, and provides the little coordination that the nodes need at startup. The implementation in
+ * use is given by {@link JvstmLockFreeConfig#getCommitTransportClassName()}, and must have a public no-arg constructor.
+ *
+ * @see LockFreeClusterUtils
+ */
+public interface CommitTransport {
+
+    /**
+     * Receives the commit requests delivered by a {@link CommitTransport}.
+     */
+    public interface Receiver {
+        public void receive(CommitRequest commitRequest);
+    }
+
+    /**
+     * Join the cluster. From then on, every commit request published by any node must be given to the receiver. All nodes must
+     * receive the requests in the same order, and each node must receive them one at a time, always from the same thread.
+     */
+    public void start(JvstmLockFreeConfig config, Receiver receiver);
+
+    /**
+     * Send the given commit request to all the nodes, including this one.
+     */
+    public void publish(CommitRequest commitRequest);
+
+    /**
+     * @return A server id that no other node of the cluster has obtained. The first node to ask for one must get <code>0</code>.
+     */
+    public int obtainNewServerId();
+
+    public void notifyStartupComplete();
+
+    /**
+     * Block until the first node of the cluster has invoked {@link #notifyStartupComplete()}.
+     */
+    public void waitForStartupFromFirstNode();
+
+    /**
+     * @return The number of members in the cluster or <code>-1</code> if the information is not available
+     */
+    public int getNumMembers();
+
+    /**
+     * Leave the cluster. No more commit requests are given to the receiver afterwards.
+     */
+    public void shutdown();
+
+}
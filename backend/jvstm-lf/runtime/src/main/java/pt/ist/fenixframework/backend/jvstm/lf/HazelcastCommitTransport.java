@@ -0,0 +1,110 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.lf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IAtomicLong;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+
+/**
+ * The default {@link CommitTransport}. Commit requests are published in a Hazelcast topic, configured by
+ * {@link JvstmLockFreeConfig#getHazelcastConfig()}.
+ */
+public class HazelcastCommitTransport implements CommitTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(HazelcastCommitTransport.class);
+
+    private static final String FF_COMMIT_TOPIC_NAME = "ff.hzl.commits";
+
+    private HazelcastInstance hazelcastInstance;
+
+    @Override
+    public void start(JvstmLockFreeConfig config, final Receiver receiver) {
+        com.hazelcast.config.Config hzlCfg = config.getHazelcastConfig();
+        this.hazelcastInstance = Hazelcast.newHazelcastInstance(hzlCfg);
+
+        // according to Hazelcast, onMessage() runs on a single thread
+        ITopic<CommitRequest> topic = this.hazelcastInstance.getTopic(FF_COMMIT_TOPIC_NAME);
+        topic.addMessageListener(new MessageListener<CommitRequest>() {
+            @Override
+            public final void onMessage(Message<CommitRequest> message) {
+                receiver.receive(message.getMessageObject());
+            }
+        });
+    }
+
+    @Override
+    public void publish(CommitRequest commitRequest) {
+        ITopic<CommitRequest> topic = this.hazelcastInstance.getTopic(FF_COMMIT_TOPIC_NAME);
+        topic.publish(commitRequest);
+    }
+
+    @Override
+    public int obtainNewServerId() {
+        /* currently does not reuse the server Id value while any server is up.
+        This can be changed if needed.  However, we currently depend on the first
+        server getting the AtomicNumber 0 to know that it is the first member
+        to appear.  By reusing numbers with the cluster alive, we either don't
+        reuse 0 or change the algorithm  that detects the first member */
+
+        IAtomicLong serverIdGenerator = this.hazelcastInstance.getAtomicLong("serverId");
+        long longId = serverIdGenerator.getAndAdd(1L);
+
+        logger.info("Got (long) serverId: {}", longId);
+
+        int intId = (int) longId;
+        if (intId != longId) {
+            throw new Error("Failed to obtain a valid id");
+        }
+
+        return intId;
+    }
+
+    @Override
+    public void notifyStartupComplete() {
+        IAtomicLong initMarker = this.hazelcastInstance.getAtomicLong("initMarker");
+        initMarker.incrementAndGet();
+    }
+
+    @Override
+    public void waitForStartupFromFirstNode() {
+        // check initMarker in AtomicNumber (value 1)
+        IAtomicLong initMarker = this.hazelcastInstance.getAtomicLong("initMarker");
+
+        while (initMarker.get() == 0) {
+            logger.debug("Waiting for first node to startup...");
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        }
+    }
+
+    @Override
+    public int getNumMembers() {
+        if (!this.hazelcastInstance.getLifecycleService().isRunning()) {
+            return -1;
+        } else {
+            return this.hazelcastInstance.getCluster().getMembers().size();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        this.hazelcastInstance.getTopic(FF_COMMIT_TOPIC_NAME).destroy();
+        this.hazelcastInstance.getLifecycleService().shutdown();
+    }
+
+}
@@ -24,6 +24,7 @@ import pt.ist.fenixframework.backend.jvstm.pstm.OwnedVBox;
 import pt.ist.fenixframework.backend.jvstm.pstm.StandaloneVBox;
 import pt.ist.fenixframework.backend.jvstm.pstm.VBox;
 import pt.ist.fenixframework.backend.jvstm.pstm.VBoxCache;
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
 import pt.ist.fenixframework.backend.jvstm.repository.ExtendedRepository;
 import pt.ist.fenixframework.backend.jvstm.repository.LockFreeRepository;
 import pt.ist.fenixframework.backend.jvstm.repository.Repository;
@@ -102,7 +103,7 @@ public class JvstmLockFreeBackEnd extends JVSTMBackEnd {
         ActiveTransactionsRecord activeRecord = Transaction.getRecordForNewTransaction();
         Transaction tx = new InitTransaction(activeRecord);
         tx.start();
-        VBox<Integer> initBox = StandaloneVBox.makeNew("SERVER" + serverId, false);
+        VBox<Integer> initBox = StandaloneVBox.makeNew(VBoxId.forName("SERVER" + serverId), false);
         initBox.put(serverId);
         tx.commitTx(true);
 
@@ -148,7 +149,7 @@ public class JvstmLockFreeBackEnd extends JVSTMBackEnd {
     }
 
     @Override
-    public VBox lookupCachedVBox(String vboxId) {
+    public VBox lookupCachedVBox(VBoxId vboxId) {
         VBox vbox = StandaloneVBox.lookupCachedVBox(vboxId);
         if (vbox != null) {
             return vbox;
@@ -157,7 +158,7 @@ public class JvstmLockFreeBackEnd extends JVSTMBackEnd {
         return OwnedVBox.lookupCachedVBox(vboxId);
     }
 
-    public VBox vboxFromId(String vboxId) {
+    public VBox vboxFromId(VBoxId vboxId) {
         logger.debug("vboxFromId({})", vboxId);
 
         VBox vbox = lookupCachedVBox(vboxId);
@@ -178,7 +179,7 @@ public class JvstmLockFreeBackEnd extends JVSTMBackEnd {
         return vbox;
     }
 
-    private static VBox allocateVBox(String vboxId) {
+    private static VBox allocateVBox(VBoxId vboxId) {
 
         // try an owned vbox first in case the id is valid.
         VBox vbox = OwnedVBox.fromId(vboxId);
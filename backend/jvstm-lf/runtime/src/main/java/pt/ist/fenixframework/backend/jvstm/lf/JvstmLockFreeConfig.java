@@ -41,6 +41,13 @@ public class JvstmLockFreeConfig extends JVSTMConfig {
         return hazelcastConfigFile;
     }
 
+    /**
+     * This <strong>optional</strong> parameter specifies the classname of the {@link CommitTransport} used to broadcast commit
+     * requests to the other nodes. The default value for this parameter is {@link HazelcastCommitTransport}. Use
+     * {@link LoopbackCommitTransport} to run several nodes within the same JVM.
+     */
+    protected String commitTransportClassName = HazelcastCommitTransport.class.getName();
+
     /**
      * This <strong>required</strong> parameter specifies the classname of the datagrid implementation.
      */
@@ -53,6 +60,32 @@ public class JvstmLockFreeConfig extends JVSTMConfig {
      */
     protected HashMap<String, String> dataGridPropertiesMap = new HashMap<String, String>();
 
+    /**
+     * This <strong>optional</strong> parameter specifies how many of the most recent mappings from a transaction version to its
+     * commit id each node keeps in memory, so that reloading a box does not have to look them up in the datagrid. The default
+     * value for this parameter is <code>65536</code>.
+     */
+    protected int commitIdCacheSize = 65536;
+
+    /**
+     * This <strong>optional</strong> parameter specifies how many of the most recent mappings from a transaction version to its
+     * commit id are loaded into memory when the node starts. A value of <code>0</code> disables the loading. The default value
+     * for this parameter is <code>4096</code>.
+     */
+    protected int commitIdPrefetchSize = 4096;
+
+    /**
+     * This <strong>optional</strong> parameter specifies how many of the most recent versions in which each box was written are
+     * kept in its version index. Reloading an older version of a box must look it up one version at a time. The index of a box is
+     * rewritten whenever the box is written, so this also bounds the cost of each write. The default value for this parameter is
+     * <code>256</code>.
+     */
+    protected int versionIndexMaxSize = 256;
+
+    public String getCommitTransportClassName() {
+        return this.commitTransportClassName;
+    }
+
     public String getDatagridClassName() {
         return this.dataGridClassName;
     }
@@ -61,6 +94,30 @@ public class JvstmLockFreeConfig extends JVSTMConfig {
         return this.dataGridPropertiesMap.get(propName);
     }
 
+    public int getCommitIdCacheSize() {
+        return this.commitIdCacheSize;
+    }
+
+    public int getCommitIdPrefetchSize() {
+        return this.commitIdPrefetchSize;
+    }
+
+    public int getVersionIndexMaxSize() {
+        return this.versionIndexMaxSize;
+    }
+
+    protected void commitIdCacheSizeFromString(String value) {
+        this.commitIdCacheSize = parseInt(value);
+    }
+
+    protected void commitIdPrefetchSizeFromString(String value) {
+        this.commitIdPrefetchSize = parseInt(value);
+    }
+
+    protected void versionIndexMaxSizeFromString(String value) {
+        this.versionIndexMaxSize = parseInt(value);
+    }
+
     private void setDataGridProperty(String propName, String value) {
         this.dataGridPropertiesMap.put(propName, value);
     }
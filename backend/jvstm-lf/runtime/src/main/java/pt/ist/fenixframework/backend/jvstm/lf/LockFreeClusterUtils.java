@@ -14,22 +14,14 @@ import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.backend.jvstm.pstm.CommitOnlyTransaction;
 
-import com.hazelcast.core.Hazelcast;
-import com.hazelcast.core.HazelcastInstance;
-import com.hazelcast.core.IAtomicLong;
-import com.hazelcast.core.ITopic;
-import com.hazelcast.core.Message;
-import com.hazelcast.core.MessageListener;
-
 public class LockFreeClusterUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(LockFreeClusterUtils.class);
 //    private static final String FF_GLOBAL_LOCK_NAME = "ff.hzl.global.lock";
 //    private static final String FF_GLOBAL_LOCK_NUMBER_NAME = "ff.hzl.global.lock.number";
 //    private static final long FF_GLOBAL_LOCK_LOCKED_VALUE = -1;
-    private static final String FF_COMMIT_TOPIC_NAME = "ff.hzl.commits";
 
-    private static HazelcastInstance HAZELCAST_INSTANCE;
+    private static CommitTransport COMMIT_TRANSPORT;
 
     // commit requests that have not been applied yet
     private static final AtomicReference<CommitRequest> commitRequestsHead = new AtomicReference<CommitRequest>();
@@ -48,49 +40,29 @@ public class LockFreeClusterUtils {
         commitRequestsHead.set(CommitRequest.makeSentinelRequest());
         commitRequestsTail = getCommitRequestAtHead();
 
-        com.hazelcast.config.Config hzlCfg = thisConfig.getHazelcastConfig();
-        HAZELCAST_INSTANCE = Hazelcast.newHazelcastInstance(hzlCfg);
+        COMMIT_TRANSPORT = createCommitTransport(thisConfig);
 
         // register listener for commit requests
-        registerListenerForCommitRequests();
-    }
-
-//    private static final ReentrantLock ENQUEUE_LOCK = new ReentrantLock(true);
-
-    private static void registerListenerForCommitRequests() {
-        ITopic<CommitRequest> topic = getHazelcastInstance().getTopic(FF_COMMIT_TOPIC_NAME);
-
-        topic.addMessageListener(new MessageListener<CommitRequest>() {
+        COMMIT_TRANSPORT.start(thisConfig, new CommitTransport.Receiver() {
 
             @Override
-            public final void onMessage(Message<CommitRequest> message) {
-//                ENQUEUE_LOCK.lock();
-
-//                try {
-                CommitRequest commitRequest = message.getMessageObject();
-
+            public final void receive(CommitRequest commitRequest) {
                 logger.debug("Received commit request message. id={}, serverId={}", commitRequest.getId(),
                         commitRequest.getServerId());
 
                 commitRequest.assignTransaction();
                 enqueueCommitRequest(commitRequest);
-//                } finally {
-//                    ENQUEUE_LOCK.unlock();
-//                }
             }
 
             private final void enqueueCommitRequest(CommitRequest commitRequest) {
-//                synchronized (LockFreeClusterUtils.FF_COMMIT_TOPIC_NAME) { // TODO REMOVE THIS !!!
-
                 CommitRequest last = commitRequestsTail;
 
-                // according to Hazelcast, onMessage() runs on a single thread, so this CAS should never fail
+                // the transport delivers requests on a single thread, so this CAS should never fail
                 if (!last.setNext(commitRequest)) {
                     enqueueFailed();
                 }
                 // update last known tail
                 commitRequestsTail = commitRequest;
-//                }
             }
 
             private void enqueueFailed() throws AssertionError {
@@ -102,60 +74,48 @@ public class LockFreeClusterUtils {
         });
     }
 
+    private static CommitTransport createCommitTransport(JvstmLockFreeConfig thisConfig) {
+        String className = thisConfig.getCommitTransportClassName();
+        logger.info("Using commit transport {}", className);
+        try {
+            return Class.forName(className).asSubclass(CommitTransport.class).newInstance();
+        } catch (ClassNotFoundException e) {
+            throw new Error("Failed to create the commit transport " + className, e);
+        } catch (InstantiationException e) {
+            throw new Error("Failed to create the commit transport " + className, e);
+        } catch (IllegalAccessException e) {
+            throw new Error("Failed to create the commit transport " + className, e);
+        }
+    }
+
 //    public static void initGlobalCommittedNumber(int value) {
 //        AtomicNumber lockNumber = getHazelcastInstance().getAtomicNumber(FF_GLOBAL_LOCK_NUMBER_NAME);
 //        lockNumber.compareAndSet(0, value);
 //    }
 
-    // the instance should have been initialized in a single thread within the
+    // the transport should have been initialized in a single thread within the
     // FenixFramework static initializer's lock (via the invocation of the method
     // initializeGroupCommunication.
-    private static HazelcastInstance getHazelcastInstance() {
-        return HAZELCAST_INSTANCE;
+    private static CommitTransport getCommitTransport() {
+        return COMMIT_TRANSPORT;
     }
 
     public static void notifyStartupComplete() {
         logger.info("Notify other nodes that startup completed");
 
-        IAtomicLong initMarker = getHazelcastInstance().getAtomicLong("initMarker");
-        initMarker.incrementAndGet();
+        getCommitTransport().notifyStartupComplete();
     }
 
     public static void waitForStartupFromFirstNode() {
         logger.info("Waiting for startup from first node");
 
-        // check initMarker in AtomicNumber (value 1)
-        IAtomicLong initMarker = getHazelcastInstance().getAtomicLong("initMarker");
+        getCommitTransport().waitForStartupFromFirstNode();
 
-        while (initMarker.get() == 0) {
-            logger.debug("Waiting for first node to startup...");
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                // ignore
-            }
-        }
         logger.debug("First node startup is complete.  We can proceed.");
     }
 
     public static int obtainNewServerId() {
-        /* currently does not reuse the server Id value while any server is up.
-        This can be changed if needed.  However, we currently depend on the first
-        server getting the AtomicNumber 0 to know that it is the first member
-        to appear.  By reusing numbers with the cluster alive, we either don't
-        reuse 0 or change the algorithm  that detects the first member */
-
-        IAtomicLong serverIdGenerator = getHazelcastInstance().getAtomicLong("serverId");
-        long longId = serverIdGenerator.getAndAdd(1L);
-
-        logger.info("Got (long) serverId: {}", longId);
-
-        int intId = (int) longId;
-        if (intId != longId) {
-            throw new Error("Failed to obtain a valid id");
-        }
-
-        return intId;
+        return getCommitTransport().obtainNewServerId();
     }
 
     public static void sendCommitRequest(CommitRequest commitRequest) {
@@ -164,8 +124,7 @@ public class LockFreeClusterUtils {
             logger.debug("Send commit request to others: {}", commitRequest);
         }
 
-        ITopic<CommitRequest> topic = getHazelcastInstance().getTopic(FF_COMMIT_TOPIC_NAME);
-        topic.publish(commitRequest);
+        getCommitTransport().publish(commitRequest);
     }
 
     /**
@@ -210,9 +169,7 @@ public class LockFreeClusterUtils {
     }
 
     public static void shutdown() {
-        HazelcastInstance hzl = getHazelcastInstance();
-        hzl.getTopic(FF_COMMIT_TOPIC_NAME).destroy();
-        hzl.getLifecycleService().shutdown();
+        getCommitTransport().shutdown();
 
         /* strangely this is here.  Perhaps we should move these clear()s
         elsewhere. They are needed when the classes are reused via
@@ -220,6 +177,7 @@ public class LockFreeClusterUtils {
         in this class not in COTx */
         CommitOnlyTransaction.txVersionToCommitIdMap.clear();
         CommitOnlyTransaction.commitsMap.clear();
+        CommitOnlyTransaction.recentWriteSets.clear();
     }
 
     /**
@@ -228,12 +186,7 @@ public class LockFreeClusterUtils {
      * @return The number of members in the cluster or <code>-1</code> if the information is not available
      */
     public static int getNumMembers() {
-        if (!getHazelcastInstance().getLifecycleService().isRunning()) {
-            return -1;
-        } else {
-            return getHazelcastInstance().getCluster().getMembers().size();
-        }
-
+        return getCommitTransport().getNumMembers();
     }
 
     //////////////// TO DELETE BELOW THIS ///////////////////////
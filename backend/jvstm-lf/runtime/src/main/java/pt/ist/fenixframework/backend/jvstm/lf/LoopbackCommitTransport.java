@@ -0,0 +1,150 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.lf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.util.FenixFrameworkThread;
+
+/**
+ * A {@link CommitTransport} that connects the nodes running in the same JVM, without any networking. It is meant for testing
+ * several nodes of a cluster within a single process, together with the
+ * {@link pt.ist.fenixframework.backend.jvstm.repository.InMemoryDataGrid}.
+ *
+ * The framework keeps its state in static fields, so each node must have its framework classes loaded by its own class loader,
+ * and only the {@link LoopbackGroup} must be loaded by a class loader common to all of them. Commit requests are serialized when
+ * published, and each node deserializes its own copy, just as if they had been sent over the network.
+ */
+public class LoopbackCommitTransport implements CommitTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoopbackCommitTransport.class);
+
+    public static final String GROUP_NAME = JvstmLockFreeConfig.HAZELCAST_FF_GROUP_NAME;
+
+    private LoopbackGroup group;
+    private BlockingQueue<byte[]> queue;
+    private DeliveryThread deliveryThread;
+
+    @Override
+    public void start(JvstmLockFreeConfig config, Receiver receiver) {
+        LoopbackGroup.Membership membership = LoopbackGroup.join(GROUP_NAME);
+        this.group = membership.getGroup();
+        this.queue = membership.getQueue();
+
+        this.deliveryThread = new DeliveryThread(this.queue, receiver);
+        this.deliveryThread.start();
+    }
+
+    @Override
+    public void publish(CommitRequest commitRequest) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            commitRequest.writeTo(out);
+            out.flush();
+        } catch (IOException e) {
+            // writing to memory does not fail
+            throw new Error(e);
+        }
+        this.group.publish(bytes.toByteArray());
+    }
+
+    @Override
+    public int obtainNewServerId() {
+        long longId = this.group.getAndIncrementServerId();
+
+        logger.info("Got (long) serverId: {}", longId);
+
+        int intId = (int) longId;
+        if (intId != longId) {
+            throw new Error("Failed to obtain a valid id");
+        }
+
+        return intId;
+    }
+
+    @Override
+    public void notifyStartupComplete() {
+        this.group.incrementInitMarker();
+    }
+
+    @Override
+    public void waitForStartupFromFirstNode() {
+        while (this.group.getInitMarker() == 0) {
+            logger.debug("Waiting for first node to startup...");
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        }
+    }
+
+    @Override
+    public int getNumMembers() {
+        return this.group.getNumMembers();
+    }
+
+    @Override
+    public void shutdown() {
+        this.group.leave(this.queue);
+        this.deliveryThread.interrupt();
+        try {
+            this.deliveryThread.join(10 * 1000);
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while waiting for the delivery of commit requests to stop", e);
+        }
+    }
+
+    /**
+     * Gives the commit requests to the receiver, one at a time, in the order in which they were published.
+     */
+    private static class DeliveryThread extends FenixFrameworkThread {
+
+        private final BlockingQueue<byte[]> queue;
+        private final Receiver receiver;
+
+        DeliveryThread(BlockingQueue<byte[]> queue, Receiver receiver) {
+            super("LoopbackCommitDelivery");
+            this.queue = queue;
+            this.receiver = receiver;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                byte[] message;
+                try {
+                    message = this.queue.take();
+                } catch (InterruptedException e) {
+                    logger.debug("Stopped delivering commit requests");
+                    return;
+                }
+
+                CommitRequest commitRequest;
+                try {
+                    commitRequest = CommitRequest.readFrom(new DataInputStream(new ByteArrayInputStream(message)));
+                } catch (IOException e) {
+                    logger.error("Failed to read commit request", e);
+                    throw new Error(e);
+                }
+                this.receiver.receive(commitRequest);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.lf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The state shared by the members of a group of {@link LoopbackCommitTransport}s in the same JVM. Messages are kept in their
+ * serialized form, and this class only refers to JDK classes. Thus, it can be shared by nodes whose framework classes are loaded
+ * by different class loaders, provided that this class is loaded by a class loader common to all of them. For the same reason,
+ * its methods are public.
+ */
+public final class LoopbackGroup {
+
+    private static final ConcurrentMap<String, LoopbackGroup> groups = new ConcurrentHashMap<String, LoopbackGroup>();
+
+    private final String name;
+    private final AtomicLong serverIds = new AtomicLong();
+    private final AtomicLong initMarker = new AtomicLong();
+    private final List<BlockingQueue<byte[]>> members = new ArrayList<BlockingQueue<byte[]>>();
+    private boolean disbanded = false;
+
+    private LoopbackGroup(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Join the group with the given name, creating it if needed.
+     *
+     * @return The group joined and the queue where the messages published in it are delivered to the new member.
+     */
+    public static Membership join(String name) {
+        while (true) {
+            LoopbackGroup group = groups.get(name);
+            if (group == null) {
+                group = new LoopbackGroup(name);
+                LoopbackGroup existing = groups.putIfAbsent(name, group);
+                if (existing != null) {
+                    group = existing;
+                }
+            }
+
+            BlockingQueue<byte[]> queue = group.addMember();
+            if (queue != null) {
+                return new Membership(group, queue);
+            }
+            // the group was disbanded in the meantime
+        }
+    }
+
+    private synchronized BlockingQueue<byte[]> addMember() {
+        if (this.disbanded) {
+            return null;
+        }
+        BlockingQueue<byte[]> queue = new LinkedBlockingQueue<byte[]>();
+        this.members.add(queue);
+        return queue;
+    }
+
+    /**
+     * Stop delivering messages to the given queue. When the last member leaves, the group is disbanded, and joining a group with
+     * the same name starts afresh, as when all the nodes of a cluster are shut down.
+     */
+    public synchronized void leave(BlockingQueue<byte[]> queue) {
+        this.members.remove(queue);
+        if (this.members.isEmpty()) {
+            this.disbanded = true;
+            groups.remove(this.name, this);
+        }
+    }
+
+    /**
+     * Deliver the given message to all the members. Publishing is serialized, so that all members get the messages in the same
+     * order.
+     */
+    public synchronized void publish(byte[] message) {
+        for (BlockingQueue<byte[]> queue : this.members) {
+            queue.add(message);
+        }
+    }
+
+    public synchronized int getNumMembers() {
+        return this.members.size();
+    }
+
+    public long getAndIncrementServerId() {
+        return this.serverIds.getAndIncrement();
+    }
+
+    public void incrementInitMarker() {
+        this.initMarker.incrementAndGet();
+    }
+
+    public long getInitMarker() {
+        return this.initMarker.get();
+    }
+
+    /**
+     * The result of joining a {@link LoopbackGroup}.
+     */
+    public static final class Membership {
+        private final LoopbackGroup group;
+        private final BlockingQueue<byte[]> queue;
+
+        private Membership(LoopbackGroup group, BlockingQueue<byte[]> queue) {
+            this.group = group;
+            this.queue = queue;
+        }
+
+        public LoopbackGroup getGroup() {
+            return this.group;
+        }
+
+        public BlockingQueue<byte[]> getQueue() {
+            return this.queue;
+        }
+    }
+
+}
@@ -16,6 +16,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.backend.jvstm.pstm.VBox;
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
 
 public class RemoteWriteSet extends WriteSet {
 
@@ -40,7 +41,7 @@ public class RemoteWriteSet extends WriteSet {
         VBox[] vboxes = new VBox[writeSet.getNumElements()];
 
         int pos = 0;
-        for (String id : writeSet.getVboxIds()) {
+        for (VBoxId id : writeSet.getVboxIds()) {
             vboxes[pos++] = JvstmLockFreeBackEnd.getInstance().vboxFromId(id);
         }
         return vboxes;
@@ -10,35 +10,157 @@ package pt.ist.fenixframework.backend.jvstm.lf;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
 
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
+
+/**
+ * The ids of the boxes read by a transaction that requests to commit. The ids are kept sorted, with the boxes of domain objects
+ * (by oid and slot) before the {@link pt.ist.fenixframework.backend.jvstm.pstm.StandaloneVBox}es (by name). This makes for a
+ * compact encoding, in which consecutive oids are written as the (usually small) difference to the previous one, and the boxes
+ * of the same object take two bytes each.
+ *
+ * Large read sets also get a summary, a Bloom filter of their ids, which is built on demand by the nodes that validate them,
+ * and is never sent. It makes testing whether a box was read cheap, which is what validation against the write sets of the
+ * recent commits does.
+ */
 public class SimpleReadSet {
 
-    private final String[] vboxIds;
+    // read sets smaller than this are not worth summarizing
+    static final int SUMMARY_THRESHOLD = 64;
+
+    private static final Comparator<VBoxId> ID_ORDER = new Comparator<VBoxId>() {
+        @Override
+        public int compare(VBoxId id1, VBoxId id2) {
+            boolean standalone1 = id1.isStandalone();
+            if (standalone1 != id2.isStandalone()) {
+                return standalone1 ? 1 : -1;
+            }
+            if (standalone1) {
+                return id1.getName().compareTo(id2.getName());
+            }
+            if (id1.getOid() != id2.getOid()) {
+                return id1.getOid() < id2.getOid() ? -1 : 1;
+            }
+            return id1.getSlotIndex() - id2.getSlotIndex();
+        }
+    };
+
+    private final VBoxId[] vboxIds;
+    private volatile BloomFilter summary;
 
-    public SimpleReadSet(String[] vboxIds) {
+    public SimpleReadSet(VBoxId[] vboxIds) {
+        this(vboxIds, false);
+    }
+
+    private SimpleReadSet(VBoxId[] vboxIds, boolean sorted) {
+        if (!sorted) {
+            Arrays.sort(vboxIds, ID_ORDER);
+        }
         this.vboxIds = vboxIds;
     }
 
-    public String[] getVBoxIds() {
+    /**
+     * @return The ids of the boxes read, sorted
+     */
+    public VBoxId[] getVBoxIds() {
         return this.vboxIds;
     }
 
+    public int size() {
+        return this.vboxIds.length;
+    }
+
+    /**
+     * @return Whether this read set is large enough to have a summary, in which case {@link #contains(VBoxId)} is cheaper than
+     *         going through each of its ids
+     */
+    public boolean hasSummary() {
+        return this.vboxIds.length >= SUMMARY_THRESHOLD;
+    }
+
+    /**
+     * @return Whether the box with the given id was read. The summary, if any, is checked first, and the ids are only searched
+     *         when the summary cannot rule the box out.
+     */
+    public boolean contains(VBoxId vboxId) {
+        if (hasSummary() && !getSummary().mightContain(vboxId)) {
+            return false;
+        }
+        return Arrays.binarySearch(this.vboxIds, vboxId, ID_ORDER) >= 0;
+    }
+
+    // concurrent validators may each build the summary, but they all build the same
+    private BloomFilter getSummary() {
+        BloomFilter filter = this.summary;
+        if (filter == null) {
+            filter = new BloomFilter(this.vboxIds);
+            this.summary = filter;
+        }
+        return filter;
+    }
+
     public void writeTo(DataOutput out) throws IOException {
-        // write number of ids
-        out.writeInt(this.vboxIds.length);
-        // write each id
-        for (String s : this.vboxIds) {
-            out.writeUTF(s);
+        int numOwned = 0;
+        while (numOwned < this.vboxIds.length && !this.vboxIds[numOwned].isStandalone()) {
+            numOwned++;
+        }
+
+        // write the boxes of domain objects, as deltas of their oids
+        writeVarLong(out, numOwned);
+        long previousOid = 0;
+        for (int i = 0; i < numOwned; i++) {
+            VBoxId vboxId = this.vboxIds[i];
+            // the oids are in ascending order, so the difference is only negative if it wraps around
+            writeVarLong(out, vboxId.getOid() - previousOid);
+            writeVarLong(out, vboxId.getSlotIndex());
+            previousOid = vboxId.getOid();
+        }
+
+        // write the standalone boxes, by name
+        writeVarLong(out, this.vboxIds.length - numOwned);
+        for (int i = numOwned; i < this.vboxIds.length; i++) {
+            out.writeUTF(this.vboxIds[i].getName());
         }
     }
 
     public static SimpleReadSet readFrom(DataInput in) throws IOException {
-        int size = in.readInt();
-        String ids[] = new String[size];
-        for (int i = 0; i < size; i++) {
-            ids[i] = in.readUTF();
+        int numOwned = (int) readVarLong(in);
+        VBoxId[] owned = new VBoxId[numOwned];
+        long oid = 0;
+        for (int i = 0; i < numOwned; i++) {
+            oid += readVarLong(in);
+            owned[i] = VBoxId.forSlot(oid, (int) readVarLong(in));
+        }
+
+        int numStandalone = (int) readVarLong(in);
+        VBoxId[] ids = Arrays.copyOf(owned, numOwned + numStandalone);
+        for (int i = numOwned; i < ids.length; i++) {
+            ids[i] = VBoxId.forName(in.readUTF());
+        }
+        return new SimpleReadSet(ids, true);
+    }
+
+    // an unsigned LEB128 varint: seven bits per byte, least significant first, with the high bit set in all but the last
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
         }
-        return new SimpleReadSet(ids);
+        throw new IOException("Malformed variable-length number");
     }
 
     @Override
@@ -59,4 +181,55 @@ public class SimpleReadSet {
         return str.toString();
     }
 
-}
\ No newline at end of file
+    /**
+     * A Bloom filter of box ids, with about ten bits per id and four hash functions, which gives about 1% of false positives.
+     */
+    private static final class BloomFilter {
+        private static final int BITS_PER_ID = 10;
+        private static final int NUM_HASHES = 4;
+
+        private final long[] bits;
+        private final int numBits;
+
+        BloomFilter(VBoxId[] vboxIds) {
+            int numWords = Math.max(1, (vboxIds.length * BITS_PER_ID + 63) / 64);
+            this.bits = new long[numWords];
+            this.numBits = numWords * 64;
+
+            for (VBoxId vboxId : vboxIds) {
+                long hash = hash(vboxId);
+                int h1 = (int) hash;
+                int h2 = (int) (hash >>> 32);
+                for (int i = 0; i < NUM_HASHES; i++) {
+                    int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % this.numBits;
+                    this.bits[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+
+        boolean mightContain(VBoxId vboxId) {
+            long hash = hash(vboxId);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < NUM_HASHES; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % this.numBits;
+                if ((this.bits[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // VBoxId.hashCode() is weak for the consecutive oids of the same class, so spread the bits (as MurmurHash3's finalizer)
+        private static long hash(VBoxId vboxId) {
+            long h = vboxId.isStandalone() ? vboxId.getName().hashCode() : vboxId.getOid() * 31 + vboxId.getSlotIndex();
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+
+}
@@ -14,20 +14,22 @@ import java.io.IOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
+
 public class SimpleWriteSet {
 
     private static final Logger logger = LoggerFactory.getLogger(SimpleWriteSet.class);
 
     private static final String INVALID_WRITE_SET = "when provided, values must be the same length as vboxIds";
 
-    private final String[] vboxIds;
+    private final VBoxId[] vboxIds;
     private final Object[] values;
 
-    public SimpleWriteSet(String[] vboxIds) {
+    public SimpleWriteSet(VBoxId[] vboxIds) {
         this(vboxIds, null);
     }
 
-    public SimpleWriteSet(String[] vboxIds, Object[] values) {
+    public SimpleWriteSet(VBoxId[] vboxIds, Object[] values) {
         if (values != null && (vboxIds.length != values.length)) {
             logger.error(INVALID_WRITE_SET);
             throw new IllegalArgumentException(INVALID_WRITE_SET);
@@ -36,7 +38,7 @@ public class SimpleWriteSet {
         this.values = values;
     }
 
-    public String[] getVboxIds() {
+    public VBoxId[] getVboxIds() {
         return this.vboxIds;
     }
 
@@ -50,8 +52,8 @@ public class SimpleWriteSet {
 
     public void writeTo(DataOutput out) throws IOException {
         out.writeInt(this.vboxIds.length);
-        for (String vboxId : this.vboxIds) {
-            out.writeUTF(vboxId);
+        for (VBoxId vboxId : this.vboxIds) {
+            vboxId.writeTo(out);
 
             // The values are written to the repository before broadcasting the remote commit
 //            byte[] externalValue = Externalization.externalizeObject(this.values[i]);
@@ -62,10 +64,10 @@ public class SimpleWriteSet {
 
     public static SimpleWriteSet readFrom(DataInput in) throws IOException {
         int size = in.readInt();
-        String ids[] = new String[size];
+        VBoxId ids[] = new VBoxId[size];
 //        Object[] values = new Object[size];
         for (int i = 0; i < size; i++) {
-            ids[i] = in.readUTF();
+            ids[i] = VBoxId.readFrom(in);
 
 //            int valueSize = in.readInt();
 //            byte[] externalValue = new byte[valueSize];
@@ -0,0 +1,79 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.lf;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A value for each of the most recent transaction versions. Versions are consecutive, so each one has its own slot in a ring of
+ * fixed size, where it replaces the version that came that many versions before it. Lookups and updates do not lock, and do not
+ * allocate other than the entry that is stored.
+ *
+ * @param <T> The type of the values
+ */
+public final class VersionRing<T> {
+
+    private final AtomicReferenceArray<Entry<T>> entries;
+    private final int mask;
+
+    /**
+     * @param size The number of versions to keep, rounded up to a power of two
+     */
+    public VersionRing(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 1));
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        this.entries = new AtomicReferenceArray<Entry<T>>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return The value of the given version, or <code>null</code> if it is not in the ring
+     */
+    public T get(int version) {
+        Entry<T> entry = this.entries.get(version & this.mask);
+        return (entry != null && entry.version == version) ? entry.value : null;
+    }
+
+    /**
+     * Keep the value of the given version, unless its slot already holds a more recent version.
+     */
+    public void put(int version, T value) {
+        int slot = version & this.mask;
+        Entry<T> entry = this.entries.get(slot);
+        // never replace a more recent version
+        if (entry == null || entry.version < version) {
+            this.entries.set(slot, new Entry<T>(version, value));
+        }
+    }
+
+    /**
+     * @return The number of versions that the ring keeps
+     */
+    public int capacity() {
+        return this.mask + 1;
+    }
+
+    public void clear() {
+        for (int i = 0; i < this.entries.length(); i++) {
+            this.entries.set(i, null);
+        }
+    }
+
+    private static final class Entry<T> {
+        private final int version;
+        private final T value;
+
+        Entry(int version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+}
@@ -2,6 +2,8 @@ package pt.ist.fenixframework.backend.jvstm.pstm;
 
 import static jvstm.UtilUnsafe.UNSAFE;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -26,6 +28,9 @@ public abstract class CommitOnlyTransaction extends TopLevelTransaction {
 
     private static final Logger logger = LoggerFactory.getLogger(CommitOnlyTransaction.class);
 
+    // the number of recent write sets to keep
+    private static final int RECENT_WRITE_SETS_SIZE = 1024;
+
     private static final long commitTxRecordOffset = UtilUnsafe.objectFieldOffset(TopLevelTransaction.class, "commitTxRecord");
 
     /**
@@ -42,6 +47,11 @@ public abstract class CommitOnlyTransaction extends TopLevelTransaction {
 
     public static final ConcurrentHashMap<Integer, UUID> txVersionToCommitIdMap = new ConcurrentHashMap<Integer, UUID>();
 
+    /**
+     * The write sets of the most recent commits, against which large read sets are validated.
+     */
+    public static final RecentWriteSets recentWriteSets = new RecentWriteSets(RECENT_WRITE_SETS_SIZE);
+
 //    private boolean readOnly = false;
 
 //    // for statistics
@@ -122,6 +132,8 @@ public abstract class CommitOnlyTransaction extends TopLevelTransaction {
 
     @Override
     protected void assignCommitRecord(int txNumber, WriteSet writeSet) {
+        // Must be known before this version commits, so that the requests after it can be validated against it
+        recentWriteSets.put(txNumber, this.commitRequest.getWriteSet().getVboxIds());
         // Must set the correct commit number **BEFORE** setting the valid status
         super.assignCommitRecord(txNumber, writeSet);
         this.commitRequest.setValid();
@@ -202,11 +214,19 @@ public abstract class CommitOnlyTransaction extends TopLevelTransaction {
 
         SimpleReadSet readSet = this.commitRequest.getReadSet();
 
+        /* A box read can only have a version > myReadVersion if some version
+        committed since then wrote it.  When these versions are known, it is
+        enough to check the boxes that they wrote and that we read. */
+        VBoxId[] vboxIdsToCheck = getReadsWrittenSince(readSet, myReadVersion, lastSeenCommittedTxNumber);
+        if (vboxIdsToCheck == null) {
+            vboxIdsToCheck = readSet.getVBoxIds();
+        }
+
         // smf: TODO implement the helping mechanism here. For now, just iterate all.
 
         JvstmLockFreeBackEnd backend = JvstmLockFreeBackEnd.getInstance();
 
-        for (String vboxId : readSet.getVBoxIds()) {
+        for (VBoxId vboxId : vboxIdsToCheck) {
             VBox vbox = backend.vboxFromId(vboxId);
 //            if (vbox == null) {
 //                // smf: TODO this vbox is not cached locally. deal with this later
@@ -304,6 +324,33 @@ public abstract class CommitOnlyTransaction extends TopLevelTransaction {
         assignCommitRecord(lastSeenCommittedTxNumber + 1, getWriteSet());
     }
 
+    /**
+     * Get the ids of the boxes in the given read set that were written by the versions after the first and up to the last given
+     * versions. This is only done for read sets that have a summary, and when the write sets of those versions are known and
+     * have fewer ids than the read set.
+     * 
+     * @return The ids found, or <code>null</code> if the whole read set must be checked instead
+     */
+    private static VBoxId[] getReadsWrittenSince(SimpleReadSet readSet, int afterVersion, int upToVersion) {
+        if (!readSet.hasSummary()) {
+            return null;
+        }
+        List<VBoxId[]> writeSets = recentWriteSets.get(afterVersion, upToVersion, readSet.size());
+        if (writeSets == null) {
+            return null;
+        }
+
+        List<VBoxId> readsWritten = new ArrayList<VBoxId>();
+        for (VBoxId[] writeSet : writeSets) {
+            for (VBoxId vboxId : writeSet) {
+                if (readSet.contains(vboxId)) {
+                    readsWritten.add(vboxId);
+                }
+            }
+        }
+        return readsWritten.toArray(new VBoxId[readsWritten.size()]);
+    }
+
     /**
      * Get the {@link WriteSet} for this transaction.
      * 
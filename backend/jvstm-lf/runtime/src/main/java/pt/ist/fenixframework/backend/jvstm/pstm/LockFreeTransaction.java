@@ -7,8 +7,10 @@
  */
 package pt.ist.fenixframework.backend.jvstm.pstm;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -28,7 +30,9 @@ import pt.ist.fenixframework.backend.jvstm.lf.JvstmLockFreeBackEnd;
 import pt.ist.fenixframework.backend.jvstm.lf.LockFreeClusterUtils;
 import pt.ist.fenixframework.backend.jvstm.lf.SimpleReadSet;
 import pt.ist.fenixframework.backend.jvstm.lf.SimpleWriteSet;
+import pt.ist.fenixframework.core.ConflictProfiler;
 import pt.ist.fenixframework.core.WriteOnReadError;
+import pt.ist.fenixframework.core.metrics.TransactionMetrics;
 
 public class LockFreeTransaction extends ConsistentTopLevelTransaction implements StatisticsCapableTransaction {
 
@@ -42,9 +46,11 @@ public class LockFreeTransaction extends ConsistentTopLevelTransaction implement
     // for statistics
     protected int numBoxReads = 0;
     protected int numBoxWrites = 0;
+    private final long startNanos = System.nanoTime();
 
     public LockFreeTransaction(ActiveTransactionsRecord record) {
         super(record);
+        ActiveTransactions.register(this, record.transactionNumber);
 
         logger.debug("Initial read version is {}", record.transactionNumber);
 
@@ -154,6 +160,12 @@ public class LockFreeTransaction extends ConsistentTopLevelTransaction implement
         throw new Error("Nested transactions not supported yet...");
     }
 
+    @Override
+    protected void finish() {
+        super.finish();
+        ActiveTransactions.unregister(this);
+    }
+
     /* this method processes the commit requests queue helping to apply as many
     commits as it finds in the queue. This is good for: (1) eventually the queue
     gets processed even if there are only read-only transactions; (2) the
@@ -199,6 +211,7 @@ public class LockFreeTransaction extends ConsistentTopLevelTransaction implement
         numBoxWrites = 0;
 
         super.doCommit();
+        TransactionMetrics.METRICS.recordCommitLatency(System.nanoTime() - startNanos);
     }
 
     /* This is the main entrance point for the lock-free commit. We override
@@ -222,18 +235,33 @@ public class LockFreeTransaction extends ConsistentTopLevelTransaction implement
             checkConsistencyPredicates();
             alreadyChecked = null; // allow gc of set
 
-            preValidateLocally();
-            logger.debug("Tx is locally valid");
-
-            // persist the write set ahead of sending the commit request
-            CommitRequest myRequest = makeCommitRequest();
-            persistWriteSet(myRequest);
+            try {
+                long start = System.nanoTime();
+                preValidateLocally();
+                logger.debug("Tx is locally valid");
+                long validated = System.nanoTime();
+                TransactionMetrics.METRICS.recordValidation(validated - start);
+
+                // persist the write set ahead of sending the commit request
+                CommitRequest myRequest = makeCommitRequest();
+                persistWriteSet(myRequest);
+                long persisted = System.nanoTime();
+                TransactionMetrics.METRICS.recordPersist(persisted - validated);
 
 // From TopLevelTransaction:
-//            validate();
-//            ensureCommitStatus();
+//                validate();
+//                ensureCommitStatus();
 // replaced with:
-            helpedTryCommit(myRequest);
+                helpedTryCommit(myRequest);
+                // there is no commit lock: the equivalent is the time spent until the request is ordered and validated
+                TransactionMetrics.METRICS.recordCommitCriticalSection(System.nanoTime() - persisted);
+            } catch (CommitException e) {
+                ConflictProfiler profiler = ConflictProfiler.getActive();
+                if (profiler != null) {
+                    profiler.recordFailedValidation(getStaleBoxes());
+                }
+                throw e;
+            }
 
 // From TopLevelTransaction:
             upgradeTx(getCommitTxRecord());  // commitTxRecord was set by the helper LocalCommitOnlyTransaction 
@@ -278,27 +306,56 @@ public class LockFreeTransaction extends ConsistentTopLevelTransaction implement
         return new CommitRequest(DomainClassInfo.getServerId(), getNumber(), makeSimpleReadSet(), makeSimpleWriteSet());
     }
 
+    // the boxes read by this transaction that were written meanwhile by transactions that already committed
+    private List<String> getStaleBoxes() {
+        List<String> staleBoxes = new ArrayList<String>();
+        int number = getNumber();
+
+        if (!this.bodiesRead.isEmpty()) {
+            // the first may not be full
+            jvstm.VBox[] array = this.bodiesRead.first();
+            for (int i = next + 1; i < array.length; i++) {
+                addIfStale(staleBoxes, array[i], number);
+            }
+
+            // the rest are full
+            for (jvstm.VBox[] ar : bodiesRead.rest()) {
+                for (int i = 0; i < ar.length; i++) {
+                    addIfStale(staleBoxes, ar[i], number);
+                }
+            }
+        }
+
+        return staleBoxes;
+    }
+
+    private static void addIfStale(List<String> staleBoxes, jvstm.VBox vbox, int number) {
+        if (vbox.body.version > number) {
+            staleBoxes.add(((VBox) vbox).getHotspotName());
+        }
+    }
+
     private SimpleReadSet makeSimpleReadSet() {
-        HashSet<String> vboxIds = new HashSet<String>();
+        HashSet<VBoxId> vboxIds = new HashSet<VBoxId>();
 
         if (!this.bodiesRead.isEmpty()) {
             // the first may not be full
             jvstm.VBox[] array = this.bodiesRead.first();
             for (int i = next + 1; i < array.length; i++) {
-                String vboxId = ((VBox) array[i]).getId();
+                VBoxId vboxId = ((VBox) array[i]).getId();
                 vboxIds.add(vboxId);
             }
 
             // the rest are full
             for (jvstm.VBox[] ar : bodiesRead.rest()) {
                 for (int i = 0; i < ar.length; i++) {
-                    String vboxId = ((VBox) array[i]).getId();
+                    VBoxId vboxId = ((VBox) ar[i]).getId();
                     vboxIds.add(vboxId);
                 }
             }
         }
 
-        return new SimpleReadSet(vboxIds.toArray(new String[vboxIds.size()]));
+        return new SimpleReadSet(vboxIds.toArray(new VBoxId[vboxIds.size()]));
     }
 
     private SimpleWriteSet makeSimpleWriteSet() {
@@ -308,7 +365,7 @@ public class LockFreeTransaction extends ConsistentTopLevelTransaction implement
 
         int maxRequiredSize = this.boxesWrittenInPlace.size() + this.boxesWritten.size();
 
-        String[] vboxIds = new String[maxRequiredSize];
+        VBoxId[] vboxIds = new VBoxId[maxRequiredSize];
         Object[] values = new Object[maxRequiredSize];
         int pos = 0;
 
@@ -0,0 +1,67 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.pstm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pt.ist.fenixframework.backend.jvstm.lf.VersionRing;
+
+/**
+ * The ids of the boxes written by the most recent commits that this node validated, kept in a {@link VersionRing}. Commits that
+ * were not validated by this node (namely, those before it started) are not known, and neither are those that were replaced in
+ * the ring.
+ */
+public final class RecentWriteSets {
+
+    private final VersionRing<VBoxId[]> writeSets;
+
+    /**
+     * @param size The number of versions to keep, rounded up to a power of two
+     */
+    public RecentWriteSets(int size) {
+        this.writeSets = new VersionRing<VBoxId[]>(size);
+    }
+
+    public void put(int version, VBoxId[] vboxIds) {
+        this.writeSets.put(version, vboxIds);
+    }
+
+    /**
+     * Get the write sets of all the versions after the first and up to the last given versions.
+     *
+     * @param maxIds The maximum number of ids worth returning
+     * @return The write sets, or <code>null</code> if any of them is not known, or if together they have more than the given
+     *         number of ids
+     */
+    public List<VBoxId[]> get(int afterVersion, int upToVersion, int maxIds) {
+        if (upToVersion - afterVersion > this.writeSets.capacity()) {
+            return null;
+        }
+
+        List<VBoxId[]> writeSets = new ArrayList<VBoxId[]>(upToVersion - afterVersion);
+        int numIds = 0;
+        for (int version = afterVersion + 1; version <= upToVersion; version++) {
+            VBoxId[] vboxIds = this.writeSets.get(version);
+            if (vboxIds == null) {
+                return null;
+            }
+            numIds += vboxIds.length;
+            if (numIds > maxIds) {
+                return null;
+            }
+            writeSets.add(vboxIds);
+        }
+        return writeSets;
+    }
+
+    public void clear() {
+        this.writeSets.clear();
+    }
+
+}
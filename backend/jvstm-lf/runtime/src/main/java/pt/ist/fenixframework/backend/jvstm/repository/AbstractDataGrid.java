@@ -0,0 +1,40 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A base class for {@link DataGrid}s that have no bulk operations of their own. The bulk operations are implemented with one
+ * call to the single-key operations per key, which is correct, but does not save any round trips.
+ */
+public abstract class AbstractDataGrid implements DataGrid {
+
+    @Override
+    public <K, V> Map<K, V> getAll(Collection<K> keys) {
+        Map<K, V> result = new HashMap<K, V>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        for (Entry<?, ?> entry : entries.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+}
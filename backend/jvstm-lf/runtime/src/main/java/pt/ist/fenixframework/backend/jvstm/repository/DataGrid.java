@@ -1,5 +1,8 @@
 package pt.ist.fenixframework.backend.jvstm.repository;
 
+import java.util.Collection;
+import java.util.Map;
+
 import pt.ist.fenixframework.backend.jvstm.lf.JvstmLockFreeConfig;
 
 public interface DataGrid {
@@ -14,6 +17,32 @@ public interface DataGrid {
 
     public void putIfAbsent(Object key, Object value);
 
+    /**
+     * Set the value of the given key only if its current value equals the expected one or, when the expected value is
+     * <code>null</code>, if the key has no value. Unlike the other operations, the comparison and the update are atomic, and take
+     * effect immediately, outside of the transaction in progress, if any: they are not undone if it rolls back.
+     * 
+     * @return Whether the value was set
+     */
+    public boolean compareAndSet(Object key, Object expectedValue, Object newValue);
+
+    /**
+     * Get the values of the given keys, in as few round trips as possible. Keys without a value are not in the returned map.
+     * 
+     * @see AbstractDataGrid#getAll(Collection)
+     */
+    public <K, V> Map<K, V> getAll(Collection<K> keys);
+
+    /**
+     * Put all the given entries, in as few round trips as possible.
+     * 
+     * @see AbstractDataGrid#putAll(Map)
+     */
+    public void putAll(Map<?, ?> entries);
+
+    /** Remove the given key, returning its previous value, if any */
+    public <T> T remove(Object key);
+
     /** Start a new data grid transaction */
     public void beginTransaction();
 
@@ -0,0 +1,304 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.backend.jvstm.lf.JvstmLockFreeConfig;
+
+/**
+ * A {@link DataGrid} kept in memory, in an {@link InMemoryStore}. It is meant for testing several nodes of a cluster within a
+ * single process (see {@link pt.ist.fenixframework.backend.jvstm.lf.LoopbackCommitTransport}), and it can simulate the latency
+ * of a remote data grid and inject failures.
+ *
+ * Keys and values are serialized, so each node gets its own copy of what it reads, and keys are compared by their serialized
+ * form. Writes made within a transaction are buffered per thread, and are only visible to other threads once the transaction
+ * commits, which provides the READ_COMMITTED isolation that the repository expects of a data grid.
+ */
+public class InMemoryDataGrid extends AbstractDataGrid {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryDataGrid.class);
+
+    /**
+     * This <strong>optional</strong> parameter specifies the name of the store. Nodes that use the same name share the same data.
+     * The default value for this parameter is <code>default</code>. This can be set via FenixFramework config file by prefixing
+     * it with {@link JvstmLockFreeConfig#DATAGRID_PARAM_PREFIX}, as the other parameters of this data grid.
+     */
+    public static final String STORE_NAME = "storeName";
+
+    /**
+     * This <strong>optional</strong> parameter specifies how many microseconds each operation takes, to simulate the round trip
+     * to a remote data grid. Bulk operations and commits take the same time as a single operation. The default value for this
+     * parameter is <code>0</code>.
+     */
+    public static final String LATENCY_MICROS = "latencyMicros";
+
+    /**
+     * This <strong>optional</strong> parameter specifies the probability, between <code>0</code> and <code>1</code>, of each
+     * operation failing with a {@link PersistenceException}. A transaction whose commit fails is rolled back. The default value
+     * for this parameter is <code>0</code>.
+     */
+    public static final String FAILURE_RATE = "failureRate";
+
+    private ConcurrentMap<ByteBuffer, byte[]> store;
+    private long latencyNanos;
+    private double failureRate;
+
+    private final ThreadLocal<Map<ByteBuffer, Write>> transaction = new ThreadLocal<Map<ByteBuffer, Write>>();
+
+    @Override
+    public void init(JvstmLockFreeConfig config) {
+        String storeName = getProperty(config, STORE_NAME, "default");
+        this.store = InMemoryStore.get(storeName);
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(getProperty(config, LATENCY_MICROS, "0")));
+        this.failureRate = Double.parseDouble(getProperty(config, FAILURE_RATE, "0"));
+
+        logger.info("Using in-memory store '{}' (latency={}us, failureRate={})", storeName,
+                TimeUnit.NANOSECONDS.toMicros(this.latencyNanos), this.failureRate);
+    }
+
+    private static String getProperty(JvstmLockFreeConfig config, String propName, String defaultValue) {
+        String value = config.getDataGridProperty(propName);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public void stop() {
+        logger.info("stop() invoked");
+        this.store = null;
+    }
+
+    @Override
+    public <T> T get(Object key) {
+        simulateRoundTrip();
+        return this.<T> read(toBytes(key));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        simulateRoundTrip();
+        write(toBytes(key), new Write(WriteKind.PUT, serialize(value)));
+    }
+
+    @Override
+    public void putIfAbsent(Object key, Object value) {
+        simulateRoundTrip();
+        ByteBuffer keyBytes = toBytes(key);
+        if (read(keyBytes) == null) {
+            write(keyBytes, new Write(WriteKind.PUT_IF_ABSENT, serialize(value)));
+        }
+    }
+
+    @Override
+    public boolean compareAndSet(Object key, Object expectedValue, Object newValue) {
+        simulateRoundTrip();
+        ByteBuffer keyBytes = toBytes(key);
+        if (expectedValue == null) {
+            return this.store.putIfAbsent(keyBytes, serialize(newValue)) == null;
+        }
+        // values are compared by their serialized form, like keys
+        byte[] current = this.store.get(keyBytes);
+        return current != null && Arrays.equals(current, serialize(expectedValue))
+                && this.store.replace(keyBytes, current, serialize(newValue));
+    }
+
+    @Override
+    public <T> T remove(Object key) {
+        simulateRoundTrip();
+        ByteBuffer keyBytes = toBytes(key);
+        T previous = read(keyBytes);
+        write(keyBytes, new Write(WriteKind.REMOVE, null));
+        return previous;
+    }
+
+    @Override
+    public <K, V> Map<K, V> getAll(Collection<K> keys) {
+        simulateRoundTrip();
+        Map<K, V> result = new HashMap<K, V>();
+        for (K key : keys) {
+            V value = read(toBytes(key));
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        simulateRoundTrip();
+        for (Entry<?, ?> entry : entries.entrySet()) {
+            write(toBytes(entry.getKey()), new Write(WriteKind.PUT, serialize(entry.getValue())));
+        }
+    }
+
+    @Override
+    public void beginTransaction() {
+        if (inTransaction()) {
+            throw new IllegalStateException("Already in a transaction");
+        }
+        this.transaction.set(new LinkedHashMap<ByteBuffer, Write>());
+    }
+
+    @Override
+    public void commitTransaction() {
+        Map<ByteBuffer, Write> writes = currentTransaction();
+        this.transaction.remove();
+
+        simulateRoundTrip();
+        for (Entry<ByteBuffer, Write> entry : writes.entrySet()) {
+            entry.getValue().applyTo(this.store, entry.getKey());
+        }
+    }
+
+    @Override
+    public void rollbackTransaction() {
+        currentTransaction();
+        this.transaction.remove();
+    }
+
+    @Override
+    public boolean inTransaction() {
+        return this.transaction.get() != null;
+    }
+
+    private Map<ByteBuffer, Write> currentTransaction() {
+        Map<ByteBuffer, Write> writes = this.transaction.get();
+        if (writes == null) {
+            throw new IllegalStateException("Not in a transaction");
+        }
+        return writes;
+    }
+
+    private <T> T read(ByteBuffer key) {
+        byte[] committed = this.store.get(key);
+
+        Map<ByteBuffer, Write> writes = this.transaction.get();
+        Write write = writes == null ? null : writes.get(key);
+        if (write == null) {
+            return deserialize(committed);
+        }
+
+        switch (write.kind) {
+        case PUT:
+            return deserialize(write.value);
+        case PUT_IF_ABSENT:
+            return deserialize(committed != null ? committed : write.value);
+        default:
+            return null;
+        }
+    }
+
+    private void write(ByteBuffer key, Write write) {
+        Map<ByteBuffer, Write> writes = this.transaction.get();
+        if (writes == null) {
+            write.applyTo(this.store, key);
+        } else {
+            Write previous = writes.put(key, write);
+            // the key was removed by this transaction, so it is absent regardless of the store
+            if (previous != null && previous.kind == WriteKind.REMOVE && write.kind == WriteKind.PUT_IF_ABSENT) {
+                writes.put(key, new Write(WriteKind.PUT, write.value));
+            }
+        }
+    }
+
+    private void simulateRoundTrip() {
+        if (this.latencyNanos > 0) {
+            long deadline = System.nanoTime() + this.latencyNanos;
+            long remaining = this.latencyNanos;
+            while (remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new PersistenceException(e);
+                }
+                remaining = deadline - System.nanoTime();
+            }
+        }
+        if (this.failureRate > 0 && ThreadLocalRandom.current().nextDouble() < this.failureRate) {
+            throw new PersistenceException("Injected data grid failure");
+        }
+    }
+
+    private static ByteBuffer toBytes(Object key) {
+        return ByteBuffer.wrap(serialize(key));
+    }
+
+    private static byte[] serialize(Object obj) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(obj);
+            out.close();
+        } catch (IOException e) {
+            throw new PersistenceException("Failed to serialize " + obj, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T deserialize(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            return (T) in.readObject();
+        } catch (IOException e) {
+            throw new PersistenceException(e);
+        } catch (ClassNotFoundException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    private static enum WriteKind {
+        PUT, PUT_IF_ABSENT, REMOVE;
+    }
+
+    private static final class Write {
+        private final WriteKind kind;
+        private final byte[] value;
+
+        Write(WriteKind kind, byte[] value) {
+            this.kind = kind;
+            this.value = value;
+        }
+
+        void applyTo(ConcurrentMap<ByteBuffer, byte[]> store, ByteBuffer key) {
+            switch (this.kind) {
+            case PUT:
+                store.put(key, this.value);
+                break;
+            case PUT_IF_ABSENT:
+                store.putIfAbsent(key, this.value);
+                break;
+            default:
+                store.remove(key);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Fenix Framework, a framework to develop Java Enterprise Applications.
+ *
+ * Copyright (C) 2013 Fenix Framework Team and/or its affiliates and other contributors as indicated by the @author tags.
+ *
+ * This file is part of the Fenix Framework.  Read the file COPYRIGHT.TXT for more copyright and licensing information.
+ */
+package pt.ist.fenixframework.backend.jvstm.repository;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The named stores of the {@link InMemoryDataGrid}s in the same JVM. Keys and values are kept in their serialized form, and this
+ * class only refers to JDK classes. Thus, a store can be shared by nodes whose framework classes are loaded by different class
+ * loaders, provided that this class is loaded by a class loader common to all of them.
+ *
+ * A store outlives the nodes that use it, just like the contents of a persistent data grid. Use {@link #drop(String)} to
+ * discard it.
+ */
+public final class InMemoryStore {
+
+    private static final ConcurrentMap<String, ConcurrentMap<ByteBuffer, byte[]>> stores = new ConcurrentHashMap<String, ConcurrentMap<ByteBuffer, byte[]>>();
+
+    private InMemoryStore() {
+    }
+
+    /**
+     * @return The store with the given name, which is created if it does not exist
+     */
+    public static ConcurrentMap<ByteBuffer, byte[]> get(String name) {
+        ConcurrentMap<ByteBuffer, byte[]> store = stores.get(name);
+        if (store == null) {
+            store = new ConcurrentHashMap<ByteBuffer, byte[]>();
+            ConcurrentMap<ByteBuffer, byte[]> existing = stores.putIfAbsent(name, store);
+            if (existing != null) {
+                store = existing;
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Discard the store with the given name. Nodes that are still using it keep their reference to its contents, which are no
+     * longer shared with the nodes that start afterwards.
+     */
+    public static void drop(String name) {
+        stores.remove(name);
+    }
+
+}
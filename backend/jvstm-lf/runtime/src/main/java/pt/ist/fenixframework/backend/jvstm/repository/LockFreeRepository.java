@@ -9,7 +9,13 @@ package pt.ist.fenixframework.backend.jvstm.repository;
 
 import static jvstm.UtilUnsafe.UNSAFE;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
@@ -28,8 +34,10 @@ import org.slf4j.LoggerFactory;
 import pt.ist.fenixframework.backend.jvstm.JVSTMConfig;
 import pt.ist.fenixframework.backend.jvstm.lf.JvstmLockFreeConfig;
 import pt.ist.fenixframework.backend.jvstm.lf.SimpleWriteSet;
+import pt.ist.fenixframework.backend.jvstm.lf.VersionRing;
 import pt.ist.fenixframework.backend.jvstm.pstm.DomainClassInfo;
 import pt.ist.fenixframework.backend.jvstm.pstm.VBox;
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
 import pt.ist.fenixframework.backend.jvstm.pstm.VersionedValue;
 import pt.ist.fenixframework.core.Externalization;
 
@@ -46,10 +54,18 @@ import pt.ist.fenixframework.core.Externalization;
  * * ":LCV:": The absolute last consolidated tx version (always >= than the consolidated version on any vbox)
  * * ":"<commitId>":": The write set of such commit Id (list of vbox ids)
  * * <serverId>":"<classId>: The highest counter for class instances of the given class in the given node (updated upon commits from this node only)
+ * * ":AV:"<serverId>: The oldest version in use by the transactions running in the given node (see VersionRetention)
+ * * ":AVS:": The highest server id that stored the oldest version in use
+ * * <vboxid>":"":VI:": The most recent sorted tx versions in which the vbox was written, from ":VIS:" on (see VersionIndex)
+ * * ":VIS:": The first tx version whose writes are in the version indexes
+ * 
+ *  When a tx version is consolidated, its <txVersion> and ":"<commitId>":" keys are removed, and so are the <vboxid>":"<commitId>
+ *  keys of its write set, whose values move into the <vboxid> key.  Thus, a version up to the LCV that is not the consolidated
+ *  version of its vbox is no longer available.
  * 
  *  Commit Ids are uuids, txVersions are integer numbers. vboxids should not contains the character ':'.
  */
-public class LockFreeRepository implements ExtendedRepository {
+public class LockFreeRepository implements ExtendedRepository, VersionCollectingRepository {
 
     private static final Logger logger = LoggerFactory.getLogger(LockFreeRepository.class);
 
@@ -65,6 +81,18 @@ public class LockFreeRepository implements ExtendedRepository {
      */
     private static final String LAST_CONSOLIDATED_VERSION = ":LCV:";
 
+    // the prefix of the keys that hold the ActiveVersionMark of each node
+    private static final String ACTIVE_VERSION_MARK = ":AV:";
+
+    // the highest server id that published an ActiveVersionMark
+    private static final String HIGHEST_MARKED_SERVER_ID = ":AVS:";
+
+    // the version of the key that holds the VersionIndex of each vbox (commit ids never look like this)
+    private static final String VERSION_INDEX = ":VI:";
+
+    // the first tx version that was indexed: repositories created before the indexes only have them for later versions
+    private static final String VERSION_INDEX_SINCE = ":VIS:";
+
     /**
      * Number of attempts to perform a repository transaction
      */
@@ -81,18 +109,36 @@ public class LockFreeRepository implements ExtendedRepository {
 
     private DataGrid dataGrid;
 
+    private int versionIndexSince;
+
+    private int versionIndexMaxSize;
+
+    // the commit ids of the most recent versions, which may outlive their entries (see getCommitIdForVersion)
+    private VersionRing<String> commitIds;
+
+    // the highest LCV seen by this node: the cached commit ids of the versions above it are used (see getCommitIdForVersion)
+    private volatile int lastConsolidatedVersion;
+
 //    private int maxCommittedTxId = -1;
 
     @Override
     public boolean init(JVSTMConfig jvstmConfig) {
+        JvstmLockFreeConfig jvstmLockFreeConfig = (JvstmLockFreeConfig) jvstmConfig;
         try {
-            initConcreteDataGrid((JvstmLockFreeConfig) jvstmConfig);
+            initConcreteDataGrid(jvstmLockFreeConfig);
         } catch (Exception e) {
             logger.error("Failed to initialize data grid: {}", e);
             throw new RuntimeException(e);
         }
 
-        return bootstrapIfNeeded();
+        boolean isNew = bootstrapIfNeeded();
+        this.versionIndexSince = initVersionIndexSince();
+        this.versionIndexMaxSize = jvstmLockFreeConfig.getVersionIndexMaxSize();
+
+        this.commitIds = new VersionRing<String>(jvstmLockFreeConfig.getCommitIdCacheSize());
+        refreshLastConsolidatedVersion();
+        prefetchCommitIds(Math.min(jvstmLockFreeConfig.getCommitIdPrefetchSize(), this.commitIds.capacity()));
+        return isNew;
     }
 
     @Override
@@ -156,22 +202,20 @@ public class LockFreeRepository implements ExtendedRepository {
     }
 
     @Override
-    public void updateMaxCounterForClass(DomainClassInfo domainClassInfo, int newCounterValue) {
-        // TODO Auto-generated method stub
-        logger.warn("updateMaxCounterForClass() not yet implemented");
-//        throw new UnsupportedOperationException("not yet implemented");
+    public int reserveKeysForClass(final DomainClassInfo domainClassInfo, final int blockSize) {
+        final String key = makeKeyForMaxCounter(domainClassInfo);
 
-//        Transaction current = FenixFramework.getTransaction();
-//
-//        Set<DomainClassInfo> infos = current.getFromContext(KEY_INSTANTIATED_CLASSES);
-//        if (infos == null) {
-//            infos = new HashSet<DomainClassInfo>();
-//            current.putInContext(KEY_INSTANTIATED_CLASSES, infos);
-//        }
-//
-//        if (infos.add(domainClassInfo)) {
-//            logger.debug("Will update counter for instances of {} upon commit.", domainClassInfo.domainClassName);
-//        }
+        return doWithinBackingTransactionIfNeeded(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                Integer max = LockFreeRepository.this.dataGrid.get(key);
+
+                int newCounterValue = ((max == null) ? 0 : max) + blockSize;
+                LockFreeRepository.this.dataGrid.put(key, newCounterValue);
+                logger.debug("Update persistent counter for class {}: {}", domainClassInfo.domainClassName, newCounterValue);
+                return newCounterValue;
+            }
+        });
     }
 
     @Override
@@ -241,6 +285,7 @@ public class LockFreeRepository implements ExtendedRepository {
             public Integer call() {
                 Integer lcv = LockFreeRepository.this.dataGrid.get(LAST_CONSOLIDATED_VERSION);
                 int minValue = (lcv == null) ? 0 : lcv;
+                learnLastConsolidatedVersion(minValue);
 
                 Interval interval = new Interval(minValue, Integer.MAX_VALUE);
 
@@ -384,6 +429,50 @@ public class LockFreeRepository implements ExtendedRepository {
         });
     }
 
+    private int initVersionIndexSince() {
+        return doWithinBackingTransactionIfNeeded(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                Integer since = dataGrid.get(VERSION_INDEX_SINCE);
+                if (since == null) {
+                    dataGrid.putIfAbsent(VERSION_INDEX_SINCE, getMaxCommittedTxNumber() + 1);
+                    since = dataGrid.get(VERSION_INDEX_SINCE);
+                }
+                logger.info("Versions are indexed since transaction number {}", since);
+                return since;
+            }
+        });
+    }
+
+    /* Load the commit ids of the most recent versions, which are the ones
+    looked up by most reloads. */
+    private void prefetchCommitIds(final int count) {
+        if (count <= 0) {
+            return;
+        }
+
+        doWithinBackingTransactionIfNeeded(new Callable<Void>() {
+            @Override
+            public Void call() {
+                Integer lcv = dataGrid.get(LAST_CONSOLIDATED_VERSION);
+                int mostRecent = getMaxCommittedTxNumber();
+                int lowest = Math.max((lcv == null) ? 0 : lcv + 1, mostRecent - count + 1);
+
+                List<Integer> versions = new ArrayList<Integer>();
+                for (int version = mostRecent; version >= lowest; version--) {
+                    versions.add(version);
+                }
+
+                Map<Integer, String> found = dataGrid.getAll(versions);
+                for (Entry<Integer, String> entry : found.entrySet()) {
+                    commitIds.put(entry.getKey(), entry.getValue());
+                }
+                logger.info("Prefetched {} commit id(s) up to transaction number {}", found.size(), mostRecent);
+                return null;
+            }
+        });
+    }
+
     private String makeKeyForMaxCounter(DomainClassInfo domainClassInfo) {
         return String.valueOf(DomainClassInfo.getServerId()) + ":" + domainClassInfo.classId;
     }
@@ -434,17 +523,148 @@ public class LockFreeRepository implements ExtendedRepository {
 
         // find the commitId of this committed version
         String commitId = getCommitIdForVersion(versionToLoad);
+        if (commitId == null) {
+            replaceBodyValue(body, getConsolidatedVersion(box, versionToLoad).getData());
+            return;
+        }
 
         // lookup an entry for this box in the given version
-        String key = makeKeyWithCommitId(makeKeyFor(box), commitId);
+        VBoxVersionKey key = makeKeyWithCommitId(makeKeyFor(box), commitId);
 
         logger.debug("looking up key {} (tx version={})", key, versionToLoad);
 
         DataHolder entry = LockFreeRepository.this.dataGrid.get(key);
+        if (entry == null) {
+            // the commit id was cached, but another node consolidated the version since
+            refreshLastConsolidatedVersion();
+            entry = getConsolidatedVersion(box, versionToLoad);
+        }
 
         replaceBodyValue(body, entry.getData());
     }
 
+    /* Batched version of reloadAttribute and reloadAttributeSingleVersion.
+    Bodies that miss a single value are loaded together.  Boxes that miss a
+    range of versions are loaded as in loadVersionsInRange, except that the
+    versions that are not indexed are handled for all the boxes at once: the
+    commitId of each version is looked up only once and the entries of every
+    box are fetched together.  Thus, the number of round trips depends on the
+    number of versions to load and not on the number of boxes. */
+    @Override
+    public void reloadAttributes(Collection<VBox> boxes, int requiredVersion) {
+        int mostRecentVersion = Transaction.mostRecentCommittedRecord.transactionNumber;
+        Map<Integer, String> commitIdsFound = new HashMap<Integer, String>();
+
+        Map<VBox, VBoxBody> singleBodies = new HashMap<VBox, VBoxBody>();
+        Map<VBox, VBoxVersionKey> singleVersions = new HashMap<VBox, VBoxVersionKey>();
+        Map<VBox, RangeToLoad> ranges = new HashMap<VBox, RangeToLoad>();
+        int versionToLoad = -1;
+
+        for (VBox box : boxes) {
+            if (!box.needsReload(requiredVersion)) {
+                continue;
+            }
+
+            VBoxBody body = box.getBody(requiredVersion);
+            if (body.version != 0) {
+                String commitId = commitIdsFound.get(body.version);
+                if (commitId == null) {
+                    commitId = getCommitIdForVersion(body.version, requiredVersion);
+                    commitIdsFound.put(body.version, commitId);
+                }
+                if (commitId != null) {
+                    singleBodies.put(box, body);
+                    singleVersions.put(box, makeKeyWithCommitId(makeKeyFor(box), commitId));
+                } else {
+                    replaceBodyValue(body, getConsolidatedVersion(box, body.version).getData());
+                }
+            } else {
+                VBoxBody oldestValidBody = box.getOldestValidBody();
+                int highestVersionToLoad = (oldestValidBody == null) ? mostRecentVersion : oldestValidBody.version - 1;
+
+                if (requiredVersion <= highestVersionToLoad) {
+                    RangeToLoad range = new RangeToLoad(oldestValidBody, highestVersionToLoad);
+                    if (loadIndexedVersions(box, range, requiredVersion)) {
+                        replaceTail(box, oldestValidBody, makeBodies(range.entries));
+                    } else {
+                        ranges.put(box, range);
+                        versionToLoad = Math.max(versionToLoad, range.highestVersionToLoad);
+                    }
+                }
+            }
+        }
+
+        logger.debug("Will load {} single version(s) and {} range(s) of versions", singleVersions.size(), ranges.size());
+
+        if (!singleVersions.isEmpty()) {
+            Map<VBoxVersionKey, DataHolder> entries = this.dataGrid.getAll(singleVersions.values());
+            for (Entry<VBox, VBoxVersionKey> entry : singleVersions.entrySet()) {
+                VBoxBody body = singleBodies.get(entry.getKey());
+                DataHolder holder = entries.get(entry.getValue());
+                if (holder == null) {
+                    // the commit id was cached, but another node consolidated the version since
+                    refreshLastConsolidatedVersion();
+                    holder = getConsolidatedVersion(entry.getKey(), body.version);
+                }
+                replaceBodyValue(body, holder.getData());
+            }
+        }
+
+        while (!ranges.isEmpty()) {
+            String commitId = getCommitIdForVersion(versionToLoad, requiredVersion);
+            if (commitId == null) {
+                // this version and all below it are consolidated
+                for (Entry<VBox, RangeToLoad> entry : ranges.entrySet()) {
+                    RangeToLoad range = entry.getValue();
+                    range.entries = consConsolidatedVersion(entry.getKey(), range.entries, requiredVersion);
+                    replaceTail(entry.getKey(), range.oldestValidBody, makeBodies(range.entries));
+                }
+                break;
+            }
+
+            Map<VBox, VBoxVersionKey> keys = new HashMap<VBox, VBoxVersionKey>();
+            for (Entry<VBox, RangeToLoad> entry : ranges.entrySet()) {
+                if (entry.getValue().highestVersionToLoad >= versionToLoad) {
+                    keys.put(entry.getKey(), makeKeyWithCommitId(makeKeyFor(entry.getKey()), commitId));
+                }
+            }
+
+            Map<VBoxVersionKey, DataHolder> entries = this.dataGrid.getAll(keys.values());
+            for (Entry<VBox, VBoxVersionKey> entry : keys.entrySet()) {
+                VBox box = entry.getKey();
+                RangeToLoad range = ranges.get(box);
+                DataHolder holder = entries.get(entry.getValue());
+
+                if (holder != null) {
+                    range.entries = range.entries.cons(new Pair<DataHolder, Integer>(holder, versionToLoad));
+
+                    if (versionToLoad <= requiredVersion) {
+                        ranges.remove(box);
+                        replaceTail(box, range.oldestValidBody, makeBodies(range.entries));
+                    }
+                } else if (versionToLoad == 0) {
+                    throw new PersistenceException("Version of vbox " + box.getId() + " not found for transaction number "
+                            + requiredVersion);
+                }
+            }
+
+            versionToLoad--;
+        }
+    }
+
+    /* The versions already found for a box whose range of versions is being
+    loaded by reloadAttributes. */
+    private static class RangeToLoad {
+        private final VBoxBody oldestValidBody;
+        private int highestVersionToLoad;
+        private Cons<Pair<DataHolder, Integer>> entries = Cons.<Pair<DataHolder, Integer>> empty();
+
+        RangeToLoad(VBoxBody oldestValidBody, int highestVersionToLoad) {
+            this.oldestValidBody = oldestValidBody;
+            this.highestVersionToLoad = highestVersionToLoad;
+        }
+    }
+
     @Override
     public void persistWriteSet(final UUID commitId, final SimpleWriteSet writeSet, final Object nullObject) {
         /* Store CommitId-->List<VBoxId> and VBoxId:CommitId-->Value */
@@ -459,24 +679,28 @@ public class LockFreeRepository implements ExtendedRepository {
 
                 // store the list of vboxids in commitId
 
-                String[] vBoxIds = writeSet.getVboxIds();
+                VBoxId[] vBoxIds = writeSet.getVboxIds();
                 int size = vBoxIds.length;
-                LockFreeRepository.this.dataGrid.put(makeKeyFor(commitId), vBoxIds);
+                Map<Object, Object> entries = new HashMap<Object, Object>(size * 2 + 2);
+                entries.put(makeKeyFor(commitId), vBoxIds);
 
                 // store each value associated with vboxid:commitId
                 Object[] values = writeSet.getValues();
 
                 for (int i = 0; i < size; i++) {
-                    String vboxId = vBoxIds[i];
+                    VBoxId vboxId = vBoxIds[i];
                     Object newValue = (values[i] == nullObject) ? null : values[i];
 
-                    String key = makeKeyWithCommitId(vboxId, commitId.toString());
+                    VBoxVersionKey key = makeKeyWithCommitId(vboxId, commitId.toString());
 
                     DataHolder newVersion = new DataHolder(newValue);
 
-                    LockFreeRepository.this.dataGrid.put(key, newVersion);
+                    entries.put(key, newVersion);
                 }
 
+                // all at once, so that the latency does not grow with the size of the write set
+                LockFreeRepository.this.dataGrid.putAll(entries);
+
                 return null;
             }
         });
@@ -492,11 +716,57 @@ public class LockFreeRepository implements ExtendedRepository {
             @Override
             public Void call() {
                 LockFreeRepository.this.dataGrid.putIfAbsent(txVersion, commitId.toString());
+                indexWriteSet(txVersion, commitId);
+                LockFreeRepository.this.commitIds.put(txVersion, commitId.toString());
                 return null;
             }
         });
     }
 
+    /* Add the given version to the index of each vbox written in it.  Every
+    node that helps to commit the version does this, so it must be idempotent.
+    The nodes may also be indexing other versions of the same vboxes, and the
+    data grid is only READ_COMMITTED, so each index is updated with a
+    compareAndSet, retried until the index has the version.  The oldest versions
+    are dropped from indexes that grow above versionIndexMaxSize. */
+    private void indexWriteSet(int txVersion, UUID commitId) {
+        if (txVersion < this.versionIndexSince) {
+            return;
+        }
+
+        VBoxId[] vboxIds = this.dataGrid.get(makeKeyFor(commitId));
+        if (vboxIds == null) {
+            // already consolidated
+            return;
+        }
+
+        List<VBoxVersionKey> keys = new ArrayList<VBoxVersionKey>(vboxIds.length);
+        for (VBoxId vboxId : vboxIds) {
+            keys.add(makeKeyForVersionIndex(vboxId));
+        }
+        Map<VBoxVersionKey, VersionIndex> indexes = this.dataGrid.getAll(keys);
+
+        for (VBoxVersionKey key : keys) {
+            VersionIndex index = indexes.get(key);
+
+            while (true) {
+                VersionIndex updated;
+                if (index == null) {
+                    updated = new VersionIndex(this.versionIndexSince, txVersion);
+                } else if (index.contains(txVersion) || txVersion < index.completeSince()) {
+                    break;
+                } else {
+                    updated = index.with(txVersion, this.versionIndexMaxSize);
+                }
+
+                if (this.dataGrid.compareAndSet(key, index, updated)) {
+                    break;
+                }
+                index = this.dataGrid.get(key);
+            }
+        }
+    }
+
     @Override
     public String getCommitIdFromVersion(final int txVersion) {
         return doWithinBackingTransactionIfNeeded(new Callable<String>() {
@@ -509,6 +779,126 @@ public class LockFreeRepository implements ExtendedRepository {
         });
     };
 
+    @Override
+    public void storeActiveVersionMark(final int serverId, final ActiveVersionMark mark) {
+        doWithinBackingTransactionIfNeeded(new Callable<Void>() {
+            @Override
+            public Void call() {
+                LockFreeRepository.this.dataGrid.put(ACTIVE_VERSION_MARK + serverId, mark);
+
+                // every node does this periodically, so it is also when the nodes that do not collect learn the LCV
+                Integer lcv = LockFreeRepository.this.dataGrid.get(LAST_CONSOLIDATED_VERSION);
+                learnLastConsolidatedVersion((lcv == null) ? 0 : lcv);
+
+                Integer highest = LockFreeRepository.this.dataGrid.get(HIGHEST_MARKED_SERVER_ID);
+                if (highest == null || highest < serverId) {
+                    LockFreeRepository.this.dataGrid.put(HIGHEST_MARKED_SERVER_ID, serverId);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public List<ActiveVersionMark> getActiveVersionMarks() {
+        return doWithinBackingTransactionIfNeeded(new Callable<List<ActiveVersionMark>>() {
+            @Override
+            public List<ActiveVersionMark> call() {
+                List<ActiveVersionMark> marks = new ArrayList<ActiveVersionMark>();
+
+                Integer highest = LockFreeRepository.this.dataGrid.get(HIGHEST_MARKED_SERVER_ID);
+                for (int serverId = 0; highest != null && serverId <= highest; serverId++) {
+                    ActiveVersionMark mark = LockFreeRepository.this.dataGrid.get(ACTIVE_VERSION_MARK + serverId);
+                    if (mark != null) {
+                        marks.add(mark);
+                    }
+                }
+                return marks;
+            }
+        });
+    }
+
+    /* Consolidate the tx versions after the LCV, up to the watermark: the value
+    written by each version moves into the key of its vbox, replacing the one
+    consolidated before, and the keys of the version are removed.
+
+    Only one node collects at a time (see VersionRetention), but during a
+    handover a node that was considered gone may still be running a batch from
+    an older LCV.  So a consolidated holder is never replaced by an older one,
+    and the LCV never moves backwards. */
+    @Override
+    public int collectVersions(final int watermark, final int maxKeys, VersionRetention retention) {
+        long[] collected = doWithinBackingTransactionIfNeeded(new Callable<long[]>() {
+            @Override
+            public long[] call() {
+                Integer lcv = LockFreeRepository.this.dataGrid.get(LAST_CONSOLIDATED_VERSION);
+                int version = (lcv == null) ? 0 : lcv;
+
+                long versions = 0;
+                long keys = 0;
+                long bytes = 0;
+                while (version < watermark && versions < maxKeys && keys < maxKeys) {
+                    String commitId = loadCommitIdForVersion(version + 1);
+                    if (commitId == null) {
+                        // consolidated meanwhile by another node
+                        break;
+                    }
+                    version++;
+                    versions++;
+
+                    VBoxId[] vboxIds = LockFreeRepository.this.dataGrid.remove(makeKeyFor(UUID.fromString(commitId)));
+                    if (vboxIds != null) {
+                        keys++;
+                        for (VBoxId vboxId : vboxIds) {
+                            DataHolder entry = LockFreeRepository.this.dataGrid.remove(makeKeyWithCommitId(vboxId, commitId));
+                            if (entry == null) {
+                                continue;
+                            }
+                            keys++;
+
+                            ConsolidatedHolder previous = LockFreeRepository.this.dataGrid.get(vboxId);
+                            if (previous != null && previous.version >= version) {
+                                // already consolidated by another node up to a later version
+                                bytes += entry.size();
+                                continue;
+                            }
+                            if (previous != null) {
+                                bytes += previous.holder.size();
+                            }
+                            LockFreeRepository.this.dataGrid.put(vboxId, new ConsolidatedHolder(version, entry));
+
+                            // older versions are never looked up again: finding this one leads to the consolidated one.
+                            // Should the index change meanwhile, it is trimmed when one of its later versions is consolidated
+                            VBoxVersionKey indexKey = makeKeyForVersionIndex(vboxId);
+                            VersionIndex index = LockFreeRepository.this.dataGrid.get(indexKey);
+                            if (index != null && index.first() < version) {
+                                LockFreeRepository.this.dataGrid.compareAndSet(indexKey, index, index.since(version));
+                            }
+                        }
+                    }
+
+                    LockFreeRepository.this.dataGrid.remove(version);
+                    keys++;
+                }
+
+                if (versions > 0) {
+                    Integer currentLcv = LockFreeRepository.this.dataGrid.get(LAST_CONSOLIDATED_VERSION);
+                    if (currentLcv == null || currentLcv < version) {
+                        LockFreeRepository.this.dataGrid.put(LAST_CONSOLIDATED_VERSION, version);
+                    }
+                    learnLastConsolidatedVersion(version);
+                }
+                return new long[] { versions, keys, bytes };
+            }
+        });
+
+        if (collected[0] > 0) {
+            logger.debug("Consolidated {} version(s) up to transaction number {}", collected[0], watermark);
+        }
+        retention.recordReclaimed(collected[1], collected[2]);
+        return (int) collected[0];
+    }
+
     List<VersionedValue> getMostRecentVersions(final VBox vbox, final int desiredVersion) {
         // TODO Auto-generated method stub
         throw new UnsupportedOperationException("not yet implemented");
@@ -598,20 +988,32 @@ public class LockFreeRepository implements ExtendedRepository {
     /* Load existing versions between versionToLoad and txNumber.  The box may
     not have been written in the given versions.  Thus, if it is necessary to
     satisfy the requirements, the returned list of bodies must include a version
-    lower than txNumber. */
+    lower than txNumber.  The versions are found in the version index of the
+    box, and only those below the indexed ones are searched one by one. */
     @SuppressWarnings("unchecked")
     private VBoxBody loadVersionsInRange(VBox box, int versionToLoad, int txNumber) {
 
-        Cons<Pair<DataHolder, Integer>> entries = Cons.<Pair<DataHolder, Integer>> empty();
+        RangeToLoad range = new RangeToLoad(null, versionToLoad);
+        if (loadIndexedVersions(box, range, txNumber)) {
+            return makeBodies(range.entries);
+        }
+        Cons<Pair<DataHolder, Integer>> entries = range.entries;
+        versionToLoad = range.highestVersionToLoad;
 
         while (true) {
             // find the commitId of this committed version
-            String commitId = getCommitIdForVersion(versionToLoad);
+            String commitId = getCommitIdForVersion(versionToLoad, txNumber);
 
 //        logger.debug("version {} as commitId {}", versionToLoad, commitId);
 
+            if (commitId == null) {
+                logger.debug("Version {} is consolidated", versionToLoad);
+                entries = consConsolidatedVersion(box, entries, txNumber);
+                break;
+            }
+
             // lookup an entry for this box in the given version
-            String key = makeKeyWithCommitId(makeKeyFor(box), commitId);
+            VBoxVersionKey key = makeKeyWithCommitId(makeKeyFor(box), commitId);
 
             logger.debug("looking up key {} (tx version={})", key, versionToLoad);
 
@@ -638,6 +1040,70 @@ public class LockFreeRepository implements ExtendedRepository {
 
         logger.debug("Found {} version(s) to load", entries.size());
 
+        return makeBodies(entries);
+    }
+
+    /* Load the versions of the box from the range's highestVersionToLoad down
+    to the newest one not above txNumber, as listed in its version index, and
+    return whether they were all found.  Otherwise, the box was written in
+    versions that were not indexed, or that were dropped from the index, and the
+    range's highestVersionToLoad is lowered to the highest of those. */
+    private boolean loadIndexedVersions(VBox box, RangeToLoad range, int txNumber) {
+        VersionIndex index = this.dataGrid.get(makeKeyForVersionIndex(makeKeyFor(box)));
+
+        int last = (index == null) ? -1 : index.indexOfLatest(range.highestVersionToLoad);
+
+        if (last >= 0) {
+            // the newest version not above txNumber, or the oldest indexed
+            int first = Math.max(index.indexOfLatest(txNumber), 0);
+
+            // from the highest version down, stopping at the first that is consolidated
+            Map<VBoxVersionKey, Integer> keys = new LinkedHashMap<VBoxVersionKey, Integer>();
+            boolean consolidated = false;
+            for (int i = last; i >= first; i--) {
+                int version = index.get(i);
+
+                String commitId = getCommitIdForVersion(version, txNumber);
+                if (commitId == null) {
+                    logger.debug("Indexed version {} is consolidated", version);
+                    consolidated = true;
+                    break;
+                }
+                keys.put(makeKeyWithCommitId(makeKeyFor(box), commitId), version);
+            }
+
+            Map<VBoxVersionKey, DataHolder> entries = this.dataGrid.getAll(keys.keySet());
+            for (Entry<VBoxVersionKey, Integer> key : keys.entrySet()) {
+                DataHolder entry = entries.get(key.getKey());
+                if (entry == null) {
+                    if (key.getValue() > refreshLastConsolidatedVersion()) {
+                        throw new PersistenceException("Indexed version " + key.getValue() + " of vbox " + box.getId()
+                                + " not found");
+                    }
+                    // the commit id was cached, but another node consolidated this version, and the ones below, since
+                    logger.debug("Indexed version {} is consolidated", key.getValue());
+                    consolidated = true;
+                    break;
+                }
+                range.entries = range.entries.cons(new Pair<DataHolder, Integer>(entry, key.getValue()));
+            }
+
+            if (consolidated) {
+                range.entries = consConsolidatedVersion(box, range.entries, txNumber);
+                return true;
+            }
+            if (index.get(first) <= txNumber) {
+                return true;
+            }
+        }
+
+        int completeSince = (index == null) ? this.versionIndexSince : index.completeSince();
+        range.highestVersionToLoad = Math.min(range.highestVersionToLoad, completeSince - 1);
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private VBoxBody makeBodies(Cons<Pair<DataHolder, Integer>> entries) {
         logger.debug("Adding NOT_LOADED_BODY");
         VBoxBody bodies = VBox.notLoadedBody();
 
@@ -650,11 +1116,80 @@ public class LockFreeRepository implements ExtendedRepository {
         return bodies;
     }
 
-    private String getCommitIdForVersion(int versionToLoad) {
+    private String loadCommitIdForVersion(int versionToLoad) {
         String commitId = LockFreeRepository.this.dataGrid.get(versionToLoad);
         return commitId;
     }
 
+    private String getCommitIdForVersion(int versionToLoad) {
+        return getCommitIdForVersion(versionToLoad, this.lastConsolidatedVersion);
+    }
+
+    /* Same as loadCommitIdForVersion, but looks up the local cache first when
+    the version is above txNumber or above the LCV last seen by this node.
+    txNumber is the version of a running transaction, and the versions above
+    it are never consolidated while it runs (see VersionRetention), so their
+    cached commit id is still valid.  The other versions may be consolidated at
+    any time, in which case their mapping and their entries are removed from
+    the repository.  Those above the LCV last seen are still looked up in the
+    cache, as most are not consolidated yet: callers that then miss an entry of
+    the version refresh the LCV to learn whether it was consolidated. */
+    private String getCommitIdForVersion(int versionToLoad, int txNumber) {
+        if (versionToLoad > txNumber || versionToLoad > this.lastConsolidatedVersion) {
+            String commitId = this.commitIds.get(versionToLoad);
+            if (commitId != null) {
+                return commitId;
+            }
+        }
+
+        String commitId = loadCommitIdForVersion(versionToLoad);
+        if (commitId != null) {
+            this.commitIds.put(versionToLoad, commitId);
+        }
+        return commitId;
+    }
+
+    private int refreshLastConsolidatedVersion() {
+        Integer lcv = this.dataGrid.get(LAST_CONSOLIDATED_VERSION);
+        learnLastConsolidatedVersion((lcv == null) ? 0 : lcv);
+        return this.lastConsolidatedVersion;
+    }
+
+    private void learnLastConsolidatedVersion(int lcv) {
+        // a race may lower it, which only causes more lookups in the data grid
+        if (lcv > this.lastConsolidatedVersion) {
+            this.lastConsolidatedVersion = lcv;
+        }
+    }
+
+    /* Add the consolidated version of the box to the entries already found,
+    which are all above it.  The consolidated version must not be above txNumber,
+    otherwise the version required was already discarded. */
+    private Cons<Pair<DataHolder, Integer>> consConsolidatedVersion(VBox box, Cons<Pair<DataHolder, Integer>> entries,
+            int txNumber) {
+        ConsolidatedHolder consolidated = LockFreeRepository.this.dataGrid.get(makeKeyFor(box));
+
+        if (consolidated == null || consolidated.version > txNumber) {
+            throw new PersistenceException("Version of vbox " + box.getId() + " for transaction number " + txNumber
+                    + " was already discarded");
+        }
+
+        // a concurrent consolidation may have moved into it a version that was already found
+        if (entries.isEmpty() || consolidated.version < entries.first().second) {
+            entries = entries.cons(new Pair<DataHolder, Integer>(consolidated.holder, consolidated.version));
+        }
+        return entries;
+    }
+
+    private DataHolder getConsolidatedVersion(VBox box, int version) {
+        ConsolidatedHolder consolidated = LockFreeRepository.this.dataGrid.get(makeKeyFor(box));
+
+        if (consolidated == null || consolidated.version != version) {
+            throw new PersistenceException("Version " + version + " of vbox " + box.getId() + " was already discarded");
+        }
+        return consolidated.holder;
+    }
+
     /* merge the given tail into the given body.  This method changes the final
     field that points to a VBody (either in the VBox.body or in VBoxBody.next.
     However, it only does so when the reference is to the NOT_LOADED_BODY.  In
@@ -750,12 +1285,16 @@ public class LockFreeRepository implements ExtendedRepository {
         return ":" + uuid.toString() + ":";
     }
 
-    private static String makeKeyFor(VBox vbox) {
+    private static VBoxId makeKeyFor(VBox vbox) {
         return vbox.getId();
     }
 
-    private static String makeKeyWithCommitId(String key, String commitId) {
-        return key + ":" + commitId;
+    private static VBoxVersionKey makeKeyWithCommitId(VBoxId key, String commitId) {
+        return new VBoxVersionKey(key, commitId);
+    }
+
+    private static VBoxVersionKey makeKeyForVersionIndex(VBoxId key) {
+        return new VBoxVersionKey(key, VERSION_INDEX);
     }
 
 //    private static String makeVersionedKey(String key, int version) {
@@ -777,6 +1316,100 @@ public class LockFreeRepository implements ExtendedRepository {
         Object getData() {
             return Externalization.internalizeObject(this.data2);
         }
+
+        int size() {
+            return this.data2.length;
+        }
+    }
+
+    // the value kept in the key of a vbox: its most recent version up to the LCV
+    private static class ConsolidatedHolder implements java.io.Serializable {
+        private static final long serialVersionUID = 1L;
+        private final int version;
+        private final DataHolder holder;
+
+        ConsolidatedHolder(int version, DataHolder holder) {
+            this.version = version;
+            this.holder = holder;
+        }
+    }
+
+    /* The tx versions in which a vbox was written, in ascending order.  Every
+    version from completeSince on in which the vbox was written is in the index,
+    but the older ones may have been dropped.  Indexes are compared by value, for
+    the compareAndSet of the data grid. */
+    private static class VersionIndex implements java.io.Serializable {
+        private static final long serialVersionUID = 1L;
+        private final int completeSince;
+        private final int[] versions;
+
+        VersionIndex(int completeSince, int version) {
+            this(completeSince, new int[] { version });
+        }
+
+        private VersionIndex(int completeSince, int[] versions) {
+            this.completeSince = completeSince;
+            this.versions = versions;
+        }
+
+        int completeSince() {
+            return this.completeSince;
+        }
+
+        int get(int i) {
+            return this.versions[i];
+        }
+
+        int first() {
+            return this.versions[0];
+        }
+
+        boolean contains(int version) {
+            return Arrays.binarySearch(this.versions, version) >= 0;
+        }
+
+        // the position of the highest version not above the given one, or -1 if there is none
+        int indexOfLatest(int version) {
+            int pos = Arrays.binarySearch(this.versions, version);
+            return (pos >= 0) ? pos : -pos - 2;
+        }
+
+        // add the given version, dropping the oldest ones beyond maxSize
+        VersionIndex with(int version, int maxSize) {
+            int pos = -Arrays.binarySearch(this.versions, version) - 1;
+            int[] newVersions = new int[this.versions.length + 1];
+            System.arraycopy(this.versions, 0, newVersions, 0, pos);
+            newVersions[pos] = version;
+            System.arraycopy(this.versions, pos, newVersions, pos + 1, this.versions.length - pos);
+            return new VersionIndex(this.completeSince, newVersions).dropBelow(newVersions.length - maxSize);
+        }
+
+        // keep the highest version not above the given one, and the ones above it
+        VersionIndex since(int version) {
+            return dropBelow(indexOfLatest(version));
+        }
+
+        private VersionIndex dropBelow(int pos) {
+            if (pos <= 0) {
+                return this;
+            }
+            int newCompleteSince = Math.max(this.completeSince, this.versions[pos - 1] + 1);
+            return new VersionIndex(newCompleteSince, Arrays.copyOfRange(this.versions, pos, this.versions.length));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof VersionIndex)) {
+                return false;
+            }
+            VersionIndex other = (VersionIndex) obj;
+            return this.completeSince == other.completeSince && Arrays.equals(this.versions, other.versions);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.completeSince + Arrays.hashCode(this.versions);
+        }
     }
 
 }
@@ -35,6 +35,12 @@ public class JVSTMMemCodeGenerator extends JVSTMCodeGenerator {
         return "VBox";
     }
 
+    @Override
+    protected boolean isWholeObject(DomainClass domClass) {
+        // there is no repository, so there is nothing to store together
+        return false;
+    }
+
     @Override
     protected void generateFilePreamble(String subPackageName, PrintWriter out) {
         // skipping call to super to avoid conflicting with VBox import.
@@ -1,7 +1,10 @@
 package pt.ist.fenixframework.backend.jvstmmem;
 
+import java.util.Collection;
+
 import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
+import pt.ist.fenixframework.Snapshot;
 import pt.ist.fenixframework.TransactionManager;
 import pt.ist.fenixframework.backend.BackEnd;
 import pt.ist.fenixframework.core.SharedIdentityMap;
@@ -66,4 +69,15 @@ public class JVSTMMemBackEnd implements BackEnd {
         // In memory, if it is reachable, it is valid
         return true;
     }
+
+    @Override
+    public void prefetch(Collection<? extends DomainObject> objects, String... slotNames) {
+        // In memory, everything is already loaded
+    }
+
+    @Override
+    public Snapshot openSnapshot(long maxAgeMillis) {
+        throw new UnsupportedOperationException("Snapshots are not supported by the " + BACKEND_NAME + " backend");
+    }
+
 }
@@ -11,6 +11,12 @@ import pt.ist.fenixframework.txintrospector.TxStats;
 
 public class JVSTMMemTransaction extends AbstractTransaction {
 
+    private final jvstm.Transaction underlying = jvstm.Transaction.current();
+
+    jvstm.Transaction getUnderlyingTransaction() {
+        return underlying;
+    }
+
     @Override
     protected void backendCommit() throws RollbackException, HeuristicMixedException, HeuristicRollbackException,
             SecurityException, IllegalStateException, SystemException {
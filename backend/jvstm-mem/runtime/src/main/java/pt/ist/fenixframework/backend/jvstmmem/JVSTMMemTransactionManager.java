@@ -1,6 +1,7 @@
 package pt.ist.fenixframework.backend.jvstmmem;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import javax.transaction.InvalidTransactionException;
 import javax.transaction.Status;
@@ -12,7 +13,9 @@ import pt.ist.fenixframework.Atomic.TxMode;
 import pt.ist.fenixframework.CallableWithoutException;
 import pt.ist.fenixframework.CommitListener;
 import pt.ist.fenixframework.Transaction;
+import pt.ist.fenixframework.TransactionFuture;
 import pt.ist.fenixframework.TransactionManager;
+import pt.ist.fenixframework.core.AsyncTransactionRunner;
 
 public class JVSTMMemTransactionManager implements TransactionManager {
 
@@ -46,8 +49,18 @@ public class JVSTMMemTransactionManager implements TransactionManager {
     }
 
     @Override
-    public void resume(javax.transaction.Transaction tx) throws InvalidTransactionException, IllegalStateException,
+    public void resume(javax.transaction.Transaction tobj) throws InvalidTransactionException, IllegalStateException,
             SystemException {
+        if (!(tobj instanceof JVSTMMemTransaction)) {
+            throw new InvalidTransactionException("Expected JVSTMMemTransaction, got " + tobj);
+        }
+        if (jvstm.Transaction.current() != null) {
+            throw new IllegalStateException("Already associated with a transaction!");
+        }
+
+        JVSTMMemTransaction tx = (JVSTMMemTransaction) tobj;
+        jvstm.Transaction.resume(tx.getUnderlyingTransaction());
+        currentJPATx.set(tx);
     }
 
     @Override
@@ -60,7 +73,15 @@ public class JVSTMMemTransactionManager implements TransactionManager {
 
     @Override
     public Transaction suspend() throws SystemException {
-        return null;
+        // the current JVSTMMemTransaction is not cleared on commit, so check the underlying transaction
+        JVSTMMemTransaction current = currentJPATx.get();
+        if (current == null || jvstm.Transaction.current() == null) {
+            return null;
+        }
+
+        jvstm.Transaction.suspend();
+        currentJPATx.set(null);
+        return current;
     }
 
     @Override
@@ -120,6 +141,11 @@ public class JVSTMMemTransactionManager implements TransactionManager {
         return res;
     }
 
+    @Override
+    public <T> TransactionFuture<T> withTransactionAsync(Callable<T> command, Atomic atomic, Executor executor) {
+        return AsyncTransactionRunner.submit(this, command, atomic, executor);
+    }
+
     @Override
     public void addCommitListener(CommitListener listener) {
     }
@@ -1,10 +1,13 @@
 package pt.ist.fenixframework.backend.jvstmojb;
 
+import java.util.Collection;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
+import pt.ist.fenixframework.Snapshot;
 import pt.ist.fenixframework.TransactionManager;
 import pt.ist.fenixframework.backend.BackEnd;
 import pt.ist.fenixframework.backend.jvstmojb.pstm.DomainClassInfo;
@@ -105,4 +108,14 @@ public class JvstmOJBBackEnd implements BackEnd {
         }
     }
 
+    @Override
+    public void prefetch(Collection<? extends DomainObject> objects, String... slotNames) {
+        // objects are loaded whole, with a single query, the first time any of their slots is read
+    }
+
+    @Override
+    public Snapshot openSnapshot(long maxAgeMillis) {
+        throw new UnsupportedOperationException("Snapshots are not supported by the " + BACKEND_NAME + " backend");
+    }
+
 }
@@ -151,6 +151,7 @@ public class JvstmOJBConfig extends ConsistencyPredicatesConfig {
 
     @Override
     protected void init() {
+        ((JvstmOJBTransactionManager) backEnd.getTransactionManager()).getModePredictor().init(this);
         MetadataManager.init(this);
 
         DbUtil.runWithinDBLock(new DBLockedCommand() {
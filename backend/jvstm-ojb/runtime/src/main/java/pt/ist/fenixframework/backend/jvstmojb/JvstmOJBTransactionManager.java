@@ -1,8 +1,6 @@
 package pt.ist.fenixframework.backend.jvstmojb;
 
-import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.transaction.HeuristicMixedException;
 import javax.transaction.HeuristicRollbackException;
@@ -25,9 +23,12 @@ import pt.ist.fenixframework.backend.jvstmojb.pstm.AbstractDomainObject.UnableTo
 import pt.ist.fenixframework.backend.jvstmojb.pstm.TopLevelTransaction;
 import pt.ist.fenixframework.backend.jvstmojb.pstm.TransactionSupport;
 import pt.ist.fenixframework.core.AbstractTransactionManager;
+import pt.ist.fenixframework.core.ConflictProfiler;
+import pt.ist.fenixframework.core.TxModePredictor;
 import pt.ist.fenixframework.core.WriteOnReadError;
 import pt.ist.fenixframework.core.exception.FenixRollbackException;
 import pt.ist.fenixframework.core.exception.RecoverableRollbackException;
+import pt.ist.fenixframework.core.metrics.TransactionMetrics;
 
 public class JvstmOJBTransactionManager extends AbstractTransactionManager {
 
@@ -109,7 +110,8 @@ public class JvstmOJBTransactionManager extends AbstractTransactionManager {
         }
 
         Transaction.suspend();
-        transactions.remove();
+        // keep the thread-local entry, as the thread (or the transaction) is likely to be resumed soon
+        transactions.set(null);
 
         return current;
     }
@@ -164,7 +166,12 @@ public class JvstmOJBTransactionManager extends AbstractTransactionManager {
 
     // Service Handling - Write Transactions
 
-    private static final Map<String, String> knownWriteServices = new ConcurrentHashMap<String, String>();
+    // learns which speculative read-only commands end up writing
+    private final TxModePredictor modePredictor = new TxModePredictor();
+
+    public TxModePredictor getModePredictor() {
+        return modePredictor;
+    }
 
     private <T> T handleWriteCommand(Callable<T> command, boolean speculativeReadOnly) throws Exception {
 
@@ -191,11 +198,12 @@ public class JvstmOJBTransactionManager extends AbstractTransactionManager {
             promotedTransaction = true;
         }
 
-        boolean readOnly = speculativeReadOnly ? !knownWriteServices.containsKey(commandName) : false;
+        boolean readOnly = speculativeReadOnly ? modePredictor.startReadOnly(commandName) : false;
 
         boolean keepGoing = true;
         int tries = 0;
 
+        String previousCommand = ConflictProfiler.enterCommand(commandName);
         try {
             while (keepGoing) {
                 tries++;
@@ -216,7 +224,11 @@ public class JvstmOJBTransactionManager extends AbstractTransactionManager {
                         } else {
                             commit();
                         }
+                        if (readOnly) {
+                            modePredictor.readOnlyCommitted(commandName);
+                        }
                         keepGoing = false;
+                        TransactionMetrics.METRICS.recordRetries(tries - 1);
                         return result;
                     } finally {
                         if (keepGoing && getTransaction() != null) {
@@ -240,7 +252,7 @@ public class JvstmOJBTransactionManager extends AbstractTransactionManager {
                     logTransactionRestart(commandName, e, tries);
                 } catch (WriteOnReadError e) {
                     logger.trace("Restarting transaction due to WriteOnReadError");
-                    knownWriteServices.put(commandName, commandName);
+                    modePredictor.writeOnRead(commandName);
                     readOnly = false;
                     if (tries > 3) {
                         logTransactionRestart(commandName, e, tries);
@@ -248,6 +260,7 @@ public class JvstmOJBTransactionManager extends AbstractTransactionManager {
                 }
             }
         } finally {
+            ConflictProfiler.exitCommand(previousCommand);
             if (promotedTransaction && getTransaction() == null) {
                 // We were inside a transaction when we entered, but now we are not!
                 begin(true);
@@ -264,9 +277,7 @@ public class JvstmOJBTransactionManager extends AbstractTransactionManager {
             listener.beforeCommit(transaction);
         }
         Transaction.checkpoint();
-        for (CommitListener listener : listeners) {
-            listener.afterCommit(transaction);
-        }
+        notifyAfterCommit(transaction);
         TransactionSupport.currentFenixTransaction().setReadOnly();
         logger.trace("Transaction is now read-only");
     }
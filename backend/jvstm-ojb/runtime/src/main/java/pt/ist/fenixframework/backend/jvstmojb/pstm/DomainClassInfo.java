@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ojb.broker.PersistenceBroker;
 import org.apache.ojb.broker.PersistenceBrokerFactory;
@@ -185,19 +186,21 @@ public class DomainClassInfo {
     }
 
     public static long getNextOidFor(Class<?> objClass) throws SQLException {
-        int nextKey;
         DomainClassInfo info = classInfoMap.get(objClass);
 
-        synchronized (info) {
-            int lastKey = info.getLastKey();
-            if (lastKey == UNKNOWN_KEY) { // not yet initialized from the DB
-                lastKey = initLastKeyFor(info);
+        // only the initialization from the DB is synchronized
+        AtomicInteger lastKey = info.lastKey;
+        if (lastKey == null) {
+            synchronized (info) {
+                if (info.lastKey == null) { // not yet initialized from the DB
+                    info.lastKey = new AtomicInteger(initLastKeyFor(info));
+                }
+                lastKey = info.lastKey;
             }
-
-            nextKey = lastKey + 1;
-            info.setLastKey(nextKey);
         }
 
+        int nextKey = lastKey.incrementAndGet();
+
         return ServerId.getServerOidBase() + ((long) info.classId << 32) + nextKey;
     }
 
@@ -229,14 +232,12 @@ public class DomainClassInfo {
         }
     }
 
-    private static final int UNKNOWN_KEY = -1;
-
     // the non-static part starts here
 
     private final Class<?> domainClass;
     private final int classId;
-    /** The maximum object key used for objects of this class in this server */
-    private int lastKey = UNKNOWN_KEY;
+    /** The maximum object key used for objects of this class in this server, or null if not yet initialized from the DB */
+    private volatile AtomicInteger lastKey;
 
     private DomainClassInfo(Class<?> domainClass, int classId) {
         this.domainClass = domainClass;
@@ -247,14 +248,6 @@ public class DomainClassInfo {
         this(findClass(domainClassName), classId);
     }
 
-    private int getLastKey() {
-        return this.lastKey;
-    }
-
-    private void setLastKey(int lastKey) {
-        this.lastKey = lastKey;
-    }
-
     public static void ensureDomainRoot() {
         PersistenceBroker broker = PersistenceBrokerFactory.defaultPersistenceBroker();
         try {
@@ -3,11 +3,13 @@ package pt.ist.fenixframework.backend.jvstmojb.pstm;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
@@ -41,7 +43,9 @@ import pt.ist.fenixframework.consistencyPredicates.ConsistencyPredicate;
 import pt.ist.fenixframework.consistencyPredicates.ConsistencyPredicateSystem;
 import pt.ist.fenixframework.consistencyPredicates.DomainConsistencyPredicate;
 import pt.ist.fenixframework.consistencyPredicates.DomainDependenceRecord;
+import pt.ist.fenixframework.core.ConflictProfiler;
 import pt.ist.fenixframework.core.WriteOnReadError;
+import pt.ist.fenixframework.core.metrics.TransactionMetrics;
 import pt.ist.fenixframework.txintrospector.TxIntrospector;
 
 public class TopLevelTransaction extends ConsistentTopLevelTransaction implements FenixTransaction, TxIntrospector {
@@ -77,6 +81,7 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
     // for statistics
     protected int numBoxReads = 0;
     protected int numBoxWrites = 0;
+    private final long startNanos = System.nanoTime();
 
     TopLevelTransaction(ActiveTransactionsRecord record) {
         super(record);
@@ -223,13 +228,16 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
         numBoxWrites = 0;
 
         super.doCommit();
+        TransactionMetrics.METRICS.recordCommitLatency(System.nanoTime() - startNanos);
     }
 
     @Override
     protected boolean validateCommit() {
         ActiveTransactionsRecord mostRecentRecord = Transaction.mostRecentRecord;
 
+        long start = System.nanoTime();
         boolean result = super.validateCommit();
+        TransactionMetrics.METRICS.recordValidation(System.nanoTime() - start);
 
         if (result) {
             // upgradeTx();
@@ -241,11 +249,32 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
             this.activeTxRecord = mostRecentRecord;
         } else {
             TransactionSupport.STATISTICS.incConflicts();
+            ConflictProfiler profiler = ConflictProfiler.getActive();
+            if (profiler != null) {
+                profiler.recordFailedValidation(getStaleBoxes());
+            }
         }
 
         return result;
     }
 
+    // the boxes read by this transaction that were written meanwhile by transactions that already committed
+    private List<String> getStaleBoxes() {
+        List<String> staleBoxes = new ArrayList<String>();
+        int number = getNumber();
+        for (jvstm.VBox vbox : bodiesRead.keySet()) {
+            if (vbox.body.version > number) {
+                if (vbox instanceof VBox) {
+                    VBox box = (VBox) vbox;
+                    staleBoxes.add(ConflictProfiler.hotspotName(box.getOwnerObject(), box.getSlotName()));
+                } else {
+                    staleBoxes.add(vbox.getClass().getName());
+                }
+            }
+        }
+        return staleBoxes;
+    }
+
     @Override
     public <T> void setBoxValue(jvstm.VBox<T> vbox, T value) {
         if (dbChanges == null) {
@@ -343,6 +372,7 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
         // in memory everything is ok, but we need to check against the db
         PersistenceBroker pb = getOJBBroker();
 
+        long start = System.nanoTime();
         int currentPriority = Thread.currentThread().getPriority();
         try {
             Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
@@ -395,6 +425,7 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
             }
         } finally {
             Thread.currentThread().setPriority(currentPriority);
+            TransactionMetrics.METRICS.recordCommitCriticalSection(System.nanoTime() - start);
         }
     }
 
@@ -406,8 +437,10 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
     }
 
     protected void persistTransaction(int newTxNumber) {
+        long start = System.nanoTime();
         try {
             dbChanges.makePersistent(getOJBBroker(), newTxNumber);
+            TransactionMetrics.METRICS.recordPersist(System.nanoTime() - start);
         } catch (SQLException sqle) {
             throw new Error("Error while accessing database", sqle);
         } catch (LookupException le) {
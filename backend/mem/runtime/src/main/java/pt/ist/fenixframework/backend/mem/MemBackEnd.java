@@ -1,10 +1,13 @@
 package pt.ist.fenixframework.backend.mem;
 
+import java.util.Collection;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
+import pt.ist.fenixframework.Snapshot;
 import pt.ist.fenixframework.TransactionManager;
 import pt.ist.fenixframework.backend.BackEnd;
 import pt.ist.fenixframework.core.SharedIdentityMap;
@@ -73,4 +76,15 @@ public class MemBackEnd implements BackEnd {
         // In memory, if it is reachable, it is valid
         return true;
     }
+
+    @Override
+    public void prefetch(Collection<? extends DomainObject> objects, String... slotNames) {
+        // In memory, everything is already loaded
+    }
+
+    @Override
+    public Snapshot openSnapshot(long maxAgeMillis) {
+        throw new UnsupportedOperationException("Snapshots are not supported by the " + BACKEND_NAME + " backend");
+    }
+
 }
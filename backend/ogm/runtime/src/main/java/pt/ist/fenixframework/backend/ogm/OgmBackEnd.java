@@ -1,10 +1,13 @@
 package pt.ist.fenixframework.backend.ogm;
 
+import java.util.Collection;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
+import pt.ist.fenixframework.Snapshot;
 import pt.ist.fenixframework.backend.BackEnd;
 import pt.ist.fenixframework.core.AbstractDomainObject;
 
@@ -84,7 +87,18 @@ public class OgmBackEnd implements BackEnd {
         return transactionManager.getEntityManager().contains(object);
     }
 
+    @Override
+    public void prefetch(Collection<? extends DomainObject> objects, String... slotNames) {
+        // loading is left to the JPA provider
+    }
+
     // protected IdentityMap getIdentityMap() {
     //     return SharedIdentityMap.getCache();
     // }
+
+    @Override
+    public Snapshot openSnapshot(long maxAgeMillis) {
+        throw new UnsupportedOperationException("Snapshots are not supported by the " + BACKEND_NAME + " backend");
+    }
+
 }
@@ -3,6 +3,7 @@ package pt.ist.fenixframework.backend.ogm;
 import java.util.HashMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -24,10 +25,15 @@ import org.infinispan.CacheException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pt.ist.fenixframework.AsyncCommitListener;
 import pt.ist.fenixframework.Atomic;
 import pt.ist.fenixframework.CallableWithoutException;
 import pt.ist.fenixframework.CommitListener;
+import pt.ist.fenixframework.TransactionFuture;
 import pt.ist.fenixframework.TransactionManager;
+import pt.ist.fenixframework.core.AsyncCommitDispatcher;
+import pt.ist.fenixframework.core.AsyncTransactionRunner;
+import pt.ist.fenixframework.util.JTADelegatingTransaction;
 import pt.ist.fenixframework.util.Misc;
 import pt.ist.fenixframework.util.TxMap;
 
@@ -106,7 +112,11 @@ public class OgmTransactionManager implements TransactionManager {
             currentEntityManager.set(null);
         } finally {
             for (CommitListener listener : listeners) {
-                listener.afterCommit(tx);
+                if (listener instanceof AsyncCommitListener) {
+                    asyncCommitDispatcher.dispatch((AsyncCommitListener) listener, tx);
+                } else {
+                    listener.afterCommit(tx);
+                }
             }
         }
     }
@@ -233,6 +243,9 @@ public class OgmTransactionManager implements TransactionManager {
 
     @Override
     public void resume(Transaction tx) throws InvalidTransactionException, IllegalStateException, SystemException {
+        if (tx instanceof JTADelegatingTransaction) {
+            tx = ((JTADelegatingTransaction) tx).getDelegateTx();
+        }
         delegateTxManager.resume(tx);
     }
 
@@ -248,11 +261,22 @@ public class OgmTransactionManager implements TransactionManager {
 
     @Override
     public Transaction suspend() throws SystemException {
-        return delegateTxManager.suspend();
+        Transaction tx = delegateTxManager.suspend();
+        return (tx == null) ? null : TxMap.getTx(tx);
     }
 
     private final ConcurrentLinkedQueue<CommitListener> listeners = new ConcurrentLinkedQueue<CommitListener>();
 
+    private final AsyncCommitDispatcher asyncCommitDispatcher = new AsyncCommitDispatcher();
+
+    /**
+     * @see pt.ist.fenixframework.TransactionManager#withTransactionAsync(Callable, Atomic, Executor)
+     */
+    @Override
+    public <T> TransactionFuture<T> withTransactionAsync(Callable<T> command, Atomic atomic, Executor executor) {
+        return AsyncTransactionRunner.submit(this, command, atomic, executor);
+    }
+
     /**
      * @see pt.ist.fenixframework.TransactionManager#addCommitListener(pt.ist.fenixframework.CommitListener)
      */
@@ -0,0 +1,55 @@
+package pt.ist.fenixframework.benchmarks;
+
+import java.util.concurrent.Callable;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.benchmarks.domain.Author;
+import pt.ist.fenixframework.benchmarks.domain.Book;
+import pt.ist.fenixframework.benchmarks.domain.Publisher;
+
+/**
+ * The fixture shared by all benchmarks: two authors, one of which owns <code>bookCount</code> books. The framework is
+ * initialized (by convention, from the <code>fenix-framework*.properties</code> resources) on the first access and shut
+ * down at the end of each trial, so that every fork starts from a fresh repository.
+ */
+@State(Scope.Benchmark)
+public class BookStoreState {
+
+    @Param({ "100" })
+    public int bookCount;
+
+    Author author;
+    Author otherAuthor;
+    Publisher publisher;
+    Book[] books;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        Transactions.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                author = new Author(0, 40);
+                otherAuthor = new Author(1, 50);
+                publisher = new Publisher(0);
+                books = new Book[bookCount];
+                for (int i = 0; i < bookCount; i++) {
+                    books[i] = new Book(i, i);
+                    books[i].setAuthor(author);
+                }
+                return null;
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        FenixFramework.shutdown();
+    }
+}
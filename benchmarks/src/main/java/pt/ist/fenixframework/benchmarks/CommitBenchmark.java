@@ -0,0 +1,36 @@
+package pt.ist.fenixframework.benchmarks;
+
+import java.util.concurrent.Callable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of committing a write set of a given size. Each invocation writes the price slot of the first
+ * <code>writtenBoxes</code> books of the fixture.
+ */
+@State(Scope.Benchmark)
+public class CommitBenchmark extends AbstractBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int writtenBoxes;
+
+    @Benchmark
+    public Object commitWrittenBoxes(final BookStoreState state) {
+        if (writtenBoxes > state.bookCount) {
+            throw new IllegalArgumentException("writtenBoxes (" + writtenBoxes + ") cannot exceed bookCount ("
+                    + state.bookCount + ")");
+        }
+        return Transactions.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (int i = 0; i < writtenBoxes; i++) {
+                    state.books[i].setPrice(state.books[i].getPrice() + 1);
+                }
+                return null;
+            }
+        });
+    }
+}
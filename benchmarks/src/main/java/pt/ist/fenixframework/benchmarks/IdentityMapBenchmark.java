@@ -0,0 +1,75 @@
+package pt.ist.fenixframework.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import pt.ist.fenixframework.core.AbstractDomainObject;
+import pt.ist.fenixframework.core.BoundedIdentityMap;
+import pt.ist.fenixframework.core.IdentityMap;
+import pt.ist.fenixframework.core.LongIdentityMap;
+import pt.ist.fenixframework.core.SharedIdentityMap;
+
+/**
+ * Lookup and (re)caching of domain objects in each {@link IdentityMap}, outside of any transaction. The maps are private to
+ * the benchmark and filled with the books of the fixture, so the results do not depend on the map configured for the backend.
+ */
+public class IdentityMapBenchmark extends AbstractBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Maps {
+
+        @Param({ "shared", "long", "bounded" })
+        public String map;
+
+        IdentityMap identityMap;
+        AbstractDomainObject[] objects;
+        Object[] oids;
+
+        @Setup(Level.Trial)
+        public void fill(BookStoreState state) {
+            if ("long".equals(map)) {
+                identityMap = new LongIdentityMap();
+            } else if ("bounded".equals(map)) {
+                identityMap = new BoundedIdentityMap();
+            } else {
+                identityMap = new SharedIdentityMap();
+            }
+            objects = state.books;
+            oids = new Object[objects.length];
+            for (int i = 0; i < objects.length; i++) {
+                oids[i] = objects[i].getOid();
+                identityMap.cache(objects[i]);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int next(int length) {
+            int i = next;
+            next = (i + 1 == length) ? 0 : i + 1;
+            return i;
+        }
+    }
+
+    @Benchmark
+    public AbstractDomainObject lookup(Maps maps, Cursor cursor) {
+        return maps.identityMap.lookup(maps.oids[cursor.next(maps.oids.length)]);
+    }
+
+    @Benchmark
+    public AbstractDomainObject lookupMiss(Maps maps) {
+        return maps.identityMap.lookup(Long.valueOf(-1L));
+    }
+
+    @Benchmark
+    public AbstractDomainObject cacheExisting(Maps maps, Cursor cursor) {
+        return maps.identityMap.cache(maps.objects[cursor.next(maps.objects.length)]);
+    }
+}
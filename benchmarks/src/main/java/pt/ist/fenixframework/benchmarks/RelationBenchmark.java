@@ -0,0 +1,45 @@
+package pt.ist.fenixframework.benchmarks;
+
+import java.util.concurrent.Callable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import pt.ist.fenixframework.benchmarks.domain.Author;
+import pt.ist.fenixframework.benchmarks.domain.Book;
+
+/**
+ * Cost of maintaining and traversing a to-many relation.
+ */
+public class RelationBenchmark extends AbstractBenchmark {
+
+    /**
+     * Moves one book back and forth between the two authors, so that the size of the relation stays constant across
+     * invocations. Each invocation removes the book from one side and adds it to the other.
+     */
+    @Benchmark
+    public Object addToRelation(final BookStoreState state) {
+        return Transactions.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                Book book = state.books[0];
+                Author target = book.getAuthor() == state.author ? state.otherAuthor : state.author;
+                target.addBook(book);
+                return null;
+            }
+        });
+    }
+
+    @Benchmark
+    public double iterateRelation(final BookStoreState state) {
+        return Transactions.read(new Callable<Double>() {
+            @Override
+            public Double call() {
+                double total = 0;
+                for (Book book : state.author.getBookSet()) {
+                    total += book.getPrice();
+                }
+                return total;
+            }
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package pt.ist.fenixframework.benchmarks;
+
+import java.util.concurrent.Callable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Fixed cost of a transaction: begin plus commit with an empty, a single-read and a single-write body.
+ */
+public class TransactionBenchmark extends AbstractBenchmark {
+
+    private static final Callable<Void> EMPTY = new Callable<Void>() {
+        @Override
+        public Void call() {
+            return null;
+        }
+    };
+
+    @Benchmark
+    public Object emptyReadOnly() {
+        return Transactions.read(EMPTY);
+    }
+
+    @Benchmark
+    public Object emptyReadWrite() {
+        return Transactions.write(EMPTY);
+    }
+
+    @Benchmark
+    public int readSlot(final BookStoreState state) {
+        return Transactions.read(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return state.publisher.getId();
+            }
+        });
+    }
+
+    @Benchmark
+    public Object writeSlot(final BookStoreState state) {
+        return Transactions.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                state.publisher.setId(state.publisher.getId() + 1);
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package pt.ist.fenixframework.benchmarks;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.Callable;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.FenixFramework;
+
+/**
+ * Runs commands through {@link pt.ist.fenixframework.TransactionManager#withTransaction(Callable, Atomic)}, so that the
+ * benchmarks measure exactly the code path taken by <code>@Atomic</code> methods, without depending on the bytecode
+ * post-processing of the annotation.
+ */
+final class Transactions {
+
+    static final Atomic READ_ONLY = new AtomicMode(TxMode.READ);
+    static final Atomic READ_WRITE = new AtomicMode(TxMode.WRITE);
+
+    private Transactions() {
+    }
+
+    static <T> T read(Callable<T> command) {
+        return run(command, READ_ONLY);
+    }
+
+    static <T> T write(Callable<T> command) {
+        return run(command, READ_WRITE);
+    }
+
+    private static <T> T run(Callable<T> command, Atomic atomic) {
+        try {
+            return FenixFramework.getTransactionManager().withTransaction(command, atomic);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new Error("Unexpected exception ocurred while running transaction", e);
+        }
+    }
+
+    private static final class AtomicMode implements Atomic {
+        private final TxMode mode;
+
+        AtomicMode(TxMode mode) {
+            this.mode = mode;
+        }
+
+        @Override
+        public TxMode mode() {
+            return this.mode;
+        }
+
+        @Override
+        public boolean flattenNested() {
+            return true;
+        }
+
+        @Override
+        public int maxRetries() {
+            return GLOBAL;
+        }
+
+        @Override
+        public int serializeAfter() {
+            return GLOBAL;
+        }
+
+        @Override
+        public boolean backoff() {
+            return true;
+        }
+
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return Atomic.class;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package pt.ist.fenixframework.benchmarks.domain;
+
+public class Author extends Author_Base {
+
+    public Author(int id, int age) {
+        super();
+        setId(id);
+        setAge(age);
+    }
+
+    @Override
+    public String toString() {
+        return "Author " + getId();
+    }
+}
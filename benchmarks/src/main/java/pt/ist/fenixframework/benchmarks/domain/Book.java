@@ -0,0 +1,15 @@
+package pt.ist.fenixframework.benchmarks.domain;
+
+public class Book extends Book_Base {
+
+    public Book(int id, double price) {
+        super();
+        setId(id);
+        setPrice(price);
+    }
+
+    @Override
+    public String toString() {
+        return "Book " + getId();
+    }
+}
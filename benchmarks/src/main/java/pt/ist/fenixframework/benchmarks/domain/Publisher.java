@@ -0,0 +1,14 @@
+package pt.ist.fenixframework.benchmarks.domain;
+
+public class Publisher extends Publisher_Base {
+
+    public Publisher(int id) {
+        super();
+        setId(id);
+    }
+
+    @Override
+    public String toString() {
+        return "Publisher " + getId();
+    }
+}
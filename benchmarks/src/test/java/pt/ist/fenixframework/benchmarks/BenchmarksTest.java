@@ -0,0 +1,107 @@
+package pt.ist.fenixframework.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.Callable;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.benchmarks.domain.Author;
+
+/**
+ * Runs each benchmark operation once, outside of JMH, to check that it does what it is meant to measure.
+ */
+@RunWith(JUnit4.class)
+public class BenchmarksTest {
+
+    private static BookStoreState state;
+
+    @BeforeClass
+    public static void populate() {
+        state = new BookStoreState();
+        state.bookCount = 10;
+        state.populate();
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        state.shutdown();
+    }
+
+    @Test
+    public void testFixture() {
+        int numBooks = Transactions.read(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return state.author.getBookSet().size();
+            }
+        });
+        assertEquals(state.bookCount, numBooks);
+    }
+
+    @Test
+    public void testWriteSlot() {
+        TransactionBenchmark benchmark = new TransactionBenchmark();
+        int before = benchmark.readSlot(state);
+        benchmark.writeSlot(state);
+        assertEquals(before + 1, benchmark.readSlot(state));
+    }
+
+    @Test
+    public void testCommitWrittenBoxes() {
+        CommitBenchmark benchmark = new CommitBenchmark();
+        benchmark.writtenBoxes = 3;
+
+        double before = sumOfPrices();
+        benchmark.commitWrittenBoxes(state);
+        assertEquals(before + 3, sumOfPrices(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCommitMoreBoxesThanBooks() {
+        CommitBenchmark benchmark = new CommitBenchmark();
+        benchmark.writtenBoxes = state.bookCount + 1;
+        benchmark.commitWrittenBoxes(state);
+    }
+
+    @Test
+    public void testAddToRelationMovesTheBookBackAndForth() {
+        RelationBenchmark benchmark = new RelationBenchmark();
+        Author first = authorOfFirstBook();
+
+        benchmark.addToRelation(state);
+        Author second = authorOfFirstBook();
+        assertSame(first == state.author ? state.otherAuthor : state.author, second);
+
+        benchmark.addToRelation(state);
+        assertSame(first, authorOfFirstBook());
+    }
+
+    private static double sumOfPrices() {
+        return Transactions.read(new Callable<Double>() {
+            @Override
+            public Double call() {
+                double total = 0;
+                for (int i = 0; i < state.bookCount; i++) {
+                    total += state.books[i].getPrice();
+                }
+                return total;
+            }
+        });
+    }
+
+    private static Author authorOfFirstBook() {
+        return Transactions.read(new Callable<Author>() {
+            @Override
+            public Author call() {
+                return state.books[0].getAuthor();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,17 @@
+package pt.ist.fenixframework;
+
+/**
+ * A {@link CommitListener} whose {@link #afterCommit(Transaction)} is invoked asynchronously, off the committing thread, so
+ * that slow listeners (e.g. auditing, cache invalidation or indexing) do not add to the latency of the transaction.
+ * {@link #beforeCommit(Transaction)} is still invoked synchronously, because it may cause the transaction to roll back.
+ * 
+ * Notifications for the same listener are delivered one at a time, in the order in which the transactions finished. When a
+ * listener falls too far behind, the committing threads block until it catches up (see
+ * {@link pt.ist.fenixframework.core.AsyncCommitDispatcher}).
+ * 
+ * Note that, by the time {@link #afterCommit(Transaction)} is invoked, the transaction is no longer associated with any thread,
+ * so the listener should only rely on the transaction's identity and status.
+ */
+public interface AsyncCommitListener extends CommitListener {
+
+}
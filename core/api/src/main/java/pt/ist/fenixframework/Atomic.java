@@ -13,6 +13,12 @@ public @interface Atomic {
         READ, WRITE, SPECULATIVE_READ
     };
 
+    /**
+     * The default value of the contention-related attributes, meaning that the value configured globally (see
+     * {@link Config#getContentionManager()}) should be used.
+     */
+    int GLOBAL = Integer.MIN_VALUE;
+
     /**
      * Select the mode in which to execute the transaction.
      * 
@@ -34,4 +40,29 @@ public @interface Atomic {
      *         calling transaction's execution context. <code>false</code> otherwise.
      */
     boolean flattenNested() default true;
+
+    /**
+     * Maximum number of times the transaction is re-executed after aborting because of a conflict, before giving up with a
+     * {@link pt.ist.fenixframework.core.exception.ContentionException}.
+     * 
+     * @return The maximum number of retries: a negative value means no limit and {@link #GLOBAL} uses the global
+     *         configuration.
+     */
+    int maxRetries() default GLOBAL;
+
+    /**
+     * Number of conflicts after which the transaction is re-executed in mutual exclusion with all other transactions that
+     * escalated as well, so that high-conflict commands stop aborting each other.
+     * 
+     * @return The number of conflicts before escalating: a negative value means never and {@link #GLOBAL} uses the global
+     *         configuration.
+     */
+    int serializeAfter() default GLOBAL;
+
+    /**
+     * Whether to wait before re-executing the transaction after a conflict, as configured globally.
+     * 
+     * @return <code>false</code> to retry immediately after a conflict.
+     */
+    boolean backoff() default true;
 }
@@ -4,18 +4,34 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.backend.BackEnd;
+import pt.ist.fenixframework.core.AsyncTransactionRunner;
+import pt.ist.fenixframework.core.BinaryExternalizationCodec;
+import pt.ist.fenixframework.core.BoundedIdentityMap;
+import pt.ist.fenixframework.core.ConflictProfiler;
+import pt.ist.fenixframework.core.DefaultContentionManager;
 import pt.ist.fenixframework.core.DmlFile;
+import pt.ist.fenixframework.core.Externalization;
+import pt.ist.fenixframework.core.ExternalizationCodec;
+import pt.ist.fenixframework.core.IdentityMap;
 import pt.ist.fenixframework.core.Project;
+import pt.ist.fenixframework.core.SharedIdentityMap;
 import pt.ist.fenixframework.core.exception.ProjectException;
+import pt.ist.fenixframework.core.metrics.MetricsReporter;
+import pt.ist.fenixframework.core.metrics.MetricsReportingThread;
+import pt.ist.fenixframework.core.metrics.TransactionMetrics;
 import pt.ist.fenixframework.util.Converter;
 import pt.ist.fenixframework.util.FenixFrameworkThread;
+import pt.ist.fenixframework.util.FenixFrameworkThreadFactory;
 
 /**
  * <p>
@@ -127,6 +143,136 @@ public abstract class Config {
      */
     protected String jGroupsConfigFile = "fenix-framework-udp-jgroups.xml";
 
+    /**
+     * This <strong>optional</strong> parameter specifies the class name of the {@link ContentionManager} used by the backends
+     * that retry conflicting transactions. The default value for this parameter is the {@link DefaultContentionManager}.
+     */
+    protected String contentionManagerClassName = DefaultContentionManager.class.getName();
+
+    /**
+     * This <strong>optional</strong> parameter specifies how many times a transaction is re-executed after aborting because of
+     * a conflict, before giving up. A negative value means no limit. The default value for this parameter is <code>-1</code>.
+     * It can be overridden by {@link Atomic#maxRetries()}.
+     */
+    protected int contentionMaxRetries = -1;
+
+    /**
+     * This <strong>optional</strong> parameter specifies the number of conflicts after which a transaction is re-executed in
+     * mutual exclusion with other escalated transactions. A negative value disables escalation. The default value for this
+     * parameter is <code>-1</code>. It can be overridden by {@link Atomic#serializeAfter()}.
+     */
+    protected int contentionSerializeAfter = -1;
+
+    /**
+     * This <strong>optional</strong> parameter specifies the initial backoff window, in microseconds, after a conflict. The
+     * window doubles with each conflict of the same transaction. A value of <code>0</code> disables backoff. The default value
+     * for this parameter is <code>16</code>.
+     */
+    protected long contentionBackoffMinMicros = 16;
+
+    /**
+     * This <strong>optional</strong> parameter specifies the maximum backoff window, in microseconds. The default value for
+     * this parameter is <code>10000</code>.
+     */
+    protected long contentionBackoffMaxMicros = 10000;
+
+    private ContentionManager contentionManager;
+
+    /**
+     * This <strong>optional</strong> parameter specifies how often (in number of executions) a command that is known to write
+     * is nevertheless started as a speculative read-only transaction, to detect whether it still writes. A value of
+     * <code>0</code> disables probing. The default value for this parameter is <code>1024</code>.
+     * 
+     * @see pt.ist.fenixframework.core.TxModePredictor
+     */
+    protected int txModeProbeInterval = 1024;
+
+    /**
+     * This <strong>optional</strong> parameter specifies the class name of the {@link IdentityMap} that caches the domain
+     * objects in memory. The {@link pt.ist.fenixframework.core.LongIdentityMap} may be used with the backends whose OIDs are
+     * <code>long</code>s (all but ispn and ogm). The default value for this parameter is the {@link SharedIdentityMap}.
+     */
+    protected String identityMapClassName = SharedIdentityMap.class.getName();
+
+    /**
+     * This <strong>optional</strong> parameter specifies the maximum number of domain objects that the
+     * {@link pt.ist.fenixframework.core.BoundedIdentityMap} keeps in memory. The default value for this parameter is
+     * <code>100000</code>.
+     */
+    protected int identityMapCapacity = BoundedIdentityMap.DEFAULT_CAPACITY;
+
+    /**
+     * This <strong>optional</strong> parameter specifies the memory budget, in bytes, of the
+     * {@link pt.ist.fenixframework.core.BoundedIdentityMap}. When set, the capacity is further limited to this budget divided
+     * by <code>identityMapObjectBytes</code>. A value of <code>-1</code> (the default) disables this limit.
+     */
+    protected long identityMapMaxBytes = -1;
+
+    /**
+     * This <strong>optional</strong> parameter specifies the estimated size, in bytes, of a domain object (including its
+     * boxes and their current values), used to translate <code>identityMapMaxBytes</code> into a number of objects. The default
+     * value for this parameter is <code>512</code>.
+     */
+    protected int identityMapObjectBytes = 512;
+
+    /**
+     * This <strong>optional</strong> parameter specifies the class name of the {@link ExternalizationCodec} used to externalize
+     * the values of slots. Values written by other codecs, or with plain Java serialization, can still be read. The default
+     * value for this parameter is the {@link BinaryExternalizationCodec}.
+     */
+    protected String externalizationCodecClassName = BinaryExternalizationCodec.class.getName();
+
+    /**
+     * This <strong>optional</strong> parameter specifies the number of threads of the {@link TransactionExecutor} returned by
+     * {@link #getTransactionExecutor()}. The default value for this parameter is twice the number of available processors.
+     */
+    protected int txExecutorThreads = 2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * This <strong>optional</strong> parameter specifies the maximum number of transactions that may write and run
+     * concurrently in the {@link TransactionExecutor} returned by {@link #getTransactionExecutor()}. The default value for
+     * this parameter is the number of available processors.
+     */
+    protected int txExecutorMaxWriters = Runtime.getRuntime().availableProcessors();
+
+    private ExecutorService txExecutorThreadPool;
+    private TransactionExecutor transactionExecutor;
+
+    /**
+     * This <strong>optional</strong> parameter specifies whether the backends that support it (jvstm-common, jvstm-lf and
+     * jvstm-ojb) record which boxes and commands cause commits to fail validation. The default value for this parameter is
+     * <code>false</code>.
+     * 
+     * @see ConflictProfiler
+     */
+    protected boolean conflictProfilerEnabled = false;
+
+    /**
+     * This <strong>optional</strong> parameter specifies how many boxes, commands and conflicts the {@link ConflictProfiler}
+     * reports. The default value for this parameter is <code>20</code>.
+     */
+    protected int conflictProfilerTopN = ConflictProfiler.DEFAULT_TOP_N;
+
+    /**
+     * This <strong>optional</strong> parameter specifies how often, in seconds, the report of the {@link ConflictProfiler} is
+     * logged, when there were new conflicts. A value of <code>0</code> disables logging (the report remains available via
+     * JMX). The default value for this parameter is <code>300</code>.
+     */
+    protected int conflictProfilerLogIntervalSeconds = 300;
+
+    /**
+     * This <strong>optional</strong> parameter specifies the comma-separated class names of the {@link MetricsReporter}s that
+     * publish the {@link TransactionMetrics}, e.g. {@link pt.ist.fenixframework.core.metrics.LoggingMetricsReporter}. The
+     * metrics are always available via JMX. The default value for this parameter is empty (no reporters).
+     */
+    protected String metricsReporterClassNames = "";
+
+    /**
+     * This <strong>optional</strong> parameter specifies how often, in seconds, the {@link TransactionMetrics} are handed to
+     * the {@link MetricsReporter}s. The default value for this parameter is <code>60</code>.
+     */
+    protected int metricsReportIntervalSeconds = 60;
+
     protected void checkRequired(Object obj, String fieldName) {
         if (obj == null) {
             missingRequired(fieldName);
@@ -160,6 +306,10 @@ public abstract class Config {
      */
     protected final void initialize() {
         checkConfig();
+        initIdentityMap();
+        initExternalizationCodec();
+        initConflictProfiler();
+        initMetrics();
         init();
     }
 
@@ -317,6 +467,82 @@ public abstract class Config {
         }
     }
 
+    protected void txModeProbeIntervalFromString(String value) {
+        txModeProbeInterval = parseInt(value);
+    }
+
+    protected void identityMapCapacityFromString(String value) {
+        identityMapCapacity = parseInt(value);
+    }
+
+    protected void identityMapMaxBytesFromString(String value) {
+        try {
+            identityMapMaxBytes = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigError("Invalid long value: " + value, e);
+        }
+    }
+
+    protected void identityMapObjectBytesFromString(String value) {
+        identityMapObjectBytes = parseInt(value);
+    }
+
+    protected void txExecutorThreadsFromString(String value) {
+        txExecutorThreads = parseInt(value);
+    }
+
+    protected void txExecutorMaxWritersFromString(String value) {
+        txExecutorMaxWriters = parseInt(value);
+    }
+
+    protected void conflictProfilerEnabledFromString(String value) {
+        conflictProfilerEnabled = Boolean.parseBoolean(value.trim());
+    }
+
+    protected void conflictProfilerTopNFromString(String value) {
+        conflictProfilerTopN = parseInt(value);
+    }
+
+    protected void conflictProfilerLogIntervalSecondsFromString(String value) {
+        conflictProfilerLogIntervalSeconds = parseInt(value);
+    }
+
+    protected void metricsReportIntervalSecondsFromString(String value) {
+        metricsReportIntervalSeconds = parseInt(value);
+    }
+
+    protected void contentionMaxRetriesFromString(String value) {
+        contentionMaxRetries = parseInt(value);
+    }
+
+    protected void contentionSerializeAfterFromString(String value) {
+        contentionSerializeAfter = parseInt(value);
+    }
+
+    protected void contentionBackoffMinMicrosFromString(String value) {
+        contentionBackoffMinMicros = parseLong(value);
+    }
+
+    protected void contentionBackoffMaxMicrosFromString(String value) {
+        contentionBackoffMaxMicros = parseLong(value);
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigError(e);
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigError(e);
+        }
+    }
+
     protected abstract void init();
 
     /**
@@ -360,11 +586,181 @@ public abstract class Config {
         return appName;
     }
 
+    public int getTxModeProbeInterval() {
+        return txModeProbeInterval;
+    }
+
+    public int getContentionMaxRetries() {
+        return contentionMaxRetries;
+    }
+
+    public int getContentionSerializeAfter() {
+        return contentionSerializeAfter;
+    }
+
+    public long getContentionBackoffMinMicros() {
+        return contentionBackoffMinMicros;
+    }
+
+    public long getContentionBackoffMaxMicros() {
+        return contentionBackoffMaxMicros;
+    }
+
+    public String getIdentityMapClassName() {
+        return identityMapClassName;
+    }
+
+    public int getIdentityMapCapacity() {
+        return identityMapCapacity;
+    }
+
+    public long getIdentityMapMaxBytes() {
+        return identityMapMaxBytes;
+    }
+
+    public int getIdentityMapObjectBytes() {
+        return identityMapObjectBytes;
+    }
+
+    // install the configured identity map before the backend starts caching domain objects in it
+    private void initIdentityMap() {
+        if (SharedIdentityMap.getCache().getClass().getName().equals(identityMapClassName)) {
+            return;
+        }
+        try {
+            IdentityMap identityMap;
+            if (SharedIdentityMap.class.getName().equals(identityMapClassName)) {
+                identityMap = SharedIdentityMap.getDefault();
+            } else {
+                identityMap = (IdentityMap) Class.forName(identityMapClassName).newInstance();
+            }
+            if (identityMap instanceof BoundedIdentityMap) {
+                ((BoundedIdentityMap) identityMap).init(this);
+            }
+            SharedIdentityMap.setCache(identityMap);
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException e) {
+            throw new ConfigError("Could not create the IdentityMap: " + identityMapClassName, e);
+        }
+    }
+
+    public String getExternalizationCodecClassName() {
+        return externalizationCodecClassName;
+    }
+
+    private void initExternalizationCodec() {
+        if (Externalization.getCodec().getClass().getName().equals(externalizationCodecClassName)) {
+            return;
+        }
+        try {
+            Externalization.setCodec((ExternalizationCodec) Class.forName(externalizationCodecClassName).newInstance());
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException e) {
+            throw new ConfigError("Could not create the ExternalizationCodec: " + externalizationCodecClassName, e);
+        }
+    }
+
+    public int getTxExecutorThreads() {
+        return txExecutorThreads;
+    }
+
+    public int getTxExecutorMaxWriters() {
+        return txExecutorMaxWriters;
+    }
+
+    public boolean isConflictProfilerEnabled() {
+        return conflictProfilerEnabled;
+    }
+
+    public int getConflictProfilerTopN() {
+        return conflictProfilerTopN;
+    }
+
+    public int getConflictProfilerLogIntervalSeconds() {
+        return conflictProfilerLogIntervalSeconds;
+    }
+
+    private void initConflictProfiler() {
+        if (conflictProfilerEnabled) {
+            ConflictProfiler.activate(new ConflictProfiler(conflictProfilerTopN), conflictProfilerLogIntervalSeconds);
+        }
+    }
+
+    public String getMetricsReporterClassNames() {
+        return metricsReporterClassNames;
+    }
+
+    public int getMetricsReportIntervalSeconds() {
+        return metricsReportIntervalSeconds;
+    }
+
+    private void initMetrics() {
+        TransactionMetrics.METRICS.registerMBeans();
+
+        List<MetricsReporter> reporters = new ArrayList<MetricsReporter>();
+        for (String className : metricsReporterClassNames.split(",")) {
+            className = className.trim();
+            if (className.isEmpty()) {
+                continue;
+            }
+            try {
+                MetricsReporter reporter = (MetricsReporter) Class.forName(className).newInstance();
+                reporter.init(this);
+                reporters.add(reporter);
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException e) {
+                throw new ConfigError("Could not create the MetricsReporter: " + className, e);
+            }
+        }
+        if (!reporters.isEmpty()) {
+            if (metricsReportIntervalSeconds <= 0) {
+                throw new ConfigError("metricsReportIntervalSeconds must be positive: " + metricsReportIntervalSeconds);
+            }
+            new MetricsReportingThread(reporters, metricsReportIntervalSeconds).start();
+        }
+    }
+
+    /**
+     * Get the {@link TransactionExecutor} of this backend, sized by <code>txExecutorThreads</code> and
+     * <code>txExecutorMaxWriters</code>. It is created on the first invocation, and shut down along with the framework.
+     */
+    public synchronized TransactionExecutor getTransactionExecutor() {
+        if (transactionExecutor == null) {
+            txExecutorThreadPool =
+                    Executors.newFixedThreadPool(txExecutorThreads, new FenixFrameworkThreadFactory("TransactionExecutor"));
+            transactionExecutor = new TransactionExecutor(txExecutorThreadPool, txExecutorMaxWriters);
+        }
+        return transactionExecutor;
+    }
+
+    /**
+     * Get the {@link ContentionManager} configured by <code>contentionManagerClassName</code>. The instance is created and
+     * initialized on the first invocation.
+     */
+    public synchronized ContentionManager getContentionManager() {
+        if (contentionManager == null) {
+            try {
+                ContentionManager manager = (ContentionManager) Class.forName(contentionManagerClassName).newInstance();
+                manager.init(this);
+                contentionManager = manager;
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException e) {
+                throw new ConfigError("Could not create the ContentionManager: " + contentionManagerClassName, e);
+            }
+        }
+        return contentionManager;
+    }
+
     /**
      * Subclasses of this class can overwrite this method, but they should specifically call <code>super.shutdown()</code> to
      * orderly shutdown the framework.
      */
     protected void shutdown() {
+        synchronized (this) {
+            if (txExecutorThreadPool != null) {
+                txExecutorThreadPool.shutdown();
+                transactionExecutor.shutdown();
+            }
+        }
+        AsyncTransactionRunner.shutdown();
+        ConflictProfiler.deactivate();
+        TransactionMetrics.METRICS.unregisterMBeans();
         FenixFrameworkThread.shutdownAllThreads();
         getBackEnd().shutdown();
     }
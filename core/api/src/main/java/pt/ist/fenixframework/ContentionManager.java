@@ -0,0 +1,52 @@
+package pt.ist.fenixframework;
+
+/**
+ * A <code>ContentionManager</code> decides what a {@link TransactionManager} does when a transaction aborts because of a
+ * conflict with some other transaction: whether to retry at all, how long to wait before doing so and whether the next
+ * execution should run serialized with other high-conflict transactions.
+ * 
+ * For each invocation of <code>withTransaction</code>, the transaction manager brackets every execution with {@link #beforeAttempt(String, Atomic, int)} and
+ * {@link #afterAttempt(String, Atomic, int)}, and invokes {@link #shouldRetry(String, Atomic, int, Throwable)} after each
+ * execution that aborted because of a conflict. Restarts that are not caused by conflicts (e.g. upgrading a speculative
+ * read-only transaction to read-write) are not reported.
+ * 
+ * Implementations must be thread-safe and must provide a public no-arguments constructor. The instance in use is created by
+ * the {@link Config} (see {@link Config#getContentionManager()}).
+ * 
+ * @see pt.ist.fenixframework.core.DefaultContentionManager
+ */
+public interface ContentionManager {
+
+    /**
+     * Invoked once, when the framework is initialized, with the configuration in use.
+     */
+    public void init(Config config);
+
+    /**
+     * Invoked before each execution of a transaction. It may block, e.g. to run the execution in mutual exclusion with other
+     * transactions. Every invocation of this method that returns normally is paired with an invocation of
+     * {@link #afterAttempt(String, Atomic, int)}.
+     * 
+     * @param txName The name of the command being executed.
+     * @param atomic The {@link Atomic} requested for this transaction. May be <code>null</code>.
+     * @param attempt One plus the number of conflicts suffered so far by this transaction (1 for the first execution).
+     */
+    public void beforeAttempt(String txName, Atomic atomic, int attempt);
+
+    /**
+     * Invoked after each execution of a transaction, regardless of its outcome.
+     */
+    public void afterAttempt(String txName, Atomic atomic, int attempt);
+
+    /**
+     * Invoked after an execution aborted because of a conflict. The transaction has already been rolled back. It may block,
+     * e.g. to back off before the next execution.
+     * 
+     * @param attempt The number of conflicts suffered so far by this transaction, including this one.
+     * @param conflict The cause of the abort.
+     * @return <code>true</code> if the transaction should be executed again, <code>false</code> to give up, in which case the
+     *         transaction manager throws a {@link pt.ist.fenixframework.core.exception.ContentionException}.
+     */
+    public boolean shouldRetry(String txName, Atomic atomic, int attempt, Throwable conflict);
+
+}
@@ -3,6 +3,7 @@ package pt.ist.fenixframework;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Properties;
 import java.util.concurrent.Callable;
 
@@ -437,6 +438,37 @@ public class FenixFramework {
         return getConfig().getBackEnd().isDomainObjectValid(object);
     }
 
+    /**
+     * Load, in as few round trips to the storage as possible, the given slots of each of the given objects, so that reading
+     * them afterwards in the current transaction does not hit the storage once per object. This is meant to be used before
+     * iterating over a relation and reading the same slots of each of its elements, e.g.
+     * <code>FenixFramework.prefetch(person.getAddressSet(), "street", "city")</code>.
+     * 
+     * Prefetching is only an optimization: backends that keep everything in memory or that cannot batch their reads ignore
+     * it, and slots that are already loaded are not loaded again.
+     * 
+     * @param objects The objects whose slots to load
+     * @param slotNames The names of the slots to load, as declared in the domain model
+     */
+    public static void prefetch(Collection<? extends DomainObject> objects, String... slotNames) {
+        if (objects.isEmpty() || slotNames.length == 0) {
+            return;
+        }
+        getConfig().getBackEnd().prefetch(objects, slotNames);
+    }
+
+    /**
+     * Open a {@link Snapshot} of the domain as of the most recent version, through which several threads can read at the same
+     * time, without ever restarting. The snapshot must be closed when no longer needed, because the backend cannot discard the
+     * version that it reads while it is open. It is closed anyway when read after <code>maxAgeMillis</code>.
+     * 
+     * @param maxAgeMillis The maximum time, in milliseconds, during which the snapshot may be read
+     * @throws UnsupportedOperationException If the backend does not support snapshots
+     */
+    public static Snapshot openSnapshot(long maxAgeMillis) {
+        return getConfig().getBackEnd().openSnapshot(maxAgeMillis);
+    }
+
     /**
      * Inform the framework components that the application intends to shutdown. This allows for an
      * orderly termination of any running components. The default implementation delegates to the
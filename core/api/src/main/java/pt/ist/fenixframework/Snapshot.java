@@ -0,0 +1,228 @@
+package pt.ist.fenixframework;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import pt.ist.fenixframework.core.exception.SnapshotExpiredException;
+
+/**
+ * A read-only view of the domain, fixed at the version that was the most recent when it was opened (see
+ * {@link FenixFramework#openSnapshot(long)}). Unlike a transaction, a snapshot is not bound to a thread: any number of threads
+ * may read through it at the same time, and it never restarts, because nothing is ever written through it. This makes it
+ * suitable for long-running analytics over the live system, e.g.
+ *
+ * <pre>
+ * Snapshot snapshot = FenixFramework.openSnapshot(TimeUnit.MINUTES.toMillis(10));
+ * try {
+ *     snapshot.forEach(root.getPersonSet(), visitor, pool);
+ * } finally {
+ *     snapshot.close();
+ * }
+ * </pre>
+ *
+ * A snapshot holds on to the version it reads, which therefore cannot be discarded by the backend while the snapshot is open.
+ * It should be closed as soon as it is no longer needed. To bound the damage done by snapshots that are never closed, each
+ * snapshot has a maximum age, after which new reads fail with a {@link SnapshotExpiredException}.
+ *
+ * Closing a snapshot, either explicitly or because it expired, never disturbs the reads already in progress in other threads:
+ * the version is only released when the last of them finishes.
+ */
+public abstract class Snapshot implements AutoCloseable {
+
+    /**
+     * Visits each element given to {@link Snapshot#forEach(Iterable, Visitor, ForkJoinPool)}. A visitor may be invoked by
+     * several threads at the same time.
+     */
+    public interface Visitor<T> {
+        public void visit(T element) throws Exception;
+    }
+
+    // the number of elements visited by each task
+    private static final int CHUNK_SIZE = 256;
+
+    // the number of tasks submitted but not yet finished, per worker thread
+    private static final int TASKS_PER_WORKER = 4;
+
+    private final long maxAgeMillis;
+    private final long openedAt = System.currentTimeMillis();
+    // no new reads are accepted once closed, but the version is only released when no read is in progress
+    private volatile boolean closed = false;
+    private int readsInProgress = 0;
+    private boolean released = false;
+
+    protected Snapshot(long maxAgeMillis) {
+        if (maxAgeMillis <= 0) {
+            throw new IllegalArgumentException("The maximum age of a snapshot must be positive: " + maxAgeMillis);
+        }
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Execute the given command in the current thread, reading the domain as of this snapshot. Any transaction associated with
+     * the current thread is suspended during the command, and resumed afterwards.
+     *
+     * @throws IllegalStateException If this snapshot is closed
+     * @throws SnapshotExpiredException If the maximum age of this snapshot has elapsed, in which case it is closed, as if by
+     *             {@link #close()}
+     * @throws Exception Whatever the command throws
+     */
+    public final <T> T read(Callable<T> command) throws Exception {
+        startRead();
+        try {
+            return doRead(command);
+        } finally {
+            finishRead();
+        }
+    }
+
+    private synchronized void startRead() {
+        if (this.closed) {
+            throw new IllegalStateException("Snapshot is closed");
+        }
+        if (isExpired()) {
+            close();
+            throw new SnapshotExpiredException(this.maxAgeMillis);
+        }
+        this.readsInProgress++;
+    }
+
+    private synchronized void finishRead() {
+        this.readsInProgress--;
+        releaseIfUnused();
+    }
+
+    private void releaseIfUnused() {
+        if (this.closed && this.readsInProgress == 0 && !this.released) {
+            this.released = true;
+            doClose();
+        }
+    }
+
+    /**
+     * Visit each of the given elements, in parallel, on the given pool. The elements are enumerated in the current thread and
+     * handed out in chunks to the pool's workers, each of which visits them through {@link #read(Callable)}. Any iterable that is
+     * consistent when read through this snapshot can be used, namely the relation collections and the B+Trees of the domain. At
+     * most a few chunks per worker are pending at any time, so enumerating a large collection does not queue all of it up.
+     *
+     * The elements are visited in no particular order. If any visit fails, the first failure is thrown once the tasks already
+     * submitted finish, and the remaining elements are not visited.
+     */
+    public <T> void forEach(final Iterable<? extends T> elements, final Visitor<? super T> visitor, final ForkJoinPool pool)
+            throws Exception {
+        final int maxPendingTasks = pool.getParallelism() * TASKS_PER_WORKER;
+        final LinkedList<ForkJoinTask<Void>> pending = new LinkedList<ForkJoinTask<Void>>();
+
+        try {
+            read(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    List<T> chunk = new ArrayList<T>(CHUNK_SIZE);
+                    for (T element : elements) {
+                        chunk.add(element);
+                        if (chunk.size() == CHUNK_SIZE) {
+                            pending.add(pool.submit(new VisitChunk<T>(chunk, visitor)));
+                            chunk = new ArrayList<T>(CHUNK_SIZE);
+
+                            if (pending.size() > maxPendingTasks) {
+                                awaitTask(pending.removeFirst());
+                            }
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        pending.add(pool.submit(new VisitChunk<T>(chunk, visitor)));
+                    }
+                    return null;
+                }
+            });
+
+            while (!pending.isEmpty()) {
+                awaitTask(pending.removeFirst());
+            }
+        } finally {
+            for (ForkJoinTask<Void> task : pending) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private static void awaitTask(ForkJoinTask<Void> task) throws Exception {
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private class VisitChunk<T> implements Callable<Void> {
+        private final List<T> chunk;
+        private final Visitor<? super T> visitor;
+
+        VisitChunk(List<T> chunk, Visitor<? super T> visitor) {
+            this.chunk = chunk;
+            this.visitor = visitor;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            return read(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (T element : chunk) {
+                        visitor.visit(element);
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+
+    /**
+     * Stop accepting reads, and release the version held by this snapshot. If reads are in progress in other threads, the
+     * version is released by the last of them to finish. Closing a snapshot that is already closed has no effect.
+     */
+    @Override
+    public final synchronized void close() {
+        this.closed = true;
+        releaseIfUnused();
+    }
+
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * @return Whether the maximum age of this snapshot has elapsed. An expired snapshot is closed when it is next read, but the
+     *         reads already in progress are not disturbed.
+     */
+    public boolean isExpired() {
+        return System.currentTimeMillis() - this.openedAt > this.maxAgeMillis;
+    }
+
+    public long getMaxAgeMillis() {
+        return this.maxAgeMillis;
+    }
+
+    /**
+     * Execute the given command in the current thread, as of this snapshot, which is known to be open.
+     */
+    protected abstract <T> T doRead(Callable<T> command) throws Exception;
+
+    /**
+     * Release the resources held by this snapshot. Invoked at most once, when it is closed and no read is in progress, by
+     * whichever thread closes it or finishes the last read.
+     */
+    protected abstract void doClose();
+
+}
@@ -0,0 +1,406 @@
+package pt.ist.fenixframework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.core.AsyncTransactionRunner;
+import pt.ist.fenixframework.core.exception.ContentionException;
+import pt.ist.fenixframework.txintrospector.TxIntrospector;
+
+/**
+ * Executes a batch of transactions in parallel on a {@link ForkJoinPool}, serializing only the transactions that are found to
+ * conflict with each other.
+ *
+ * The batch is executed in rounds. In the first round every transaction is an independent task. Each transaction is attempted
+ * once (see {@link AsyncTransactionRunner#singleAttempt(Atomic, int)}); when it aborts because of a conflict, the objects it
+ * modified (as reported by its {@link TxIntrospector}) are recorded. Before the next round, the aborted transactions that
+ * modified common objects are grouped into the same lane, and each lane runs its transactions one after the other on a single
+ * worker, while different lanes still run in parallel. Groups only grow from round to round, so repeatedly conflicting
+ * transactions end up fully serialized. Transactions whose footprint is unknown (e.g. because the TxIntrospector is disabled)
+ * are conservatively grouped together.
+ *
+ * A transaction fails with a {@link ContentionException} once it has aborted more than <code>maxRetries</code> times. Any other
+ * exception thrown by a transaction fails it right away, without affecting the rest of the batch.
+ *
+ * <pre>
+ * TransactionBatchExecutor executor = new TransactionBatchExecutor(FenixFramework.getTransactionManager(), pool);
+ * TransactionBatchExecutor.Batch&lt;Void&gt; batch = executor.execute(commands, atomic);
+ * logger.info(&quot;{} tx/s, {} aborts/attempt&quot;, batch.getThroughput(), batch.getAbortRate());
+ * </pre>
+ */
+public class TransactionBatchExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionBatchExecutor.class);
+
+    private final TransactionManager manager;
+    private final ForkJoinPool pool;
+
+    public TransactionBatchExecutor(TransactionManager manager, ForkJoinPool pool) {
+        this.manager = manager;
+        this.pool = pool;
+    }
+
+    /**
+     * Execute a batch of transactions with the default {@link Atomic} properties.
+     */
+    public <T> Batch<T> execute(Iterable<? extends Callable<? extends T>> commands) {
+        return execute(commands, null);
+    }
+
+    /**
+     * Execute a batch of transactions and wait for all of them to either commit or fail.
+     *
+     * @param commands The transactions to execute. Their order is only relevant for the order of the results.
+     * @param atomic The properties of every transaction, or <code>null</code> for the defaults of {@link Atomic}.
+     * @return The outcome of each transaction and the statistics of the batch.
+     */
+    public <T> Batch<T> execute(Iterable<? extends Callable<? extends T>> commands, Atomic atomic) {
+        List<Callable<? extends T>> list = new ArrayList<Callable<? extends T>>();
+        for (Callable<? extends T> command : commands) {
+            list.add(command);
+        }
+        Run<T> run = new Run<T>(list, atomic);
+        run.execute();
+        logger.debug("{}", run.batch);
+        return run.batch;
+    }
+
+    private static int maxRetries(Atomic atomic) {
+        if (atomic == null || atomic.maxRetries() == Atomic.GLOBAL) {
+            return FenixFramework.getConfig().getContentionMaxRetries();
+        }
+        return atomic.maxRetries();
+    }
+
+    /**
+     * The state of one execution of a batch.
+     */
+    private final class Run<T> {
+        private final List<Callable<? extends T>> commands;
+        private final Atomic atomic;
+        private final int maxRetries;
+        private final Batch<T> batch;
+
+        // the objects modified by the last aborted attempt of each transaction, or null if unknown
+        private final Set<Object>[] footprints;
+        private final int[] conflicts;
+
+        // union-find of the transactions that must run in the same lane, kept across rounds
+        private final int[] group;
+        private final Map<Object, Integer> owners = new HashMap<Object, Integer>();
+        private int unknownFootprintOwner = -1;
+
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final AtomicInteger aborts = new AtomicInteger();
+
+        @SuppressWarnings("unchecked")
+        private Run(List<Callable<? extends T>> commands, Atomic atomic) {
+            this.commands = commands;
+            this.atomic = atomic;
+            this.maxRetries = commands.isEmpty() ? 0 : maxRetries(atomic);
+            this.batch = new Batch<T>(commands.size());
+            this.footprints = new Set[commands.size()];
+            this.conflicts = new int[commands.size()];
+            this.group = new int[commands.size()];
+            for (int i = 0; i < group.length; i++) {
+                group[i] = i;
+            }
+        }
+
+        private void execute() {
+            long start = System.nanoTime();
+            List<Lane> lanes = new ArrayList<Lane>();
+            for (int i = 0; i < commands.size(); i++) {
+                lanes.add(new Lane(new int[] { i }));
+            }
+
+            int rounds = 0;
+            int serializedLanes = 0;
+            while (!lanes.isEmpty()) {
+                rounds++;
+                final List<Lane> round = lanes;
+                pool.invoke(new RecursiveAction() {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected void compute() {
+                        ForkJoinTask.invokeAll(round);
+                    }
+                });
+
+                List<Integer> aborted = new ArrayList<Integer>();
+                for (Lane lane : round) {
+                    aborted.addAll(lane.aborted);
+                }
+                lanes = plan(aborted);
+                for (Lane lane : lanes) {
+                    if (lane.indexes.length > 1) {
+                        serializedLanes++;
+                    }
+                }
+            }
+
+            batch.finish(System.nanoTime() - start, attempts.get(), aborts.get(), rounds, serializedLanes);
+        }
+
+        /**
+         * Group the aborted transactions that may conflict with each other into the lanes of the next round.
+         */
+        private List<Lane> plan(List<Integer> aborted) {
+            for (int index : aborted) {
+                Set<Object> footprint = footprints[index];
+                if (footprint == null || footprint.isEmpty()) {
+                    if (unknownFootprintOwner < 0) {
+                        unknownFootprintOwner = index;
+                    } else {
+                        union(unknownFootprintOwner, index);
+                    }
+                    continue;
+                }
+                for (Object object : footprint) {
+                    Integer owner = owners.get(object);
+                    if (owner == null) {
+                        owners.put(object, index);
+                    } else {
+                        union(owner, index);
+                    }
+                }
+            }
+
+            // keep the original order of the transactions within each lane
+            Collections.sort(aborted);
+            Map<Integer, List<Integer>> byGroup = new LinkedHashMap<Integer, List<Integer>>();
+            for (int index : aborted) {
+                int root = find(index);
+                List<Integer> members = byGroup.get(root);
+                if (members == null) {
+                    members = new ArrayList<Integer>();
+                    byGroup.put(root, members);
+                }
+                members.add(index);
+            }
+
+            List<Lane> lanes = new ArrayList<Lane>(byGroup.size());
+            for (List<Integer> members : byGroup.values()) {
+                int[] indexes = new int[members.size()];
+                for (int i = 0; i < indexes.length; i++) {
+                    indexes[i] = members.get(i);
+                }
+                lanes.add(new Lane(indexes));
+            }
+            return lanes;
+        }
+
+        private int find(int index) {
+            while (group[index] != index) {
+                group[index] = group[group[index]];
+                index = group[index];
+            }
+            return index;
+        }
+
+        private void union(int first, int second) {
+            int firstRoot = find(first);
+            int secondRoot = find(second);
+            if (firstRoot != secondRoot) {
+                group[Math.max(firstRoot, secondRoot)] = Math.min(firstRoot, secondRoot);
+            }
+        }
+
+        /**
+         * Attempt a transaction once.
+         *
+         * @return <code>true</code> if the transaction aborted because of a conflict and must be retried.
+         */
+        private boolean attempt(final int index) {
+            attempts.incrementAndGet();
+            try {
+                T result = manager.withTransaction(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        try {
+                            return commands.get(index).call();
+                        } finally {
+                            footprints[index] = footprint();
+                        }
+                    }
+                }, AsyncTransactionRunner.singleAttempt(atomic, conflicts[index]));
+                batch.results.set(index, result);
+                return false;
+            } catch (ContentionException e) {
+                aborts.incrementAndGet();
+                if (maxRetries >= 0 && ++conflicts[index] > maxRetries) {
+                    batch.setFailure(index, new ContentionException(commands.get(index).getClass().getName(),
+                            conflicts[index], e.getCause()));
+                    return false;
+                }
+                return true;
+            } catch (Throwable t) {
+                batch.setFailure(index, t);
+                return false;
+            }
+        }
+
+        private Set<Object> footprint() {
+            try {
+                Transaction transaction = manager.getTransaction();
+                TxIntrospector introspector = (transaction == null) ? null : transaction.getTxIntrospector();
+                if (introspector == null) {
+                    return null;
+                }
+                Collection<DomainObject> modified = introspector.getModifiedObjects();
+                return (modified == null) ? null : new HashSet<Object>(modified);
+            } catch (RuntimeException e) {
+                // the introspector is disabled or not supported by the backend
+                return null;
+            }
+        }
+
+        /**
+         * A sequence of transactions executed one after the other, on the same worker.
+         */
+        private final class Lane extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final int[] indexes;
+            private final List<Integer> aborted = new ArrayList<Integer>();
+
+            private Lane(int[] indexes) {
+                this.indexes = indexes;
+            }
+
+            @Override
+            protected void compute() {
+                for (int index : indexes) {
+                    if (attempt(index)) {
+                        aborted.add(index);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The outcome of a batch: the result or failure of each transaction, in the order in which they were given, and the
+     * statistics of the execution.
+     */
+    public static final class Batch<T> {
+        private final List<T> results;
+        private final List<Throwable> failures;
+        private final AtomicInteger failed = new AtomicInteger();
+
+        private long elapsedNanos;
+        private int attempts;
+        private int aborts;
+        private int rounds;
+        private int serializedLanes;
+
+        private Batch(int size) {
+            this.results = Collections.synchronizedList(new ArrayList<T>(Collections.<T> nCopies(size, null)));
+            this.failures = Collections.synchronizedList(Arrays.asList(new Throwable[size]));
+        }
+
+        private void setFailure(int index, Throwable failure) {
+            failures.set(index, failure);
+            failed.incrementAndGet();
+        }
+
+        private void finish(long elapsedNanos, int attempts, int aborts, int rounds, int serializedLanes) {
+            this.elapsedNanos = elapsedNanos;
+            this.attempts = attempts;
+            this.aborts = aborts;
+            this.rounds = rounds;
+            this.serializedLanes = serializedLanes;
+        }
+
+        /**
+         * @return The result of each transaction, or <code>null</code> for the transactions that failed.
+         */
+        public List<T> getResults() {
+            return results;
+        }
+
+        /**
+         * @return The failure of each transaction, or <code>null</code> for the transactions that committed.
+         */
+        public List<Throwable> getFailures() {
+            return failures;
+        }
+
+        public int getSize() {
+            return results.size();
+        }
+
+        public int getCommitted() {
+            return getSize() - failed.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public int getAborts() {
+            return aborts;
+        }
+
+        /**
+         * @return The number of rounds needed to execute the batch (one, if no transaction aborted).
+         */
+        public int getRounds() {
+            return rounds;
+        }
+
+        /**
+         * @return The number of lanes, over all rounds, in which more than one conflicting transaction was serialized.
+         */
+        public int getSerializedLanes() {
+            return serializedLanes;
+        }
+
+        public long getElapsedTime(TimeUnit unit) {
+            return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return The committed transactions per second.
+         */
+        public double getThroughput() {
+            return (elapsedNanos == 0) ? 0 : getCommitted() * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return The fraction of the attempts that aborted because of a conflict.
+         */
+        public double getAbortRate() {
+            return (attempts == 0) ? 0 : (double) aborts / attempts;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Batch of %d transactions: %d committed, %d failed, %d attempts, %d aborts (%.1f%%), "
+                    + "%d rounds, %d serialized lanes, %.1f tx/s", getSize(), getCommitted(), getFailed(), attempts, aborts,
+                    getAbortRate() * 100, rounds, serializedLanes, getThroughput());
+        }
+    }
+}
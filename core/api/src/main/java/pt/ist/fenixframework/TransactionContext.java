@@ -0,0 +1,126 @@
+package pt.ist.fenixframework;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import javax.transaction.InvalidTransactionException;
+import javax.transaction.SystemException;
+
+/**
+ * Moves transactions between threads, so that a transaction does not have to run on the thread that started it.
+ *
+ * The handle of a transaction context is the {@link Transaction} itself: {@link #suspend()} detaches the current transaction
+ * from the calling thread and returns it, and {@link #resume(Transaction)} binds it to another thread (or to the same thread,
+ * later on). The same transaction must never be bound to more than one thread at a time.
+ *
+ * With the JVSTM backends, neither allocates. The backends that delegate to a JTA transaction manager (e.g. Infinispan and
+ * OGM) return the {@link pt.ist.fenixframework.util.JTADelegatingTransaction} that represents the JTA transaction, which is
+ * only created the first time the JTA transaction is seen (see {@link pt.ist.fenixframework.util.TxMap}), but whatever the
+ * JTA transaction manager itself allocates to suspend and resume still applies.
+ *
+ * The executor returned by {@link #propagating(Executor)} runs each task within the transaction of the thread that submitted
+ * it, which is useful when a request is served by several threads (or virtual threads) in turn.
+ *
+ * <pre>
+ * Transaction tx = TransactionContext.suspend();
+ * // ... on another thread ...
+ * TransactionContext.resume(tx);
+ * try {
+ *     // use the transaction
+ * } finally {
+ *     TransactionContext.suspend();
+ * }
+ * </pre>
+ */
+public final class TransactionContext {
+
+    private TransactionContext() {
+    }
+
+    /**
+     * Detach the current transaction from the calling thread.
+     *
+     * @return The transaction that was detached, or <code>null</code> if the thread was not running a transaction.
+     */
+    public static Transaction suspend() {
+        try {
+            return (Transaction) FenixFramework.getTransactionManager().suspend();
+        } catch (SystemException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Bind a transaction, previously detached with {@link #suspend()}, to the calling thread. Resuming <code>null</code> does
+     * nothing.
+     *
+     * @throws IllegalStateException If the calling thread is already running a transaction.
+     */
+    public static void resume(Transaction transaction) {
+        if (transaction == null) {
+            return;
+        }
+        try {
+            FenixFramework.getTransactionManager().resume(transaction);
+        } catch (InvalidTransactionException | SystemException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Execute a command within the given transaction, which is bound to the calling thread only for the duration of the
+     * command. The transaction that the calling thread was running, if any, is restored afterwards. The transaction is
+     * neither committed nor rolled back.
+     */
+    public static <T> T callWithin(Transaction transaction, Callable<T> command) throws Exception {
+        Transaction previous = suspend();
+        resume(transaction);
+        try {
+            return command.call();
+        } finally {
+            suspend();
+            resume(previous);
+        }
+    }
+
+    /**
+     * Wrap an executor so that each task runs within the transaction that was current on the thread that submitted it. Tasks
+     * submitted outside of a transaction run outside of any transaction.
+     *
+     * The submitting thread must not use its transaction while the task is running, e.g. it should wait for the task to
+     * complete.
+     */
+    public static Executor propagating(Executor executor) {
+        return new PropagatingExecutor(executor);
+    }
+
+    private static final class PropagatingExecutor implements Executor {
+        private final Executor delegate;
+
+        private PropagatingExecutor(Executor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            final Transaction transaction = FenixFramework.getTransaction();
+            if (transaction == null) {
+                delegate.execute(command);
+                return;
+            }
+            delegate.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Transaction previous = suspend();
+                    resume(transaction);
+                    try {
+                        command.run();
+                    } finally {
+                        suspend();
+                        resume(previous);
+                    }
+                }
+            });
+        }
+    }
+}
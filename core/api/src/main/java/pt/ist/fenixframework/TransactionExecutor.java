@@ -0,0 +1,158 @@
+package pt.ist.fenixframework;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link Executor} for asynchronous transactions that caps the number of concurrently running transactions that may write.
+ * Read-only transactions are handed to the underlying executor right away. Transactions that may write wait in a queue,
+ * without holding a thread, until one of the running writers completes.
+ *
+ * Limiting the writers bounds the conflicts among them, while the read-only transactions and the queued writers cost no more
+ * than their tasks, so the number of in-flight transactions is not bounded by the number of threads.
+ *
+ * A queued writer whose hand-off is rejected by the underlying executor is not lost: a {@link RejectableTask} is told of the
+ * rejection, and any other task is put back at the head of the queue.
+ *
+ * @see TransactionManager#withTransactionAsync(java.util.concurrent.Callable, Atomic, Executor)
+ * @see Config#getTransactionExecutor()
+ */
+public class TransactionExecutor implements Executor {
+
+    private final Executor delegate;
+    private final int maxWriters;
+
+    private final AtomicInteger activeWriters = new AtomicInteger(0);
+    private final ConcurrentLinkedDeque<Runnable> pendingWriters = new ConcurrentLinkedDeque<Runnable>();
+    private volatile boolean shutdown = false;
+
+    /**
+     * A task that can be told that it will not be executed, so that it can in turn tell whoever waits for it.
+     */
+    public interface RejectableTask extends Runnable {
+        void rejected(RejectedExecutionException e);
+    }
+
+    public TransactionExecutor(Executor delegate, int maxWriters) {
+        if (maxWriters < 1) {
+            throw new IllegalArgumentException("maxWriters must be positive: " + maxWriters);
+        }
+        this.delegate = delegate;
+        this.maxWriters = maxWriters;
+    }
+
+    /**
+     * Execute a task that does not write (or is not a transaction at all).
+     */
+    @Override
+    public void execute(Runnable task) {
+        delegate.execute(task);
+    }
+
+    /**
+     * Execute a transaction that may write, as soon as fewer than <code>maxWriters</code> writers are running.
+     */
+    public void executeWriter(Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("TransactionExecutor has been shut down");
+        }
+        pendingWriters.add(task);
+        startPendingWriters();
+    }
+
+    /**
+     * Stop starting writers. The writers still in the queue are rejected (those that are not {@link RejectableTask}s are just
+     * discarded), and so are those executed afterwards. The underlying executor is not shut down, and the writers that are
+     * already running are allowed to complete.
+     */
+    public void shutdown() {
+        shutdown = true;
+        rejectPendingWriters();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    public int getMaxWriters() {
+        return maxWriters;
+    }
+
+    public int getActiveWriters() {
+        return activeWriters.get();
+    }
+
+    public int getPendingWriters() {
+        return pendingWriters.size();
+    }
+
+    private void rejectPendingWriters() {
+        RejectedExecutionException e = new RejectedExecutionException("TransactionExecutor has been shut down");
+        Runnable task;
+        while ((task = pendingWriters.poll()) != null) {
+            if (task instanceof RejectableTask) {
+                ((RejectableTask) task).rejected(e);
+            }
+        }
+    }
+
+    private void startPendingWriters() {
+        if (shutdown) {
+            // a writer may have been queued concurrently with the shutdown
+            rejectPendingWriters();
+            return;
+        }
+        while (!pendingWriters.isEmpty() && tryAcquire()) {
+            Runnable task = pendingWriters.poll();
+            if (task == null) {
+                activeWriters.decrementAndGet();
+                // a writer may have been queued after the emptiness check of another thread
+                continue;
+            }
+            try {
+                delegate.execute(new Writer(task));
+            } catch (RejectedExecutionException e) {
+                activeWriters.decrementAndGet();
+                if (task instanceof RejectableTask) {
+                    ((RejectableTask) task).rejected(e);
+                    // the next writers are left queued, for when the executor accepts them again
+                    return;
+                }
+                pendingWriters.addFirst(task);
+                throw e;
+            }
+        }
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int active = activeWriters.get();
+            if (active >= maxWriters) {
+                return false;
+            }
+            if (activeWriters.compareAndSet(active, active + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private final class Writer implements Runnable {
+        private final Runnable task;
+
+        private Writer(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                activeWriters.decrementAndGet();
+                startPendingWriters();
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package pt.ist.fenixframework;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The result of a transaction executed asynchronously with
+ * {@link TransactionManager#withTransactionAsync(java.util.concurrent.Callable, Atomic, Executor)}.
+ *
+ * Besides blocking on {@link #get()}, callers can register listeners that run once the transaction completes (either
+ * successfully, with an exception, or by being cancelled), so that further work can be chained without blocking a thread.
+ * Cancelling the future prevents any further execution attempt of the transaction, but does not interrupt an attempt that
+ * is already running.
+ */
+public class TransactionFuture<T> implements Future<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionFuture.class);
+
+    private enum State {
+        PENDING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    private State state = State.PENDING;
+    private T value;
+    private Throwable failure;
+    private List<Listener> listeners = new ArrayList<Listener>();
+
+    /**
+     * Register a listener to run, in the given executor, once this future completes. If it is already complete, the listener
+     * is dispatched immediately.
+     */
+    public void addListener(Runnable listener, Executor executor) {
+        Listener entry = new Listener(listener, executor);
+        synchronized (this) {
+            if (state == State.PENDING) {
+                listeners.add(entry);
+                return;
+            }
+        }
+        entry.dispatch();
+    }
+
+    /**
+     * Complete this future with the result of the transaction.
+     *
+     * @return <code>false</code> if this future was already complete.
+     */
+    public boolean set(T value) {
+        return complete(State.SUCCEEDED, value, null);
+    }
+
+    /**
+     * Complete this future with the exception that aborted the transaction.
+     *
+     * @return <code>false</code> if this future was already complete.
+     */
+    public boolean setException(Throwable failure) {
+        return complete(State.FAILED, null, failure);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(State.CANCELLED, null, null);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == State.CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != State.PENDING;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (state == State.PENDING) {
+            wait();
+        }
+        return result();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (state == State.PENDING) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return result();
+    }
+
+    // must hold this object's monitor
+    private T result() throws ExecutionException {
+        switch (state) {
+        case SUCCEEDED:
+            return value;
+        case FAILED:
+            throw new ExecutionException(failure);
+        default:
+            throw new CancellationException();
+        }
+    }
+
+    private boolean complete(State newState, T value, Throwable failure) {
+        List<Listener> toDispatch;
+        synchronized (this) {
+            if (state != State.PENDING) {
+                return false;
+            }
+            this.state = newState;
+            this.value = value;
+            this.failure = failure;
+            toDispatch = listeners;
+            listeners = null;
+            notifyAll();
+        }
+        for (Listener listener : toDispatch) {
+            listener.dispatch();
+        }
+        return true;
+    }
+
+    private static final class Listener {
+        private final Runnable runnable;
+        private final Executor executor;
+
+        private Listener(Runnable runnable, Executor executor) {
+            this.runnable = runnable;
+            this.executor = executor;
+        }
+
+        private void dispatch() {
+            try {
+                executor.execute(runnable);
+            } catch (RuntimeException e) {
+                logger.error("Could not dispatch listener " + runnable, e);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package pt.ist.fenixframework;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import javax.transaction.NotSupportedException;
 import javax.transaction.SystemException;
@@ -60,6 +61,21 @@ public interface TransactionManager extends javax.transaction.TransactionManager
      */
     public <T> T withTransaction(Callable<T> command, Atomic atomic) throws Exception;
 
+    /**
+     * Transactionally execute a command in the given executor, without blocking the caller. A conflicting execution is not
+     * retried in a loop: each new attempt is submitted to the executor as a separate task.
+     * 
+     * @param command
+     *            The command to execute
+     * @param atomic
+     *            the configuration for the execution of this command.
+     * @param executor
+     *            the executor that runs each attempt. A {@link TransactionExecutor} also caps the number of concurrent
+     *            transactions that may write.
+     * @return A future that completes with the result of the command, or with the exception that aborted it.
+     */
+    public <T> TransactionFuture<T> withTransactionAsync(Callable<T> command, Atomic atomic, Executor executor);
+
     /**
      * Create a new transaction and associate it with the current thread. This
      * method can be used by the programmer to ensure that a transaction will
@@ -1,7 +1,10 @@
 package pt.ist.fenixframework.backend;
 
+import java.util.Collection;
+
 import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
+import pt.ist.fenixframework.Snapshot;
 import pt.ist.fenixframework.TransactionManager;
 
 /**
@@ -58,4 +61,14 @@ public interface BackEnd {
      */
     public boolean isDomainObjectValid(DomainObject object);
 
+    /**
+     * @see pt.ist.fenixframework.FenixFramework#prefetch(Collection, String...)
+     */
+    public void prefetch(Collection<? extends DomainObject> objects, String... slotNames);
+
+    /**
+     * @see pt.ist.fenixframework.FenixFramework#openSnapshot(long)
+     */
+    public Snapshot openSnapshot(long maxAgeMillis);
+
 }
@@ -1,6 +1,8 @@
 package pt.ist.fenixframework.core;
 
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
 import javax.transaction.HeuristicMixedException;
 import javax.transaction.HeuristicRollbackException;
@@ -8,8 +10,11 @@ import javax.transaction.NotSupportedException;
 import javax.transaction.RollbackException;
 import javax.transaction.SystemException;
 
+import pt.ist.fenixframework.AsyncCommitListener;
+import pt.ist.fenixframework.Atomic;
 import pt.ist.fenixframework.CommitListener;
 import pt.ist.fenixframework.Transaction;
+import pt.ist.fenixframework.TransactionFuture;
 import pt.ist.fenixframework.TransactionManager;
 import pt.ist.fenixframework.core.exception.FenixRollbackException;
 
@@ -24,6 +29,8 @@ public abstract class AbstractTransactionManager implements TransactionManager {
 
     protected final ConcurrentLinkedQueue<CommitListener> listeners = new ConcurrentLinkedQueue<CommitListener>();
 
+    protected final AsyncCommitDispatcher asyncCommitDispatcher = new AsyncCommitDispatcher();
+
     @Override
     public void begin() throws NotSupportedException, SystemException {
         begin(false);
@@ -54,10 +61,33 @@ public abstract class AbstractTransactionManager implements TransactionManager {
 
         backendCommit();
 
+        notifyAfterCommit(toCommit);
+    }
+
+    /**
+     * Invokes {@link CommitListener#afterCommit(Transaction)} on every listener. {@link AsyncCommitListener}s are notified
+     * through the {@link AsyncCommitDispatcher}.
+     */
+    protected void notifyAfterCommit(Transaction transaction) {
         for (CommitListener listener : listeners) {
-            listener.afterCommit(toCommit);
+            if (listener instanceof AsyncCommitListener) {
+                asyncCommitDispatcher.dispatch((AsyncCommitListener) listener, transaction);
+            } else {
+                listener.afterCommit(transaction);
+            }
         }
+    }
 
+    public AsyncCommitDispatcher getAsyncCommitDispatcher() {
+        return asyncCommitDispatcher;
+    }
+
+    /**
+     * @see pt.ist.fenixframework.TransactionManager#withTransactionAsync(Callable, Atomic, Executor)
+     */
+    @Override
+    public <T> TransactionFuture<T> withTransactionAsync(Callable<T> command, Atomic atomic, Executor executor) {
+        return AsyncTransactionRunner.submit(this, command, atomic, executor);
     }
 
     /**
@@ -98,9 +128,7 @@ public abstract class AbstractTransactionManager implements TransactionManager {
 
         backendRollback();
 
-        for (CommitListener listener : listeners) {
-            listener.afterCommit(toRollback);
-        }
+        notifyAfterCommit(toRollback);
     }
 
     /**
@@ -0,0 +1,186 @@
+package pt.ist.fenixframework.core;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.AsyncCommitListener;
+import pt.ist.fenixframework.Transaction;
+import pt.ist.fenixframework.util.FenixFrameworkThread;
+
+/**
+ * Delivers {@link AsyncCommitListener#afterCommit(Transaction)} notifications on a fixed number of worker threads.
+ * 
+ * Each listener has its own bounded queue of pending notifications, which is drained by at most one worker at a time, so
+ * each listener sees its notifications in order and never concurrently with itself. When a listener's queue is full, the
+ * committing thread blocks until there is room for the notification (backpressure). The workers are started on the first
+ * notification and stopped, after delivering the pending notifications, when the framework shuts down. A notification
+ * dispatched after that starts them again, so the framework can be initialized again with the same dispatcher.
+ */
+public class AsyncCommitDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncCommitDispatcher.class);
+
+    public static final int DEFAULT_WORKERS = 2;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    // maximum notifications delivered to one listener before letting the worker serve another
+    private static final int MAX_BATCH = 64;
+
+    // how long a committing thread waits for room in a full queue before checking that some worker is still alive
+    private static final long FULL_QUEUE_WAIT_MILLIS = 100;
+
+    private final int workers;
+    private final int queueCapacity;
+
+    private final ConcurrentHashMap<AsyncCommitListener, ListenerQueue> queues =
+            new ConcurrentHashMap<AsyncCommitListener, ListenerQueue>();
+
+    // listener queues with pending notifications and not being drained by any worker
+    private final LinkedBlockingQueue<ListenerQueue> ready = new LinkedBlockingQueue<ListenerQueue>();
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    // workers started and not yet exited
+    private final AtomicInteger liveWorkers = new AtomicInteger();
+
+    public AsyncCommitDispatcher() {
+        this(DEFAULT_WORKERS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public AsyncCommitDispatcher(int workers, int queueCapacity) {
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Queue the notification of the given listener, blocking while its queue is full and some worker is alive to drain it.
+     */
+    public void dispatch(AsyncCommitListener listener, Transaction transaction) {
+        ensureStarted();
+
+        ListenerQueue queue = queues.get(listener);
+        if (queue == null) {
+            ListenerQueue newQueue = new ListenerQueue(listener);
+            queue = queues.putIfAbsent(listener, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+            }
+        }
+
+        try {
+            while (!queue.pending.offer(transaction, FULL_QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                // the workers may have exited, when the framework shut down, leaving no one to make room
+                ensureStarted();
+            }
+        } catch (InterruptedException e) {
+            // do not lose the notification: deliver it in the committing thread
+            logger.debug("Interrupted while queueing notification. Notifying {} synchronously", listener);
+            Thread.currentThread().interrupt();
+            listener.afterCommit(transaction);
+            return;
+        }
+        queueDepth.incrementAndGet();
+        queue.schedule();
+        // the workers may have exited before seeing the queue scheduled
+        ensureStarted();
+    }
+
+    /**
+     * The number of notifications queued and not yet delivered, for all listeners.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * The number of notifications queued and not yet delivered to the given listener.
+     */
+    public int getQueueDepth(AsyncCommitListener listener) {
+        ListenerQueue queue = queues.get(listener);
+        return queue == null ? 0 : queue.pending.size();
+    }
+
+    private void ensureStarted() {
+        if (liveWorkers.get() > 0) {
+            return;
+        }
+        synchronized (this) {
+            if (liveWorkers.get() == 0) {
+                for (int i = 0; i < workers; i++) {
+                    liveWorkers.incrementAndGet();
+                    new Worker(i).start();
+                }
+            }
+        }
+    }
+
+    private final class ListenerQueue {
+        private final AsyncCommitListener listener;
+        private final BlockingQueue<Transaction> pending;
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        ListenerQueue(AsyncCommitListener listener) {
+            this.listener = listener;
+            this.pending = new ArrayBlockingQueue<Transaction>(queueCapacity);
+        }
+
+        void schedule() {
+            if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+                ready.add(this);
+            }
+        }
+
+        void drain(int max) {
+            Transaction transaction;
+            for (int i = 0; i < max && (transaction = pending.poll()) != null; i++) {
+                queueDepth.decrementAndGet();
+                try {
+                    listener.afterCommit(transaction);
+                } catch (RuntimeException e) {
+                    logger.warn("AsyncCommitListener " + listener + " failed", e);
+                }
+            }
+            scheduled.set(false);
+            // notifications may have been queued after the last poll
+            schedule();
+        }
+    }
+
+    private final class Worker extends FenixFrameworkThread {
+
+        Worker(int number) {
+            super("AsyncCommitDispatcher-" + number);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!isInterrupted()) {
+                    ready.take().drain(MAX_BATCH);
+                }
+            } catch (InterruptedException e) {
+                logger.debug("{} interrupted", getName());
+            }
+
+            // shutting down: deliver whatever is still pending
+            ListenerQueue queue;
+            while ((queue = ready.poll()) != null) {
+                queue.drain(Integer.MAX_VALUE);
+            }
+
+            // a commit that found this worker still alive may have scheduled its queue after the last poll
+            if (liveWorkers.decrementAndGet() == 0 && !ready.isEmpty()) {
+                ensureStarted();
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package pt.ist.fenixframework.core;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.Config;
+import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.TransactionExecutor;
+import pt.ist.fenixframework.TransactionFuture;
+import pt.ist.fenixframework.TransactionManager;
+import pt.ist.fenixframework.core.exception.ContentionException;
+import pt.ist.fenixframework.util.FenixFrameworkThreadFactory;
+
+/**
+ * Implements {@link TransactionManager#withTransactionAsync(Callable, Atomic, Executor)} on top of
+ * {@link TransactionManager#withTransaction(Callable, Atomic)}.
+ *
+ * Each attempt is a separate task: the transaction is executed once, without retrying on conflicts (its {@link Atomic} is
+ * narrowed to <code>maxRetries = 0</code>, and carries the number of conflicts of the previous attempts, so that the
+ * {@link pt.ist.fenixframework.ContentionManager} sees the actual number of each attempt). When the attempt gives up because of
+ * a conflict, the next attempt is handed back to the executor (after a randomized exponential backoff, which does not hold any thread) instead of being retried in a loop
+ * on the same thread. Attempts stop once the <code>maxRetries</code> of the original {@link Atomic} (or the global
+ * <code>contentionMaxRetries</code>) are exhausted, failing the future with a {@link ContentionException}.
+ *
+ * Backends whose <code>withTransaction</code> does not consult the {@link pt.ist.fenixframework.ContentionManager} still
+ * retry within a single attempt.
+ */
+public final class AsyncTransactionRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncTransactionRunner.class);
+
+    private static final Atomic DEFAULT_ATOMIC = new Atomic() {
+        @Override
+        public TxMode mode() {
+            return TxMode.SPECULATIVE_READ;
+        }
+
+        @Override
+        public boolean flattenNested() {
+            return true;
+        }
+
+        @Override
+        public int maxRetries() {
+            return GLOBAL;
+        }
+
+        @Override
+        public int serializeAfter() {
+            return GLOBAL;
+        }
+
+        @Override
+        public boolean backoff() {
+            return true;
+        }
+
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return Atomic.class;
+        }
+    };
+
+    // only delays the hand-off of retries to their executor, so a single thread is enough
+    private static volatile ScheduledThreadPoolExecutor retryScheduler;
+
+    private AsyncTransactionRunner() {
+    }
+
+    public static <T> TransactionFuture<T> submit(TransactionManager manager, Callable<T> command, Atomic atomic,
+            Executor executor) {
+        Attempt<T> attempt = new Attempt<T>(manager, command, (atomic == null) ? DEFAULT_ATOMIC : atomic, executor);
+        attempt.dispatch();
+        return attempt.future;
+    }
+
+    /**
+     * Narrow an {@link Atomic} so that the transaction is executed once, without retrying or backing off on conflicts. A
+     * <code>null</code> atomic stands for the defaults of {@link Atomic}.
+     */
+    public static Atomic singleAttempt(Atomic atomic) {
+        return singleAttempt(atomic, 0);
+    }
+
+    /**
+     * Like {@link #singleAttempt(Atomic)}, for a transaction that has already aborted the given number of times because of
+     * conflicts. The backends that consult the {@link pt.ist.fenixframework.ContentionManager} count the attempts from there
+     * (see {@link #getPreviousConflicts(Atomic)}), e.g. to escalate the transaction to serialized execution.
+     */
+    public static Atomic singleAttempt(Atomic atomic, int previousConflicts) {
+        return new SingleAttempt((atomic == null) ? DEFAULT_ATOMIC : atomic, previousConflicts);
+    }
+
+    /**
+     * @return The number of conflicts of the previous attempts of a transaction executed with an {@link Atomic} narrowed by
+     *         {@link #singleAttempt(Atomic, int)}, or 0 for any other {@link Atomic}.
+     */
+    public static int getPreviousConflicts(Atomic atomic) {
+        return (atomic instanceof SingleAttempt) ? ((SingleAttempt) atomic).previousConflicts : 0;
+    }
+
+    private static final class SingleAttempt implements Atomic {
+        private final Atomic narrowed;
+        private final int previousConflicts;
+
+        private SingleAttempt(Atomic narrowed, int previousConflicts) {
+            this.narrowed = narrowed;
+            this.previousConflicts = previousConflicts;
+        }
+
+        @Override
+        public TxMode mode() {
+            return narrowed.mode();
+        }
+
+        @Override
+        public boolean flattenNested() {
+            return narrowed.flattenNested();
+        }
+
+        @Override
+        public int maxRetries() {
+            return 0;
+        }
+
+        @Override
+        public int serializeAfter() {
+            return narrowed.serializeAfter();
+        }
+
+        @Override
+        public boolean backoff() {
+            return false;
+        }
+
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return Atomic.class;
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor getRetryScheduler() {
+        if (retryScheduler == null) {
+            synchronized (AsyncTransactionRunner.class) {
+                if (retryScheduler == null) {
+                    ScheduledThreadPoolExecutor scheduler =
+                            new ScheduledThreadPoolExecutor(1, new FenixFrameworkThreadFactory("AsyncTransactionRetries"));
+                    scheduler.setRemoveOnCancelPolicy(true);
+                    retryScheduler = scheduler;
+                }
+            }
+        }
+        return retryScheduler;
+    }
+
+    /**
+     * Shut down the thread that delays the retries. The retries that are still waiting for their backoff to elapse fail with a
+     * {@link RejectedExecutionException} once it elapses, and then the thread terminates. This is invoked when the framework
+     * shuts down.
+     */
+    public static void shutdown() {
+        ScheduledThreadPoolExecutor scheduler;
+        synchronized (AsyncTransactionRunner.class) {
+            scheduler = retryScheduler;
+            retryScheduler = null;
+        }
+        if (scheduler != null) {
+            // the delayed retries still run once their backoff elapses, but they see that the scheduler is shut down, and fail
+            scheduler.shutdown();
+        }
+    }
+
+    private static final class Attempt<T> implements TransactionExecutor.RejectableTask {
+        private final TransactionManager manager;
+        private final Callable<T> command;
+        private final Atomic atomic;
+        private final Executor executor;
+        private final TransactionFuture<T> future = new TransactionFuture<T>();
+        private int conflicts = 0;
+
+        private Attempt(TransactionManager manager, Callable<T> command, Atomic atomic, Executor executor) {
+            this.manager = manager;
+            this.command = command;
+            this.atomic = atomic;
+            this.executor = executor;
+        }
+
+        private void dispatch() {
+            try {
+                if (executor instanceof TransactionExecutor && atomic.mode() != TxMode.READ) {
+                    ((TransactionExecutor) executor).executeWriter(this);
+                } else {
+                    executor.execute(this);
+                }
+            } catch (RejectedExecutionException e) {
+                future.setException(e);
+            }
+        }
+
+        @Override
+        public void rejected(RejectedExecutionException e) {
+            future.setException(e);
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.set(manager.withTransaction(command, singleAttempt(atomic, conflicts)));
+            } catch (ContentionException e) {
+                conflicts++;
+                retry(e.getCause());
+            } catch (Throwable t) {
+                future.setException(t);
+            }
+        }
+
+        private void retry(Throwable conflict) {
+            Config config = FenixFramework.getConfig();
+            int maxRetries = (atomic.maxRetries() == Atomic.GLOBAL) ? config.getContentionMaxRetries() : atomic.maxRetries();
+            if (maxRetries >= 0 && conflicts > maxRetries) {
+                future.setException(new ContentionException(command.getClass().getName(), conflicts, conflict));
+                return;
+            }
+
+            long delayMicros = atomic.backoff() ? backoffMicros(config) : 0;
+            logger.debug("Retrying {} after {} conflict(s) in {}us", command, conflicts, delayMicros);
+            if (delayMicros <= 0) {
+                dispatch();
+            } else {
+                final ScheduledThreadPoolExecutor scheduler = getRetryScheduler();
+                try {
+                    scheduler.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (scheduler.isShutdown()) {
+                                future.setException(new RejectedExecutionException("The framework has been shut down"));
+                            } else {
+                                dispatch();
+                            }
+                        }
+                    }, delayMicros, TimeUnit.MICROSECONDS);
+                } catch (RejectedExecutionException e) {
+                    future.setException(e);
+                }
+            }
+        }
+
+        private long backoffMicros(Config config) {
+            long min = config.getContentionBackoffMinMicros();
+            long max = Math.max(min, config.getContentionBackoffMaxMicros());
+            if (min <= 0) {
+                return 0;
+            }
+            long window = min << Math.min(conflicts - 1, 30);
+            if (window <= 0 || window > max) {
+                window = max;
+            }
+            return (window / 2) + ThreadLocalRandom.current().nextLong((window / 2) + 1);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package pt.ist.fenixframework.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.joda.time.chrono.ISOChronology;
+
+import pt.ist.fenixframework.FenixFramework;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+/**
+ * A compact, tagged binary {@link ExternalizationCodec}. Each value is written as a one-byte tag followed by its contents.
+ * Primitive wrappers, strings, enums, big numbers, byte arrays, dates (including the joda-time types used as DML value
+ * types), JSON elements and references to domain objects have their own tags. Integers and OIDs are written as variable-length
+ * quantities, and domain objects are written by OID rather than through their serialized form. Any other
+ * {@link Serializable} value falls back to Java serialization.
+ */
+public class BinaryExternalizationCodec implements ExternalizationCodec {
+
+    public static final byte FORMAT = 1;
+
+    private static final int NULL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int BYTE = 3;
+    private static final int SHORT = 4;
+    private static final int INTEGER = 5;
+    private static final int LONG = 6;
+    private static final int FLOAT = 7;
+    private static final int DOUBLE = 8;
+    private static final int CHARACTER = 9;
+    private static final int STRING = 10;
+    private static final int ENUM = 11;
+    private static final int BIG_INTEGER = 12;
+    private static final int BIG_DECIMAL = 13;
+    private static final int BYTES = 14;
+    private static final int DOMAIN_OBJECT_OID = 15;
+    private static final int DOMAIN_OBJECT_EXTERNAL_ID = 16;
+    private static final int DATE = 17;
+    private static final int DATE_TIME = 18;
+    private static final int LOCAL_DATE = 19;
+    private static final int LOCAL_TIME = 20;
+    private static final int JSON = 21;
+    private static final int SERIALIZABLE = 22;
+
+    private static final JsonParser PARSER = new JsonParser();
+
+    // enum classes by name, to avoid going through the class loader for each enum read
+    private static final ConcurrentHashMap<String, Class<?>> ENUM_CLASSES = new ConcurrentHashMap<String, Class<?>>();
+
+    @Override
+    public byte getFormat() {
+        return FORMAT;
+    }
+
+    @Override
+    public void write(Object obj, DataOutput out) throws IOException {
+        if (obj == null || obj instanceof Externalization.NullClass) {
+            out.writeByte(NULL);
+        } else if (obj instanceof String) {
+            out.writeByte(STRING);
+            writeString((String) obj, out);
+        } else if (obj instanceof Integer) {
+            out.writeByte(INTEGER);
+            writeVarLong(zigZag((Integer) obj), out);
+        } else if (obj instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(zigZag((Long) obj), out);
+        } else if (obj instanceof Boolean) {
+            out.writeByte((Boolean) obj ? TRUE : FALSE);
+        } else if (obj instanceof AbstractDomainObject) {
+            writeDomainObject((AbstractDomainObject) obj, out);
+        } else if (obj instanceof Enum) {
+            Enum<?> value = (Enum<?>) obj;
+            out.writeByte(ENUM);
+            writeString(value.getDeclaringClass().getName(), out);
+            writeString(value.name(), out);
+        } else if (obj instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) obj);
+        } else if (obj instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) obj);
+        } else if (obj instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) obj);
+        } else if (obj instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) obj);
+        } else if (obj instanceof Character) {
+            out.writeByte(CHARACTER);
+            out.writeChar((Character) obj);
+        } else if (obj instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes((byte[]) obj, out);
+        } else if (obj.getClass() == BigInteger.class) {
+            out.writeByte(BIG_INTEGER);
+            writeBytes(((BigInteger) obj).toByteArray(), out);
+        } else if (obj.getClass() == BigDecimal.class) {
+            BigDecimal value = (BigDecimal) obj;
+            out.writeByte(BIG_DECIMAL);
+            writeVarLong(zigZag(value.scale()), out);
+            writeBytes(value.unscaledValue().toByteArray(), out);
+        } else if (obj.getClass() == Date.class) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) obj).getTime());
+        } else if (obj instanceof DateTime && ((DateTime) obj).getChronology() instanceof ISOChronology) {
+            DateTime value = (DateTime) obj;
+            out.writeByte(DATE_TIME);
+            out.writeLong(value.getMillis());
+            writeString(value.getZone().getID(), out);
+        } else if (obj instanceof LocalDate && ((LocalDate) obj).getChronology() == ISOChronology.getInstanceUTC()) {
+            LocalDate value = (LocalDate) obj;
+            out.writeByte(LOCAL_DATE);
+            writeVarLong(zigZag(value.getYear()), out);
+            out.writeByte(value.getMonthOfYear());
+            out.writeByte(value.getDayOfMonth());
+        } else if (obj instanceof LocalTime && ((LocalTime) obj).getChronology() == ISOChronology.getInstanceUTC()) {
+            out.writeByte(LOCAL_TIME);
+            writeVarLong(((LocalTime) obj).getMillisOfDay(), out);
+        } else if (obj instanceof JsonElement) {
+            out.writeByte(JSON);
+            writeString(obj.toString(), out);
+        } else if (obj instanceof Serializable) {
+            out.writeByte(SERIALIZABLE);
+            writeBytes(serialize((Serializable) obj), out);
+        } else {
+            throw new UnsupportedOperationException(obj.getClass().getName());
+        }
+    }
+
+    @Override
+    public Object read(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+        case NULL:
+            return null;
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case BYTE:
+            return in.readByte();
+        case SHORT:
+            return in.readShort();
+        case INTEGER:
+            return (int) unZigZag(readVarLong(in));
+        case LONG:
+            return unZigZag(readVarLong(in));
+        case FLOAT:
+            return in.readFloat();
+        case DOUBLE:
+            return in.readDouble();
+        case CHARACTER:
+            return in.readChar();
+        case STRING:
+            return readString(in);
+        case ENUM:
+            return readEnum(in);
+        case BIG_INTEGER:
+            return new BigInteger(readBytes(in));
+        case BIG_DECIMAL:
+            int scale = (int) unZigZag(readVarLong(in));
+            return new BigDecimal(new BigInteger(readBytes(in)), scale);
+        case BYTES:
+            return readBytes(in);
+        case DOMAIN_OBJECT_OID:
+            return FenixFramework.getConfig().getBackEnd().fromOid(readVarLong(in));
+        case DOMAIN_OBJECT_EXTERNAL_ID:
+            return FenixFramework.getDomainObject(readString(in));
+        case DATE:
+            return new Date(in.readLong());
+        case DATE_TIME:
+            long millis = in.readLong();
+            return new DateTime(millis, DateTimeZone.forID(readString(in)));
+        case LOCAL_DATE:
+            int year = (int) unZigZag(readVarLong(in));
+            return new LocalDate(year, in.readUnsignedByte(), in.readUnsignedByte());
+        case LOCAL_TIME:
+            return LocalTime.fromMillisOfDay(readVarLong(in));
+        case JSON:
+            return PARSER.parse(readString(in));
+        case SERIALIZABLE:
+            return deserialize(readBytes(in));
+        default:
+            throw new IOException("Unknown tag: " + tag);
+        }
+    }
+
+    private static void writeDomainObject(AbstractDomainObject obj, DataOutput out) throws IOException {
+        Object oid = obj.getOid();
+        // OIDs are non-negative in the backends that use longs, which keeps their varint encoding short
+        if (oid instanceof Long && (Long) oid >= 0) {
+            out.writeByte(DOMAIN_OBJECT_OID);
+            writeVarLong((Long) oid, out);
+        } else {
+            out.writeByte(DOMAIN_OBJECT_EXTERNAL_ID);
+            writeString(obj.getExternalId(), out);
+        }
+    }
+
+    private static Object readEnum(DataInput in) throws IOException {
+        String className = readString(in);
+        String name = readString(in);
+        Class<?> enumClass = ENUM_CLASSES.get(className);
+        if (enumClass == null) {
+            enumClass = loadEnumClass(className);
+            ENUM_CLASSES.put(className, enumClass);
+        }
+        return Enum.valueOf(enumClass.asSubclass(Enum.class), name);
+    }
+
+    // the application's enums may not be visible from the framework's class loader, e.g. when it is shared by several
+    // applications, but they are from the context class loader
+    private static Class<?> loadEnumClass(String className) {
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        if (contextClassLoader != null) {
+            try {
+                return Class.forName(className, false, contextClassLoader);
+            } catch (ClassNotFoundException e) {
+                // try the framework's own class loader
+            }
+        }
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new ExternalizationException(e);
+        }
+    }
+
+    private static void writeString(String value, DataOutput out) throws IOException {
+        writeBytes(value.getBytes(StandardCharsets.UTF_8), out);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(byte[] bytes, DataOutput out) throws IOException {
+        writeVarLong(bytes.length, out);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid length: " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(long value, DataOutput out) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length quantity");
+    }
+
+    private static byte[] serialize(Serializable obj) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(obj);
+        oos.close();
+        return baos.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return ois.readObject();
+        } catch (ClassNotFoundException cnfe) {
+            throw new ExternalizationException(cnfe);
+        } finally {
+            ois.close();
+        }
+    }
+}
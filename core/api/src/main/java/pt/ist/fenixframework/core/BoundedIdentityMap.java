@@ -0,0 +1,514 @@
+package pt.ist.fenixframework.core;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import pt.ist.fenixframework.Config;
+
+/**
+ * An {@link IdentityMap} that keeps a bounded number of domain objects strongly reachable, instead of leaving the whole working
+ * set at the mercy of the garbage collector's handling of soft references.
+ *
+ * The capacity is given by <code>identityMapCapacity</code> and, optionally, by a memory budget
+ * (<code>identityMapMaxBytes</code>) divided by the estimated size of each object (<code>identityMapObjectBytes</code>),
+ * whichever is smaller. Resident objects are managed with a W-TinyLFU policy: new objects enter a small LRU window, and an
+ * object leaving the window is only admitted to the main (segmented LRU) space if it was accessed more frequently than the
+ * object it would replace. Frequencies are estimated with a count-min sketch that is periodically aged.
+ *
+ * An evicted object is not forgotten: it is kept through a weak reference for as long as it is reachable, and is
+ * re-admitted when it is looked up again. Therefore, objects referenced by active transactions (or by the application) remain
+ * pinned in the map, and there is never more than one instance of the same domain object. Only objects that are no longer
+ * referenced anywhere are dropped.
+ *
+ * Accesses are recorded in a lossy buffer and applied to the policy in batches, so that lookups do not contend on the
+ * eviction lock.
+ */
+public class BoundedIdentityMap implements IdentityMap {
+
+    public static final int DEFAULT_CAPACITY = 100000;
+
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    // try to apply the buffered reads every this number of reads
+    private static final int DRAIN_MASK = 31;
+
+    private static final byte NOT_RESIDENT = 0;
+    private static final byte WINDOW = 1;
+    private static final byte PROBATION = 2;
+    private static final byte PROTECTED = 3;
+
+    private final ConcurrentHashMap<Object, Node> index = new ConcurrentHashMap<Object, Node>();
+    private final ReferenceQueue<AbstractDomainObject> refQueue = new ReferenceQueue<AbstractDomainObject>();
+
+    private final AtomicReferenceArray<Node> readBuffer = new AtomicReferenceArray<Node>(READ_BUFFER_SIZE);
+    private final AtomicLong reads = new AtomicLong();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    // the following fields are guarded by the evictionLock
+    private final Node window = new Node();
+    private final Node probation = new Node();
+    private final Node protectedSegment = new Node();
+    private int windowSize;
+    private int probationSize;
+    private int protectedSize;
+    private int maxWindow;
+    private int maxProtected;
+    private int capacity;
+    private FrequencySketch sketch;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong weakHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    public BoundedIdentityMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public BoundedIdentityMap(int capacity) {
+        window.clearLinks();
+        probation.clearLinks();
+        protectedSegment.clearLinks();
+        setCapacity(capacity);
+    }
+
+    /**
+     * Size the map according to the configuration. This is invoked by the {@link Config} when this map is the configured one.
+     */
+    public void init(Config config) {
+        int capacity = config.getIdentityMapCapacity();
+        long maxBytes = config.getIdentityMapMaxBytes();
+        if (maxBytes > 0) {
+            capacity = (int) Math.min(capacity, Math.max(1, maxBytes / Math.max(1, config.getIdentityMapObjectBytes())));
+        }
+        setCapacity(capacity);
+    }
+
+    private void setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+        }
+        evictionLock.lock();
+        try {
+            this.capacity = capacity;
+            this.maxWindow = Math.max(1, capacity / 100);
+            this.maxProtected = (int) ((capacity - maxWindow) * 0.8);
+            this.sketch = new FrequencySketch(capacity);
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public AbstractDomainObject cache(AbstractDomainObject obj) {
+        processQueue();
+        Object key = obj.getOid();
+        Node newNode = new Node(obj, key, refQueue);
+
+        while (true) {
+            Node node = index.putIfAbsent(key, newNode);
+            if (node == null) {
+                evictionLock.lock();
+                try {
+                    drainReadBuffer();
+                    sketch.increment(key);
+                    // a concurrent lookup may have admitted it already, when draining the reads, and a concurrent remove may
+                    // have dropped it
+                    if (newNode.queue == NOT_RESIDENT && index.get(key) == newNode) {
+                        admit(newNode, obj);
+                    }
+                    evict();
+                } finally {
+                    evictionLock.unlock();
+                }
+                return obj;
+            }
+            AbstractDomainObject objInCache = node.get();
+            if (objInCache != null) {
+                recordAccess(node);
+                return objInCache;
+            }
+            // the object in cache was GCed already, so remove its node and retry
+            index.remove(key, node);
+        }
+    }
+
+    @Override
+    public AbstractDomainObject lookup(Object key) {
+        Node node = index.get(key);
+        AbstractDomainObject result = (node == null) ? null : node.get();
+        if (result == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (node.queue == NOT_RESIDENT) {
+            weakHits.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        recordAccess(node);
+        return result;
+    }
+
+    @Override
+    public void remove(Object key) {
+        Node node = index.remove(key);
+        if (node == null) {
+            return;
+        }
+        evictionLock.lock();
+        try {
+            // buffered reads of the node would otherwise move it back into its queue
+            drainReadBuffer();
+            if (node.queue != NOT_RESIDENT) {
+                detach(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        evictionLock.lock();
+        try {
+            for (Node node : index.values()) {
+                node.queue = NOT_RESIDENT;
+                node.strong = null;
+                node.prev = node.next = null;
+            }
+            index.clear();
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                readBuffer.set(i, null);
+            }
+            window.clearLinks();
+            probation.clearLinks();
+            protectedSegment.clearLinks();
+            windowSize = probationSize = protectedSize = 0;
+            sketch = new FrequencySketch(capacity);
+        } finally {
+            evictionLock.unlock();
+        }
+        while (refQueue.poll() != null) {
+            // discard
+        }
+    }
+
+    /**
+     * The maximum number of objects that are kept strongly reachable.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * The number of objects that are kept strongly reachable.
+     */
+    public int getResidentCount() {
+        return windowSize + probationSize + protectedSize;
+    }
+
+    /**
+     * The number of objects in the map, including the evicted objects that are still reachable.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * The number of lookups that found a resident object.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * The number of lookups that found an evicted object that was still reachable (and was, thus, re-admitted).
+     */
+    public long getWeakHitCount() {
+        return weakHits.get();
+    }
+
+    /**
+     * The number of lookups that did not find the object, which must then be loaded from the repository.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * The number of objects that were evicted to make room for others, either after losing the admission against the object
+     * they would replace, or being that object.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * The number of objects that left the window and were not admitted to the main space.
+     */
+    public long getRejectionCount() {
+        return rejections.get();
+    }
+
+    /**
+     * The fraction of lookups that did not need to load the object from the repository.
+     */
+    public double getHitRate() {
+        long found = hits.get() + weakHits.get();
+        long total = found + misses.get();
+        return (total == 0) ? 1.0 : (double) found / total;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedIdentityMap[capacity=" + capacity + ", resident=" + getResidentCount() + ", size=" + size() + ", hits="
+                + getHitCount() + ", weakHits=" + getWeakHitCount() + ", misses=" + getMissCount() + ", evictions="
+                + getEvictionCount() + ", rejections=" + getRejectionCount() + ", hitRate=" + getHitRate() + "]";
+    }
+
+    private void recordAccess(Node node) {
+        long n = reads.getAndIncrement();
+        readBuffer.lazySet((int) (n & READ_BUFFER_MASK), node);
+        if ((n & DRAIN_MASK) == DRAIN_MASK && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+                evict();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    // must hold the evictionLock
+    private void drainReadBuffer() {
+        for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+            Node node = readBuffer.getAndSet(i, null);
+            if (node != null) {
+                onAccess(node);
+            }
+        }
+    }
+
+    // must hold the evictionLock
+    private void onAccess(Node node) {
+        sketch.increment(node.key);
+        switch (node.queue) {
+        case WINDOW:
+            node.moveToTail(window);
+            break;
+        case PROBATION:
+            node.unlink();
+            probationSize--;
+            node.linkLast(protectedSegment);
+            node.queue = PROTECTED;
+            protectedSize++;
+            // keep the protected segment within its bounds by demoting its LRU object
+            while (protectedSize > maxProtected) {
+                Node demoted = protectedSegment.next;
+                demoted.unlink();
+                protectedSize--;
+                demoted.linkLast(probation);
+                demoted.queue = PROBATION;
+                probationSize++;
+            }
+            break;
+        case PROTECTED:
+            node.moveToTail(protectedSegment);
+            break;
+        default:
+            // an evicted object that is still reachable: admit it again, if it is still the one in the map
+            AbstractDomainObject obj = node.get();
+            if (obj != null && index.get(node.key) == node) {
+                admit(node, obj);
+            }
+        }
+    }
+
+    // must hold the evictionLock
+    private void admit(Node node, AbstractDomainObject obj) {
+        node.strong = obj;
+        node.linkLast(window);
+        node.queue = WINDOW;
+        windowSize++;
+    }
+
+    // must hold the evictionLock
+    private void evict() {
+        // move the objects in excess in the window to the probation segment, where they compete for admission
+        while (windowSize > maxWindow) {
+            Node candidate = window.next;
+            candidate.unlink();
+            windowSize--;
+            candidate.linkLast(probation);
+            candidate.queue = PROBATION;
+            probationSize++;
+
+            if (getResidentCount() > capacity) {
+                Node victim = probation.next;
+                if (victim != candidate && sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                    rejections.incrementAndGet();
+                    demote(candidate);
+                } else {
+                    demote(victim);
+                }
+            }
+        }
+        while (getResidentCount() > capacity) {
+            Node victim = (probationSize > 0) ? probation.next : (protectedSize > 0) ? protectedSegment.next : window.next;
+            demote(victim);
+        }
+    }
+
+    // must hold the evictionLock
+    private void demote(Node node) {
+        detach(node);
+        evictions.incrementAndGet();
+    }
+
+    // must hold the evictionLock
+    private void detach(Node node) {
+        node.unlink();
+        switch (node.queue) {
+        case WINDOW:
+            windowSize--;
+            break;
+        case PROBATION:
+            probationSize--;
+            break;
+        case PROTECTED:
+            protectedSize--;
+            break;
+        }
+        node.queue = NOT_RESIDENT;
+        node.strong = null;
+    }
+
+    private void processQueue() {
+        Node gcedNode = (Node) refQueue.poll();
+        while (gcedNode != null) {
+            index.remove(gcedNode.key, gcedNode);
+            gcedNode = (Node) refQueue.poll();
+        }
+    }
+
+    /*
+     * Each node is weakly reachable from the map.  While resident, it also holds the object strongly and is linked in one of
+     * the LRU queues.  The links, the queue and the strong reference are guarded by the evictionLock.  The queue is also read
+     * without the lock, to tell resident hits apart from the others.
+     */
+    private static final class Node extends WeakReference<AbstractDomainObject> {
+        private final Object key;
+        private AbstractDomainObject strong;
+        private volatile byte queue = NOT_RESIDENT;
+        private Node prev;
+        private Node next;
+
+        // the sentinel of a queue
+        Node() {
+            super(null);
+            this.key = null;
+        }
+
+        Node(AbstractDomainObject object, Object key, ReferenceQueue<AbstractDomainObject> q) {
+            super(object, q);
+            this.key = key;
+        }
+
+        void clearLinks() {
+            prev = next = this;
+        }
+
+        void linkLast(Node sentinel) {
+            prev = sentinel.prev;
+            next = sentinel;
+            prev.next = this;
+            sentinel.prev = this;
+        }
+
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = next = null;
+        }
+
+        void moveToTail(Node sentinel) {
+            unlink();
+            linkLast(sentinel);
+        }
+    }
+
+    /*
+     * A count-min sketch with four rows of counters, each kept in a byte but saturating at 15, as only recent popularity
+     * matters.  All counters are halved once the number of increments reaches ten times the capacity, so that old
+     * popularity fades away.  Guarded by the evictionLock.
+     */
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = { 0x97cb3127, 0xb3e8b8e1, 0x85ebca6b, 0xc2b2ae35 };
+
+        private final byte[][] rows = new byte[SEEDS.length][];
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, Math.min(capacity, 1 << 24)) - 1) << 1;
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = new byte[width];
+            }
+            this.mask = width - 1;
+            this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * capacity);
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < rows.length; i++) {
+                frequency = Math.min(frequency, rows[i][indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < rows.length; i++) {
+                int j = indexOf(hash, i);
+                if (rows[i][j] < 15) {
+                    rows[i][j]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private void reset() {
+            for (byte[] row : rows) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] >>= 1;
+                }
+            }
+            additions /= 2;
+        }
+
+        private int indexOf(int hash, int i) {
+            int h = (hash ^ SEEDS[i]) * SEEDS[i];
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private static int spread(int h) {
+            h ^= (h >>> 16);
+            h *= 0x45d9f3b;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package pt.ist.fenixframework.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.util.FenixFrameworkThread;
+
+/**
+ * Finds out which boxes and which commands cause transactions to abort.
+ *
+ * When a commit fails validation, the backends that support profiling report the boxes that were found to be stale (identified
+ * by the class of their owner and their slot name, e.g. <code>DomainBPlusTreeData.size</code>, so that all the instances of a
+ * contended slot add up) along with the name of the command that was executing. The counts are kept in bounded top-N sketches
+ * (using the Space-Saving algorithm), so the memory used does not depend on the number of distinct boxes or commands.
+ *
+ * Profiling is disabled unless <code>conflictProfilerEnabled</code> is set. While disabled, the only cost for the backends is
+ * a volatile read of {@link #getActive()} on the abort path and of the thread-local command name in
+ * <code>withTransaction</code>. While enabled, nothing is done for transactions that commit: the read set of a transaction is
+ * only inspected after it fails validation.
+ *
+ * The active profiler is registered in JMX as {@value #OBJECT_NAME} and, when <code>conflictProfilerLogIntervalSeconds</code>
+ * is positive, its report is periodically logged.
+ */
+public class ConflictProfiler implements ConflictProfilerMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConflictProfiler.class);
+
+    public static final String OBJECT_NAME = "pt.ist.fenixframework:type=ConflictProfiler";
+
+    public static final int DEFAULT_TOP_N = 20;
+
+    // used when a conflict cannot be attributed to a box or a command
+    public static final String UNKNOWN = "<unknown>";
+
+    // the sketches track more candidates than they report, which makes the reported counts more accurate
+    private static final int CANDIDATES_PER_ENTRY = 4;
+
+    private static volatile ConflictProfiler active;
+    private static Reporter reporter;
+
+    private static final ThreadLocal<String> currentCommand = new ThreadLocal<String>();
+
+    private final int topN;
+    private long failedValidations = 0;
+    private final TopN hotspots;
+    private final TopN commands;
+    private final TopN conflicts;
+
+    public ConflictProfiler(int topN) {
+        if (topN < 1) {
+            throw new IllegalArgumentException("topN must be positive: " + topN);
+        }
+        this.topN = topN;
+        this.hotspots = new TopN(topN * CANDIDATES_PER_ENTRY);
+        this.commands = new TopN(topN * CANDIDATES_PER_ENTRY);
+        this.conflicts = new TopN(topN * CANDIDATES_PER_ENTRY);
+    }
+
+    /**
+     * @return The profiler in use, or <code>null</code> if profiling is disabled.
+     */
+    public static ConflictProfiler getActive() {
+        return active;
+    }
+
+    /**
+     * Start profiling with the given profiler, replacing the one in use (if any).
+     *
+     * @param logIntervalSeconds How often to log the report of the profiler. A non-positive value disables logging.
+     */
+    public static synchronized void activate(ConflictProfiler profiler, int logIntervalSeconds) {
+        deactivate();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(profiler, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            logger.warn("Could not register the conflict profiler in JMX", e);
+        }
+        if (logIntervalSeconds > 0) {
+            reporter = new Reporter(profiler, logIntervalSeconds);
+            reporter.start();
+        }
+        active = profiler;
+        logger.info("Conflict profiling enabled");
+    }
+
+    /**
+     * Stop profiling, if it was enabled.
+     */
+    public static synchronized void deactivate() {
+        if (active == null) {
+            return;
+        }
+        active = null;
+        if (reporter != null) {
+            reporter.interrupt();
+            reporter = null;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            logger.debug("Could not unregister the conflict profiler from JMX", e);
+        }
+    }
+
+    /**
+     * Set the name of the command that the current thread is about to execute, so that its conflicts are attributed to it.
+     *
+     * @return The name of the command that was executing, to be given to {@link #exitCommand(String)}.
+     */
+    public static String enterCommand(String commandName) {
+        if (active == null) {
+            return null;
+        }
+        String previous = currentCommand.get();
+        currentCommand.set(commandName);
+        return previous;
+    }
+
+    /**
+     * Restore the name of the command that the current thread was executing before {@link #enterCommand(String)}.
+     */
+    public static void exitCommand(String previousCommandName) {
+        if (active != null || previousCommandName != null) {
+            currentCommand.set(previousCommandName);
+        }
+    }
+
+    /**
+     * @return The name under which the conflicts of a box are reported: the class of its owner followed by its slot name.
+     */
+    public static String hotspotName(Object owner, String slotName) {
+        return (owner == null) ? slotName : owner.getClass().getName() + "." + slotName;
+    }
+
+    /**
+     * Record a commit that failed validation, attributing it to the command executing on the current thread.
+     *
+     * @param staleBoxes The names of the boxes read by the transaction that were written by transactions that committed
+     *            meanwhile. If empty, the conflict is attributed to an {@link #UNKNOWN} box.
+     */
+    public void recordFailedValidation(Collection<String> staleBoxes) {
+        String command = currentCommand.get();
+        recordFailedValidation(staleBoxes, (command == null) ? UNKNOWN : command);
+    }
+
+    public synchronized void recordFailedValidation(Collection<String> staleBoxes, String command) {
+        failedValidations++;
+        commands.add(command);
+        if (staleBoxes.isEmpty()) {
+            staleBoxes = Collections.singleton(UNKNOWN);
+        }
+        // many instances of the same slot may conflict at once, but the transaction only aborted once
+        for (String hotspot : new HashSet<String>(staleBoxes)) {
+            hotspots.add(hotspot);
+            conflicts.add(hotspot + " <- " + command);
+        }
+    }
+
+    @Override
+    public synchronized long getFailedValidations() {
+        return failedValidations;
+    }
+
+    @Override
+    public int getTopN() {
+        return topN;
+    }
+
+    @Override
+    public synchronized String[] getTopHotspots() {
+        return hotspots.top(topN);
+    }
+
+    @Override
+    public synchronized String[] getTopCommands() {
+        return commands.top(topN);
+    }
+
+    @Override
+    public synchronized String[] getTopConflicts() {
+        return conflicts.top(topN);
+    }
+
+    @Override
+    public synchronized void reset() {
+        failedValidations = 0;
+        hotspots.clear();
+        commands.clear();
+        conflicts.clear();
+    }
+
+    /**
+     * @return A multi-line report of the top hotspots, commands and conflicts.
+     */
+    public synchronized String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(failedValidations).append(" failed validation(s)");
+        appendSection(report, "Hotspots", hotspots.top(topN));
+        appendSection(report, "Commands", commands.top(topN));
+        appendSection(report, "Conflicts", conflicts.top(topN));
+        return report.toString();
+    }
+
+    private static void appendSection(StringBuilder report, String title, String[] entries) {
+        report.append("\n").append(title).append(":");
+        for (String entry : entries) {
+            report.append("\n    ").append(entry);
+        }
+    }
+
+    /**
+     * A Space-Saving sketch: it counts at most <code>capacity</code> keys. A key that is not counted replaces the key with the
+     * lowest count, inheriting that count (which bounds its overestimation). The counts of frequent keys are thus accurate,
+     * while infrequent keys keep replacing each other.
+     */
+    private static final class TopN {
+        private final int capacity;
+        private final Map<String, long[]> counts = new HashMap<String, long[]>();
+
+        private TopN(int capacity) {
+            this.capacity = capacity;
+        }
+
+        private void add(String key) {
+            long[] count = counts.get(key);
+            if (count != null) {
+                count[0]++;
+                return;
+            }
+            if (counts.size() < capacity) {
+                counts.put(key, new long[] { 1, 0 });
+                return;
+            }
+            // evict the key with the lowest count
+            String minKey = null;
+            long[] min = null;
+            for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+                if (min == null || entry.getValue()[0] < min[0]) {
+                    minKey = entry.getKey();
+                    min = entry.getValue();
+                }
+            }
+            counts.remove(minKey);
+            counts.put(key, new long[] { min[0] + 1, min[0] });
+        }
+
+        private String[] top(int n) {
+            List<Map.Entry<String, long[]>> entries = new ArrayList<Map.Entry<String, long[]>>(counts.entrySet());
+            Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+                @Override
+                public int compare(Map.Entry<String, long[]> first, Map.Entry<String, long[]> second) {
+                    return Long.compare(second.getValue()[0], first.getValue()[0]);
+                }
+            });
+            String[] top = new String[Math.min(n, entries.size())];
+            Iterator<Map.Entry<String, long[]>> iterator = entries.iterator();
+            for (int i = 0; i < top.length; i++) {
+                Map.Entry<String, long[]> entry = iterator.next();
+                long count = entry.getValue()[0];
+                long error = entry.getValue()[1];
+                top[i] = (error == 0) ? count + " " + entry.getKey() : count + " (-" + error + ") " + entry.getKey();
+            }
+            return top;
+        }
+
+        private void clear() {
+            counts.clear();
+        }
+    }
+
+    private static final class Reporter extends FenixFrameworkThread {
+        private final ConflictProfiler profiler;
+        private final long intervalMillis;
+
+        private Reporter(ConflictProfiler profiler, int intervalSeconds) {
+            super("ConflictProfiler");
+            this.profiler = profiler;
+            this.intervalMillis = intervalSeconds * 1000L;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long lastFailedValidations = 0;
+            while (true) {
+                try {
+                    sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long failedValidations = profiler.getFailedValidations();
+                if (failedValidations != lastFailedValidations) {
+                    logger.info("Conflict profile: {}", profiler.report());
+                    lastFailedValidations = failedValidations;
+                }
+            }
+        }
+    }
+}
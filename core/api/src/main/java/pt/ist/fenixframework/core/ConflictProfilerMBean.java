@@ -0,0 +1,38 @@
+package pt.ist.fenixframework.core;
+
+/**
+ * The JMX interface of the {@link ConflictProfiler}, registered as {@value ConflictProfiler#OBJECT_NAME}.
+ */
+public interface ConflictProfilerMBean {
+
+    /**
+     * @return The number of commits that failed validation since the last reset.
+     */
+    public long getFailedValidations();
+
+    /**
+     * @return The number of entries reported by the other methods.
+     */
+    public int getTopN();
+
+    /**
+     * @return The boxes (as <code>OwnerClass.slotName</code>) that most often invalidated a commit, with their estimated counts.
+     */
+    public String[] getTopHotspots();
+
+    /**
+     * @return The commands whose commits most often failed validation, with their estimated counts.
+     */
+    public String[] getTopCommands();
+
+    /**
+     * @return The most frequent pairs of conflicting box and command, with their estimated counts.
+     */
+    public String[] getTopConflicts();
+
+    /**
+     * Forget everything that was recorded so far.
+     */
+    public void reset();
+
+}
@@ -0,0 +1,95 @@
+package pt.ist.fenixframework.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Config;
+import pt.ist.fenixframework.ContentionManager;
+
+/**
+ * The default {@link ContentionManager}. After each conflict it backs off for a random time in the upper half of an
+ * exponentially growing window (from <code>contentionBackoffMinMicros</code> up to <code>contentionBackoffMaxMicros</code>).
+ * It gives up after <code>contentionMaxRetries</code> retries and, after <code>contentionSerializeAfter</code> conflicts,
+ * re-executes the transaction while holding a lock shared by all escalated transactions. Each of these may be overridden per
+ * {@link Atomic} method.
+ * 
+ * @see Config
+ */
+public class DefaultContentionManager implements ContentionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultContentionManager.class);
+
+    // the largest shift still giving a positive window
+    private static final int MAX_BACKOFF_SHIFT = 30;
+
+    private int maxRetries = -1;
+    private int serializeAfter = -1;
+    private long backoffMinMicros = 0;
+    private long backoffMaxMicros = 0;
+
+    private final ReentrantLock serializedExecution = new ReentrantLock(true);
+
+    @Override
+    public void init(Config config) {
+        this.maxRetries = config.getContentionMaxRetries();
+        this.serializeAfter = config.getContentionSerializeAfter();
+        this.backoffMinMicros = config.getContentionBackoffMinMicros();
+        this.backoffMaxMicros = Math.max(this.backoffMinMicros, config.getContentionBackoffMaxMicros());
+        logger.debug("maxRetries={}, serializeAfter={}, backoff={}..{}us", maxRetries, serializeAfter, backoffMinMicros,
+                backoffMaxMicros);
+    }
+
+    @Override
+    public void beforeAttempt(String txName, Atomic atomic, int attempt) {
+        if (isSerialized(atomic, attempt)) {
+            logger.debug("Transaction {} escalated to serialized execution on attempt {}", txName, attempt);
+            serializedExecution.lock();
+        }
+    }
+
+    @Override
+    public void afterAttempt(String txName, Atomic atomic, int attempt) {
+        if (isSerialized(atomic, attempt)) {
+            serializedExecution.unlock();
+        }
+    }
+
+    @Override
+    public boolean shouldRetry(String txName, Atomic atomic, int attempt, Throwable conflict) {
+        int max = resolve(atomic == null ? Atomic.GLOBAL : atomic.maxRetries(), this.maxRetries);
+        if (max >= 0 && attempt > max) {
+            logger.debug("Transaction {} gave up after {} conflict(s)", txName, attempt);
+            return false;
+        }
+
+        if (this.backoffMinMicros > 0 && (atomic == null || atomic.backoff())) {
+            backoff(attempt);
+        }
+        return true;
+    }
+
+    private void backoff(int attempt) {
+        long window = this.backoffMinMicros << Math.min(attempt - 1, MAX_BACKOFF_SHIFT);
+        if (window <= 0 || window > this.backoffMaxMicros) {
+            window = this.backoffMaxMicros;
+        }
+        long micros = (window / 2) + ThreadLocalRandom.current().nextLong((window / 2) + 1);
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+
+    private boolean isSerialized(Atomic atomic, int attempt) {
+        int threshold = resolve(atomic == null ? Atomic.GLOBAL : atomic.serializeAfter(), this.serializeAfter);
+        return threshold >= 0 && attempt > threshold;
+    }
+
+    private static int resolve(int atomicValue, int globalValue) {
+        return atomicValue == Atomic.GLOBAL ? globalValue : atomicValue;
+    }
+
+}
@@ -2,6 +2,8 @@ package pt.ist.fenixframework.core;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -9,8 +11,13 @@ import java.io.Serializable;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
-import com.google.gson.JsonElement;
-
+/**
+ * Externalizes values to byte arrays and back.
+ * 
+ * The values of slots ({@link #externalizeObject(Object)}) are written by the current {@link ExternalizationCodec}, after a
+ * two-byte header: the {@link #CODEC_HEADER} and the codec's format. Payloads without the header were written with plain Java
+ * serialization, and are still read as such. The remaining methods always use Java serialization.
+ */
 public class Externalization {
 
     // The NullClass and the NULL_OBJECT are public so that they can be used by anyone who needs an
@@ -21,19 +28,67 @@ public class Externalization {
 
     public static final NullClass NULL_OBJECT = new NullClass();
 
+    // Java serialization streams always start with 0xACED, so they never begin with this byte
+    public static final byte CODEC_HEADER = (byte) 0xFE;
+
+    private static final ExternalizationCodec[] CODECS = new ExternalizationCodec[Byte.MAX_VALUE + 1];
+
+    private static volatile ExternalizationCodec codec;
+
+    static {
+        registerCodec(new JavaSerializationCodec());
+        setCodec(new BinaryExternalizationCodec());
+    }
+
+    /**
+     * Set the codec used to externalize values from now on. The codec is also registered, so that its payloads can be read.
+     */
+    public static void setCodec(ExternalizationCodec codec) {
+        registerCodec(codec);
+        Externalization.codec = codec;
+    }
+
+    public static ExternalizationCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Register a codec, so that the values it wrote can be read, even if it is not the current codec.
+     */
+    public static synchronized void registerCodec(ExternalizationCodec codec) {
+        byte format = codec.getFormat();
+        if (format <= 0) {
+            throw new IllegalArgumentException("Invalid format: " + format);
+        }
+        ExternalizationCodec registered = CODECS[format];
+        if (registered != null && registered.getClass() != codec.getClass()) {
+            throw new IllegalArgumentException("Format " + format + " is already used by " + registered.getClass().getName());
+        }
+        CODECS[format] = codec;
+    }
+
     public static byte[] externalizeObject(Object obj) {
-        if (obj == null) {
-            return externalizeSerializable(NULL_OBJECT);
-        } else if (obj instanceof JsonElement) {
-            obj = new JsonElementWrapper((JsonElement) obj);
-        } else if (!(obj instanceof Serializable)) {
-            throw new UnsupportedOperationException(obj.getClass().getName());
+        ExternalizationCodec codec = Externalization.codec;
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(32);
+            DataOutputStream out = new DataOutputStream(baos);
+            out.writeByte(CODEC_HEADER);
+            out.writeByte(codec.getFormat());
+            codec.write(obj, out);
+            out.close();
+            return baos.toByteArray();
+        } catch (IOException ioe) {
+            throw new ExternalizationException(ioe);
         }
-        return externalizeSerializable((Serializable) obj);
     }
 
     public static <T> T internalizeObject(byte[] bytes) {
-        Object obj = internalizeSerializable(bytes);
+        Object obj;
+        if (bytes.length > 1 && bytes[0] == CODEC_HEADER) {
+            obj = internalizeWithCodec(bytes);
+        } else {
+            obj = internalizeSerializable(bytes);
+        }
         if (obj instanceof NullClass) {
             return null;
         } else {
@@ -41,6 +96,20 @@ public class Externalization {
         }
     }
 
+    private static Object internalizeWithCodec(byte[] bytes) {
+        int format = bytes[1];
+        ExternalizationCodec codec = (format > 0) ? CODECS[format] : null;
+        if (codec == null) {
+            throw new ExternalizationException("Unknown externalization format: " + format);
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 2, bytes.length - 2));
+            return codec.read(in);
+        } catch (IOException ioe) {
+            throw new ExternalizationException(ioe);
+        }
+    }
+
     public static byte[] externalizeSerializable(Serializable obj) {
         return externalizeSerializable(obj, false);
     }
@@ -0,0 +1,25 @@
+package pt.ist.fenixframework.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes the values externalized by {@link Externalization#externalizeObject(Object)}. The encoded value is preceded by a
+ * header with the codec's {@link #getFormat() format}, so that values written by any of the registered codecs (as well as
+ * the values written with plain Java serialization, before codecs existed) can always be read back.
+ * 
+ * @see Externalization#setCodec(ExternalizationCodec)
+ * @see Externalization#registerCodec(ExternalizationCodec)
+ */
+public interface ExternalizationCodec {
+
+    /**
+     * The identifier of the format written by this codec. It must be positive and unique among the registered codecs.
+     */
+    public byte getFormat();
+
+    public void write(Object obj, DataOutput out) throws IOException;
+
+    public Object read(DataInput in) throws IOException;
+}
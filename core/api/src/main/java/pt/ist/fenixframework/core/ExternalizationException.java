@@ -5,6 +5,10 @@ public class ExternalizationException extends RuntimeException {
         super();
     }
 
+    public ExternalizationException(String message) {
+        super(message);
+    }
+
     public ExternalizationException(Throwable cause) {
         super(cause);
     }
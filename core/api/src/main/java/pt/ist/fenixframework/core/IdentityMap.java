@@ -5,4 +5,14 @@ public interface IdentityMap {
     public AbstractDomainObject cache(AbstractDomainObject obj);
 
     public AbstractDomainObject lookup(Object key);
+
+    /**
+     * Forget the object with the given key, if any, such as when it is deleted.
+     */
+    public void remove(Object key);
+
+    /**
+     * This method is invoked when shutting down. It clears the cache contents.
+     */
+    public void shutdown();
 }
@@ -0,0 +1,43 @@
+package pt.ist.fenixframework.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+import com.google.gson.JsonElement;
+
+/**
+ * An {@link ExternalizationCodec} that writes every value with Java serialization, as {@link Externalization} did before
+ * codecs existed.
+ */
+public class JavaSerializationCodec implements ExternalizationCodec {
+
+    public static final byte FORMAT = 2;
+
+    @Override
+    public byte getFormat() {
+        return FORMAT;
+    }
+
+    @Override
+    public void write(Object obj, DataOutput out) throws IOException {
+        if (obj == null) {
+            obj = Externalization.NULL_OBJECT;
+        } else if (obj instanceof JsonElement) {
+            obj = new JsonElementWrapper((JsonElement) obj);
+        } else if (!(obj instanceof Serializable)) {
+            throw new UnsupportedOperationException(obj.getClass().getName());
+        }
+        byte[] bytes = Externalization.externalizeSerializable((Serializable) obj);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    public Object read(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return Externalization.internalizeSerializable(bytes);
+    }
+}
@@ -0,0 +1,281 @@
+package pt.ist.fenixframework.core;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An {@link IdentityMap} specialized for backends whose OIDs are <code>long</code>s (boxed as {@link Long} by
+ * {@link AbstractDomainObject#getOid()}).
+ * 
+ * Like the {@link SharedIdentityMap}, it holds the domain objects through soft references, but it keeps them in striped
+ * open-addressing tables indexed by the primitive OID, so lookups neither allocate nor lock. An entry is allocated only when
+ * an object is actually added to the map, and the reference queue is only drained when adding objects, never when looking
+ * them up. It is drained before locking the stripe where the object goes, because removing the collected entries locks the
+ * stripes where they are.
+ * 
+ * Use {@link #lookup(long)} to avoid boxing the OID altogether.
+ */
+public class LongIdentityMap implements IdentityMap {
+
+    private static final int STRIPES = 64;
+    private static final int STRIPE_SHIFT = 64 - 6;
+    private static final int INITIAL_CAPACITY = 64;
+
+    // the key of free slots.  The OID 0 is stored apart
+    private static final long FREE = 0L;
+
+    private final ReferenceQueue<AbstractDomainObject> refQueue = new ReferenceQueue<AbstractDomainObject>();
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private volatile Entry zeroEntry;
+
+    public LongIdentityMap() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public AbstractDomainObject cache(AbstractDomainObject obj) {
+        long oid = ((Long) obj.getOid()).longValue();
+
+        if (oid == FREE) {
+            synchronized (this) {
+                AbstractDomainObject existing = zeroEntry == null ? null : zeroEntry.get();
+                if (existing != null) {
+                    return existing;
+                }
+                zeroEntry = new Entry(obj, oid, refQueue);
+                return obj;
+            }
+        }
+
+        // not within the stripe's lock, which would be taken while waiting for the locks of other stripes
+        processQueue();
+
+        long hash = mix(oid);
+        return stripeFor(hash).cache(obj, oid, hash);
+    }
+
+    @Override
+    public AbstractDomainObject lookup(Object key) {
+        return lookup(((Long) key).longValue());
+    }
+
+    public AbstractDomainObject lookup(long oid) {
+        if (oid == FREE) {
+            Entry entry = zeroEntry;
+            return entry == null ? null : entry.get();
+        }
+
+        long hash = mix(oid);
+        return stripeFor(hash).lookup(oid, hash);
+    }
+
+    @Override
+    public void remove(Object key) {
+        remove(((Long) key).longValue());
+    }
+
+    public void remove(long oid) {
+        if (oid == FREE) {
+            synchronized (this) {
+                zeroEntry = null;
+            }
+            return;
+        }
+
+        long hash = mix(oid);
+        stripeFor(hash).remove(oid, null, hash);
+    }
+
+    /**
+     * The number of entries in the map, including those whose objects have been collected but not yet removed.
+     */
+    public int size() {
+        int size = zeroEntry == null ? 0 : 1;
+        for (Stripe stripe : stripes) {
+            size += stripe.live;
+        }
+        return size;
+    }
+
+    @Override
+    public void shutdown() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+        zeroEntry = null;
+        while (refQueue.poll() != null) {
+            // discard
+        }
+    }
+
+    private Stripe stripeFor(long hash) {
+        return stripes[(int) (hash >>> STRIPE_SHIFT)];
+    }
+
+    private static long mix(long oid) {
+        long h = oid * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private void processQueue() {
+        Entry gcedEntry = (Entry) refQueue.poll();
+        while (gcedEntry != null) {
+            if (gcedEntry.oid == FREE) {
+                synchronized (this) {
+                    if (zeroEntry == gcedEntry) {
+                        zeroEntry = null;
+                    }
+                }
+            } else {
+                long hash = mix(gcedEntry.oid);
+                stripeFor(hash).remove(gcedEntry.oid, gcedEntry, hash);
+            }
+            gcedEntry = (Entry) refQueue.poll();
+        }
+    }
+
+    /*
+     * An open-addressing table with linear probing.  Once a key is stored in a slot, it stays there until the table is resized.
+     * A removed object leaves its key behind with a null entry, so that every key has at most one slot.  Values are published
+     * before their keys, which allows readers to probe the table without locking.
+     */
+    private static final class Table {
+        final AtomicLongArray keys;
+        final AtomicReferenceArray<Entry> entries;
+        final int mask;
+
+        Table(int capacity) {
+            this.keys = new AtomicLongArray(capacity);
+            this.entries = new AtomicReferenceArray<Entry>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+    }
+
+    private final class Stripe {
+        private volatile Table table = new Table(INITIAL_CAPACITY);
+        // slots with a key, including the ones whose entry was removed (guarded by this)
+        private int used = 0;
+        // slots with an entry (guarded by this)
+        private volatile int live = 0;
+
+        AbstractDomainObject lookup(long oid, long hash) {
+            Table t = this.table;
+            for (int i = (int) hash & t.mask;; i = (i + 1) & t.mask) {
+                long key = t.keys.get(i);
+                if (key == oid) {
+                    Entry entry = t.entries.get(i);
+                    return entry == null ? null : entry.get();
+                } else if (key == FREE) {
+                    return null;
+                }
+            }
+        }
+
+        synchronized AbstractDomainObject cache(AbstractDomainObject obj, long oid, long hash) {
+            Table t = this.table;
+            int i = (int) hash & t.mask;
+            for (;; i = (i + 1) & t.mask) {
+                long key = t.keys.get(i);
+                if (key == oid) {
+                    Entry entry = t.entries.get(i);
+                    AbstractDomainObject existing = entry == null ? null : entry.get();
+                    if (existing != null) {
+                        return existing;
+                    }
+                    if (entry == null) {
+                        live++;
+                    }
+                    t.entries.set(i, new Entry(obj, oid, refQueue));
+                    return obj;
+                } else if (key == FREE) {
+                    break;
+                }
+            }
+
+            // resizing drops the entries whose objects were collected, and they are then no longer found when removed
+            if ((used + 1) * 4 > t.capacity() * 3) {
+                t = resize();
+                for (i = (int) hash & t.mask; t.keys.get(i) != FREE; i = (i + 1) & t.mask) {
+                    // find a free slot in the new table
+                }
+            }
+
+            t.entries.set(i, new Entry(obj, oid, refQueue));
+            t.keys.set(i, oid);
+            used++;
+            live++;
+            return obj;
+        }
+
+        // removes the entry of the given oid, if it is the given entry or if no entry is given
+        synchronized void remove(long oid, Entry entry, long hash) {
+            Table t = this.table;
+            for (int i = (int) hash & t.mask;; i = (i + 1) & t.mask) {
+                long key = t.keys.get(i);
+                if (key == oid) {
+                    Entry existing = t.entries.get(i);
+                    if (existing != null && (entry == null || existing == entry)) {
+                        t.entries.set(i, null);
+                        live--;
+                    }
+                    return;
+                } else if (key == FREE) {
+                    return;
+                }
+            }
+        }
+
+        synchronized void clear() {
+            this.table = new Table(INITIAL_CAPACITY);
+            this.used = 0;
+            this.live = 0;
+        }
+
+        // rebuilds the table with the live entries only, growing it if they fill more than half of it
+        private Table resize() {
+            Table old = this.table;
+            int capacity = old.capacity();
+            while (live * 2 > capacity) {
+                capacity <<= 1;
+            }
+            Table t = new Table(Math.max(capacity, INITIAL_CAPACITY));
+
+            int count = 0;
+            for (int j = 0; j < old.capacity(); j++) {
+                Entry entry = old.entries.get(j);
+                if (entry != null && entry.get() != null) {
+                    int i = (int) mix(entry.oid) & t.mask;
+                    while (t.keys.get(i) != FREE) {
+                        i = (i + 1) & t.mask;
+                    }
+                    t.entries.set(i, entry);
+                    t.keys.set(i, entry.oid);
+                    count++;
+                }
+            }
+            this.used = count;
+            this.live = count;
+            this.table = t;
+            return t;
+        }
+    }
+
+    private static final class Entry extends SoftReference<AbstractDomainObject> {
+        private final long oid;
+
+        Entry(AbstractDomainObject object, long oid, ReferenceQueue<AbstractDomainObject> q) {
+            super(object, q);
+            this.oid = oid;
+        }
+    }
+}
@@ -7,6 +7,9 @@ import java.util.concurrent.ConcurrentHashMap;
 public class SharedIdentityMap implements IdentityMap {
     private final static SharedIdentityMap instance = new SharedIdentityMap();
 
+    // the identity map in use, as configured by Config.identityMapClassName
+    private static volatile IdentityMap current = instance;
+
     private static final ReferenceQueue<AbstractDomainObject> refQueue = new ReferenceQueue<AbstractDomainObject>();
 
     private final ConcurrentHashMap<Object, CacheEntry> cache;
@@ -15,10 +18,55 @@ public class SharedIdentityMap implements IdentityMap {
         this.cache = new ConcurrentHashMap<Object, CacheEntry>();
     }
 
-    public static SharedIdentityMap getCache() {
+    /**
+     * Get the identity map in use. Unless another one was configured, this is the shared instance of this class.
+     */
+    public static IdentityMap getCache() {
+        return current;
+    }
+
+    /**
+     * Look up the given oid in the identity map in use. Unlike <code>getCache().lookup(oid)</code>, this does not box the oid
+     * when the map in use is a {@link LongIdentityMap}.
+     */
+    public static AbstractDomainObject lookupInCurrent(long oid) {
+        IdentityMap identityMap = current;
+        if (identityMap instanceof LongIdentityMap) {
+            return ((LongIdentityMap) identityMap).lookup(oid);
+        }
+        return identityMap.lookup(oid);
+    }
+
+    /**
+     * Get the shared instance of this class, regardless of the identity map in use.
+     */
+    public static SharedIdentityMap getDefault() {
         return instance;
     }
 
+    /**
+     * Replace the identity map in use. The objects that were already cached in the previous map are moved to the new one, so
+     * that there is never more than one reference to the same domain object. This should be invoked during the framework's
+     * initialization, before the application starts using domain objects.
+     */
+    public static synchronized void setCache(IdentityMap identityMap) {
+        IdentityMap previous = current;
+        if (previous == identityMap) {
+            return;
+        }
+        if (previous instanceof SharedIdentityMap) {
+            SharedIdentityMap shared = (SharedIdentityMap) previous;
+            for (CacheEntry entry : shared.cache.values()) {
+                AbstractDomainObject obj = entry.get();
+                if (obj != null) {
+                    identityMap.cache(obj);
+                }
+            }
+            shared.shutdown();
+        }
+        current = identityMap;
+    }
+
     public void printCachedObjects() {
         System.out.println("  == SharedIdentityMap contents [BEGIN] == \n");
         for (Object key : this.cache.keySet()) {
@@ -77,13 +125,16 @@ public class SharedIdentityMap implements IdentityMap {
         }
     }
 
+    @Override
+    public void remove(Object key) {
+        this.cache.remove(key);
+    }
+
     private void removeEntry(CacheEntry entry) {
         this.cache.remove(entry.key, entry);
     }
 
-    /**
-     * This method is invoked when shutting down. It clears the cache contents.
-     */
+    @Override
     public void shutdown() {
         this.cache.clear();
     }
@@ -0,0 +1,119 @@
+package pt.ist.fenixframework.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.Config;
+
+/**
+ * Learns, per command, whether transactions run in {@link TxMode#SPECULATIVE_READ} mode end up writing. A command that is
+ * known to write is started directly as read-write, instead of running read-only, failing with a {@link WriteOnReadError}
+ * and being re-executed. Every <code>txModeProbeInterval</code> executions, such a command is speculatively started as
+ * read-only again, so that commands that stopped writing are eventually detected.
+ * 
+ * Commands are identified by the name that transaction managers already use for logging (the name of the callable's class).
+ * Instances of this class are thread-safe.
+ * 
+ * @see Config#getTxModeProbeInterval()
+ */
+public class TxModePredictor {
+
+    private static final Logger logger = LoggerFactory.getLogger(TxModePredictor.class);
+
+    private final ConcurrentHashMap<String, Profile> profiles = new ConcurrentHashMap<String, Profile>();
+
+    private volatile int probeInterval = 1024;
+
+    // started read-only and did not write
+    private final AtomicLong readOnlyHits = new AtomicLong();
+    // started read-write because the command was known to write: one re-execution avoided
+    private final AtomicLong writeHits = new AtomicLong();
+    // started read-only but had to restart as read-write
+    private final AtomicLong misses = new AtomicLong();
+    // known writers started read-only to check whether they still write
+    private final AtomicLong probes = new AtomicLong();
+
+    private static final class Profile {
+        volatile boolean writes = false;
+        final AtomicInteger untilProbe = new AtomicInteger();
+    }
+
+    public void init(Config config) {
+        this.probeInterval = config.getTxModeProbeInterval();
+    }
+
+    /**
+     * Whether a speculative transaction for the given command should start as read-only.
+     */
+    public boolean startReadOnly(String commandName) {
+        Profile profile = profiles.get(commandName);
+        if (profile == null || !profile.writes) {
+            return true;
+        }
+
+        int interval = this.probeInterval;
+        if (interval > 0 && profile.untilProbe.incrementAndGet() >= interval) {
+            profile.untilProbe.set(0);
+            probes.incrementAndGet();
+            logger.debug("Probing whether {} still writes", commandName);
+            return true;
+        }
+        writeHits.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Record that a speculative read-only transaction for the given command attempted to write.
+     */
+    public void writeOnRead(String commandName) {
+        misses.incrementAndGet();
+        Profile profile = profiles.get(commandName);
+        if (profile == null) {
+            Profile newProfile = new Profile();
+            profile = profiles.putIfAbsent(commandName, newProfile);
+            if (profile == null) {
+                profile = newProfile;
+            }
+        }
+        profile.writes = true;
+    }
+
+    /**
+     * Record that a speculative read-only transaction for the given command committed without writing.
+     */
+    public void readOnlyCommitted(String commandName) {
+        readOnlyHits.incrementAndGet();
+        Profile profile = profiles.get(commandName);
+        if (profile != null && profile.writes) {
+            logger.debug("{} no longer writes", commandName);
+            profile.writes = false;
+        }
+    }
+
+    public long getReadOnlyHits() {
+        return readOnlyHits.get();
+    }
+
+    public long getWriteHits() {
+        return writeHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getProbes() {
+        return probes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "TxModePredictor [readOnlyHits=" + getReadOnlyHits() + ", writeHits=" + getWriteHits() + ", misses="
+                + getMisses() + ", probes=" + getProbes() + ", commands=" + profiles.size() + "]";
+    }
+}
@@ -0,0 +1,24 @@
+package pt.ist.fenixframework.core.exception;
+
+import pt.ist.fenixframework.ContentionManager;
+
+/**
+ * Thrown by <code>withTransaction</code> when the {@link ContentionManager} gives up on a transaction that keeps
+ * aborting because of conflicts. The cause is the conflict that aborted the last execution.
+ */
+public class ContentionException extends RuntimeException {
+
+    private static final long serialVersionUID = -3139522404633216353L;
+
+    private final int attempts;
+
+    public ContentionException(String txName, int attempts, Throwable cause) {
+        super("Transaction " + txName + " gave up after " + attempts + " conflicting execution(s)", cause);
+        this.attempts = attempts;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+}
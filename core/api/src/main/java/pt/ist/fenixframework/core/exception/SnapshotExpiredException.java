@@ -0,0 +1,24 @@
+package pt.ist.fenixframework.core.exception;
+
+import pt.ist.fenixframework.Snapshot;
+
+/**
+ * Thrown when a {@link Snapshot} is read after its maximum age has elapsed. The snapshot is closed when this is detected, so
+ * that the old version it holds can be discarded.
+ */
+public class SnapshotExpiredException extends IllegalStateException {
+
+    private static final long serialVersionUID = 4630982817311645127L;
+
+    private final long maxAgeMillis;
+
+    public SnapshotExpiredException(long maxAgeMillis) {
+        super("Snapshot expired after " + maxAgeMillis + " ms");
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+}
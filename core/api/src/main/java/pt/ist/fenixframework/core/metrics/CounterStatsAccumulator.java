@@ -0,0 +1,49 @@
+package pt.ist.fenixframework.core.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accumulates the minimum, maximum and sum of values added by concurrent threads, without locking. The backends use it for the
+ * per-transaction counters of their <code>TransactionStatistics</code>.
+ *
+ * Like {@link StripedCounter}, reading and resetting it is not atomic as a whole: a value added concurrently with
+ * {@link #getAndReset()} may count towards either snapshot, but it is never lost.
+ */
+public final class CounterStatsAccumulator {
+
+    private final AtomicInteger minValue = new AtomicInteger(Integer.MAX_VALUE);
+    private final AtomicInteger maxValue = new AtomicInteger(0);
+    private final StripedCounter valueSum = new StripedCounter();
+
+    public void addNewValue(int value) {
+        int min = minValue.get();
+        while (value < min && !minValue.compareAndSet(min, value)) {
+            min = minValue.get();
+        }
+        int max = maxValue.get();
+        while (value > max && !maxValue.compareAndSet(max, value)) {
+            max = maxValue.get();
+        }
+        valueSum.add(value);
+    }
+
+    public Snapshot getAndReset() {
+        return new Snapshot(minValue.getAndSet(Integer.MAX_VALUE), maxValue.getAndSet(0), valueSum.sumThenReset());
+    }
+
+    /**
+     * The values accumulated up to a {@link CounterStatsAccumulator#getAndReset()}. When no value was added, the minimum is
+     * <code>Integer.MAX_VALUE</code> and the maximum and sum are zero.
+     */
+    public static final class Snapshot {
+        public final int minValue;
+        public final int maxValue;
+        public final long valueSum;
+
+        public Snapshot(int minValue, int maxValue, long valueSum) {
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+            this.valueSum = valueSum;
+        }
+    }
+}
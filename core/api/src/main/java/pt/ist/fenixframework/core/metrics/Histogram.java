@@ -0,0 +1,222 @@
+package pt.ist.fenixframework.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of non-negative <code>long</code> values, with a bounded relative error.
+ *
+ * Values are counted in log-linear buckets, in the style of HdrHistogram: each power of two is split into
+ * {@value #SUB_BUCKETS} buckets of equal width, so that any recorded value is reported with a relative error below
+ * <code>1/{@value #SUB_BUCKETS}</code>, whatever its magnitude, using a fixed amount of memory. Recording a value is a single
+ * atomic increment of its bucket (plus updates of the striped count and sum), without locks.
+ */
+public class Histogram implements HistogramMBean {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // values below SUB_BUCKETS have their own bucket, then each power of two up to 2^62 has SUB_BUCKETS buckets
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final String name;
+    private final String unit;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final StripedCounter count = new StripedCounter();
+    private final StripedCounter sum = new StripedCounter();
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * @param name The name of the histogram, which also names its MBean.
+     * @param unit The unit of the recorded values (e.g. <code>ns</code>), for display only.
+     */
+    public Histogram(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+    }
+
+    static long bucketUpperBound(int index) {
+        return (index + 1 == BUCKETS) ? Long.MAX_VALUE : bucketLowerBound(index + 1) - 1;
+    }
+
+    /**
+     * Record a value. Negative values are recorded as <code>0</code>.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getUnit() {
+        return unit;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMean() {
+        long n = count.sum();
+        return (n == 0) ? 0 : (double) sum.sum() / n;
+    }
+
+    @Override
+    public long getMax() {
+        return max.get();
+    }
+
+    @Override
+    public long getP50() {
+        return snapshot().getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP90() {
+        return snapshot().getValueAtPercentile(90);
+    }
+
+    @Override
+    public long getP99() {
+        return snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getP999() {
+        return snapshot().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * @return A copy of the current state of this histogram. Values recorded concurrently may or may not be included.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        return new Snapshot(name, unit, counts, total, sum.sum(), max.get());
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * An immutable copy of a {@link Histogram}.
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final String unit;
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(String name, String unit, long[] counts, long count, long sum, long max) {
+            this.name = name;
+            this.unit = unit;
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return (count == 0) ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile A value between <code>0</code> and <code>100</code>.
+         * @return The highest value that is equivalent (within the precision of the histogram) to the value below which the
+         *         given percentage of the recorded values falls, or <code>0</code> if nothing was recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count);
+            rank = Math.max(rank, 1);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: count=%d mean=%.1f p50=%d p90=%d p99=%d p99.9=%d max=%d (%s)", name, count, getMean(),
+                    getValueAtPercentile(50), getValueAtPercentile(90), getValueAtPercentile(99), getValueAtPercentile(99.9),
+                    max, unit);
+        }
+    }
+}
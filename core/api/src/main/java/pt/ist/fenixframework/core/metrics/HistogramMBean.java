@@ -0,0 +1,27 @@
+package pt.ist.fenixframework.core.metrics;
+
+/**
+ * The JMX interface of a {@link Histogram}. Percentiles are computed from the whole history of the histogram, up to its last
+ * reset.
+ */
+public interface HistogramMBean {
+
+    public String getUnit();
+
+    public long getCount();
+
+    public double getMean();
+
+    public long getMax();
+
+    public long getP50();
+
+    public long getP90();
+
+    public long getP99();
+
+    public long getP999();
+
+    public void reset();
+
+}
@@ -0,0 +1,48 @@
+package pt.ist.fenixframework.core.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.Config;
+
+/**
+ * A {@link MetricsReporter} that logs the metrics, along with the number of commits since the previous report.
+ */
+public class LoggingMetricsReporter implements MetricsReporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoggingMetricsReporter.class);
+
+    private TransactionMetrics.Snapshot previous;
+
+    @Override
+    public void init(Config config) {
+    }
+
+    @Override
+    public void report(TransactionMetrics.Snapshot snapshot) {
+        long readOnlyCommits = snapshot.getReadOnlyCommits();
+        long writeCommits = snapshot.getWriteCommits();
+        long conflicts = snapshot.getConflicts();
+        if (previous != null) {
+            readOnlyCommits -= previous.getReadOnlyCommits();
+            writeCommits -= previous.getWriteCommits();
+            conflicts -= previous.getConflicts();
+        }
+        previous = snapshot;
+
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        StringBuilder report = new StringBuilder();
+        report.append("Transactions: ").append(readOnlyCommits).append(" read-only commits, ").append(writeCommits)
+                .append(" write commits, ").append(conflicts).append(" conflicts");
+        for (Histogram.Snapshot histogram : snapshot.getHistograms().values()) {
+            report.append("\n    ").append(histogram);
+        }
+        logger.info(report.toString());
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
@@ -0,0 +1,30 @@
+package pt.ist.fenixframework.core.metrics;
+
+import pt.ist.fenixframework.Config;
+
+/**
+ * Publishes the {@link TransactionMetrics} to a monitoring system. The reporters are listed (by class name) in the
+ * <code>metricsReporterClassNames</code> configuration property, and are given a snapshot of the metrics every
+ * <code>metricsReportIntervalSeconds</code>, from a single framework thread.
+ *
+ * Implementations must have a public no-arguments constructor.
+ */
+public interface MetricsReporter {
+
+    /**
+     * Invoked once, before the first report.
+     */
+    public void init(Config config);
+
+    /**
+     * Publish a snapshot of the metrics. The metrics are cumulative, so the rates over the reporting interval are given by the
+     * difference to the previous snapshot.
+     */
+    public void report(TransactionMetrics.Snapshot snapshot);
+
+    /**
+     * Invoked once, when the framework shuts down.
+     */
+    public void shutdown();
+
+}
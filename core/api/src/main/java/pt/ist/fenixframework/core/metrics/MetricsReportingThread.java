@@ -0,0 +1,52 @@
+package pt.ist.fenixframework.core.metrics;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.util.FenixFrameworkThread;
+
+/**
+ * Hands a snapshot of the {@link TransactionMetrics} to each {@link MetricsReporter} at a fixed interval.
+ */
+public class MetricsReportingThread extends FenixFrameworkThread {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsReportingThread.class);
+
+    private final List<MetricsReporter> reporters;
+    private final long intervalMillis;
+
+    public MetricsReportingThread(List<MetricsReporter> reporters, int intervalSeconds) {
+        super("MetricsReporting");
+        this.reporters = reporters;
+        this.intervalMillis = intervalSeconds * 1000L;
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                try {
+                    sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                TransactionMetrics.Snapshot snapshot = TransactionMetrics.METRICS.snapshot();
+                for (MetricsReporter reporter : reporters) {
+                    try {
+                        reporter.report(snapshot);
+                    } catch (RuntimeException e) {
+                        // a failing reporter must not stop the others
+                        logger.warn("Metrics reporter " + reporter.getClass().getName() + " failed", e);
+                    }
+                }
+            }
+        } finally {
+            for (MetricsReporter reporter : reporters) {
+                reporter.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package pt.ist.fenixframework.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that many threads may update concurrently without contending on a single memory location. Each thread adds to one
+ * of several cells (chosen by its id), and reading the counter sums all the cells.
+ *
+ * Each cell is padded to its own cache line, so threads that update different cells do not invalidate each other's caches.
+ * Reads are not atomic with respect to concurrent updates: {@link #sum()} may miss the updates that happen while it runs.
+ */
+public final class StripedCounter {
+
+    // a cache line of longs
+    private static final int PADDING = 8;
+
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    private static int stripes() {
+        int stripes = 1;
+        while (stripes < 2 * Runtime.getRuntime().availableProcessors() && stripes < 64) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    private static int cellIndex() {
+        long id = Thread.currentThread().getId();
+        // spread consecutive thread ids over the stripes
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((hash >>> 16) & (STRIPES - 1)) * PADDING;
+    }
+
+    public void add(long delta) {
+        cells.addAndGet(cellIndex(), delta);
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * Return the current sum and reset the counter to zero. Updates that happen concurrently are either included in the
+     * returned sum or kept in the counter, but never lost.
+     */
+    public long sumThenReset() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.getAndSet(i * PADDING, 0);
+        }
+        return sum;
+    }
+
+    public void reset() {
+        sumThenReset();
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+}
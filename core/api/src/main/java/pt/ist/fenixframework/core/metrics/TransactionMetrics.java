@@ -0,0 +1,245 @@
+package pt.ist.fenixframework.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The metrics of the transaction engine, recorded by the backends that support them (jvstm-common, jvstm-lf and jvstm-ojb).
+ *
+ * All metrics are cumulative since startup (or since the last {@link #reset()}) and can be recorded concurrently without locks.
+ * They are published in JMX, under {@value #OBJECT_NAME} for the counters and
+ * <code>{@value #OBJECT_NAME},name=&lt;histogram&gt;</code> for each histogram, and handed periodically to the configured
+ * {@link MetricsReporter}s.
+ *
+ * Times are recorded in nanoseconds:
+ * <ul>
+ * <li><code>commitLatency</code>: from the beginning of a transaction to the end of its commit.</li>
+ * <li><code>commitCriticalSection</code>: the part of the commit that is executed in mutual exclusion with other commits.</li>
+ * <li><code>validation</code>: the validation of the read set of a committing transaction.</li>
+ * <li><code>persist</code>: writing the changes of a committing transaction to the repository.</li>
+ * </ul>
+ * The other histograms count the <code>retries</code> of each command that completed, and the <code>readSetSize</code> and
+ * <code>writeSetSize</code> (in boxes) of each committed transaction.
+ */
+public class TransactionMetrics implements TransactionMetricsMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionMetrics.class);
+
+    public static final String OBJECT_NAME = "pt.ist.fenixframework:type=TransactionMetrics";
+
+    public static final TransactionMetrics METRICS = new TransactionMetrics();
+
+    private final StripedCounter readOnlyCommits = new StripedCounter();
+    private final StripedCounter writeCommits = new StripedCounter();
+    private final StripedCounter conflicts = new StripedCounter();
+    private final StripedCounter aborts = new StripedCounter();
+
+    private final Histogram commitLatency = new Histogram("commitLatency", "ns");
+    private final Histogram commitCriticalSection = new Histogram("commitCriticalSection", "ns");
+    private final Histogram validation = new Histogram("validation", "ns");
+    private final Histogram persist = new Histogram("persist", "ns");
+    private final Histogram retries = new Histogram("retries", "retries");
+    private final Histogram readSetSize = new Histogram("readSetSize", "boxes");
+    private final Histogram writeSetSize = new Histogram("writeSetSize", "boxes");
+
+    private final Map<String, Histogram> histograms;
+
+    TransactionMetrics() {
+        Map<String, Histogram> histograms = new LinkedHashMap<String, Histogram>();
+        for (Histogram histogram : new Histogram[] { commitLatency, commitCriticalSection, validation, persist, retries,
+                readSetSize, writeSetSize }) {
+            histograms.put(histogram.getName(), histogram);
+        }
+        this.histograms = Collections.unmodifiableMap(histograms);
+    }
+
+    public void recordReadOnlyCommit(int numBoxReads) {
+        readOnlyCommits.increment();
+        readSetSize.record(numBoxReads);
+    }
+
+    public void recordWriteCommit(int numBoxReads, int numBoxWrites) {
+        writeCommits.increment();
+        readSetSize.record(numBoxReads);
+        writeSetSize.record(numBoxWrites);
+    }
+
+    public void recordConflict() {
+        conflicts.increment();
+    }
+
+    public void recordAbort() {
+        aborts.increment();
+    }
+
+    public void recordCommitLatency(long nanos) {
+        commitLatency.record(nanos);
+    }
+
+    public void recordCommitCriticalSection(long nanos) {
+        commitCriticalSection.record(nanos);
+    }
+
+    public void recordValidation(long nanos) {
+        validation.record(nanos);
+    }
+
+    public void recordPersist(long nanos) {
+        persist.record(nanos);
+    }
+
+    public void recordRetries(int numRetries) {
+        retries.record(numRetries);
+    }
+
+    @Override
+    public long getReadOnlyCommits() {
+        return readOnlyCommits.sum();
+    }
+
+    @Override
+    public long getWriteCommits() {
+        return writeCommits.sum();
+    }
+
+    @Override
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    @Override
+    public long getAborts() {
+        return aborts.sum();
+    }
+
+    /**
+     * @return The histograms, by name.
+     */
+    public Map<String, Histogram> getHistograms() {
+        return histograms;
+    }
+
+    @Override
+    public void reset() {
+        readOnlyCommits.reset();
+        writeCommits.reset();
+        conflicts.reset();
+        aborts.reset();
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    public Snapshot snapshot() {
+        Map<String, Histogram.Snapshot> snapshots = new LinkedHashMap<String, Histogram.Snapshot>();
+        for (Histogram histogram : histograms.values()) {
+            snapshots.put(histogram.getName(), histogram.snapshot());
+        }
+        return new Snapshot(System.currentTimeMillis(), getReadOnlyCommits(), getWriteCommits(), getConflicts(), getAborts(),
+                Collections.unmodifiableMap(snapshots));
+    }
+
+    /**
+     * Register the counters and each histogram in the platform MBean server, replacing previous registrations.
+     */
+    public synchronized void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, this, new ObjectName(OBJECT_NAME));
+            for (Histogram histogram : histograms.values()) {
+                register(server, histogram, histogramObjectName(histogram));
+            }
+        } catch (JMException e) {
+            logger.warn("Could not register the transaction metrics in JMX", e);
+        }
+    }
+
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            unregister(server, new ObjectName(OBJECT_NAME));
+            for (Histogram histogram : histograms.values()) {
+                unregister(server, histogramObjectName(histogram));
+            }
+        } catch (JMException e) {
+            logger.debug("Could not unregister the transaction metrics from JMX", e);
+        }
+    }
+
+    private static ObjectName histogramObjectName(Histogram histogram) throws JMException {
+        return new ObjectName(OBJECT_NAME + ",name=" + histogram.getName());
+    }
+
+    private static void register(MBeanServer server, Object mbean, ObjectName name) throws JMException {
+        unregister(server, name);
+        server.registerMBean(mbean, name);
+    }
+
+    private static void unregister(MBeanServer server, ObjectName name) throws JMException {
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+    }
+
+    /**
+     * An immutable copy of the {@link TransactionMetrics}, as given to the {@link MetricsReporter}s.
+     */
+    public static final class Snapshot {
+        private final long timestamp;
+        private final long readOnlyCommits;
+        private final long writeCommits;
+        private final long conflicts;
+        private final long aborts;
+        private final Map<String, Histogram.Snapshot> histograms;
+
+        private Snapshot(long timestamp, long readOnlyCommits, long writeCommits, long conflicts, long aborts,
+                Map<String, Histogram.Snapshot> histograms) {
+            this.timestamp = timestamp;
+            this.readOnlyCommits = readOnlyCommits;
+            this.writeCommits = writeCommits;
+            this.conflicts = conflicts;
+            this.aborts = aborts;
+            this.histograms = histograms;
+        }
+
+        /**
+         * @return When the snapshot was taken, in milliseconds since the epoch.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long getReadOnlyCommits() {
+            return readOnlyCommits;
+        }
+
+        public long getWriteCommits() {
+            return writeCommits;
+        }
+
+        public long getConflicts() {
+            return conflicts;
+        }
+
+        public long getAborts() {
+            return aborts;
+        }
+
+        public Map<String, Histogram.Snapshot> getHistograms() {
+            return histograms;
+        }
+
+        public Histogram.Snapshot getHistogram(String name) {
+            return histograms.get(name);
+        }
+    }
+}
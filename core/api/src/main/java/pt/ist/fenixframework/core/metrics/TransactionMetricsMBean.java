@@ -0,0 +1,24 @@
+package pt.ist.fenixframework.core.metrics;
+
+/**
+ * The JMX interface of the counters of the {@link TransactionMetrics}. Each histogram has its own {@link HistogramMBean}.
+ */
+public interface TransactionMetricsMBean {
+
+    public long getReadOnlyCommits();
+
+    public long getWriteCommits();
+
+    /**
+     * @return The number of commits that failed validation.
+     */
+    public long getConflicts();
+
+    public long getAborts();
+
+    /**
+     * Reset the counters and all the histograms.
+     */
+    public void reset();
+
+}
@@ -0,0 +1,28 @@
+package pt.ist.fenixframework.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link ThreadFactory} of the thread pools created by the Fenix Framework. Its threads are daemons, so that they never
+ * keep the application from exiting, and are named after their pool, with the same prefix as the {@link FenixFrameworkThread}s.
+ *
+ * Unlike {@link FenixFrameworkThread}s, these threads are not shut down by {@link FenixFrameworkThread#shutdownAllThreads()}:
+ * whoever creates the pool must shut it down along with the framework.
+ */
+public class FenixFrameworkThreadFactory implements ThreadFactory {
+
+    private final String name;
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    public FenixFrameworkThreadFactory(String name) {
+        this.name = "FenixFramework-" + name + "-";
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, name + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
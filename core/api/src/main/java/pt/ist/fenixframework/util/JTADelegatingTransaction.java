@@ -22,7 +22,10 @@ public class JTADelegatingTransaction extends FenixAbstractTransaction {
         this.delegateTxRef = new WeakReference<javax.transaction.Transaction>(delegateTx);
     }
 
-    private javax.transaction.Transaction getDelegateTx() {
+    /**
+     * Get the JTA transaction that this transaction delegates to.
+     */
+    public javax.transaction.Transaction getDelegateTx() {
         javax.transaction.Transaction delegateTx = delegateTxRef.get();
         if (delegateTx == null) {
             throw new IllegalStateException("Delegate transaction no longer exists");
@@ -1,87 +1,49 @@
 package pt.ist.fenixframework.util;
 
-import java.lang.ref.ReferenceQueue;
-import java.lang.ref.WeakReference;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import pt.ist.fenixframework.Transaction;
 
+/**
+ * Associates each JTA transaction with the {@link JTADelegatingTransaction} that represents it in the framework.
+ *
+ * Looking up the association does not allocate: the map is keyed by the JTA transaction itself. The map only holds the JTA
+ * transactions weakly (and the {@link JTADelegatingTransaction} only refers to its JTA transaction weakly), so each association
+ * lasts exactly as long as its JTA transaction: the same {@link JTADelegatingTransaction} is returned before, during and after
+ * its completion, and the association is forgotten once the JTA transaction is garbage collected, whether it completed, timed
+ * out or was abandoned. The map is striped, so that lookups of different transactions seldom contend.
+ */
 public class TxMap {
 
-    /**
-     * Key based on a WeakReference, to be used with the txToLocalMap. This
-     * design allows old TxLocal objects to be GC'd along with their
-     * corresponding Transaction objects.
-     */
-    private static final class MapKey extends WeakReference<javax.transaction.Transaction> {
-        private static final ReferenceQueue<javax.transaction.Transaction> REFERENCE_QUEUE =
-                new ReferenceQueue<javax.transaction.Transaction>();
+    private static final int STRIPES = 16;
 
-        static {
-            // This thread monitors the reference queue and removes the
-            // TxLocal object corresponding
-            // to a GC'd transaction from the txToLocalMap
-            (new Thread(TxMap.class.getName() + " GC Thread") {
-                {
-                    setDaemon(true);
-                }
+    private static final Map<javax.transaction.Transaction, Transaction>[] txToLocalMaps = newStripes();
 
-                @Override
-                public void run() {
-                    while (true)
-                        try {
-                            Object ref = REFERENCE_QUEUE.remove();
-                            while (TxMap.txToLocalMap.remove(ref) != null);
-                        } catch (InterruptedException e) {
-                            throw new RuntimeException(e);
-                        }
-                }
-            }).start();
-        }
-
-        private final int hashCode;
-
-        private MapKey(javax.transaction.Transaction transaction) {
-            super(transaction, REFERENCE_QUEUE);
-            hashCode = transaction.hashCode();
-        }
-
-        @Override
-        public int hashCode() {
-            return hashCode;
-        }
-
-        @Override
-        public boolean equals(Object other) {
-            if (other instanceof MapKey) {
-                Object myObject = get();
-                Object otherObject = ((MapKey) other).get();
-                // NOTE: By design, two mapkeys originally pointing to
-                // different transactions are
-                // considered equal once both are cleared (for GC purposes)
-                return myObject == otherObject || (myObject != null && myObject.equals(otherObject));
-            }
-            return false;
+    @SuppressWarnings("unchecked")
+    private static Map<javax.transaction.Transaction, Transaction>[] newStripes() {
+        Map<javax.transaction.Transaction, Transaction>[] stripes = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new WeakHashMap<javax.transaction.Transaction, Transaction>();
         }
+        return stripes;
     }
 
-    private static final ConcurrentHashMap<MapKey, Transaction> txToLocalMap = new ConcurrentHashMap<MapKey, Transaction>();
-
     public static Transaction getTx(javax.transaction.Transaction transaction) {
-        MapKey mapKey = new MapKey(transaction);
-        Transaction txLocal = txToLocalMap.get(mapKey);
-        if (txLocal == null) {
-            txLocal = new JTADelegatingTransaction(transaction);
-            Transaction oldTxLocal = txToLocalMap.putIfAbsent(mapKey, txLocal);
-            if (oldTxLocal != null) {
-                txLocal = oldTxLocal;
-                mapKey.clear(); // not going to be needed anymore, help out
-                // GC
+        Map<javax.transaction.Transaction, Transaction> txToLocalMap = stripeFor(transaction);
+        synchronized (txToLocalMap) {
+            Transaction txLocal = txToLocalMap.get(transaction);
+            if (txLocal == null) {
+                txLocal = new JTADelegatingTransaction(transaction);
+                txToLocalMap.put(transaction, txLocal);
             }
-        } else {
-            mapKey.clear(); // not going to be needed anymore, help out GC
+            return txLocal;
         }
-        return txLocal;
+    }
+
+    private static Map<javax.transaction.Transaction, Transaction> stripeFor(javax.transaction.Transaction transaction) {
+        int hash = transaction.hashCode();
+        return txToLocalMaps[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
     }
 
 }
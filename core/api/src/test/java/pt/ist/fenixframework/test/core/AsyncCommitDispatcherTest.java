@@ -0,0 +1,107 @@
+package pt.ist.fenixframework.test.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.AsyncCommitListener;
+import pt.ist.fenixframework.Transaction;
+import pt.ist.fenixframework.core.AsyncCommitDispatcher;
+import pt.ist.fenixframework.util.FenixFrameworkThread;
+
+@RunWith(JUnit4.class)
+public class AsyncCommitDispatcherTest {
+
+    private static final int TRANSACTIONS = 500;
+
+    @Test
+    public void testPerListenerOrder() throws InterruptedException {
+        AsyncCommitDispatcher dispatcher = new AsyncCommitDispatcher(4, 16);
+        RecordingListener first = new RecordingListener(TRANSACTIONS);
+        RecordingListener second = new RecordingListener(TRANSACTIONS);
+
+        List<Transaction> transactions = new ArrayList<Transaction>();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            Transaction tx = newTransaction();
+            transactions.add(tx);
+            dispatcher.dispatch(first, tx);
+            dispatcher.dispatch(second, tx);
+        }
+
+        assertTrue(first.done.await(10, TimeUnit.SECONDS));
+        assertTrue(second.done.await(10, TimeUnit.SECONDS));
+        assertEquals(transactions, first.seen);
+        assertEquals(transactions, second.seen);
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+
+    @Test(timeout = 30000)
+    public void testDeliveryAfterShutdown() throws InterruptedException {
+        AsyncCommitDispatcher dispatcher = new AsyncCommitDispatcher(2, 4);
+        RecordingListener before = new RecordingListener(1);
+        dispatcher.dispatch(before, newTransaction());
+        assertTrue(before.done.await(10, TimeUnit.SECONDS));
+
+        // the workers exit when the framework shuts down
+        FenixFrameworkThread.shutdownAllThreads();
+
+        // more notifications than fit in the queue: the committing thread must not block forever
+        RecordingListener after = new RecordingListener(TRANSACTIONS);
+        List<Transaction> transactions = new ArrayList<Transaction>();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            Transaction tx = newTransaction();
+            transactions.add(tx);
+            dispatcher.dispatch(after, tx);
+        }
+
+        assertTrue(after.done.await(10, TimeUnit.SECONDS));
+        assertEquals(transactions, after.seen);
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+
+    private static Transaction newTransaction() {
+        return (Transaction) Proxy.newProxyInstance(Transaction.class.getClassLoader(), new Class<?>[] { Transaction.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("equals")) {
+                            return proxy == args[0];
+                        } else if (method.getName().equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static class RecordingListener implements AsyncCommitListener {
+        final List<Transaction> seen = Collections.synchronizedList(new ArrayList<Transaction>());
+        final CountDownLatch done;
+
+        RecordingListener(int expected) {
+            this.done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void beforeCommit(Transaction transaction) {
+        }
+
+        @Override
+        public void afterCommit(Transaction transaction) {
+            seen.add(transaction);
+            done.countDown();
+        }
+    }
+}
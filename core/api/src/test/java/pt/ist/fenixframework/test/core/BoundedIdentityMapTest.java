@@ -0,0 +1,119 @@
+package pt.ist.fenixframework.test.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.core.AbstractDomainObjectAdapter;
+import pt.ist.fenixframework.core.BoundedIdentityMap;
+
+@RunWith(JUnit4.class)
+public class BoundedIdentityMapTest {
+
+    @Test
+    public void testResidentObjectsAreBounded() {
+        BoundedIdentityMap map = new BoundedIdentityMap(100);
+        for (long oid = 0; oid < 1000; oid++) {
+            map.cache(new MyDomainObject(oid));
+        }
+        assertEquals(100, map.getResidentCount());
+        assertEquals(900, map.getEvictionCount());
+    }
+
+    @Test
+    public void testReferencedObjectsArePinned() {
+        BoundedIdentityMap map = new BoundedIdentityMap(10);
+        List<MyDomainObject> referenced = new ArrayList<MyDomainObject>();
+        for (long oid = 0; oid < 1000; oid++) {
+            MyDomainObject obj = new MyDomainObject(oid);
+            referenced.add(obj);
+            assertSame(obj, map.cache(obj));
+        }
+        System.gc();
+        for (MyDomainObject obj : referenced) {
+            assertSame(obj, map.lookup(obj.getOid()));
+            assertSame(obj, map.cache(new MyDomainObject(obj.oid)));
+        }
+        assertEquals(1.0, map.getHitRate(), 0.0);
+    }
+
+    @Test
+    public void testFrequentObjectsSurviveScans() {
+        BoundedIdentityMap map = new BoundedIdentityMap(1000);
+        for (long oid = 0; oid < 500; oid++) {
+            map.cache(new MyDomainObject(oid));
+        }
+        for (int round = 0; round < 20; round++) {
+            for (long oid = 0; oid < 500; oid++) {
+                map.lookup(oid);
+            }
+        }
+        for (long oid = 1000; oid < 100000; oid++) {
+            map.cache(new MyDomainObject(oid));
+        }
+        System.gc();
+
+        int found = 0;
+        for (long oid = 0; oid < 500; oid++) {
+            if (map.lookup(oid) != null) {
+                found++;
+            }
+        }
+        assertTrue("Only " + found + " frequent objects survived the scan", found > 450);
+        assertTrue(map.getRejectionCount() > 0);
+    }
+
+    @Test
+    public void testRemove() {
+        BoundedIdentityMap map = new BoundedIdentityMap(10);
+        MyDomainObject obj = new MyDomainObject(7);
+        map.cache(obj);
+        map.lookup(7L);
+        map.remove(7L);
+        assertNull(map.lookup(7L));
+        assertEquals(0, map.getResidentCount());
+        assertEquals(0, map.getEvictionCount());
+
+        MyDomainObject other = new MyDomainObject(7);
+        assertSame(other, map.cache(other));
+        assertEquals(1, map.getResidentCount());
+    }
+
+    @Test
+    public void testShutdown() {
+        BoundedIdentityMap map = new BoundedIdentityMap(10);
+        MyDomainObject obj = new MyDomainObject(7);
+        map.cache(obj);
+        map.shutdown();
+        assertNull(map.lookup(7L));
+        assertEquals(0, map.getResidentCount());
+        assertEquals(0, map.size());
+    }
+
+    private static final class MyDomainObject extends AbstractDomainObjectAdapter {
+
+        private final long oid;
+
+        public MyDomainObject(long oid) {
+            this.oid = oid;
+        }
+
+        @Override
+        protected void ensureOid() {
+        }
+
+        @Override
+        public Long getOid() {
+            return oid;
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package pt.ist.fenixframework.test.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.core.ConflictProfiler;
+
+@RunWith(JUnit4.class)
+public class ConflictProfilerTest {
+
+    @After
+    public void deactivate() {
+        ConflictProfiler.deactivate();
+    }
+
+    @Test
+    public void testTopHotspotsAndCommands() {
+        ConflictProfiler profiler = new ConflictProfiler(2);
+        for (int i = 0; i < 5; i++) {
+            profiler.recordFailedValidation(Arrays.asList("Tree.size", "Tree.size", "Tree.root"), "AddCommand");
+        }
+        profiler.recordFailedValidation(Arrays.asList("Tree.root"), "RemoveCommand");
+        profiler.recordFailedValidation(Arrays.asList("Node.value"), "RemoveCommand");
+
+        assertEquals(7, profiler.getFailedValidations());
+        // a box counts only once per failed validation
+        assertArrayEquals(new String[] { "6 Tree.root", "5 Tree.size" }, profiler.getTopHotspots());
+        assertArrayEquals(new String[] { "5 AddCommand", "2 RemoveCommand" }, profiler.getTopCommands());
+        assertTrue(Arrays.asList(profiler.getTopConflicts()).containsAll(
+                Arrays.asList("5 Tree.root <- AddCommand", "5 Tree.size <- AddCommand")));
+
+        profiler.reset();
+        assertEquals(0, profiler.getFailedValidations());
+        assertEquals(0, profiler.getTopHotspots().length);
+    }
+
+    @Test
+    public void testUnknownHotspot() {
+        ConflictProfiler profiler = new ConflictProfiler(5);
+        profiler.recordFailedValidation(Collections.<String> emptyList());
+
+        assertArrayEquals(new String[] { "1 " + ConflictProfiler.UNKNOWN }, profiler.getTopHotspots());
+        assertArrayEquals(new String[] { "1 " + ConflictProfiler.UNKNOWN }, profiler.getTopCommands());
+    }
+
+    @Test
+    public void testHeavyHitterSurvivesManyRareHotspots() {
+        ConflictProfiler profiler = new ConflictProfiler(1);
+        for (int i = 0; i < 10000; i++) {
+            profiler.recordFailedValidation(Arrays.asList("Rare.slot" + i), "Command");
+            if (i % 2 == 0) {
+                profiler.recordFailedValidation(Arrays.asList("DomainBPlusTreeData.size"), "Command");
+            }
+        }
+
+        String[] top = profiler.getTopHotspots();
+        assertEquals(1, top.length);
+        assertTrue(top[0], top[0].endsWith(" DomainBPlusTreeData.size"));
+    }
+
+    @Test
+    public void testActivation() throws Exception {
+        ObjectName name = new ObjectName(ConflictProfiler.OBJECT_NAME);
+        assertNull(ConflictProfiler.getActive());
+        assertNull(ConflictProfiler.enterCommand("Ignored"));
+
+        ConflictProfiler profiler = new ConflictProfiler(3);
+        ConflictProfiler.activate(profiler, 0);
+        assertSame(profiler, ConflictProfiler.getActive());
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+        String previous = ConflictProfiler.enterCommand("Outer");
+        String nested = ConflictProfiler.enterCommand("Inner");
+        profiler.recordFailedValidation(Arrays.asList("Counter.value"));
+        ConflictProfiler.exitCommand(nested);
+        profiler.recordFailedValidation(Arrays.asList("Counter.value"));
+        ConflictProfiler.exitCommand(previous);
+
+        assertEquals(2L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "FailedValidations"));
+        assertEquals(2, profiler.getTopCommands().length);
+        assertTrue(Arrays.asList(profiler.getTopCommands()).contains("1 Inner"));
+        assertTrue(Arrays.asList(profiler.getTopCommands()).contains("1 Outer"));
+
+        ConflictProfiler.deactivate();
+        assertNull(ConflictProfiler.getActive());
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}
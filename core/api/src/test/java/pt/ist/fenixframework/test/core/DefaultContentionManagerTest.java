@@ -0,0 +1,144 @@
+package pt.ist.fenixframework.test.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Config;
+import pt.ist.fenixframework.backend.BackEnd;
+import pt.ist.fenixframework.core.DefaultContentionManager;
+
+@RunWith(JUnit4.class)
+public class DefaultContentionManagerTest {
+
+    private static final Throwable CONFLICT = new Exception("conflict");
+
+    @Test
+    public void testGlobalMaxRetries() {
+        DefaultContentionManager manager = newManager(2, -1);
+        assertTrue(manager.shouldRetry("tx", null, 1, CONFLICT));
+        assertTrue(manager.shouldRetry("tx", null, 2, CONFLICT));
+        assertFalse(manager.shouldRetry("tx", null, 3, CONFLICT));
+    }
+
+    @Test
+    public void testAtomicOverridesGlobalConfig() {
+        DefaultContentionManager manager = newManager(2, -1);
+        assertTrue(manager.shouldRetry("tx", new TestAtomic(-1, Atomic.GLOBAL), 100, CONFLICT));
+        assertFalse(manager.shouldRetry("tx", new TestAtomic(0, Atomic.GLOBAL), 1, CONFLICT));
+    }
+
+    @Test
+    public void testSerializedExecutionAfterConflicts() throws InterruptedException {
+        final DefaultContentionManager manager = newManager(-1, 1);
+
+        // first executions are not serialized
+        manager.beforeAttempt("tx", null, 1);
+        assertTrue(runsConcurrently(manager, 1));
+        manager.afterAttempt("tx", null, 1);
+
+        // escalated executions exclude each other
+        manager.beforeAttempt("tx", null, 2);
+        assertFalse(runsConcurrently(manager, 2));
+        manager.afterAttempt("tx", null, 2);
+        assertTrue(runsConcurrently(manager, 2));
+    }
+
+    private static boolean runsConcurrently(final DefaultContentionManager manager, final int attempt)
+            throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                manager.beforeAttempt("other", null, attempt);
+                started.countDown();
+                manager.afterAttempt("other", null, attempt);
+            }
+        };
+        other.setDaemon(true);
+        other.start();
+        boolean result = started.await(200, TimeUnit.MILLISECONDS);
+        if (!result) {
+            // let it finish once the lock is released
+            return false;
+        }
+        other.join();
+        return true;
+    }
+
+    private static DefaultContentionManager newManager(final int maxRetries, final int serializeAfter) {
+        DefaultContentionManager manager = new DefaultContentionManager();
+        manager.init(new TestConfig(maxRetries, serializeAfter));
+        return manager;
+    }
+
+    private static class TestConfig extends Config {
+        TestConfig(int maxRetries, int serializeAfter) {
+            this.contentionMaxRetries = maxRetries;
+            this.contentionSerializeAfter = serializeAfter;
+            this.contentionBackoffMinMicros = 0;
+        }
+
+        @Override
+        protected void init() {
+        }
+
+        @Override
+        public BackEnd getBackEnd() {
+            return null;
+        }
+
+        @Override
+        public String getBackEndName() {
+            return null;
+        }
+    }
+
+    private static class TestAtomic implements Atomic {
+        private final int maxRetries;
+        private final int serializeAfter;
+
+        TestAtomic(int maxRetries, int serializeAfter) {
+            this.maxRetries = maxRetries;
+            this.serializeAfter = serializeAfter;
+        }
+
+        @Override
+        public TxMode mode() {
+            return TxMode.WRITE;
+        }
+
+        @Override
+        public boolean flattenNested() {
+            return true;
+        }
+
+        @Override
+        public int maxRetries() {
+            return maxRetries;
+        }
+
+        @Override
+        public int serializeAfter() {
+            return serializeAfter;
+        }
+
+        @Override
+        public boolean backoff() {
+            return true;
+        }
+
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return Atomic.class;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package pt.ist.fenixframework.test.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.core.BinaryExternalizationCodec;
+import pt.ist.fenixframework.core.Externalization;
+import pt.ist.fenixframework.core.JavaSerializationCodec;
+
+import com.google.gson.JsonObject;
+
+@RunWith(JUnit4.class)
+public class ExternalizationTest {
+
+    private enum Color {
+        RED, GREEN
+    }
+
+    private static final List<Object> VALUES = Arrays.<Object> asList("", "fenix \u00e7\u00e3o", 0, -1, Integer.MAX_VALUE,
+            Integer.MIN_VALUE, Long.MIN_VALUE, 281474976710657L, (short) -7, (byte) 3, 'x', 1.5f, -2.25d, true, false,
+            Color.GREEN, new BigInteger("-123456789012345678901234567890"), new BigDecimal("-3.14159"), new Date(1234567890L),
+            new DateTime(2014, 5, 6, 7, 8, 9, 10, DateTimeZone.forID("Europe/Lisbon")), new LocalDate(2014, 2, 28),
+            new LocalTime(23, 59, 58, 999), new ArrayList<String>(Arrays.asList("a", "b")));
+
+    @After
+    public void restoreCodec() {
+        Externalization.setCodec(new BinaryExternalizationCodec());
+    }
+
+    @Test
+    public void testBinaryRoundTrip() {
+        for (Object value : VALUES) {
+            assertEquals(value, roundTrip(value));
+        }
+        assertNull(roundTrip(null));
+        assertNull(roundTrip(Externalization.NULL_OBJECT));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) roundTrip(new byte[] { 1, 2, 3 }));
+
+        JsonObject json = new JsonObject();
+        json.addProperty("answer", 42);
+        assertEquals(json, roundTrip(json));
+    }
+
+    @Test
+    public void testBinaryIsCompact() {
+        assertEquals(4, Externalization.externalizeObject(42L).length);
+        assertEquals(7, Externalization.externalizeObject("abc").length);
+        assertTrue(Externalization.externalizeObject(Color.RED).length < Externalization.externalizeSerializable(Color.RED).length);
+    }
+
+    @Test
+    public void testJavaSerializationCodec() {
+        Externalization.setCodec(new JavaSerializationCodec());
+        for (Object value : VALUES) {
+            assertEquals(value, roundTrip(value));
+        }
+        assertNull(roundTrip(null));
+    }
+
+    @Test
+    public void testLegacyPayloads() {
+        for (Object value : VALUES) {
+            byte[] legacy = Externalization.externalizeSerializable((Serializable) value);
+            assertEquals(value, Externalization.internalizeObject(legacy));
+        }
+        assertNull(Externalization.internalizeObject(Externalization.externalizeSerializable(Externalization.NULL_OBJECT)));
+    }
+
+    @Test
+    public void testPayloadsOfOtherCodecs() {
+        byte[] binary = Externalization.externalizeObject(Color.RED);
+        Externalization.setCodec(new JavaSerializationCodec());
+        assertSame(Color.RED, Externalization.internalizeObject(binary));
+    }
+
+    private static Object roundTrip(Object value) {
+        return Externalization.internalizeObject(Externalization.externalizeObject(value));
+    }
+
+}
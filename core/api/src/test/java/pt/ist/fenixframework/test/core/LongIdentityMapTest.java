@@ -0,0 +1,219 @@
+package pt.ist.fenixframework.test.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.core.AbstractDomainObject;
+import pt.ist.fenixframework.core.AbstractDomainObjectAdapter;
+import pt.ist.fenixframework.core.IdentityMap;
+import pt.ist.fenixframework.core.LongIdentityMap;
+import pt.ist.fenixframework.core.SharedIdentityMap;
+
+@RunWith(JUnit4.class)
+public class LongIdentityMapTest {
+
+    private static final long TIMEOUT_SECONDS = 20;
+
+    @Test
+    public void testCacheAndLookup() {
+        LongIdentityMap map = new LongIdentityMap();
+        List<MyDomainObject> objects = new ArrayList<MyDomainObject>();
+        for (long oid = 0; oid < 10000; oid++) {
+            MyDomainObject obj = new MyDomainObject(oid << 32 | oid);
+            objects.add(obj);
+            assertSame(obj, map.cache(obj));
+        }
+        assertEquals(objects.size(), map.size());
+        for (MyDomainObject obj : objects) {
+            assertSame(obj, map.lookup(obj.getOid()));
+            assertSame(obj, map.lookup(obj.oid));
+        }
+        assertNull(map.lookup(Long.valueOf(-1L)));
+    }
+
+    @Test
+    public void testCacheKeepsFirstInstance() {
+        LongIdentityMap map = new LongIdentityMap();
+        MyDomainObject first = new MyDomainObject(42);
+        map.cache(first);
+        assertSame(first, map.cache(new MyDomainObject(42)));
+        assertEquals(1, map.size());
+
+        MyDomainObject zero = new MyDomainObject(0);
+        assertSame(zero, map.cache(zero));
+        assertSame(zero, map.cache(new MyDomainObject(0)));
+        assertSame(zero, map.lookup(0L));
+    }
+
+    @Test
+    public void testRemove() {
+        LongIdentityMap map = new LongIdentityMap();
+        MyDomainObject obj = new MyDomainObject(42);
+        MyDomainObject zero = new MyDomainObject(0);
+        map.cache(obj);
+        map.cache(zero);
+        map.remove(42L);
+        map.remove(0L);
+        assertNull(map.lookup(42L));
+        assertNull(map.lookup(0L));
+        assertEquals(0, map.size());
+
+        MyDomainObject other = new MyDomainObject(42);
+        assertSame(other, map.cache(other));
+    }
+
+    @Test
+    public void testShutdown() {
+        LongIdentityMap map = new LongIdentityMap();
+        MyDomainObject obj = new MyDomainObject(7);
+        map.cache(obj);
+        map.shutdown();
+        assertNull(map.lookup(7L));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testSharedLookupUsesTheMapInUse() {
+        IdentityMap previous = SharedIdentityMap.getCache();
+        LongIdentityMap map = new LongIdentityMap();
+        try {
+            SharedIdentityMap.setCache(map);
+            MyDomainObject obj = new MyDomainObject(99);
+            map.cache(obj);
+            assertSame(obj, SharedIdentityMap.lookupInCurrent(99L));
+            assertNull(SharedIdentityMap.lookupInCurrent(100L));
+        } finally {
+            SharedIdentityMap.setCache(previous);
+        }
+    }
+
+    @Test
+    public void testConcurrentCache() throws Exception {
+        final LongIdentityMap map = new LongIdentityMap();
+        final int threads = 4;
+        final int count = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<AbstractDomainObject[]>> results = new ArrayList<Future<AbstractDomainObject[]>>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(new Callable<AbstractDomainObject[]>() {
+                    @Override
+                    public AbstractDomainObject[] call() {
+                        AbstractDomainObject[] cached = new AbstractDomainObject[count];
+                        for (int i = 0; i < count; i++) {
+                            cached[i] = map.cache(new MyDomainObject(i + 1));
+                        }
+                        return cached;
+                    }
+                }));
+            }
+            AbstractDomainObject[] expected = results.get(0).get();
+            for (Future<AbstractDomainObject[]> result : results) {
+                AbstractDomainObject[] cached = result.get();
+                for (int i = 0; i < count; i++) {
+                    assertSame(expected[i], cached[i]);
+                    assertSame(expected[i], map.lookup(i + 1L));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentCacheWhileObjectsAreCollected() throws Exception {
+        final LongIdentityMap map = new LongIdentityMap();
+        final int threads = 4;
+        final int rounds = 3;
+        final int count = 20000;
+        // every round, the workers cache new objects, which are then collected while the workers wait
+        final CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        // daemon threads, so that deadlocked workers fail the test, rather than keep the JVM from exiting
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<Object>> results = new ArrayList<Future<Object>>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                results.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        for (int round = 0; round < rounds; round++) {
+                            barrier.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                            // caching drains the entries collected in the previous round, from every stripe
+                            long firstOid = ((long) round * threads + thread) * count + 1;
+                            for (long oid = firstOid; oid < firstOid + count; oid++) {
+                                map.cache(new MyDomainObject(oid));
+                            }
+                            barrier.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            // deadlocked workers never reach the barrier, which then times out
+            for (int round = 0; round < rounds; round++) {
+                barrier.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                barrier.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                clearSoftReferences();
+            }
+            for (Future<Object> result : results) {
+                result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // soft references are all cleared before the JVM runs out of memory
+    private static void clearSoftReferences() {
+        List<long[]> filler = new ArrayList<long[]>();
+        try {
+            while (true) {
+                filler.add(new long[1 << 20]);
+            }
+        } catch (OutOfMemoryError e) {
+            filler.clear();
+        }
+    }
+
+    private static final class MyDomainObject extends AbstractDomainObjectAdapter {
+
+        private final long oid;
+
+        public MyDomainObject(long oid) {
+            this.oid = oid;
+        }
+
+        @Override
+        protected void ensureOid() {
+        }
+
+        @Override
+        public Long getOid() {
+            return oid;
+        }
+    }
+
+}
@@ -0,0 +1,231 @@
+package pt.ist.fenixframework.test.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.Snapshot;
+import pt.ist.fenixframework.Snapshot.Visitor;
+import pt.ist.fenixframework.core.exception.SnapshotExpiredException;
+
+@RunWith(JUnit4.class)
+public class SnapshotTest {
+
+    @Test
+    public void testForEachVisitsEveryElementWithinTheSnapshot() throws Exception {
+        final MySnapshot snapshot = new MySnapshot(60000);
+        List<Integer> elements = new ArrayList<Integer>();
+        for (int i = 1; i <= 10000; i++) {
+            elements.add(i);
+        }
+
+        final AtomicLong sum = new AtomicLong();
+        final AtomicInteger outside = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            snapshot.forEach(elements, new Visitor<Integer>() {
+                @Override
+                public void visit(Integer element) {
+                    if (!snapshot.isReading()) {
+                        outside.incrementAndGet();
+                    }
+                    sum.addAndGet(element);
+                }
+            }, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(10000L * 10001 / 2, sum.get());
+        assertEquals(0, outside.get());
+        assertTrue(snapshot.reads.get() > 1);
+    }
+
+    @Test
+    public void testForEachRethrowsTheFailureOfAVisit() throws Exception {
+        MySnapshot snapshot = new MySnapshot(60000);
+        List<Integer> elements = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            elements.add(i);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            snapshot.forEach(elements, new Visitor<Integer>() {
+                @Override
+                public void visit(Integer element) throws Exception {
+                    if (element == 500) {
+                        throw new IllegalArgumentException("500");
+                    }
+                }
+            }, pool);
+            fail("Expected the visit to fail");
+        } catch (IllegalArgumentException e) {
+            // the pool may rethrow a copy of the exception thrown by the worker, caused by the original one
+            Throwable original = (e.getCause() instanceof IllegalArgumentException) ? e.getCause() : e;
+            assertEquals("500", original.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseIsIdempotent() throws Exception {
+        MySnapshot snapshot = new MySnapshot(60000);
+        snapshot.close();
+        snapshot.close();
+        assertEquals(1, snapshot.closes.get());
+        try {
+            snapshot.read(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    return null;
+                }
+            });
+            fail("Expected a closed snapshot not to be read");
+        } catch (IllegalStateException e) {
+            assertTrue(snapshot.isClosed());
+        }
+    }
+
+    @Test
+    public void testExpiredSnapshotIsClosed() throws Exception {
+        MySnapshot snapshot = new MySnapshot(1);
+        Thread.sleep(10);
+        try {
+            snapshot.read(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    return null;
+                }
+            });
+            fail("Expected the snapshot to expire");
+        } catch (SnapshotExpiredException e) {
+            assertTrue(snapshot.isClosed());
+            assertEquals(1, snapshot.closes.get());
+            assertEquals(0, snapshot.reads.get());
+        }
+    }
+
+    @Test
+    public void testExpiryWaitsForReadsInProgress() throws Exception {
+        MySnapshot snapshot = new MySnapshot(50);
+        BlockedRead blockedRead = new BlockedRead(snapshot);
+        blockedRead.start();
+        blockedRead.started.await();
+
+        Thread.sleep(100);
+        try {
+            snapshot.read(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    return null;
+                }
+            });
+            fail("Expected the snapshot to expire");
+        } catch (SnapshotExpiredException e) {
+            assertTrue(snapshot.isClosed());
+            assertEquals(0, snapshot.closes.get());
+        }
+
+        blockedRead.finish.countDown();
+        blockedRead.join();
+        assertEquals(null, blockedRead.failure);
+        assertEquals(1, snapshot.closes.get());
+    }
+
+    @Test
+    public void testCloseWaitsForReadsInProgress() throws Exception {
+        MySnapshot snapshot = new MySnapshot(60000);
+        BlockedRead blockedRead = new BlockedRead(snapshot);
+        blockedRead.start();
+        blockedRead.started.await();
+
+        snapshot.close();
+        assertTrue(snapshot.isClosed());
+        assertEquals(0, snapshot.closes.get());
+
+        blockedRead.finish.countDown();
+        blockedRead.join();
+        assertEquals(null, blockedRead.failure);
+        assertEquals(1, snapshot.closes.get());
+
+        snapshot.close();
+        assertEquals(1, snapshot.closes.get());
+    }
+
+    // reads through the snapshot until told to finish
+    private static class BlockedRead extends Thread {
+        private final MySnapshot snapshot;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch finish = new CountDownLatch(1);
+        private volatile Exception failure;
+
+        BlockedRead(MySnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void run() {
+            try {
+                snapshot.read(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        started.countDown();
+                        finish.await();
+                        if (snapshot.closes.get() != 0) {
+                            throw new IllegalStateException("Snapshot released during a read");
+                        }
+                        return null;
+                    }
+                });
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+    }
+
+    private static class MySnapshot extends Snapshot {
+        private final ThreadLocal<Boolean> reading = new ThreadLocal<Boolean>();
+        private final AtomicInteger reads = new AtomicInteger();
+        private final AtomicInteger closes = new AtomicInteger();
+
+        MySnapshot(long maxAgeMillis) {
+            super(maxAgeMillis);
+        }
+
+        boolean isReading() {
+            return Boolean.TRUE.equals(reading.get());
+        }
+
+        @Override
+        protected <T> T doRead(Callable<T> command) throws Exception {
+            reads.incrementAndGet();
+            Boolean previous = reading.get();
+            reading.set(true);
+            try {
+                return command.call();
+            } finally {
+                reading.set(previous);
+            }
+        }
+
+        @Override
+        protected void doClose() {
+            closes.incrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+package pt.ist.fenixframework.test.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.TransactionBatchExecutor;
+import pt.ist.fenixframework.TransactionManager;
+import pt.ist.fenixframework.core.AsyncTransactionRunner;
+import pt.ist.fenixframework.core.exception.ContentionException;
+
+@RunWith(JUnit4.class)
+public class TransactionBatchExecutorTest {
+
+    private static final Atomic ATOMIC = new Atomic() {
+        @Override
+        public TxMode mode() {
+            return TxMode.WRITE;
+        }
+
+        @Override
+        public boolean flattenNested() {
+            return true;
+        }
+
+        @Override
+        public int maxRetries() {
+            return 100;
+        }
+
+        @Override
+        public int serializeAfter() {
+            return GLOBAL;
+        }
+
+        @Override
+        public boolean backoff() {
+            return false;
+        }
+
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return Atomic.class;
+        }
+    };
+
+    // the version of the only "object" that the transactions of these tests write
+    private final AtomicInteger version = new AtomicInteger();
+
+    private ForkJoinPool pool;
+    private TransactionManager manager;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(4);
+        // a transaction manager that only implements withTransaction(Callable, Atomic), without retries, and that does not
+        // provide a TxIntrospector, so the footprint of every aborted transaction is unknown
+        manager = (TransactionManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { TransactionManager.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getTransaction")) {
+                            return null;
+                        }
+                        if (!method.getName().equals("withTransaction") || args.length != 2) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        assertEquals(0, ((Atomic) args[1]).maxRetries());
+                        int start = version.get();
+                        Object result = ((Callable<?>) args[0]).call();
+                        if (!version.compareAndSet(start, start + 1)) {
+                            throw new ContentionException("test", 1, null);
+                        }
+                        return result;
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testConflictingTransactionsAreSerialized() {
+        List<Callable<Integer>> commands = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < 64; i++) {
+            final int value = i;
+            commands.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    Thread.sleep(1);
+                    return value;
+                }
+            });
+        }
+
+        TransactionBatchExecutor.Batch<Integer> batch = new TransactionBatchExecutor(manager, pool).execute(commands, ATOMIC);
+
+        assertEquals(64, batch.getCommitted());
+        assertEquals(0, batch.getFailed());
+        assertEquals(64, version.get());
+        for (int i = 0; i < 64; i++) {
+            assertEquals(Integer.valueOf(i), batch.getResults().get(i));
+            assertNull(batch.getFailures().get(i));
+        }
+        assertEquals(64 + batch.getAborts(), batch.getAttempts());
+        // once serialized in a single lane, the aborted transactions no longer conflict with each other
+        assertTrue(batch.getRounds() <= 2);
+    }
+
+    @Test
+    public void testAttemptsCarryTheirPreviousConflicts() {
+        final List<Integer> previousConflicts = new ArrayList<Integer>();
+        // a transaction manager whose transactions abort on their first three attempts
+        TransactionManager conflicting = (TransactionManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { TransactionManager.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getTransaction")) {
+                            return null;
+                        }
+                        int previous = AsyncTransactionRunner.getPreviousConflicts((Atomic) args[1]);
+                        previousConflicts.add(previous);
+                        if (previous < 3) {
+                            throw new ContentionException("test", previous + 1, null);
+                        }
+                        return ((Callable<?>) args[0]).call();
+                    }
+                });
+        List<Callable<String>> commands = new ArrayList<Callable<String>>();
+        commands.add(new Callable<String>() {
+            @Override
+            public String call() {
+                return "ok";
+            }
+        });
+
+        TransactionBatchExecutor.Batch<String> batch = new TransactionBatchExecutor(conflicting, pool).execute(commands, ATOMIC);
+
+        assertEquals("ok", batch.getResults().get(0));
+        assertEquals(Arrays.asList(0, 1, 2, 3), previousConflicts);
+    }
+
+    @Test
+    public void testFailuresAreNotRetried() {
+        List<Callable<Object>> commands = new ArrayList<Callable<Object>>();
+        commands.add(new Callable<Object>() {
+            @Override
+            public Object call() {
+                throw new IllegalStateException();
+            }
+        });
+        commands.add(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return "ok";
+            }
+        });
+
+        TransactionBatchExecutor.Batch<Object> batch = new TransactionBatchExecutor(manager, pool).execute(commands, ATOMIC);
+
+        assertEquals(1, batch.getCommitted());
+        assertEquals(1, batch.getFailed());
+        assertTrue(batch.getFailures().get(0) instanceof IllegalStateException);
+        assertNull(batch.getResults().get(0));
+        assertEquals("ok", batch.getResults().get(1));
+    }
+}
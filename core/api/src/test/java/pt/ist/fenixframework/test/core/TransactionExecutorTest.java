@@ -0,0 +1,231 @@
+package pt.ist.fenixframework.test.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.TransactionExecutor;
+import pt.ist.fenixframework.TransactionFuture;
+
+@RunWith(JUnit4.class)
+public class TransactionExecutorTest {
+
+    private ExecutorService pool;
+
+    @Before
+    public void createPool() {
+        pool = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testWritersAreCapped() throws InterruptedException {
+        final TransactionExecutor executor = new TransactionExecutor(pool, 2);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(50);
+
+        for (int i = 0; i < 50; i++) {
+            executor.executeWriter(new Runnable() {
+                @Override
+                public void run() {
+                    int now = running.incrementAndGet();
+                    while (true) {
+                        int max = maxRunning.get();
+                        if (now <= max || maxRunning.compareAndSet(max, now)) {
+                            break;
+                        }
+                    }
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, executor.getPendingWriters());
+    }
+
+    @Test
+    public void testReadersAreNotCapped() throws InterruptedException {
+        TransactionExecutor executor = new TransactionExecutor(pool, 1);
+        final CountDownLatch started = new CountDownLatch(4);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        for (int i = 0; i < 4; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void testRejectedWriterIsTold() {
+        TransactionExecutor executor = new TransactionExecutor(new RejectingExecutor(), 2);
+        MyRejectableTask task = new MyRejectableTask();
+
+        executor.executeWriter(task);
+        assertNotNull(task.rejection);
+        assertEquals(0, executor.getActiveWriters());
+        assertEquals(0, executor.getPendingWriters());
+    }
+
+    @Test
+    public void testRejectedWriterIsRequeued() {
+        RejectingExecutor delegate = new RejectingExecutor();
+        TransactionExecutor executor = new TransactionExecutor(delegate, 2);
+        final AtomicInteger runs = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+
+        try {
+            executor.executeWriter(task);
+            fail("The rejection should have been rethrown");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals(0, executor.getActiveWriters());
+        assertEquals(1, executor.getPendingWriters());
+
+        // the queued writer is started along with the next one
+        delegate.rejecting = false;
+        executor.executeWriter(task);
+        assertEquals(2, runs.get());
+        assertEquals(0, executor.getPendingWriters());
+    }
+
+    @Test
+    public void testShutdownRejectsPendingWriters() throws InterruptedException {
+        TransactionExecutor executor = new TransactionExecutor(pool, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.executeWriter(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        MyRejectableTask pending = new MyRejectableTask();
+        executor.executeWriter(pending);
+        assertEquals(1, executor.getPendingWriters());
+
+        executor.shutdown();
+        release.countDown();
+        assertNotNull(pending.rejection);
+        assertFalse(pending.ran);
+        assertEquals(0, executor.getPendingWriters());
+
+        MyRejectableTask late = new MyRejectableTask();
+        try {
+            executor.executeWriter(late);
+            fail("A writer executed after the shutdown should have been rejected");
+        } catch (RejectedExecutionException e) {
+            assertFalse(late.ran);
+        }
+    }
+
+    @Test
+    public void testFutureListeners() throws Exception {
+        TransactionFuture<String> future = new TransactionFuture<String>();
+        final AtomicInteger notified = new AtomicInteger();
+        Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+                notified.incrementAndGet();
+            }
+        };
+
+        future.addListener(listener, pool);
+        assertTrue(future.set("done"));
+        assertFalse(future.setException(new RuntimeException()));
+        assertEquals("done", future.get());
+
+        // listeners added after completion run immediately
+        future.addListener(listener, pool);
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(2, notified.get());
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void testFutureFailure() throws Exception {
+        TransactionFuture<String> future = new TransactionFuture<String>();
+        future.setException(new IllegalStateException());
+        future.get(1, TimeUnit.SECONDS);
+    }
+
+    private static class RejectingExecutor implements Executor {
+        private volatile boolean rejecting = true;
+
+        @Override
+        public void execute(Runnable task) {
+            if (rejecting) {
+                throw new RejectedExecutionException();
+            }
+            task.run();
+        }
+    }
+
+    private static class MyRejectableTask implements TransactionExecutor.RejectableTask {
+        private volatile boolean ran = false;
+        private volatile RejectedExecutionException rejection;
+
+        @Override
+        public void run() {
+            ran = true;
+        }
+
+        @Override
+        public void rejected(RejectedExecutionException e) {
+            assertNull(rejection);
+            rejection = e;
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package pt.ist.fenixframework.test.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.core.metrics.CounterStatsAccumulator;
+import pt.ist.fenixframework.core.metrics.Histogram;
+import pt.ist.fenixframework.core.metrics.StripedCounter;
+import pt.ist.fenixframework.core.metrics.TransactionMetrics;
+
+@RunWith(JUnit4.class)
+public class TransactionMetricsTest {
+
+    @After
+    public void reset() {
+        TransactionMetrics.METRICS.unregisterMBeans();
+        TransactionMetrics.METRICS.reset();
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        Histogram histogram = new Histogram("test", "ns");
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100000, snapshot.getCount());
+        assertEquals(100000, snapshot.getMax());
+        assertEquals(50000.5, snapshot.getMean(), 0.001);
+        assertWithinPrecision(50000, snapshot.getValueAtPercentile(50));
+        assertWithinPrecision(99000, snapshot.getValueAtPercentile(99));
+        assertWithinPrecision(99900, snapshot.getValueAtPercentile(99.9));
+        assertEquals(100000, snapshot.getValueAtPercentile(100));
+        assertEquals(1, snapshot.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testHistogramExtremeValues() {
+        Histogram histogram = new Histogram("test", "ns");
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(0, histogram.snapshot().getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.snapshot().getValueAtPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getP99());
+    }
+
+    @Test
+    public void testConcurrentCounting() throws InterruptedException {
+        final int threads = 8;
+        final int increments = 100000;
+        final StripedCounter counter = new StripedCounter();
+        final Histogram histogram = new Histogram("test", "ns");
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    Random random = new Random();
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < increments; j++) {
+                        counter.increment();
+                        histogram.record(random.nextInt(1000));
+                    }
+                }
+            };
+            workers[i].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * increments, counter.sum());
+        assertEquals(threads * increments, histogram.getCount());
+        assertEquals(threads * increments, counter.sumThenReset());
+        assertEquals(0, counter.sum());
+    }
+
+    @Test
+    public void testCounterStatsAccumulator() {
+        CounterStatsAccumulator accumulator = new CounterStatsAccumulator();
+        accumulator.addNewValue(7);
+        accumulator.addNewValue(3);
+        accumulator.addNewValue(12);
+
+        CounterStatsAccumulator.Snapshot snapshot = accumulator.getAndReset();
+        assertEquals(3, snapshot.minValue);
+        assertEquals(12, snapshot.maxValue);
+        assertEquals(22, snapshot.valueSum);
+
+        snapshot = accumulator.getAndReset();
+        assertEquals(Integer.MAX_VALUE, snapshot.minValue);
+        assertEquals(0, snapshot.maxValue);
+        assertEquals(0, snapshot.valueSum);
+    }
+
+    @Test
+    public void testSnapshotAndMBeans() throws Exception {
+        TransactionMetrics metrics = TransactionMetrics.METRICS;
+        metrics.recordWriteCommit(10, 2);
+        metrics.recordReadOnlyCommit(4);
+        metrics.recordConflict();
+        metrics.recordRetries(1);
+
+        TransactionMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getWriteCommits());
+        assertEquals(1, snapshot.getReadOnlyCommits());
+        assertEquals(1, snapshot.getConflicts());
+        assertEquals(2, snapshot.getHistogram("readSetSize").getCount());
+        assertEquals(1, snapshot.getHistogram("writeSetSize").getCount());
+        assertEquals(1, snapshot.getHistogram("retries").getMax());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(TransactionMetrics.OBJECT_NAME);
+        ObjectName readSetSize = new ObjectName(TransactionMetrics.OBJECT_NAME + ",name=readSetSize");
+        metrics.registerMBeans();
+        assertEquals(1L, server.getAttribute(name, "WriteCommits"));
+        assertEquals(10L, server.getAttribute(readSetSize, "Max"));
+
+        metrics.unregisterMBeans();
+        assertFalse(server.isRegistered(name));
+        assertFalse(server.isRegistered(readSetSize));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(actual + " is not close to " + expected, Math.abs(actual - expected) <= expected / 32);
+    }
+}
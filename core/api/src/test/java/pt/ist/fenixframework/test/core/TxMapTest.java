@@ -0,0 +1,123 @@
+package pt.ist.fenixframework.test.core;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.Transaction;
+import javax.transaction.xa.XAResource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.util.JTADelegatingTransaction;
+import pt.ist.fenixframework.util.TxMap;
+
+@RunWith(JUnit4.class)
+public class TxMapTest {
+
+    @Test
+    public void testSameTransactionGetsSameAssociation() {
+        MyTransaction jtaTx = new MyTransaction(true);
+
+        pt.ist.fenixframework.Transaction tx = TxMap.getTx(jtaTx);
+        assertSame(tx, TxMap.getTx(jtaTx));
+        assertSame(jtaTx, ((JTADelegatingTransaction) tx).getDelegateTx());
+    }
+
+    @Test
+    public void testAssociationOutlivesCompletion() {
+        MyTransaction jtaTx = new MyTransaction(true);
+
+        pt.ist.fenixframework.Transaction tx = TxMap.getTx(jtaTx);
+        jtaTx.complete(Status.STATUS_ROLLEDBACK);
+
+        assertSame(tx, TxMap.getTx(jtaTx));
+    }
+
+    @Test
+    public void testAssociationIsForgottenWithItsTransaction() throws InterruptedException {
+        MyTransaction jtaTx = new MyTransaction(true);
+        TxMap.getTx(jtaTx);
+
+        // neither completed nor rolled back: the transaction is simply abandoned
+        WeakReference<MyTransaction> ref = new WeakReference<MyTransaction>(jtaTx);
+        jtaTx = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+    }
+
+    @Test
+    public void testCompletingTransactionKeepsItsAssociation() {
+        MyTransaction jtaTx = new MyTransaction(false);
+
+        pt.ist.fenixframework.Transaction tx = TxMap.getTx(jtaTx);
+        assertSame(tx, TxMap.getTx(jtaTx));
+    }
+
+    private static class MyTransaction implements Transaction {
+        private final boolean acceptsSynchronizations;
+        private final List<Synchronization> synchronizations = new ArrayList<Synchronization>();
+
+        MyTransaction(boolean acceptsSynchronizations) {
+            this.acceptsSynchronizations = acceptsSynchronizations;
+        }
+
+        void complete(int status) {
+            for (Synchronization sync : synchronizations) {
+                sync.beforeCompletion();
+            }
+            for (Synchronization sync : synchronizations) {
+                sync.afterCompletion(status);
+            }
+        }
+
+        @Override
+        public void registerSynchronization(Synchronization sync) throws RollbackException {
+            if (!acceptsSynchronizations) {
+                throw new IllegalStateException("Transaction is completing");
+            }
+            synchronizations.add(sync);
+        }
+
+        @Override
+        public void commit() {
+            complete(Status.STATUS_COMMITTED);
+        }
+
+        @Override
+        public void rollback() {
+            complete(Status.STATUS_ROLLEDBACK);
+        }
+
+        @Override
+        public boolean delistResource(XAResource xaRes, int flag) {
+            return false;
+        }
+
+        @Override
+        public boolean enlistResource(XAResource xaRes) {
+            return false;
+        }
+
+        @Override
+        public int getStatus() {
+            return Status.STATUS_ACTIVE;
+        }
+
+        @Override
+        public void setRollbackOnly() {
+        }
+    }
+
+}
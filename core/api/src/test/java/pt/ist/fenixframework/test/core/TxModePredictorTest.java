@@ -0,0 +1,44 @@
+package pt.ist.fenixframework.test.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.core.TxModePredictor;
+
+@RunWith(JUnit4.class)
+public class TxModePredictorTest {
+
+    @Test
+    public void testUnknownCommandsStartReadOnly() {
+        TxModePredictor predictor = new TxModePredictor();
+        assertTrue(predictor.startReadOnly("cmd"));
+        predictor.readOnlyCommitted("cmd");
+        assertTrue(predictor.startReadOnly("cmd"));
+        assertEquals(1, predictor.getReadOnlyHits());
+    }
+
+    @Test
+    public void testWritersStartReadWriteAndAreReprobed() {
+        TxModePredictor predictor = new TxModePredictor();
+        predictor.writeOnRead("cmd");
+        assertEquals(1, predictor.getMisses());
+
+        // the default probe interval is 1024
+        for (int i = 1; i < 1024; i++) {
+            assertFalse(predictor.startReadOnly("cmd"));
+        }
+        assertEquals(1023, predictor.getWriteHits());
+
+        assertTrue(predictor.startReadOnly("cmd"));
+        assertEquals(1, predictor.getProbes());
+
+        // the probe did not write: back to read-only
+        predictor.readOnlyCommitted("cmd");
+        assertTrue(predictor.startReadOnly("cmd"));
+    }
+}
@@ -25,6 +25,7 @@ tokens {
     RELATION_DEF; SLOT_DEF; RELATION_BLOCK; ROLE; ROLE_NAME; ROLE_OPTIONS;
     MULTIPLICITY; MULTIPLICITY_RANGE; EXTERNAL;
     INDEXED; ORDERED; VALUE_TYPE; SLOT_OPTIONS; REQUIRED_OPTION; MODIFIERS;
+    CLASS_OPTIONS; WHOLE_OBJECT_OPTION;
     ENUM_TYPE; PACKAGE; ABSOLUTE_NAME; VALUE_TYPE_BLOCK; EXTERNALIZATION_CLAUSE;
     EXTERNALIZATION_ELEMENT; INTERNALIZATION_CLAUSE; TYPE;
     WILDCARD; WILDCARD_EXTENDS; WILDCARD_SUPER;
@@ -111,11 +112,27 @@ classDefinition!
 		sc:superClassClause
 		// it might implement some interfaces...
 		ic:implementsClause
+		// it might have some options...
+		co:classOptions
 		// now parse the body of the class
 		cb:classBlock
-		{#classDefinition = #(#[CLASS_DEF,"CLASS_DEF"], id, sc, ic, mods, cb);}
+		{#classDefinition = #(#[CLASS_DEF,"CLASS_DEF"], id, sc, ic, mods, co, cb);}
 	;
 
+classOptions
+    : ( LPAREN!
+         classOption ( COMMA! classOption )*
+        RPAREN!
+      )?
+      {#classOptions = #([CLASS_OPTIONS, "CLASS_OPTIONS"], #classOptions);}
+    ;
+
+classOption!
+    :
+        "WHOLE_OBJECT"
+        {#classOption = #([WHOLE_OBJECT_OPTION,"WHOLE_OBJECT_OPTION"]);}
+    ;
+
 superClassClause!
 	:	( "extends" id:entityTypeIdentifier )?
 		{#superClassClause = #(#[EXTENDS_CLAUSE,"EXTENDS_CLAUSE"], id);}
@@ -47,6 +47,7 @@ domainDefinition[DomainModel model,String packageName,URL sourceFile] returns [S
                 DomainClass domClass = new DomainClass(sourceFile, name, superclass, ifs); 
             }
             modifiers[domClass]
+            classOptions[domClass]
             classBlock[model, domClass]
             { 
                 model.addClass(domClass); 
@@ -143,6 +144,16 @@ classSlot[DomainModel model] returns [Slot slotDef = null]
     ;
 
 
+classOptions[DomainClass domClass]
+    : #(CLASS_OPTIONS ( classOption[domClass] )*)
+    ;
+
+
+classOption[DomainClass domClass]
+    : #(WHOLE_OBJECT_OPTION { domClass.addOption(DomainClass.Option.WHOLE_OBJECT); } )
+    ;
+
+
 slotOptions[Slot slotDef]
     : #(SLOT_OPTIONS ( slotOption[slotDef] )*)
     ;
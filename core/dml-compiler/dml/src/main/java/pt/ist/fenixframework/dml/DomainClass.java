@@ -3,15 +3,28 @@ package pt.ist.fenixframework.dml;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 public class DomainClass extends DomainEntity {
+
+    public enum Option {
+        /**
+         * Store the slots declared by the class together, as a single record, instead of one entry per slot. Backends that
+         * support it load all the slots of an object when any of them is first read. Backends that do not support it ignore this
+         * option. Changing this option for a class that already has persisted instances requires migrating their data.
+         */
+        WHOLE_OBJECT
+    }
+
     private DomainEntity superclass;
     private List interfacesNames;
 
     private List<Slot> slots = new ArrayList<Slot>();
     private List<Role> roleSlots = new ArrayList<Role>();
+    private final Set<Option> classOptions = EnumSet.noneOf(Option.class);
 
     public DomainClass(URL sourceFile, String fullName, DomainEntity superclass, List interfacesNames) {
         super(sourceFile, fullName);
@@ -103,6 +116,18 @@ public class DomainClass extends DomainEntity {
         return (superclass != null) ? superclass.findRoleSlot(roleName) : null;
     }
 
+    public void addOption(Option option) {
+        classOptions.add(option);
+    }
+
+    public Set<Option> getOptions() {
+        return classOptions;
+    }
+
+    public boolean hasOption(Option option) {
+        return classOptions.contains(option);
+    }
+
     public boolean hasSlotWithOption(Slot.Option option) {
         for (Slot slot : slots) {
             if (slot.hasOption(option)) {
@@ -1,6 +1,8 @@
 package pt.ist.fenixframework;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.FileWriter;
@@ -14,6 +16,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import pt.ist.fenixframework.dml.DomainClass;
 import pt.ist.fenixframework.dml.DomainModel;
 
 @RunWith(JUnit4.class)
@@ -39,6 +42,16 @@ public class DomainModelParserTest {
         assertNotNull(model);
     }
 
+    @Test
+    public void testClassOptions() throws IOException {
+        URL url = dml("class Plain { String name; }\n" + "class Compact (WHOLE_OBJECT) { String name; int age; }\n"
+                + "class SubCompact extends Compact (WHOLE_OBJECT);");
+        DomainModel model = DomainModelParser.getDomainModel(Collections.singletonList(url));
+        assertFalse(model.findClass("Plain").hasOption(DomainClass.Option.WHOLE_OBJECT));
+        assertTrue(model.findClass("Compact").hasOption(DomainClass.Option.WHOLE_OBJECT));
+        assertTrue(model.findClass("SubCompact").hasOption(DomainClass.Option.WHOLE_OBJECT));
+    }
+
     private URL dml(String contents) throws IOException {
         File file = File.createTempFile("dml", "tmp");
         file.deleteOnExit();
@@ -0,0 +1,134 @@
+package pt.ist.fenixframework.backend.jvstm.pstm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import test.backend.jvstm.domain.Counter;
+
+/* In the package of DomainClassInfo, to draw keys from class infos other than the registered ones, each of which reserves its
+own blocks in the repository, as the class info of another node would. */
+public class KeyBlockTest {
+
+    private static final int BLOCK_SIZE = 5;
+    private static final int NUM_THREADS = 4;
+    private static final int NUM_KEYS = 1000;
+
+    private int originalBlockSize;
+
+    @Before
+    public void setBlockSize() {
+        this.originalBlockSize = DomainClassInfo.getKeyBlockSize();
+        DomainClassInfo.setKeyBlockSize(BLOCK_SIZE);
+    }
+
+    @After
+    public void restoreBlockSize() {
+        DomainClassInfo.setKeyBlockSize(this.originalBlockSize);
+    }
+
+    @Test
+    public void testReserveExhaustAndRenew() {
+        DomainClassInfo allocator = newAllocator();
+
+        int firstKey = allocator.nextKey();
+        for (int i = 1; i < BLOCK_SIZE; i++) {
+            Assert.assertEquals(firstKey + i, allocator.nextKey());
+        }
+
+        // the block is exhausted, so the next key comes from a new one, above the keys reserved before
+        int renewedKey = allocator.nextKey();
+        Assert.assertTrue(renewedKey >= firstKey + BLOCK_SIZE);
+        Assert.assertEquals(renewedKey + 1, allocator.nextKey());
+    }
+
+    @Test
+    public void testBlockSizeChangeAppliesToNextBlock() {
+        DomainClassInfo allocator = newAllocator();
+        int firstKey = allocator.nextKey();
+
+        DomainClassInfo.setKeyBlockSize(BLOCK_SIZE * 2);
+        for (int i = 1; i < BLOCK_SIZE; i++) {
+            Assert.assertEquals(firstKey + i, allocator.nextKey());
+        }
+
+        int renewedKey = allocator.nextKey();
+        for (int i = 1; i < BLOCK_SIZE * 2; i++) {
+            Assert.assertEquals(renewedKey + i, allocator.nextKey());
+        }
+    }
+
+    @Test
+    public void testNoDuplicatesAcrossAllocators() {
+        DomainClassInfo first = newAllocator();
+        DomainClassInfo second = newAllocator();
+
+        // interleaved so that each allocator reserves its blocks while the other still has keys left
+        Set<Integer> keys = new HashSet<Integer>();
+        for (int i = 0; i < NUM_KEYS; i++) {
+            Assert.assertTrue(keys.add(first.nextKey()));
+            Assert.assertTrue(keys.add(second.nextKey()));
+            if (i % 3 == 0) {
+                Assert.assertTrue(keys.add(second.nextKey()));
+            }
+        }
+    }
+
+    @Test
+    public void testNoDuplicatesAcrossThreads() throws InterruptedException {
+        final DomainClassInfo allocator = newAllocator();
+        final Set<Integer> keys = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Integer> duplicates = new ArrayList<Integer>();
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < NUM_THREADS; t++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < NUM_KEYS; i++) {
+                        int key = allocator.nextKey();
+                        if (!keys.add(key)) {
+                            synchronized (duplicates) {
+                                duplicates.add(key);
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(new ArrayList<Integer>(), duplicates);
+        Assert.assertEquals(NUM_THREADS * NUM_KEYS, keys.size());
+    }
+
+    // reserves its keys from the same stored counter as the registered class info of the Counters
+    @Atomic(mode = TxMode.READ)
+    private DomainClassInfo newAllocator() {
+        return new DomainClassInfo(Counter.class, DomainClassInfo.mapClassToId(Counter.class));
+    }
+
+}
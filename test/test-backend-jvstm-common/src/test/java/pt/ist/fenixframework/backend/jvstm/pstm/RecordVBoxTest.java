@@ -0,0 +1,105 @@
+package pt.ist.fenixframework.backend.jvstm.pstm;
+
+import java.util.List;
+
+import jvstm.VBoxBody;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import test.backend.jvstm.domain.Compact;
+
+/* In the package of RecordVBox, to build the records that a repository would have stored. */
+public class RecordVBoxTest {
+
+    @Test
+    public void testSlotMissingFromOlderRecords() {
+        Compact compact = createCompact("b", 7);
+        int name = DomainClassInfo.mapSlotNameToIndex(Compact.class, "name");
+        int age = DomainClassInfo.mapSlotNameToIndex(Compact.class, "age");
+
+        // the age was added to the class after versions 1 and 3 were stored
+        VBoxBody<WholeObjectRecord> records =
+                new VBoxBody<WholeObjectRecord>(record(new int[] { name, age }, new int[] { 5, 5 }, "b", 7), 5,
+                        new VBoxBody<WholeObjectRecord>(record(new int[] { name }, new int[] { 3 }, "a"), 3,
+                                new VBoxBody<WholeObjectRecord>(record(new int[] { name }, new int[] { 1 }, "z"), 1, null)));
+
+        List<VersionedValue> ages = getRecord(compact).getSlotVersions(records, "age");
+        Assert.assertEquals(2, ages.size());
+        assertVersionedValue(7, 5, ages.get(0));
+        assertVersionedValue(0, 0, ages.get(1));
+
+        List<VersionedValue> names = getRecord(compact).getSlotVersions(records, "name");
+        Assert.assertEquals(3, names.size());
+        assertVersionedValue("b", 5, names.get(0));
+        assertVersionedValue("a", 3, names.get(1));
+        assertVersionedValue("z", 1, names.get(2));
+    }
+
+    @Test
+    public void testSlotMissingFromAllRecords() {
+        Compact compact = createCompact("a", 3);
+        int name = DomainClassInfo.mapSlotNameToIndex(Compact.class, "name");
+        int age = DomainClassInfo.mapSlotNameToIndex(Compact.class, "age");
+
+        VBoxBody<WholeObjectRecord> onlyNames =
+                new VBoxBody<WholeObjectRecord>(record(new int[] { name }, new int[] { 2 }, "a"), 2, null);
+        List<VersionedValue> ages = getRecord(compact).getSlotVersions(onlyNames, "age");
+        Assert.assertEquals(1, ages.size());
+        assertVersionedValue(0, 0, ages.get(0));
+
+        VBoxBody<WholeObjectRecord> onlyAges =
+                new VBoxBody<WholeObjectRecord>(record(new int[] { age }, new int[] { 2 }, 3), 2, null);
+        List<VersionedValue> names = getRecord(compact).getSlotVersions(onlyAges, "name");
+        Assert.assertEquals(1, names.size());
+        assertVersionedValue(null, 0, names.get(0));
+    }
+
+    @Test
+    public void testWritesToSomeSlots() {
+        Compact compact = createCompact("a", 3);
+        rename(compact, "b");
+
+        Assert.assertEquals("b", getName(compact));
+        Assert.assertEquals(3, getAge(compact));
+    }
+
+    private static RecordVBox getRecord(Compact compact) {
+        return (RecordVBox) compact.getSlotNamed("record$Compact");
+    }
+
+    private static WholeObjectRecord record(int[] slotIndexes, int[] versions, Object... values) {
+        return new WholeObjectRecord(slotIndexes, versions, values);
+    }
+
+    private static void assertVersionedValue(Object value, int version, VersionedValue vvalue) {
+        Assert.assertEquals(value, vvalue.getValue());
+        Assert.assertEquals(version, vvalue.getVersion());
+    }
+
+    @Atomic(mode = TxMode.WRITE)
+    private Compact createCompact(String name, int age) {
+        Compact compact = new Compact();
+        compact.setName(name);
+        compact.setAge(age);
+        return compact;
+    }
+
+    @Atomic(mode = TxMode.WRITE)
+    private void rename(Compact compact, String name) {
+        compact.setName(name);
+    }
+
+    @Atomic(mode = TxMode.READ)
+    private String getName(Compact compact) {
+        return compact.getName();
+    }
+
+    @Atomic(mode = TxMode.READ)
+    private int getAge(Compact compact) {
+        return compact.getAge();
+    }
+
+}
@@ -0,0 +1,119 @@
+package test.backend.jvstm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import jvstm.Transaction;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.Snapshot;
+import pt.ist.fenixframework.backend.jvstm.JVSTMBackEnd;
+import pt.ist.fenixframework.backend.jvstm.pstm.VBox;
+import pt.ist.fenixframework.backend.jvstm.repository.NoRepository;
+import test.backend.jvstm.domain.Counter;
+
+public class PrefetchTest {
+
+    private static final int NUM_COUNTERS = 10;
+    private static final int NUM_UPDATES = 3;
+
+    @Test
+    public void testPrefetchOfOlderVersion() throws Exception {
+        final List<Counter> counters = createCounters();
+
+        Snapshot snapshot = FenixFramework.openSnapshot(TimeUnit.MINUTES.toMillis(1));
+        try {
+            // each counter gets several versions above the one that the snapshot reads
+            for (int i = 0; i < NUM_UPDATES; i++) {
+                incrementAll(counters);
+            }
+
+            // with a repository, discard the older versions from memory, as if they had been trimmed before the snapshot
+            // needed them, so that prefetching must load them again
+            boolean hasRepository = !(JVSTMBackEnd.getInstance().getRepository() instanceof NoRepository);
+            if (hasRepository) {
+                for (Counter counter : counters) {
+                    valueBox(counter).trimBodies(Integer.MAX_VALUE);
+                }
+            }
+
+            List<Integer> values = snapshot.read(new Callable<List<Integer>>() {
+                @Override
+                public List<Integer> call() {
+                    int txNumber = Transaction.current().getNumber();
+                    FenixFramework.prefetch(counters, "value");
+                    for (Counter counter : counters) {
+                        Assert.assertFalse(valueBox(counter).needsReload(txNumber));
+                    }
+                    return readAll(counters);
+                }
+            });
+            for (Integer value : values) {
+                Assert.assertEquals(0, value.intValue());
+            }
+        } finally {
+            snapshot.close();
+        }
+
+        for (Integer value : readAllInNewTransaction(counters)) {
+            Assert.assertEquals(NUM_UPDATES, value.intValue());
+        }
+    }
+
+    @Test
+    public void testPrefetchOfLoadedSlots() {
+        List<Counter> counters = createCounters();
+        incrementAll(counters);
+
+        for (Integer value : prefetchAndReadAll(counters)) {
+            Assert.assertEquals(1, value.intValue());
+        }
+    }
+
+    private static VBox<?> valueBox(Counter counter) {
+        return (VBox<?>) counter.getSlotNamed("value");
+    }
+
+    @Atomic(mode = TxMode.WRITE)
+    private List<Counter> createCounters() {
+        List<Counter> counters = new ArrayList<Counter>();
+        for (int i = 0; i < NUM_COUNTERS; i++) {
+            counters.add(new Counter());
+        }
+        return counters;
+    }
+
+    @Atomic(mode = TxMode.WRITE)
+    private void incrementAll(List<Counter> counters) {
+        for (Counter counter : counters) {
+            counter.inc();
+        }
+    }
+
+    @Atomic(mode = TxMode.READ)
+    private List<Integer> prefetchAndReadAll(List<Counter> counters) {
+        FenixFramework.prefetch(counters, "value");
+        return readAll(counters);
+    }
+
+    @Atomic(mode = TxMode.READ)
+    private List<Integer> readAllInNewTransaction(List<Counter> counters) {
+        return readAll(counters);
+    }
+
+    private static List<Integer> readAll(List<Counter> counters) {
+        List<Integer> values = new ArrayList<Integer>();
+        for (Counter counter : counters) {
+            values.add(counter.getValue());
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,107 @@
+package test.backend.jvstm;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.Transaction;
+import pt.ist.fenixframework.TransactionContext;
+import test.backend.jvstm.domain.Counter;
+
+public class TransactionContextTest {
+
+    Counter counter;
+    ExecutorService executor;
+
+    @Before
+    @Atomic(mode = TxMode.WRITE)
+    public void createCounter() {
+        this.counter = new Counter();
+    }
+
+    @Before
+    public void createExecutor() {
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void shutdownExecutor() {
+        this.executor.shutdown();
+    }
+
+    /**
+     * Confirm that a transaction can be suspended in one thread, continued in another, and committed in the first one.
+     */
+    @Test
+    public void testSuspendAndResumeInAnotherThread() throws Exception {
+        FenixFramework.getTransactionManager().begin(false);
+        counter.inc();
+
+        final Transaction tx = TransactionContext.suspend();
+        Assert.assertNull(FenixFramework.getTransaction());
+
+        executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                TransactionContext.resume(tx);
+                try {
+                    counter.inc();
+                } finally {
+                    Assert.assertSame(tx, TransactionContext.suspend());
+                }
+                return null;
+            }
+        }).get();
+
+        TransactionContext.resume(tx);
+        Assert.assertSame(tx, FenixFramework.getTransaction());
+        FenixFramework.getTransactionManager().commit();
+
+        Assert.assertEquals(2, getCounterValue(counter));
+    }
+
+    /**
+     * Confirm that the propagating executor runs tasks within the submitter's transaction, and leaves the worker thread as it
+     * found it.
+     */
+    @Test
+    public void testPropagatingExecutor() throws Exception {
+        FenixFramework.getTransactionManager().begin(false);
+        Transaction tx = FenixFramework.getTransaction();
+
+        FutureTask<Transaction> task = new FutureTask<Transaction>(new Callable<Transaction>() {
+            @Override
+            public Transaction call() {
+                counter.inc();
+                return FenixFramework.getTransaction();
+            }
+        });
+        TransactionContext.propagating(executor).execute(task);
+        Assert.assertSame(tx, task.get());
+
+        FenixFramework.getTransactionManager().commit();
+        Assert.assertEquals(1, getCounterValue(counter));
+
+        Assert.assertNull(executor.submit(new Callable<Transaction>() {
+            @Override
+            public Transaction call() {
+                return FenixFramework.getTransaction();
+            }
+        }).get());
+    }
+
+    @Atomic(mode = TxMode.READ)
+    private int getCounterValue(Counter c) {
+        return c.getValue();
+    }
+
+}
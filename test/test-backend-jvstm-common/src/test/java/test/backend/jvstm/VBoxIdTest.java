@@ -0,0 +1,93 @@
+package test.backend.jvstm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.backend.jvstm.pstm.DomainClassInfo;
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
+import pt.ist.fenixframework.backend.jvstm.repository.VBoxVersionKey;
+import test.backend.jvstm.domain.Counter;
+
+public class VBoxIdTest {
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        VBoxId owned = VBoxId.forSlot(0x123456789abcL, 7);
+        VBoxId maxSlot = VBoxId.forSlot(Long.MAX_VALUE, VBoxId.MAX_SLOT_INDEX);
+        VBoxId standalone = VBoxId.forName("some standalone box");
+
+        for (VBoxId vboxId : new VBoxId[] { owned, maxSlot, standalone }) {
+            VBoxId read = readFrom(writeTo(vboxId));
+            Assert.assertEquals(vboxId, read);
+            Assert.assertEquals(vboxId.hashCode(), read.hashCode());
+            Assert.assertEquals(vboxId.isStandalone(), read.isStandalone());
+        }
+        Assert.assertEquals(10, writeTo(owned).length);
+    }
+
+    @Test
+    public void testSerializationRoundTrip() throws Exception {
+        VBoxId owned = VBoxId.forSlot(42, 1);
+        VBoxId standalone = VBoxId.forName("root");
+
+        Assert.assertEquals(owned, serializeAndDeserialize(owned));
+        Assert.assertEquals(standalone, serializeAndDeserialize(standalone));
+        Assert.assertEquals(new VBoxVersionKey(owned, 17), serializeAndDeserialize(new VBoxVersionKey(owned, 17)));
+        Assert.assertEquals(new VBoxVersionKey(standalone, "commitId"),
+                serializeAndDeserialize(new VBoxVersionKey(standalone, "commitId")));
+        Assert.assertEquals(new VBoxVersionKey(owned, 5L), serializeAndDeserialize(new VBoxVersionKey(owned, 5L)));
+    }
+
+    @Test
+    public void testLegacyIdRoundTrip() {
+        VBoxId vboxId = makeCounterValueId();
+        String legacyId = vboxId.toLegacyId();
+
+        Assert.assertTrue(legacyId.startsWith("value:"));
+        Assert.assertEquals(vboxId, VBoxId.fromLegacyId(legacyId));
+    }
+
+    @Test
+    public void testLegacyIdOfStandaloneBox() {
+        VBoxId standalone = VBoxId.forName("not:a slot");
+
+        Assert.assertEquals("not:a slot", standalone.toLegacyId());
+        Assert.assertEquals(standalone, VBoxId.fromLegacyId("not:a slot"));
+    }
+
+    @Atomic
+    private VBoxId makeCounterValueId() {
+        Counter counter = new Counter();
+        return VBoxId.forSlot(counter.getOid(), DomainClassInfo.mapSlotNameToIndex(Counter.class, "value"));
+    }
+
+    private static byte[] writeTo(VBoxId vboxId) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        vboxId.writeTo(out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static VBoxId readFrom(byte[] bytes) throws IOException {
+        return VBoxId.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private static Object serializeAndDeserialize(Object obj) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(obj);
+        out.close();
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+}
@@ -0,0 +1,109 @@
+package test.backend.jvstm;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import jvstm.Transaction;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.Snapshot;
+import pt.ist.fenixframework.backend.jvstm.pstm.VBox;
+import pt.ist.fenixframework.backend.jvstm.pstm.VersionChainTrimmer;
+import test.backend.jvstm.domain.Counter;
+
+public class VersionChainTrimmerTest {
+
+    private static final int NUM_UPDATES = 3;
+
+    // longer than the time for which the trimmer reuses the oldest running version
+    private static final long WATERMARK_REFRESH_MILLIS = 20;
+
+    @Test
+    public void testOldTransactionReadsItsVersionAfterTrim() throws Exception {
+        final Counter counter = createCounter();
+        increment(counter);
+
+        Snapshot snapshot = FenixFramework.openSnapshot(TimeUnit.MINUTES.toMillis(1));
+        try {
+            int snapshotVersion = snapshot.read(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return Transaction.current().getNumber();
+                }
+            });
+
+            for (int i = 0; i < NUM_UPDATES; i++) {
+                increment(counter);
+            }
+            Assert.assertEquals(NUM_UPDATES + 1, readValue(counter));
+
+            trimAtOldestRunningVersion(counter);
+            Assert.assertFalse(valueBox(counter).needsReload(snapshotVersion));
+
+            int value = snapshot.read(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return counter.getValue();
+                }
+            });
+            Assert.assertEquals(1, value);
+        } finally {
+            snapshot.close();
+        }
+
+        Assert.assertEquals(NUM_UPDATES + 1, readValue(counter));
+    }
+
+    @Test
+    public void testBodiesBelowOldestRunningVersionAreDropped() throws Exception {
+        Counter counter = createCounter();
+
+        // keep every version of the counter while the snapshot is open
+        Snapshot snapshot = FenixFramework.openSnapshot(TimeUnit.MINUTES.toMillis(1));
+        try {
+            for (int i = 0; i < NUM_UPDATES; i++) {
+                increment(counter);
+            }
+        } finally {
+            snapshot.close();
+        }
+        Assert.assertTrue(valueBox(counter).getChainLength() > 1);
+
+        // a transaction at the most recent version is now the oldest one
+        Assert.assertEquals(NUM_UPDATES, readValue(counter));
+        trimAtOldestRunningVersion(counter);
+
+        Assert.assertEquals(1, valueBox(counter).getChainLength());
+        Assert.assertEquals(NUM_UPDATES, readValue(counter));
+    }
+
+    private static void trimAtOldestRunningVersion(Counter counter) throws InterruptedException {
+        Thread.sleep(WATERMARK_REFRESH_MILLIS);
+        VersionChainTrimmer.getInstance().trim(valueBox(counter));
+    }
+
+    private static VBox<?> valueBox(Counter counter) {
+        return (VBox<?>) counter.getSlotNamed("value");
+    }
+
+    @Atomic(mode = TxMode.WRITE)
+    private Counter createCounter() {
+        return new Counter();
+    }
+
+    @Atomic(mode = TxMode.WRITE)
+    private void increment(Counter counter) {
+        counter.inc();
+    }
+
+    @Atomic(mode = TxMode.READ)
+    private int readValue(Counter counter) {
+        return counter.getValue();
+    }
+
+}
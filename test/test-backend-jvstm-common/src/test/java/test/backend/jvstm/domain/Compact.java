@@ -0,0 +1,9 @@
+package test.backend.jvstm.domain;
+
+public class Compact extends Compact_Base {
+
+    public Compact() {
+        super();
+    }
+
+}
@@ -0,0 +1,168 @@
+package pt.ist.fenixframework.backend.jvstm.lf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pt.ist.fenixframework.backend.jvstm.pstm.VBoxId;
+
+// In the package of SimpleReadSet, to build read sets around its summary threshold.
+public class SimpleReadSetTest {
+
+    private static final int NUM_SLOTS = 3;
+
+    @Test
+    public void testRoundTripOfLargeGaps() throws IOException {
+        List<VBoxId> ids = new ArrayList<VBoxId>();
+        ids.add(VBoxId.forSlot(0, 0));
+        ids.add(VBoxId.forSlot(1, 1));
+        ids.add(VBoxId.forSlot(127, 0));
+        ids.add(VBoxId.forSlot(128, 127));
+        ids.add(VBoxId.forSlot(129, 128));
+        ids.add(VBoxId.forSlot(1L << 35, 2));
+        ids.add(VBoxId.forSlot((1L << 62) + 1, 0));
+        ids.add(VBoxId.forSlot(Long.MAX_VALUE - 1, 0));
+        ids.add(VBoxId.forSlot(Long.MAX_VALUE, 0));
+        ids.add(VBoxId.forSlot(Long.MAX_VALUE, VBoxId.MAX_SLOT_INDEX));
+        ids.add(VBoxId.forName("root"));
+        ids.add(VBoxId.forName(""));
+
+        assertRoundTrip(ids);
+    }
+
+    @Test
+    public void testRoundTripOfNegativeOids() throws IOException {
+        // the delta from the smallest to the largest oid wraps around
+        assertRoundTrip(Arrays.asList(VBoxId.forSlot(Long.MIN_VALUE, 0), VBoxId.forSlot(-1, VBoxId.MAX_SLOT_INDEX),
+                VBoxId.forSlot(Long.MAX_VALUE, VBoxId.MAX_SLOT_INDEX)));
+    }
+
+    @Test
+    public void testRoundTripOfEmptyReadSet() throws IOException {
+        assertRoundTrip(Collections.<VBoxId> emptyList());
+    }
+
+    @Test
+    public void testRoundTripIsSorted() throws IOException {
+        VBoxId[] ids =
+                new VBoxId[] { VBoxId.forName("b"), VBoxId.forSlot(7, 1), VBoxId.forName("a"), VBoxId.forSlot(3, 2),
+                        VBoxId.forSlot(7, 0) };
+        VBoxId[] expected =
+                new VBoxId[] { VBoxId.forSlot(3, 2), VBoxId.forSlot(7, 0), VBoxId.forSlot(7, 1), VBoxId.forName("a"),
+                        VBoxId.forName("b") };
+
+        Assert.assertArrayEquals(expected, readFrom(writeTo(new SimpleReadSet(ids))).getVBoxIds());
+    }
+
+    @Test
+    public void testBoxesOfConsecutiveObjectsAreCompact() throws IOException {
+        int numObjects = 100;
+        List<VBoxId> ids = new ArrayList<VBoxId>();
+        for (long oid = 1000000; oid < 1000000 + numObjects; oid++) {
+            for (int slot = 0; slot < NUM_SLOTS; slot++) {
+                ids.add(VBoxId.forSlot(oid, slot));
+            }
+        }
+
+        byte[] bytes = writeTo(new SimpleReadSet(ids.toArray(new VBoxId[ids.size()])));
+
+        // two bytes per box, but for the first oid, written in full, and the counts of boxes
+        Assert.assertTrue(bytes.length < ids.size() * 2 + 8);
+    }
+
+    @Test
+    public void testSummaryDetectsConflict() {
+        SimpleReadSet readSet = makeLargeReadSet();
+        Assert.assertTrue(readSet.hasSummary());
+
+        VBoxId[] writeSet = new VBoxId[] { VBoxId.forSlot(-5, 0), VBoxId.forSlot(42, 1), VBoxId.forName("unread") };
+        Assert.assertEquals(Arrays.asList(VBoxId.forSlot(42, 1)), getReadsWritten(readSet, writeSet));
+
+        // every box read is found
+        for (VBoxId vboxId : readSet.getVBoxIds()) {
+            Assert.assertTrue(readSet.contains(vboxId));
+        }
+    }
+
+    @Test
+    public void testSummaryPassesDisjointWriteSet() {
+        SimpleReadSet readSet = makeLargeReadSet();
+        Assert.assertTrue(readSet.hasSummary());
+
+        // the same objects, other slots, and other objects
+        List<VBoxId> writeSet = new ArrayList<VBoxId>();
+        for (int oid = 0; oid < SimpleReadSet.SUMMARY_THRESHOLD * 4; oid++) {
+            writeSet.add(VBoxId.forSlot(oid, NUM_SLOTS));
+            writeSet.add(VBoxId.forSlot(oid + SimpleReadSet.SUMMARY_THRESHOLD * 4, 0));
+        }
+        writeSet.add(VBoxId.forName("not read"));
+
+        Assert.assertEquals(Collections.emptyList(),
+                getReadsWritten(readSet, writeSet.toArray(new VBoxId[writeSet.size()])));
+    }
+
+    @Test
+    public void testSmallReadSetHasNoSummary() {
+        VBoxId[] ids = new VBoxId[SimpleReadSet.SUMMARY_THRESHOLD - 1];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = VBoxId.forSlot(i, 0);
+        }
+        SimpleReadSet readSet = new SimpleReadSet(ids);
+
+        Assert.assertFalse(readSet.hasSummary());
+        Assert.assertTrue(readSet.contains(VBoxId.forSlot(3, 0)));
+        Assert.assertFalse(readSet.contains(VBoxId.forSlot(3, 1)));
+    }
+
+    // NUM_SLOTS boxes of each of the first 4 * SUMMARY_THRESHOLD objects
+    private static SimpleReadSet makeLargeReadSet() {
+        List<VBoxId> ids = new ArrayList<VBoxId>();
+        for (long oid = 0; oid < SimpleReadSet.SUMMARY_THRESHOLD * 4; oid++) {
+            for (int slot = 0; slot < NUM_SLOTS; slot++) {
+                ids.add(VBoxId.forSlot(oid, slot));
+            }
+        }
+        return new SimpleReadSet(ids.toArray(new VBoxId[ids.size()]));
+    }
+
+    // what validation against the write set of a recent commit finds
+    private static List<VBoxId> getReadsWritten(SimpleReadSet readSet, VBoxId[] writeSet) {
+        List<VBoxId> readsWritten = new ArrayList<VBoxId>();
+        for (VBoxId vboxId : writeSet) {
+            if (readSet.contains(vboxId)) {
+                readsWritten.add(vboxId);
+            }
+        }
+        return readsWritten;
+    }
+
+    private static void assertRoundTrip(List<VBoxId> ids) throws IOException {
+        SimpleReadSet readSet = new SimpleReadSet(ids.toArray(new VBoxId[ids.size()]));
+        SimpleReadSet read = readFrom(writeTo(readSet));
+
+        Assert.assertArrayEquals(readSet.getVBoxIds(), read.getVBoxIds());
+        Assert.assertEquals(ids.size(), read.size());
+    }
+
+    private static byte[] writeTo(SimpleReadSet readSet) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        readSet.writeTo(out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static SimpleReadSet readFrom(byte[] bytes) throws IOException {
+        return SimpleReadSet.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+}
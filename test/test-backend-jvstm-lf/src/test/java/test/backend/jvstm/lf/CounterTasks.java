@@ -0,0 +1,60 @@
+package test.backend.jvstm.lf;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.FenixFramework;
+import test.backend.jvstm.lf.domain.Counter;
+
+/**
+ * What the tests run on the nodes of a {@link LoopbackCluster}. Each node loads its own copy of this class, which works on the
+ * node's own copy of the domain.
+ */
+public class CounterTasks {
+
+    private static final long POLL_MILLIS = 10;
+
+    @Atomic(mode = TxMode.WRITE)
+    public static void createCounter() {
+        FenixFramework.getDomainRoot().setCounter(new Counter());
+    }
+
+    /**
+     * Commit the given number of increments, one per transaction. The n-th increment of node i adds <code>i:n</code> to the
+     * history of the counter.
+     */
+    public static void increment(int node, int numIncrements) {
+        for (int i = 0; i < numIncrements; i++) {
+            increment(node + ":" + i);
+        }
+    }
+
+    @Atomic(mode = TxMode.WRITE)
+    private static void increment(String entry) {
+        FenixFramework.getDomainRoot().getCounter().inc(entry);
+    }
+
+    /**
+     * Wait until this node sees the counter with the given value, i.e. until it has applied all the commits that got the counter
+     * there, whichever node made them.
+     *
+     * @return The history of the counter, or <code>null</code> if the counter did not reach the value within the given time
+     */
+    public static String awaitHistory(int value, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            String history = readHistory(value);
+            if (history != null || System.currentTimeMillis() > deadline) {
+                return history;
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+
+    // every new transaction first applies the commits that this node has received in the meantime
+    @Atomic(mode = TxMode.READ)
+    private static String readHistory(int value) {
+        Counter counter = FenixFramework.getDomainRoot().getCounter();
+        return counter != null && counter.getValue() == value ? counter.getHistory() : null;
+    }
+
+}
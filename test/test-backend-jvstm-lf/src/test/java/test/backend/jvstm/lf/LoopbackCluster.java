@@ -0,0 +1,214 @@
+package test.backend.jvstm.lf;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import pt.ist.fenixframework.backend.jvstm.lf.LoopbackGroup;
+import pt.ist.fenixframework.backend.jvstm.repository.InMemoryStore;
+
+/**
+ * Several nodes of a jvstm-lf cluster running in this JVM, connected by the
+ * {@link pt.ist.fenixframework.backend.jvstm.lf.LoopbackCommitTransport} and sharing an
+ * {@link pt.ist.fenixframework.backend.jvstm.repository.InMemoryDataGrid}, as configured in
+ * <code>fenix-framework-jvstm-lf.properties</code>.
+ *
+ * The framework keeps its state in static fields, so each node loads its own copy of the classes in the test class path, except
+ * for {@link LoopbackGroup} and {@link InMemoryStore}, which hold the state that the nodes share. Thus, a test cannot use the
+ * domain objects of a node directly. Instead, it {@link Node#invoke invokes} static methods of a class that each node loads for
+ * itself, passing and returning only JDK types.
+ */
+public class LoopbackCluster {
+
+    public static final int MIN_NODES = 2;
+    public static final int MAX_NODES = 8;
+
+    // the dataGrid.storeName in fenix-framework-jvstm-lf.properties
+    private static final String STORE_NAME = "loopback-cluster";
+
+    private static final String FENIX_FRAMEWORK = "pt.ist.fenixframework.FenixFramework";
+
+    private final List<Node> nodes = new ArrayList<Node>();
+
+    private LoopbackCluster() {
+    }
+
+    /**
+     * Start the given number of nodes, one at a time, on an empty data grid. The first node initializes the data grid, and
+     * each of the others joins the cluster formed by the nodes started before it.
+     */
+    public static LoopbackCluster start(int numNodes) throws Exception {
+        if (numNodes < MIN_NODES || numNodes > MAX_NODES) {
+            throw new IllegalArgumentException("A cluster must have between " + MIN_NODES + " and " + MAX_NODES + " nodes");
+        }
+
+        InMemoryStore.drop(STORE_NAME);
+        URL[] classPath = getTestClassPath();
+
+        LoopbackCluster cluster = new LoopbackCluster();
+        try {
+            for (int i = 0; i < numNodes; i++) {
+                Node node = new Node(i, new NodeClassLoader(classPath, LoopbackCluster.class.getClassLoader()));
+                // the static initializer of the FenixFramework starts the node
+                if (!Boolean.TRUE.equals(node.invoke(FENIX_FRAMEWORK, "isInitialized"))) {
+                    throw new IllegalStateException("Node " + i + " did not initialize");
+                }
+                cluster.nodes.add(node);
+            }
+        } catch (Exception e) {
+            cluster.shutdown();
+            throw e;
+        }
+        return cluster;
+    }
+
+    private static URL[] getTestClassPath() throws MalformedURLException {
+        // surefire may run the tests from a jar whose manifest holds the actual class path
+        String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+
+        List<URL> urls = new ArrayList<URL>();
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                urls.add(new File(entry).toURI().toURL());
+            }
+        }
+        return urls.toArray(new URL[urls.size()]);
+    }
+
+    public int getNumNodes() {
+        return this.nodes.size();
+    }
+
+    public Node getNode(int index) {
+        return this.nodes.get(index);
+    }
+
+    public List<Node> getNodes() {
+        return Collections.unmodifiableList(this.nodes);
+    }
+
+    /**
+     * Shut down every node, the last one started first, and discard the contents of the data grid.
+     */
+    public void shutdown() throws Exception {
+        Exception failure = null;
+        for (int i = this.nodes.size() - 1; i >= 0; i--) {
+            try {
+                this.nodes.get(i).invoke(FENIX_FRAMEWORK, "shutdown");
+            } catch (Exception e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        this.nodes.clear();
+        InMemoryStore.drop(STORE_NAME);
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * A node of the cluster, with its own copy of the framework.
+     */
+    public static class Node {
+
+        private final int index;
+        private final ClassLoader classLoader;
+
+        private Node(int index, ClassLoader classLoader) {
+            this.index = index;
+            this.classLoader = classLoader;
+        }
+
+        public int getIndex() {
+            return this.index;
+        }
+
+        public Object invoke(Class<?> targetClass, String methodName, Object... args) throws Exception {
+            return invoke(targetClass.getName(), methodName, args);
+        }
+
+        /**
+         * Invoke a public static method of this node's copy of the given class, in the current thread. The method is looked up
+         * by its name and number of parameters, and the node's class loader is the context class loader during the invocation,
+         * as the framework expects.
+         */
+        public Object invoke(String className, String methodName, Object... args) throws Exception {
+            Thread thread = Thread.currentThread();
+            ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(this.classLoader);
+            try {
+                Class<?> targetClass = Class.forName(className, true, this.classLoader);
+                return findMethod(targetClass, methodName, args.length).invoke(null, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw (Error) cause;
+            } finally {
+                thread.setContextClassLoader(previous);
+            }
+        }
+
+        private static Method findMethod(Class<?> targetClass, String methodName, int numParams) throws NoSuchMethodException {
+            for (Method method : targetClass.getMethods()) {
+                if (method.getName().equals(methodName) && method.getParameterTypes().length == numParams) {
+                    return method;
+                }
+            }
+            throw new NoSuchMethodException(targetClass.getName() + "." + methodName);
+        }
+
+        @Override
+        public String toString() {
+            return "Node " + this.index;
+        }
+    }
+
+    /**
+     * Loads the classes from the test class path itself, rather than asking its parent first, except for the JDK classes and
+     * for the classes that hold the state shared by the nodes.
+     */
+    private static class NodeClassLoader extends URLClassLoader {
+
+        private static final Set<String> SHARED_CLASSES = new HashSet<String>(Arrays.asList(LoopbackGroup.class.getName(),
+                LoopbackGroup.Membership.class.getName(), InMemoryStore.class.getName()));
+
+        NodeClassLoader(URL[] classPath, ClassLoader parent) {
+            super(classPath, parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.startsWith("java.") || SHARED_CLASSES.contains(name)) {
+                return super.loadClass(name, resolve);
+            }
+
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loadedClass = findLoadedClass(name);
+                if (loadedClass == null) {
+                    try {
+                        loadedClass = findClass(name);
+                    } catch (ClassNotFoundException e) {
+                        return super.loadClass(name, resolve);
+                    }
+                }
+                if (resolve) {
+                    resolveClass(loadedClass);
+                }
+                return loadedClass;
+            }
+        }
+    }
+
+}
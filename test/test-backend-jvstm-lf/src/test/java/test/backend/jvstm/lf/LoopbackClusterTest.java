@@ -0,0 +1,102 @@
+package test.backend.jvstm.lf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import test.backend.jvstm.lf.LoopbackCluster.Node;
+
+public class LoopbackClusterTest {
+
+    private static final int INCREMENTS_PER_NODE = 50;
+    private static final long TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private LoopbackCluster cluster;
+
+    @After
+    public void shutdownCluster() throws Exception {
+        if (this.cluster != null) {
+            this.cluster.shutdown();
+            this.cluster = null;
+        }
+    }
+
+    @Test
+    public void testCommitsOfTwoNodes() throws Exception {
+        checkCommitsAreOrderedAndAppliedEverywhere(LoopbackCluster.MIN_NODES);
+    }
+
+    @Test
+    public void testCommitsOfEightNodes() throws Exception {
+        checkCommitsAreOrderedAndAppliedEverywhere(LoopbackCluster.MAX_NODES);
+    }
+
+    private void checkCommitsAreOrderedAndAppliedEverywhere(int numNodes) throws Exception {
+        this.cluster = LoopbackCluster.start(numNodes);
+        Assert.assertEquals(numNodes, this.cluster.getNumNodes());
+
+        this.cluster.getNode(0).invoke(CounterTasks.class, "createCounter");
+        for (Node node : this.cluster.getNodes()) {
+            Assert.assertEquals("", awaitHistory(node, 0));
+        }
+
+        // all the nodes increment the same counter at the same time
+        ExecutorService executor = Executors.newFixedThreadPool(numNodes);
+        try {
+            List<Future<Object>> increments = new ArrayList<Future<Object>>();
+            for (final Node node : this.cluster.getNodes()) {
+                increments.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        return node.invoke(CounterTasks.class, "increment", node.getIndex(), INCREMENTS_PER_NODE);
+                    }
+                }));
+            }
+            for (Future<Object> increment : increments) {
+                increment.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // every node applies every commit, in the same order
+        int numIncrements = numNodes * INCREMENTS_PER_NODE;
+        String history = awaitHistory(this.cluster.getNode(0), numIncrements);
+        Assert.assertNotNull("Node 0 did not apply all the commits", history);
+        for (Node node : this.cluster.getNodes()) {
+            Assert.assertEquals(history, awaitHistory(node, numIncrements));
+        }
+
+        // and the order agrees with the order in which each node committed
+        List<List<Integer>> incrementsByNode = new ArrayList<List<Integer>>();
+        for (int i = 0; i < numNodes; i++) {
+            incrementsByNode.add(new ArrayList<Integer>());
+        }
+        String[] entries = history.trim().split(" ");
+        Assert.assertEquals(numIncrements, entries.length);
+        for (String entry : entries) {
+            String[] nodeAndIncrement = entry.split(":");
+            incrementsByNode.get(Integer.parseInt(nodeAndIncrement[0])).add(Integer.parseInt(nodeAndIncrement[1]));
+        }
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < INCREMENTS_PER_NODE; i++) {
+            expected.add(i);
+        }
+        for (List<Integer> increments : incrementsByNode) {
+            Assert.assertEquals(expected, increments);
+        }
+    }
+
+    private static String awaitHistory(Node node, int value) throws Exception {
+        return (String) node.invoke(CounterTasks.class, "awaitHistory", value, TIMEOUT_MILLIS);
+    }
+
+}
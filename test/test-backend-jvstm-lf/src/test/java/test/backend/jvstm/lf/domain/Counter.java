@@ -0,0 +1,19 @@
+package test.backend.jvstm.lf.domain;
+
+public class Counter extends Counter_Base {
+
+    public Counter() {
+        super();
+        setValue(0);
+        setHistory("");
+    }
+
+    /**
+     * Increment the counter and append the given entry to its history, so that the history lists the increments in the order in
+     * which they were committed.
+     */
+    public void inc(String entry) {
+        setValue(getValue() + 1);
+        setHistory(getHistory() + entry + " ");
+    }
+}